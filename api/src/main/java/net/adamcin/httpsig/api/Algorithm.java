@@ -31,26 +31,40 @@ package net.adamcin.httpsig.api;
  * Enumeration of supported HTTP Signature algorithms
  */
 public enum Algorithm {
-    RSA_SHA1("rsa-sha1"),
-    RSA_SHA256("rsa-sha256"),
-    RSA_SHA512("rsa-sha512"),
-    DSA_SHA1("dsa-sha1"),
-    HMAC_SHA1("hmac-sha1"),
-    HMAC_SHA256("hmac-sha256"),
-    HMAC_SHA512("hmac-sha512"),
-    SSH_RSA("ssh-rsa"),
-    SSH_DSS("ssh-dss");
+    RSA_SHA1("rsa-sha1", AlgorithmFamily.RSA),
+    RSA_SHA256("rsa-sha256", AlgorithmFamily.RSA),
+    RSA_SHA512("rsa-sha512", AlgorithmFamily.RSA),
+    DSA_SHA1("dsa-sha1", AlgorithmFamily.DSA),
+    HMAC_SHA1("hmac-sha1", AlgorithmFamily.HMAC),
+    HMAC_SHA256("hmac-sha256", AlgorithmFamily.HMAC),
+    HMAC_SHA512("hmac-sha512", AlgorithmFamily.HMAC),
+    ECDSA_SHA256("ecdsa-sha256", AlgorithmFamily.ECDSA),
+    ECDSA_SHA384("ecdsa-sha384", AlgorithmFamily.ECDSA),
+    SSH_RSA("ssh-rsa", AlgorithmFamily.RSA),
+    SSH_DSS("ssh-dss", AlgorithmFamily.DSA),
+    ECDSA_SHA2_NISTP256("ecdsa-sha2-nistp256", AlgorithmFamily.ECDSA),
+    ECDSA_SHA2_NISTP384("ecdsa-sha2-nistp384", AlgorithmFamily.ECDSA);
 
     private final String name;
+    private final AlgorithmFamily family;
 
-    private Algorithm(String name) {
+    private Algorithm(String name, AlgorithmFamily family) {
         this.name = name;
+        this.family = family;
     }
 
     public String getName() {
         return name;
     }
 
+    /**
+     * @return the family of keys which can use this algorithm
+     * @since 1.3.2
+     */
+    public AlgorithmFamily getFamily() {
+        return family;
+    }
+
     public static Algorithm forName(String name) {
         for (Algorithm algorithm : Algorithm.values()) {
             if (algorithm.getName().equalsIgnoreCase(name)) {
@@ -0,0 +1,46 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.api;
+
+/**
+ * Optional interface for {@link Key} implementations which sign without blocking the caller, such as keys held by an
+ * ssh-agent or a remote signing service. {@link Signer#signAsync(RequestContent)} uses it when the current key
+ * provides it.
+ * @since 1.3.2
+ */
+public interface AsyncKey extends Key {
+
+    /**
+     * Signs the {@code challengeHash} using the specified signature {@link Algorithm}, without waiting for the
+     * signature to be generated
+     * @param algorithm the selected Signature {@link Algorithm}
+     * @param challengeHash the result of {@link RequestContent#getBytesToSign(java.util.List, java.nio.charset.Charset)}
+     * @return a {@link SigningFuture} completed with the signature, or with null if a signature could not be generated
+     */
+    SigningFuture<byte[]> signAsync(Algorithm algorithm, byte[] challengeHash);
+}
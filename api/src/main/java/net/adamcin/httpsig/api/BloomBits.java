@@ -0,0 +1,86 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.api;
+
+/**
+ * Bloom filter hashing shared by {@link KeyHint} and {@link KeyIdFilter}. Bits are addressed least significant first
+ * within each byte, which is also the wire layout of an encoded {@link KeyHint}.
+ */
+final class BloomBits {
+    static final int BITS_PER_ENTRY = 10;
+    static final int HASH_COUNT = 7;
+
+    private BloomBits() {
+    }
+
+    /**
+     * @param entries the number of entries to be added
+     * @param maximumBits the largest filter to allocate, a power of two of at least 64
+     * @return a filter of a power of two bits, at least 64
+     */
+    static byte[] allocate(int entries, int maximumBits) {
+        int size = 64;
+        while (size < entries * BITS_PER_ENTRY && size < maximumBits) {
+            size <<= 1;
+        }
+        return new byte[size >>> 3];
+    }
+
+    static void add(byte[] bits, int hashCount, String id) {
+        int mask = (bits.length << 3) - 1;
+        int h1 = id.hashCode();
+        int h2 = secondaryHash(id);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (h1 + i * h2) & mask;
+            bits[bit >>> 3] |= 1 << (bit & 7);
+        }
+    }
+
+    static boolean mightContain(byte[] bits, int hashCount, String id) {
+        int mask = (bits.length << 3) - 1;
+        int h1 = id.hashCode();
+        int h2 = secondaryHash(id);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (h1 + i * h2) & mask;
+            if ((bits[bit >>> 3] & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int secondaryHash(String id) {
+        int h = 0x9747b28c;
+        for (int i = 0; i < id.length(); i++) {
+            h = (h ^ id.charAt(i)) * 0x5bd1e995;
+            h ^= h >>> 15;
+        }
+        // odd, so that successive probes cover different bits
+        return h | 1;
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.api;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded, least-recently-used cache in front of a {@link KeyResolver}, including negative results for unknown keyIds.
+ * <ul>
+ *     <li>Entries older than {@code refreshAfterMillis} are still served, and are reloaded on the executor in the
+ *     background (refresh-ahead), so verification does not block on a key which can be served stale.</li>
+ *     <li>Entries older than {@code expireAfterMillis} are not served, and must be loaded again.</li>
+ *     <li>Concurrent loads of the same keyId are coalesced into one call to the delegate resolver.</li>
+ * </ul>
+ * Background loads run on the supplied {@link Executor}, or on the calling thread if it rejects them. For resolvers
+ * that block on I/O, a dedicated pool, or a virtual thread per task executor on Java 21 and later, keeps them off
+ * request threads.
+ * @since 1.3.2
+ */
+public final class CachingKeyResolver implements KeyResolver {
+    private static final Logger LOGGER = Logger.getLogger(CachingKeyResolver.class.getName());
+
+    private final KeyResolver delegate;
+    private final Executor executor;
+    private final long refreshAfterMillis;
+    private final long expireAfterMillis;
+    private final Clock clock;
+    private final Map<String, CachedKey> entries;
+    private final ConcurrentMap<String, LoadTask> loading = new ConcurrentHashMap<String, LoadTask>();
+
+    /**
+     * @param delegate the resolver to load keys from
+     * @param executor executor for background loads
+     * @param maximumSize maximum number of keyIds to cache
+     * @param refreshAfterMillis age after which an entry is reloaded in the background
+     * @param expireAfterMillis age after which an entry is no longer served
+     */
+    public CachingKeyResolver(KeyResolver delegate, Executor executor, final int maximumSize,
+                              long refreshAfterMillis, long expireAfterMillis) {
+        this(delegate, executor, maximumSize, refreshAfterMillis, expireAfterMillis, Clock.SYSTEM);
+    }
+
+    /**
+     * @param delegate the resolver to load keys from
+     * @param executor executor for background loads
+     * @param maximumSize maximum number of keyIds to cache
+     * @param refreshAfterMillis age after which an entry is reloaded in the background
+     * @param expireAfterMillis age after which an entry is no longer served
+     * @param clock the {@link Clock} to measure entry age with
+     */
+    public CachingKeyResolver(KeyResolver delegate, Executor executor, final int maximumSize,
+                              long refreshAfterMillis, long expireAfterMillis, Clock clock) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate cannot be null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("executor cannot be null");
+        }
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        if (clock == null) {
+            throw new IllegalArgumentException("clock cannot be null");
+        }
+        if (refreshAfterMillis > expireAfterMillis) {
+            throw new IllegalArgumentException("refreshAfterMillis must not exceed expireAfterMillis");
+        }
+        this.delegate = delegate;
+        this.executor = executor;
+        this.refreshAfterMillis = refreshAfterMillis;
+        this.expireAfterMillis = expireAfterMillis;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<String, CachedKey>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedKey> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Returns a cached key if one can be served, and otherwise loads it on the calling thread, or waits for a load of
+     * the same keyId which is already in progress.
+     * {@inheritDoc}
+     */
+    public Key resolve(String keyId) {
+        CachedKey entry = servable(keyId);
+        if (entry != null) {
+            return entry.key;
+        }
+
+        LoadTask task = loading.get(keyId);
+        if (task == null) {
+            LoadTask created = new LoadTask(keyId);
+            task = loading.putIfAbsent(keyId, created);
+            if (task == null) {
+                task = created;
+                created.run();
+            }
+        }
+        return await(task);
+    }
+
+    /**
+     * @param keyId the keyId
+     * @return a completed {@link Future} for a cached key which can be served, otherwise a {@link Future} for a load
+     * on the executor, or a load completed on the calling thread if the executor rejects it
+     */
+    public Future<Key> resolveAsync(String keyId) {
+        CachedKey entry = servable(keyId);
+        if (entry != null) {
+            FutureTask<Key> done = new FutureTask<Key>(new Constant(entry.key));
+            done.run();
+            return done;
+        }
+        return loadAsync(keyId);
+    }
+
+    /**
+     * @return the number of cached keyIds
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Discards the cached entry for a keyId, so that the next lookup loads it again
+     * @param keyId the keyId
+     */
+    public void invalidate(String keyId) {
+        synchronized (entries) {
+            entries.remove(keyId);
+        }
+    }
+
+    /**
+     * @return the cached entry if it is not expired, triggering a background refresh if it is due
+     */
+    private CachedKey servable(String keyId) {
+        CachedKey entry;
+        synchronized (entries) {
+            entry = entries.get(keyId);
+        }
+        if (entry == null) {
+            return null;
+        }
+        long age = clock.currentTimeMillis() - entry.loadedAt;
+        if (age >= expireAfterMillis) {
+            return null;
+        }
+        if (age >= refreshAfterMillis) {
+            loadAsync(keyId);
+        }
+        return entry;
+    }
+
+    private LoadTask loadAsync(String keyId) {
+        LoadTask task = loading.get(keyId);
+        if (task != null) {
+            return task;
+        }
+        LoadTask created = new LoadTask(keyId);
+        task = loading.putIfAbsent(keyId, created);
+        if (task != null) {
+            return task;
+        }
+        try {
+            executor.execute(created);
+        } catch (RejectedExecutionException e) {
+            LOGGER.warning("[loadAsync] executor rejected load of keyId " + keyId + ", loading on the calling thread");
+            created.run();
+        }
+        return created;
+    }
+
+    private static Key await(LoadTask task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // logged by the task
+        } catch (CancellationException e) {
+            // treated as a miss
+        }
+        return null;
+    }
+
+    private static final class CachedKey {
+        private final Key key;
+        private final long loadedAt;
+
+        private CachedKey(Key key, long loadedAt) {
+            this.key = key;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private static final class Constant implements Callable<Key> {
+        private final Key key;
+
+        private Constant(Key key) {
+            this.key = key;
+        }
+
+        public Key call() {
+            return key;
+        }
+    }
+
+    private final class LoadTask extends FutureTask<Key> {
+        private final String keyId;
+
+        private LoadTask(final String keyId) {
+            super(new Callable<Key>() {
+                public Key call() {
+                    long loadedAt = clock.currentTimeMillis();
+                    Key key = delegate.resolve(keyId);
+                    synchronized (entries) {
+                        entries.put(keyId, new CachedKey(key, loadedAt));
+                    }
+                    return key;
+                }
+            });
+            this.keyId = keyId;
+        }
+
+        @Override
+        protected void done() {
+            loading.remove(keyId, this);
+            if (!isCancelled()) {
+                try {
+                    get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    LOGGER.log(Level.WARNING, "[done] failed to resolve keyId " + keyId, e.getCause());
+                }
+            }
+        }
+    }
+}
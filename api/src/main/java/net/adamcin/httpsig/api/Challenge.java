@@ -46,6 +46,7 @@ public final class Challenge implements Serializable {
     private final String realm;
     private final List<String> headers;
     private final List<Algorithm> algorithms;
+    private final KeyHint keyHint;
 
     /**
      * Construct a {@link Challenge} instance
@@ -56,9 +57,25 @@ public final class Challenge implements Serializable {
     public Challenge(final String realm,
                      final List<String> headers,
                      final Collection<Algorithm> algorithms) {
+        this(realm, headers, algorithms, null);
+    }
+
+    /**
+     * Construct a {@link Challenge} instance which hints at the keys accepted for the realm
+     * @param realm the authentication realm
+     * @param headers the list of required headers
+     * @param algorithms the list of supported algorithms
+     * @param keyHint the {@link KeyHint} of accepted keys, or null
+     * @since 1.3.2
+     */
+    public Challenge(final String realm,
+                     final List<String> headers,
+                     final Collection<Algorithm> algorithms,
+                     final KeyHint keyHint) {
         this.realm = realm;
         this.headers = headers != null ? Constants.filterHeaders(new ArrayList<String>(headers)) : Constants.DEFAULT_HEADERS;
         this.algorithms = algorithms != null ? Arrays.asList(algorithms.toArray(new Algorithm[algorithms.size()])) : Collections.<Algorithm>emptyList();
+        this.keyHint = keyHint;
     }
 
     public String getRealm() {
@@ -73,6 +90,15 @@ public final class Challenge implements Serializable {
         return algorithms;
     }
 
+    /**
+     * The {@link KeyHint} is advisory, so it is not considered by {@link #equals(Object)}.
+     * @return the {@link KeyHint} of accepted keys, or null if the server did not send one
+     * @since 1.3.2
+     */
+    public KeyHint getKeyHint() {
+        return keyHint;
+    }
+
     /**
      * @return the constructed value of the WWW-Authenticate header
      */
@@ -81,6 +107,9 @@ public final class Challenge implements Serializable {
         params.put(Constants.REALM, this.realm);
         params.put(Constants.HEADERS, Constants.constructTokensString(getHeaders()));
         params.put(Constants.ALGORITHMS, this.getAlgorithmsString());
+        if (this.keyHint != null) {
+            params.put(Constants.KEY_HINT, this.keyHint.getEncoded());
+        }
         return Constants.constructRFC2617(params);
     }
 
@@ -130,7 +159,8 @@ public final class Challenge implements Serializable {
 
                 String headers = params.get(Constants.HEADERS);
 
-                return new Challenge(realm, headers != null ? Constants.parseTokens(headers) : Constants.DEFAULT_HEADERS, parseAlgorithms(algorithms));
+                return new Challenge(realm, headers != null ? Constants.parseTokens(headers) : Constants.DEFAULT_HEADERS, parseAlgorithms(algorithms),
+                                     KeyHint.parse(params.get(Constants.KEY_HINT)));
             }
         }
 
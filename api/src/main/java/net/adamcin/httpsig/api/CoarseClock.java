@@ -0,0 +1,89 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.api;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Clock} which serves a cached time, updated by a daemon ticker thread every {@code resolutionMillis}. Reading
+ * it is a single volatile read. Date headers have a resolution of one second and skew is typically minutes, so a
+ * resolution of tens of milliseconds loses nothing. Close the clock to stop its thread.
+ * @since 1.3.2
+ */
+public final class CoarseClock implements Clock, Closeable {
+    public static final long DEFAULT_RESOLUTION_MILLIS = 10L;
+
+    private final long resolutionMillis;
+    private final ScheduledExecutorService ticker;
+    private volatile long now = System.currentTimeMillis();
+
+    public CoarseClock() {
+        this(DEFAULT_RESOLUTION_MILLIS);
+    }
+
+    /**
+     * @param resolutionMillis interval between updates of the cached time
+     */
+    public CoarseClock(long resolutionMillis) {
+        if (resolutionMillis <= 0L) {
+            throw new IllegalArgumentException("resolutionMillis must be positive");
+        }
+        this.resolutionMillis = resolutionMillis;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "httpsig-coarse-clock");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.ticker.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                now = System.currentTimeMillis();
+            }
+        }, resolutionMillis, resolutionMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    public long getResolutionMillis() {
+        return resolutionMillis;
+    }
+
+    /**
+     * Stops the ticker thread. The clock keeps serving the last cached time.
+     */
+    public void close() {
+        ticker.shutdownNow();
+    }
+}
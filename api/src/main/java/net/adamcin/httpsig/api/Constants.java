@@ -65,6 +65,12 @@ public final class Constants {
      */
     public static final String KEY_ID = "keyId";
 
+    /**
+     * Optional challenge parameter carrying a {@link KeyHint} of the keys accepted for the realm
+     * @since 1.3.2
+     */
+    public static final String KEY_HINT = "keyhint";
+
     /**
      * replaced with {@code request-target} in draft-cavage-http-signatures-03
      */
@@ -0,0 +1,285 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Thread-safe mutable {@link Keychain}. Writes are serialized under a lock and publish an immutable snapshot (key
+ * array plus keyId index) through a volatile reference, so readers never lock and a key which is added or revoked
+ * takes effect immediately for any {@link DefaultVerifier} or {@link Signer} already using this keychain.
+ * @since 1.3.2
+ */
+public final class CopyOnWriteKeychain implements IndexedKeychain, VersionedKeychain {
+
+    private final Object lock = new Object();
+    private volatile Snapshot snapshot;
+
+    public CopyOnWriteKeychain() {
+        this(null);
+    }
+
+    public CopyOnWriteKeychain(Collection<? extends Key> keys) {
+        this.snapshot = new Snapshot(keys != null ? keys.toArray(new Key[keys.size()]) : new Key[0], 0L);
+    }
+
+    /**
+     * @return an immutable view of the current contents of this keychain
+     */
+    public Keychain snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Adds a key, replacing any key with the same keyId as far as lookups are concerned
+     * @param key the key to add
+     */
+    public void add(Key key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key must not be null");
+        }
+        synchronized (lock) {
+            Key[] keys = snapshot.keys;
+            Key[] added = Arrays.copyOf(keys, keys.length + 1);
+            added[keys.length] = key;
+            publish(added);
+        }
+    }
+
+    /**
+     * @param keys the keys to add
+     */
+    public void addAll(Collection<? extends Key> keys) {
+        synchronized (lock) {
+            List<Key> added = new ArrayList<Key>(Arrays.asList(snapshot.keys));
+            for (Key key : keys) {
+                if (key == null) {
+                    throw new IllegalArgumentException("keys must not contain null");
+                }
+                added.add(key);
+            }
+            publish(added.toArray(new Key[added.size()]));
+        }
+    }
+
+    /**
+     * @param key the key to revoke
+     * @return true if the key was removed
+     */
+    public boolean remove(Key key) {
+        synchronized (lock) {
+            Key[] keys = snapshot.keys;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i].equals(key)) {
+                    Key[] removed = new Key[keys.length - 1];
+                    System.arraycopy(keys, 0, removed, 0, i);
+                    System.arraycopy(keys, i + 1, removed, i, keys.length - i - 1);
+                    publish(removed);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Removes all keys
+     */
+    public void clear() {
+        synchronized (lock) {
+            publish(new Key[0]);
+        }
+    }
+
+    /**
+     * @return the number of keys in the current snapshot
+     */
+    public int size() {
+        return snapshot.keys.length;
+    }
+
+    private void publish(Key[] keys) {
+        this.snapshot = new Snapshot(keys, snapshot.version + 1L);
+    }
+
+    public long getVersion() {
+        return snapshot.version;
+    }
+
+    public Key findKey(KeyId keyId, String id) {
+        return snapshot.findKey(keyId, id);
+    }
+
+    public Set<Algorithm> getAlgorithms() {
+        return snapshot.getAlgorithms();
+    }
+
+    public Keychain filterAlgorithms(Collection<Algorithm> algorithms) {
+        return snapshot.filterAlgorithms(algorithms);
+    }
+
+    public Keychain discard() {
+        return snapshot.discard();
+    }
+
+    public Key currentKey() {
+        return snapshot.currentKey();
+    }
+
+    public Map<String, Key> toMap(KeyId keyId) {
+        return snapshot.toMap(keyId);
+    }
+
+    public boolean isEmpty() {
+        return snapshot.isEmpty();
+    }
+
+    public Iterator<Key> iterator() {
+        return snapshot.iterator();
+    }
+
+    /**
+     * Immutable contents of the keychain at one point in time
+     */
+    private static final class Snapshot implements IndexedKeychain, VersionedKeychain {
+        private final Key[] keys;
+        private final long version;
+        private final Set<Algorithm> algorithms;
+        private final Map<String, Key> defaultIndex;
+
+        // index for the last non-default KeyId, built on first use
+        private volatile KeyIdIndex keyIdIndex;
+
+        private Snapshot(Key[] keys, long version) {
+            this.keys = keys;
+            this.version = version;
+            Set<Algorithm> algorithms = new LinkedHashSet<Algorithm>();
+            for (Key key : keys) {
+                algorithms.addAll(key.getAlgorithms());
+            }
+            this.algorithms = Collections.unmodifiableSet(algorithms);
+            this.defaultIndex = buildIndex(keys, Constants.DEFAULT_KEY_IDENTIFIER);
+        }
+
+        private static Map<String, Key> buildIndex(Key[] keys, KeyId keyId) {
+            Map<String, Key> index = new HashMap<String, Key>(keys.length * 2);
+            for (Key key : keys) {
+                String id = keyId.getId(key);
+                if (id != null) {
+                    index.put(id, key);
+                }
+            }
+            return index;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public Key findKey(KeyId keyId, String id) {
+            if (keyId == null || keyId == Constants.DEFAULT_KEY_IDENTIFIER) {
+                return defaultIndex.get(id);
+            }
+            KeyIdIndex index = this.keyIdIndex;
+            if (index == null || index.keyId != keyId) {
+                index = new KeyIdIndex(keyId, buildIndex(keys, keyId));
+                this.keyIdIndex = index;
+            }
+            return index.index.get(id);
+        }
+
+        public Set<Algorithm> getAlgorithms() {
+            return algorithms;
+        }
+
+        public Keychain filterAlgorithms(Collection<Algorithm> algorithms) {
+            List<Key> filtered = new ArrayList<Key>();
+            for (Key key : keys) {
+                if (!Collections.disjoint(key.getAlgorithms(), algorithms)) {
+                    filtered.add(key);
+                }
+            }
+            return new Snapshot(filtered.toArray(new Key[filtered.size()]), version);
+        }
+
+        public Keychain discard() {
+            if (keys.length == 0) {
+                throw new NoSuchElementException("keychain is empty");
+            }
+            return new Snapshot(Arrays.copyOfRange(keys, 1, keys.length), version);
+        }
+
+        public Key currentKey() {
+            if (keys.length == 0) {
+                throw new NoSuchElementException("keychain is empty");
+            }
+            return keys[0];
+        }
+
+        public Map<String, Key> toMap(KeyId keyId) {
+            KeyId identifier = keyId != null ? keyId : Constants.DEFAULT_KEY_IDENTIFIER;
+            LinkedHashMap<String, Key> map = new LinkedHashMap<String, Key>(keys.length);
+            for (Key key : keys) {
+                String id = identifier.getId(key);
+                if (id != null) {
+                    map.put(id, key);
+                }
+            }
+            return Collections.unmodifiableMap(map);
+        }
+
+        public boolean isEmpty() {
+            return keys.length == 0;
+        }
+
+        public Iterator<Key> iterator() {
+            return Collections.unmodifiableList(Arrays.asList(keys)).iterator();
+        }
+    }
+
+    private static final class KeyIdIndex {
+        private final KeyId keyId;
+        private final Map<String, Key> index;
+
+        private KeyIdIndex(KeyId keyId, Map<String, Key> index) {
+            this.keyId = keyId;
+            this.index = index;
+        }
+    }
+}
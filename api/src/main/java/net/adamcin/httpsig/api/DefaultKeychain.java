@@ -42,10 +42,11 @@ import java.util.Set;
  * Simple implementation of {@link net.adamcin.httpsig.api.Keychain} backed by a HashMap and
  * modified via {@link Collection} methods
  */
-public class DefaultKeychain implements Keychain, Collection<Key> {
+public class DefaultKeychain implements VersionedKeychain, Collection<Key> {
 
     private final List<Key> keys = new ArrayList<Key>();
     private final Set<Algorithm> _algorithms = new LinkedHashSet<Algorithm>();
+    private long version;
 
     public DefaultKeychain() {
         this(null);
@@ -61,6 +62,15 @@ public class DefaultKeychain implements Keychain, Collection<Key> {
         return Collections.unmodifiableSet(_algorithms);
     }
 
+    /**
+     * {@inheritDoc}
+     * Incremented by every method of this class which modifies the keychain. Removals through {@link #iterator()}
+     * are not counted.
+     */
+    public long getVersion() {
+        return version;
+    }
+
     public int size() {
         return keys.size();
     }
@@ -87,10 +97,12 @@ public class DefaultKeychain implements Keychain, Collection<Key> {
 
     public boolean add(Key key) {
         _algorithms.addAll(key.getAlgorithms());
+        version++;
         return keys.add(key);
     }
 
     public boolean remove(Object o) {
+        version++;
         return keys.remove(o);
     }
 
@@ -113,14 +125,17 @@ public class DefaultKeychain implements Keychain, Collection<Key> {
     }
 
     public boolean removeAll(Collection<?> c) {
+        version++;
         return keys.removeAll(c);
     }
 
     public boolean retainAll(Collection<?> c) {
+        version++;
         return keys.retainAll(c);
     }
 
     public void clear() {
+        version++;
         keys.clear();
         _algorithms.clear();
     }
@@ -27,13 +27,12 @@
 
 package net.adamcin.httpsig.api;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
-import java.util.GregorianCalendar;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
-import java.util.TimeZone;
 
 /**
  * The Server-Side component of the protocol which verifies {@link Authorization} headers using SSH Public Keys
@@ -41,12 +40,17 @@ import java.util.TimeZone;
 public final class DefaultVerifier implements Verifier {
     public static final long DEFAULT_SKEW = 300000L;
 
-    private final Keychain keychain;
-    private final KeyId keyId;
+    private final KeychainGuard keychain;
+    private final CanVerifyId keyId;
     private final long skew;
 
     // this parameter is not long for the world. Do not expose to API.
     private final boolean strictRequestTarget;
+    private final LegacyRequestTargetFallback legacyFallback;
+    private final Clock clock;
+
+    // rebuilt whenever a VersionedKeychain reports a new version
+    private volatile KeyIdFilter keyIdFilter;
 
     public DefaultVerifier(Keychain keychain) {
         this(keychain, null, DEFAULT_SKEW, false);
@@ -65,18 +69,76 @@ public final class DefaultVerifier implements Verifier {
         this(keychain, keyId, skew, false);
     }
 
+    /**
+     * @param keychain the keychain
+     * @param keyId the keyId, or null for {@link Constants#DEFAULT_KEY_IDENTIFIER}
+     * @param skew allowed clock skew in milliseconds
+     * @param legacyFallback controls retrying failed signatures with the legacy (request-target) signing string
+     * @since 1.3.2
+     */
+    public DefaultVerifier(Keychain keychain, KeyId keyId, long skew, LegacyRequestTargetFallback legacyFallback) {
+        this(keychain, keyId, skew, false, legacyFallback, null);
+    }
+
+    /**
+     * @param keychain the keychain
+     * @param keyId the keyId, or null for {@link Constants#DEFAULT_KEY_IDENTIFIER}
+     * @param skew allowed clock skew in milliseconds
+     * @param legacyFallback controls retrying failed signatures with the legacy (request-target) signing string
+     * @param clock the {@link Clock} to check skew against, or null for {@link Clock#SYSTEM}
+     * @since 1.3.2
+     */
+    public DefaultVerifier(Keychain keychain, KeyId keyId, long skew, LegacyRequestTargetFallback legacyFallback,
+                           Clock clock) {
+        this(keychain, keyId, skew, false, legacyFallback, clock);
+    }
+
+    /**
+     * Verifies against keys looked up by keyId from a {@link KeyResolver}, such as a {@link CachingKeyResolver}.
+     * The keyId from each {@link Authorization} is passed to the resolver verbatim.
+     * @param keyResolver the key resolver
+     * @since 1.3.2
+     */
+    public DefaultVerifier(KeyResolver keyResolver) {
+        this(keyResolver, DEFAULT_SKEW);
+    }
+
+    /**
+     * @param keyResolver the key resolver
+     * @param skew allowed clock skew in milliseconds
+     * @since 1.3.2
+     */
+    public DefaultVerifier(KeyResolver keyResolver, long skew) {
+        this(new ResolverKeychain(keyResolver), null, skew, false);
+    }
+
     // private constructor to prevent external API usage of strictRequestTarget parameter.
     private DefaultVerifier(Keychain keychain, KeyId keyId, long skew, boolean strictRequestTarget) {
+        this(keychain, keyId, skew, strictRequestTarget, null, null);
+    }
+
+    private DefaultVerifier(Keychain keychain, KeyId keyId, long skew, boolean strictRequestTarget,
+                            LegacyRequestTargetFallback legacyFallback, Clock clock) {
         this.keychain = keychain != null ? new KeychainGuard(keychain) : new KeychainGuard(new DefaultKeychain());
         this.keyId = new CanVerifyId(keyId != null ? keyId : Constants.DEFAULT_KEY_IDENTIFIER);
         this.skew = skew;
         this.strictRequestTarget = strictRequestTarget;
+        this.legacyFallback = legacyFallback != null ? legacyFallback : new LegacyRequestTargetFallback();
+        this.clock = clock != null ? clock : Clock.SYSTEM;
     }
 
     public Keychain getKeychain() {
         return keychain;
     }
 
+    /**
+     * @return the {@link LegacyRequestTargetFallback}, for its mode and counters
+     * @since 1.3.2
+     */
+    public LegacyRequestTargetFallback getLegacyFallback() {
+        return legacyFallback;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -96,7 +158,8 @@ public final class DefaultVerifier implements Verifier {
      * {@inheritDoc}
      */
     public Key selectKey(Authorization authorization) {
-        return keychain.toMap(this.keyId).get(authorization.getKeyId());
+        Key key = keychain.findKey(authorization.getAlgorithm(), this.keyId.delegatee, authorization.getKeyId());
+        return key != null && key.canVerify() ? key : null;
     }
 
     /**
@@ -122,6 +185,89 @@ public final class DefaultVerifier implements Verifier {
             throw new IllegalArgumentException("authorization cannot be null");
         }
 
+        return verifyContent(challenge, new ParsedContent(requestContent), authorization);
+    }
+
+    /**
+     * Verifies a request whose headers are held as byte ranges, building the signing string in the reusable buffer
+     * of the {@link RawRequestContent} instead of from strings.
+     * @param challenge the WWW-Authenticate challenge sent by the server
+     * @param requestContent the request headers
+     * @param authorization the Authorization header sent by the client
+     * @return true if verified
+     * @since 1.3.2
+     */
+    public boolean verify(Challenge challenge, RawRequestContent requestContent, Authorization authorization) {
+        return verifyWithResult(challenge, requestContent, authorization) == VerifyResult.SUCCESS;
+    }
+
+    /**
+     * Verifies a request whose headers are held as byte ranges, building the signing string in the reusable buffer
+     * of the {@link RawRequestContent} instead of from strings.
+     * @param challenge the WWW-Authenticate challenge sent by the server
+     * @param requestContent the request headers
+     * @param authorization the Authorization header sent by the client
+     * @return the {@link VerifyResult}
+     * @since 1.3.2
+     */
+    public VerifyResult verifyWithResult(Challenge challenge, RawRequestContent requestContent,
+                                         Authorization authorization) {
+        if (challenge == null) {
+            throw new IllegalArgumentException("challenge cannot be null");
+        }
+
+        if (requestContent == null) {
+            throw new IllegalArgumentException("requestContent cannot be null");
+        }
+
+        if (authorization == null) {
+            throw new IllegalArgumentException("authorization cannot be null");
+        }
+
+        return verifyContent(challenge, new RawContent(requestContent), authorization);
+    }
+
+    /**
+     * Verifies a request from a lazy {@link SignableRequest} view, reading only the headers listed by the
+     * {@link Authorization}.
+     * @param challenge the WWW-Authenticate challenge sent by the server
+     * @param request the request view
+     * @param authorization the Authorization header sent by the client
+     * @return true if verified
+     * @since 1.3.2
+     */
+    public boolean verify(Challenge challenge, SignableRequest request, Authorization authorization) {
+        return verifyWithResult(challenge, request, authorization) == VerifyResult.SUCCESS;
+    }
+
+    /**
+     * Verifies a request from a lazy {@link SignableRequest} view, reading only the headers listed by the
+     * {@link Authorization}.
+     * @param challenge the WWW-Authenticate challenge sent by the server
+     * @param request the request view
+     * @param authorization the Authorization header sent by the client
+     * @return the {@link VerifyResult}
+     * @since 1.3.2
+     */
+    public VerifyResult verifyWithResult(Challenge challenge, SignableRequest request, Authorization authorization) {
+        if (request == null) {
+            throw new IllegalArgumentException("request cannot be null");
+        }
+
+        if (authorization == null) {
+            throw new IllegalArgumentException("authorization cannot be null");
+        }
+
+        return verifyWithResult(challenge, RequestContent.fromSignableRequest(request, authorization.getHeaders()),
+                                authorization);
+    }
+
+    private VerifyResult verifyContent(Challenge challenge, Content requestContent, Authorization authorization) {
+        // reject unknown keyIds before doing any other work
+        if (!mightContainKeyId(authorization.getKeyId())) {
+            return VerifyResult.KEY_NOT_FOUND;
+        }
+
         // verify that all headers required by the challenge are declared by the authorization
         for (String header : challenge.getHeaders()) {
             if (!header.startsWith(":") && !authorization.getHeaders().contains(header)) {
@@ -131,18 +277,16 @@ public final class DefaultVerifier implements Verifier {
 
         // verify that all headers declared by the authorization are present in the request
         for (String header : authorization.getHeaders()) {
-            if (requestContent.getHeaderValues(header).isEmpty()) {
+            if (!requestContent.hasHeader(header)) {
                 return VerifyResult.INCOMPLETE_REQUEST;
             }
         }
 
         // if date is declared by the authorization, verify that its value is within $skew of the current time
         if (authorization.getHeaders().contains(Constants.HEADER_DATE) && skew >= 0) {
-            Date requestTime = requestContent.getDateGMT();
-            Date currentTime = new GregorianCalendar(TimeZone.getTimeZone("UTC")).getTime();
-            Date past = new Date(currentTime.getTime() - skew);
-            Date future = new Date(currentTime.getTime() + skew);
-            if (requestTime.before(past) || requestTime.after(future)) {
+            long requestTime = requestContent.getDateGMT().getTime();
+            long currentTime = clock.currentTimeMillis();
+            if (requestTime < currentTime - skew || requestTime > currentTime + skew) {
                 return VerifyResult.EXPIRED_DATE_HEADER;
             }
         }
@@ -152,15 +296,14 @@ public final class DefaultVerifier implements Verifier {
             return VerifyResult.KEY_NOT_FOUND;
         }
 
-        if (key.verify(authorization.getAlgorithm(),
-                                      requestContent.getBytesToSign(authorization.getHeaders(), Constants.CHARSET),
-                                      authorization.getSignatureBytes())) {
+        if (requestContent.verify(key, authorization, false)) {
             return VerifyResult.SUCCESS;
         } else if (!this.strictRequestTarget
-                && authorization.getHeaders().contains(Constants.HEADER_REQUEST_TARGET)) {
-            if (key.verify(authorization.getAlgorithm(),
-                    requestContent.getContent(authorization.getHeaders(),
-                    Constants.CHARSET), authorization.getSignatureBytes())) {
+                && authorization.getHeaders().contains(Constants.HEADER_REQUEST_TARGET)
+                && legacyFallback.shouldAttempt(authorization.getKeyId())) {
+            boolean verified = requestContent.verify(key, authorization, true);
+            legacyFallback.recordAttempt(authorization.getKeyId(), verified);
+            if (verified) {
                 return VerifyResult.SUCCESS;
             } else {
                 return VerifyResult.FAILED_KEY_VERIFY;
@@ -170,8 +313,95 @@ public final class DefaultVerifier implements Verifier {
         }
     }
 
+    /**
+     * @param id the keyId from the {@link Authorization}
+     * @return false if the keychain definitely does not contain a key identified by {@code id}
+     */
+    private boolean mightContainKeyId(String id) {
+        if (!(keychain.keychain instanceof VersionedKeychain)) {
+            return true;
+        }
+        long version = ((VersionedKeychain) keychain.keychain).getVersion();
+        if (version < 0L) {
+            return true;
+        }
+        KeyIdFilter filter = this.keyIdFilter;
+        if (filter == null || filter.getVersion() != version) {
+            filter = KeyIdFilter.build(version, keychain.toMap(this.keyId).keySet());
+            this.keyIdFilter = filter;
+        }
+        return filter.mightContain(id);
+    }
+
+    /**
+     * The parts of a request needed for verification, from either a {@link RequestContent} or a
+     * {@link RawRequestContent}
+     */
+    private abstract static class Content {
+        abstract boolean hasHeader(String header);
+
+        abstract Date getDateGMT();
+
+        /**
+         * @param legacy true to verify against the deprecated signing string, without the request-target prefix
+         */
+        abstract boolean verify(Key key, Authorization authorization, boolean legacy);
+    }
+
+    private static final class ParsedContent extends Content {
+        private final RequestContent requestContent;
+
+        private ParsedContent(RequestContent requestContent) {
+            this.requestContent = requestContent;
+        }
+
+        boolean hasHeader(String header) {
+            return !requestContent.getHeaderValues(header).isEmpty();
+        }
+
+        Date getDateGMT() {
+            return requestContent.getDateGMT();
+        }
+
+        @SuppressWarnings("deprecation")
+        boolean verify(Key key, Authorization authorization, boolean legacy) {
+            byte[] content = legacy
+                    ? requestContent.getContent(authorization.getHeaders(), Constants.CHARSET)
+                    : requestContent.getBytesToSign(authorization.getHeaders(), Constants.CHARSET);
+            return key.verify(authorization.getAlgorithm(), content, authorization.getSignatureBytes());
+        }
+    }
+
+    private static final class RawContent extends Content {
+        private final RawRequestContent requestContent;
+
+        private RawContent(RawRequestContent requestContent) {
+            this.requestContent = requestContent;
+        }
+
+        boolean hasHeader(String header) {
+            return requestContent.hasHeader(header);
+        }
+
+        Date getDateGMT() {
+            return requestContent.getDateGMT();
+        }
+
+        boolean verify(Key key, Authorization authorization, boolean legacy) {
+            int length = requestContent.assemble(authorization.getHeaders(), legacy);
+            byte[] buffer = requestContent.getSigningBuffer();
+            int offset = requestContent.getSigningOffset();
+            if (key instanceof SliceVerifiableKey) {
+                return ((SliceVerifiableKey) key).verify(authorization.getAlgorithm(), buffer, offset, length,
+                                                         authorization.getSignatureBytes());
+            }
+            return key.verify(authorization.getAlgorithm(), Arrays.copyOfRange(buffer, offset, offset + length),
+                              authorization.getSignatureBytes());
+        }
+    }
+
     private static class CanVerifyId implements KeyId {
-        private KeyId delegatee;
+        private final KeyId delegatee;
 
         private CanVerifyId(KeyId delegatee) {
             this.delegatee = delegatee;
@@ -188,7 +418,7 @@ public final class DefaultVerifier implements Verifier {
     /**
      * Guards a Keychain from modification via reflection (not enough for JAAS?)
      */
-    private static class KeychainGuard implements Keychain {
+    private static class KeychainGuard implements IndexedKeychain {
         private final Keychain keychain;
 
         private KeychainGuard(Keychain keychain) {
@@ -215,6 +445,19 @@ public final class DefaultVerifier implements Verifier {
             return keychain.toMap(keyId);
         }
 
+        public Key findKey(KeyId keyId, String id) {
+            return findKey(null, keyId, id);
+        }
+
+        private Key findKey(Algorithm algorithm, KeyId keyId, String id) {
+            if (keychain instanceof PartitionedKeychain) {
+                return ((PartitionedKeychain) keychain).findKey(algorithm, keyId, id);
+            } else if (keychain instanceof IndexedKeychain) {
+                return ((IndexedKeychain) keychain).findKey(keyId, id);
+            }
+            return keychain.toMap(new CanVerifyId(keyId != null ? keyId : Constants.DEFAULT_KEY_IDENTIFIER)).get(id);
+        }
+
         public boolean isEmpty() {
             return keychain.isEmpty();
         }
@@ -0,0 +1,159 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.api;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Compact Bloom filter over the {@link Key#getId()} values of the keys a server accepts for a realm, sent as the
+ * optional {@link Constants#KEY_HINT} parameter of a {@link Challenge}. {@link Signer#rotateKeys(Challenge, Authorization)}
+ * uses it to skip keys which the server would certainly reject, instead of replaying the request once per key. The
+ * filter may report false positives, but never false negatives.
+ * <p>
+ * The encoding is a base64 string of a version byte, a hash count byte and the filter bits, so that the hint stays
+ * small enough for a response header. Filters are capped at {@link #MAXIMUM_BITS}; larger keychains are hinted with
+ * a higher false positive rate.
+ * @since 1.3.2
+ */
+public final class KeyHint implements Serializable {
+
+    private static final long serialVersionUID = -2860387473317702337L;
+
+    private static final int VERSION = 1;
+
+    /**
+     * Maximum size of the filter in bits
+     */
+    public static final int MAXIMUM_BITS = 4096;
+
+    private final int hashCount;
+    private final byte[] bits;
+
+    private KeyHint(int hashCount, byte[] bits) {
+        this.hashCount = hashCount;
+        this.bits = bits;
+    }
+
+    /**
+     * Builds a hint for the keys of a {@link Keychain}
+     * @param keychain the server {@link Keychain} for the realm
+     * @return the {@link KeyHint}
+     */
+    public static KeyHint forKeychain(Keychain keychain) {
+        List<String> ids = new ArrayList<String>();
+        for (Key key : keychain) {
+            ids.add(key.getId());
+        }
+        return forIds(ids);
+    }
+
+    /**
+     * Builds a hint for a collection of key ids
+     * @param ids values of {@link Key#getId()} for the accepted keys
+     * @return the {@link KeyHint}
+     */
+    public static KeyHint forIds(Collection<String> ids) {
+        KeyHint hint = new KeyHint(BloomBits.HASH_COUNT, BloomBits.allocate(ids.size(), MAXIMUM_BITS));
+        for (String id : ids) {
+            if (id != null) {
+                BloomBits.add(hint.bits, hint.hashCount, id);
+            }
+        }
+        return hint;
+    }
+
+    /**
+     * Parse the value of the {@link Constants#KEY_HINT} challenge parameter
+     * @param value the encoded hint
+     * @return the {@link KeyHint}, or null if the value is missing or not understood
+     */
+    public static KeyHint parse(String value) {
+        if (value == null || value.length() == 0) {
+            return null;
+        }
+        byte[] data;
+        try {
+            data = Base64.fromBase64String(value);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        if (data.length < 10 || data[0] != VERSION || data[1] < 1) {
+            return null;
+        }
+        int length = data.length - 2;
+        if ((length & (length - 1)) != 0 || length > MAXIMUM_BITS >>> 3) {
+            return null;
+        }
+        return new KeyHint(data[1], Arrays.copyOfRange(data, 2, data.length));
+    }
+
+    /**
+     * @param id the value of {@link Key#getId()}
+     * @return false if the server certainly does not accept the key, true if it might
+     */
+    public boolean mightContain(String id) {
+        return id != null && BloomBits.mightContain(bits, hashCount, id);
+    }
+
+    /**
+     * @return the encoded value of the {@link Constants#KEY_HINT} challenge parameter
+     */
+    public String getEncoded() {
+        byte[] data = new byte[bits.length + 2];
+        data[0] = VERSION;
+        data[1] = (byte) hashCount;
+        System.arraycopy(bits, 0, data, 2, bits.length);
+        return Base64.toBase64String(data);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        KeyHint keyHint = (KeyHint) o;
+        return hashCount == keyHint.hashCount && Arrays.equals(bits, keyHint.bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * hashCount + Arrays.hashCode(bits);
+    }
+
+    @Override
+    public String toString() {
+        return getEncoded();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.api;
+
+import java.util.Collection;
+
+/**
+ * Compact Bloom filter over the keyIds of a {@link Keychain}. {@link DefaultVerifier} consults it before doing any
+ * other work, so that requests for unknown keyIds are rejected without parsing dates or scanning the keychain. It may
+ * report false positives, but never false negatives.
+ */
+final class KeyIdFilter {
+    private static final int MAXIMUM_BITS = 1 << 30;
+
+    private final long version;
+    private final byte[] bits;
+
+    private KeyIdFilter(long version, int entries) {
+        this.version = version;
+        this.bits = BloomBits.allocate(entries, MAXIMUM_BITS);
+    }
+
+    static KeyIdFilter build(long version, Collection<String> keyIds) {
+        KeyIdFilter filter = new KeyIdFilter(version, keyIds.size());
+        for (String keyId : keyIds) {
+            BloomBits.add(filter.bits, BloomBits.HASH_COUNT, keyId);
+        }
+        return filter;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    boolean mightContain(String keyId) {
+        return BloomBits.mightContain(bits, BloomBits.HASH_COUNT, keyId);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.api;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Controls when {@link DefaultVerifier} retries a failed signature which covers {@link Constants#HEADER_REQUEST_TARGET}
+ * against the legacy signing string built by {@link RequestContent#getContent(java.util.List, java.nio.charset.Charset)}.
+ * Each retry is a second full {@link Key#verify(Algorithm, byte[], byte[])}, so once the keyIds of legacy clients are
+ * known, switch to {@link Mode#RECORDED} so that invalid signatures from everyone else are only verified once. Keys
+ * which verify with the legacy format are recorded in a bounded, least-recently-used set.
+ * @since 1.3.2
+ */
+public final class LegacyRequestTargetFallback {
+    public static final int DEFAULT_MAXIMUM_KEY_IDS = 1024;
+
+    public enum Mode {
+        /**
+         * Retry failed signatures for every keyId, recording the keyIds which need the legacy format
+         */
+        ALWAYS,
+
+        /**
+         * Retry failed signatures only for keyIds which have been recorded
+         */
+        RECORDED,
+
+        /**
+         * Never retry failed signatures
+         */
+        NEVER
+    }
+
+    private final LinkedHashMap<String, Boolean> legacyKeyIds;
+    private final AtomicLong attempts = new AtomicLong();
+    private final AtomicLong successes = new AtomicLong();
+    private volatile Mode mode;
+
+    public LegacyRequestTargetFallback() {
+        this(Mode.ALWAYS, DEFAULT_MAXIMUM_KEY_IDS);
+    }
+
+    /**
+     * @param mode the initial {@link Mode}
+     * @param maximumKeyIds the maximum number of keyIds to record
+     */
+    public LegacyRequestTargetFallback(Mode mode, final int maximumKeyIds) {
+        if (mode == null) {
+            throw new IllegalArgumentException("mode cannot be null");
+        }
+        if (maximumKeyIds <= 0) {
+            throw new IllegalArgumentException("maximumKeyIds must be positive");
+        }
+        this.mode = mode;
+        this.legacyKeyIds = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > maximumKeyIds;
+            }
+        };
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Changes the mode, such as from {@link Mode#ALWAYS} to {@link Mode#RECORDED} once legacy clients have been
+     * recorded. Recorded keyIds are kept.
+     * @param mode the new {@link Mode}
+     */
+    public void setMode(Mode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("mode cannot be null");
+        }
+        this.mode = mode;
+    }
+
+    /**
+     * Records a keyId which is known to need the legacy format
+     * @param keyId the keyId
+     */
+    public void addLegacyKeyId(String keyId) {
+        synchronized (legacyKeyIds) {
+            legacyKeyIds.put(keyId, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * @param keyId the keyId
+     * @return true if the keyId has been recorded as needing the legacy format
+     */
+    public boolean isLegacyKeyId(String keyId) {
+        synchronized (legacyKeyIds) {
+            return legacyKeyIds.get(keyId) != null;
+        }
+    }
+
+    /**
+     * @return the number of recorded keyIds
+     */
+    public int getLegacyKeyIdCount() {
+        synchronized (legacyKeyIds) {
+            return legacyKeyIds.size();
+        }
+    }
+
+    /**
+     * @return the number of legacy verifications attempted
+     */
+    public long getAttempts() {
+        return attempts.get();
+    }
+
+    /**
+     * @return the number of legacy verifications which succeeded
+     */
+    public long getSuccesses() {
+        return successes.get();
+    }
+
+    boolean shouldAttempt(String keyId) {
+        switch (mode) {
+            case ALWAYS:
+                return true;
+            case RECORDED:
+                return isLegacyKeyId(keyId);
+            default:
+                return false;
+        }
+    }
+
+    void recordAttempt(String keyId, boolean success) {
+        attempts.incrementAndGet();
+        if (success) {
+            successes.incrementAndGet();
+            addLegacyKeyId(keyId);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.api;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Client-side cache of the last {@link Challenge} received from each origin (scheme, host and port), and of the keyId
+ * last chosen to answer it, so that a client which talks to many servers, or which is restarted, does not have to
+ * rotate through its whole {@link Keychain} again. The client adapters call
+ * {@link #rotateForReplay(Signer, String, Challenge, Authorization, Challenge, int)} in place of
+ * {@link Signer#rotateForReplay(Challenge, Authorization, Challenge, int)} when they receive a 401, and
+ * {@link #signed(String, Authorization)} after signing the replayed request.
+ * <p>
+ * A cached keyId is only reused while the server sends the same {@link Challenge}, which includes the realm. The
+ * cache may be backed by a file, which is read on construction and written by {@link #save()}.
+ * @since 1.3.2
+ */
+public final class OriginCache {
+    private static final Logger LOGGER = Logger.getLogger(OriginCache.class.getName());
+
+    public static final int DEFAULT_MAXIMUM_ORIGINS = 1024;
+
+    private static final String FILE_HEADER = "# httpsig origin cache: origin, keyId, challenge";
+
+    private final File file;
+    private final Map<String, Origin> entries;
+
+    public OriginCache() {
+        this(null, DEFAULT_MAXIMUM_ORIGINS);
+    }
+
+    public OriginCache(int maximumOrigins) {
+        this(null, maximumOrigins);
+    }
+
+    /**
+     * @param file the file to load the cache from, if it exists, and to write it to on {@link #save()}
+     */
+    public OriginCache(File file) {
+        this(file, DEFAULT_MAXIMUM_ORIGINS);
+    }
+
+    /**
+     * @param file the file to load the cache from, if it exists, and to write it to on {@link #save()}
+     * @param maximumOrigins the maximum number of origins to keep, evicting the least recently used
+     */
+    public OriginCache(File file, final int maximumOrigins) {
+        if (maximumOrigins < 1) {
+            throw new IllegalArgumentException("maximumOrigins must be positive");
+        }
+        this.file = file;
+        this.entries = new LinkedHashMap<String, Origin>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Origin> eldest) {
+                return size() > maximumOrigins;
+            }
+        };
+        if (file != null && file.isFile()) {
+            try {
+                load();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "[OriginCache] failed to load " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Builds the origin string used as the cache key
+     * @param scheme the URL scheme, such as "https"
+     * @param host the host name
+     * @param port the port, or -1 for the default port of the scheme
+     * @return the origin, such as "https://example.com:443"
+     */
+    public static String getOrigin(String scheme, String host, int port) {
+        String _scheme = scheme != null ? scheme.toLowerCase(Locale.ENGLISH) : "http";
+        int _port = port;
+        if (_port < 0) {
+            _port = "https".equals(_scheme) ? 443 : 80;
+        }
+        return _scheme + "://" + (host != null ? host.toLowerCase(Locale.ENGLISH) : "") + ":" + _port;
+    }
+
+    /**
+     * @param origin the origin
+     * @return the last {@link Challenge} received from the origin, or null
+     */
+    public synchronized Challenge getChallenge(String origin) {
+        Origin entry = entries.get(origin);
+        return entry != null ? entry.challenge : null;
+    }
+
+    /**
+     * @param origin the origin
+     * @return the keyId last chosen for the origin, or null
+     */
+    public synchronized String getKeyId(String origin) {
+        Origin entry = entries.get(origin);
+        return entry != null ? entry.keyId : null;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void invalidate(String origin) {
+        entries.remove(origin);
+    }
+
+    /**
+     * Rotates the {@link Signer} for a 401 response from the origin. If the origin sent the same {@link Challenge}
+     * before, and the failed {@link Authorization} was not signed by the cached key, the signer rotates straight to
+     * the cached key. If the cached key itself failed, the signer starts over with every other key, since the keys
+     * ahead of the cached one were skipped. Otherwise this behaves like
+     * {@link Signer#rotateKeys(Challenge, Authorization)}.
+     * @param signer the {@link Signer} to rotate
+     * @param origin the origin which sent the challenge
+     * @param challenge the {@link Challenge} received
+     * @param failedAuthz the {@link Authorization} which was rejected, or null
+     * @return true if there is a key left to try, false otherwise
+     */
+    public boolean rotateKeys(Signer signer, String origin, Challenge challenge, Authorization failedAuthz) {
+        String keyId = null;
+        boolean cachedKeyFailed = false;
+        synchronized (this) {
+            Origin entry = entries.get(origin);
+            if (entry != null && entry.keyId != null && entry.challenge.equals(challenge)) {
+                if (failedAuthz == null || !entry.keyId.equals(failedAuthz.getKeyId())) {
+                    keyId = entry.keyId;
+                } else {
+                    cachedKeyFailed = true;
+                }
+            }
+            entries.put(origin, new Origin(challenge, keyId));
+        }
+
+        if (keyId != null && signer.rotateToKey(challenge, keyId)) {
+            return true;
+        }
+        if (cachedKeyFailed) {
+            return signer.resetKeys(challenge, failedAuthz);
+        }
+        return signer.rotateKeys(challenge, failedAuthz);
+    }
+
+    /**
+     * Decides whether to replay a request which failed with a {@link Challenge} from the origin, as by
+     * {@link Signer#rotateForReplay(Challenge, Authorization, Challenge, int)}, rotating the {@link Signer} as by
+     * {@link #rotateKeys(Signer, String, Challenge, Authorization)}.
+     * @param signer the {@link Signer} to rotate
+     * @param origin the origin which sent the challenge
+     * @param challenge the {@link Challenge} received
+     * @param failedAuthz the {@link Authorization} which was rejected, or null if the request was not signed
+     * @param replayedFor the {@link Challenge} which the failed request was itself replayed for, or null
+     * @param replays the number of times the request has already been replayed
+     * @return true if the request should be signed with the current key and replayed, false otherwise
+     */
+    public boolean rotateForReplay(Signer signer, String origin, Challenge challenge, Authorization failedAuthz,
+                                   Challenge replayedFor, int replays) {
+        return signer.rotateForReplay(challenge, failedAuthz, replayedFor, replays, this, origin);
+    }
+
+    /**
+     * Rotates the {@link Signer} to the key cached for the origin, before sending the first request
+     * @param signer the {@link Signer} to rotate
+     * @param origin the origin of the request
+     * @return true if the signer was rotated to the cached key, false otherwise
+     */
+    public boolean applyTo(Signer signer, String origin) {
+        Origin entry;
+        synchronized (this) {
+            entry = entries.get(origin);
+        }
+        return entry != null && entry.keyId != null && signer.rotateToKey(entry.challenge, entry.keyId);
+    }
+
+    /**
+     * Records the key chosen to answer the last {@link Challenge} received from the origin
+     * @param origin the origin of the request
+     * @param authorization the {@link Authorization} sent with the replayed request
+     */
+    public synchronized void signed(String origin, Authorization authorization) {
+        Origin entry = entries.get(origin);
+        if (entry != null && authorization != null) {
+            entries.put(origin, new Origin(entry.challenge, authorization.getKeyId()));
+        }
+    }
+
+    /**
+     * Writes the cache to its file, if it has one
+     * @throws IOException if the file could not be written
+     */
+    public void save() throws IOException {
+        if (file == null) {
+            return;
+        }
+
+        List<String> lines = new ArrayList<String>();
+        synchronized (this) {
+            for (Map.Entry<String, Origin> entry : entries.entrySet()) {
+                lines.add(entry.getKey() + "\t" + (entry.getValue().keyId != null ? entry.getValue().keyId : "")
+                                  + "\t" + entry.getValue().challenge.getHeaderValue());
+            }
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8");
+        try {
+            writer.write(FILE_HEADER);
+            writer.write('\n');
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+
+        if (!tmp.renameTo(file)) {
+            if (!file.delete() || !tmp.renameTo(file)) {
+                throw new IOException("failed to replace " + file);
+            }
+        }
+    }
+
+    private void load() throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() == 0 || line.charAt(0) == '#') {
+                    continue;
+                }
+                String[] parts = line.split("\t", 3);
+                Challenge challenge = parts.length == 3 ? Challenge.parse(parts[2]) : null;
+                if (challenge != null) {
+                    synchronized (this) {
+                        entries.put(parts[0], new Origin(challenge, parts[1].length() > 0 ? parts[1] : null));
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static final class Origin {
+        private final Challenge challenge;
+        private final String keyId;
+
+        private Origin(Challenge challenge, String keyId) {
+            this.challenge = challenge;
+            this.keyId = keyId;
+        }
+    }
+}
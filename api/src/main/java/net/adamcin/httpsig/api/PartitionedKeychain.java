@@ -0,0 +1,257 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Composite {@link Keychain} which partitions its member keychains by {@link AlgorithmFamily}, so that HMAC and SSH
+ * keys can be served side by side without every lookup walking both. {@link DefaultVerifier} routes each
+ * {@link Authorization} straight to the partition for its algorithm, and {@link Signer} only touches the partitions
+ * matching the {@link Challenge} algorithms when it calls {@link #filterAlgorithms(Collection)}. Member keychains
+ * which implement {@link IndexedKeychain} keep their own indexes.
+ *
+ * Members are assigned to partitions by the algorithms they currently report. The assignment is cached while
+ * {@link #getVersion()} is unchanged, so a mutable member such as a {@link CopyOnWriteKeychain} is repartitioned as
+ * soon as it gains or loses keys. If any member is not a {@link VersionedKeychain}, the assignment is re-read on every
+ * lookup.
+ * @since 1.3.2
+ */
+public final class PartitionedKeychain implements IndexedKeychain, VersionedKeychain {
+
+    private final List<Keychain> keychains;
+    private volatile Partitions partitions;
+
+    public PartitionedKeychain(Collection<? extends Keychain> keychains) {
+        this.keychains = Collections.unmodifiableList(new ArrayList<Keychain>(keychains));
+        this.partitions = new Partitions(this.keychains, getVersion());
+    }
+
+    /**
+     * Groups keys into one {@link DefaultKeychain} per combination of {@link AlgorithmFamily}
+     * @param keys the keys to partition
+     * @return a new partitioned keychain
+     */
+    public static PartitionedKeychain partition(Collection<? extends Key> keys) {
+        Map<Set<AlgorithmFamily>, DefaultKeychain> groups = new LinkedHashMap<Set<AlgorithmFamily>, DefaultKeychain>();
+        for (Key key : keys) {
+            Set<AlgorithmFamily> families = getFamilies(key.getAlgorithms());
+            DefaultKeychain group = groups.get(families);
+            if (group == null) {
+                group = new DefaultKeychain();
+                groups.put(families, group);
+            }
+            group.add(key);
+        }
+        return new PartitionedKeychain(groups.values());
+    }
+
+    private static Set<AlgorithmFamily> getFamilies(Collection<Algorithm> algorithms) {
+        Set<AlgorithmFamily> families = EnumSet.noneOf(AlgorithmFamily.class);
+        for (Algorithm algorithm : algorithms) {
+            families.add(algorithm.getFamily());
+        }
+        return families;
+    }
+
+    /**
+     * @return the partitions for the current contents of the member keychains
+     */
+    private Partitions getPartitions() {
+        Partitions current = partitions;
+        long version = getVersion();
+        if (version < 0L || version != current.version) {
+            current = new Partitions(keychains, version);
+            partitions = current;
+        }
+        return current;
+    }
+
+    /**
+     * @param algorithm the signature algorithm
+     * @return the member keychains holding keys of the algorithm's family
+     */
+    public List<Keychain> getPartition(Algorithm algorithm) {
+        List<Keychain> partition = getPartitions().byFamily.get(algorithm.getFamily());
+        return partition != null ? Collections.unmodifiableList(partition) : Collections.<Keychain>emptyList();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Key findKey(KeyId keyId, String id) {
+        return findKey(null, keyId, id);
+    }
+
+    /**
+     * Finds a key in the partition for {@code algorithm} only
+     * @param algorithm the signature algorithm, or null to search all partitions
+     * @param keyId the {@link KeyId} which generated {@code id}, or null for {@link Constants#DEFAULT_KEY_IDENTIFIER}
+     * @param id the keyId string
+     * @return the {@link Key} identified by {@code id}, or null if there is no such key
+     */
+    public Key findKey(Algorithm algorithm, KeyId keyId, String id) {
+        List<Keychain> candidates = algorithm != null ? getPartitions().byFamily.get(algorithm.getFamily()) : keychains;
+        if (candidates != null) {
+            for (Keychain keychain : candidates) {
+                Key key;
+                if (keychain instanceof IndexedKeychain) {
+                    key = ((IndexedKeychain) keychain).findKey(keyId, id);
+                } else {
+                    key = keychain.toMap(keyId != null ? keyId : Constants.DEFAULT_KEY_IDENTIFIER).get(id);
+                }
+                if (key != null) {
+                    return key;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the sum of the versions of the member keychains, or -1 if any member is not a {@link VersionedKeychain}
+     */
+    public long getVersion() {
+        long version = 0L;
+        for (Keychain keychain : keychains) {
+            if (!(keychain instanceof VersionedKeychain)) {
+                return -1L;
+            }
+            long memberVersion = ((VersionedKeychain) keychain).getVersion();
+            if (memberVersion < 0L) {
+                return -1L;
+            }
+            version += memberVersion;
+        }
+        return version;
+    }
+
+    public Set<Algorithm> getAlgorithms() {
+        Set<Algorithm> algorithms = new LinkedHashSet<Algorithm>();
+        for (Keychain keychain : keychains) {
+            algorithms.addAll(keychain.getAlgorithms());
+        }
+        return Collections.unmodifiableSet(algorithms);
+    }
+
+    public Keychain filterAlgorithms(Collection<Algorithm> algorithms) {
+        Set<AlgorithmFamily> families = getFamilies(algorithms);
+        List<Keychain> filtered = new ArrayList<Keychain>();
+        for (Keychain keychain : keychains) {
+            if (!Collections.disjoint(getFamilies(keychain.getAlgorithms()), families)) {
+                Keychain filteredKeychain = keychain.filterAlgorithms(algorithms);
+                if (!filteredKeychain.isEmpty()) {
+                    filtered.add(filteredKeychain);
+                }
+            }
+        }
+        return new PartitionedKeychain(filtered);
+    }
+
+    public Keychain discard() {
+        for (int i = 0; i < keychains.size(); i++) {
+            if (!keychains.get(i).isEmpty()) {
+                List<Keychain> remaining = new ArrayList<Keychain>(keychains.size() - i);
+                remaining.add(keychains.get(i).discard());
+                remaining.addAll(keychains.subList(i + 1, keychains.size()));
+                return new PartitionedKeychain(remaining);
+            }
+        }
+        throw new NoSuchElementException("keychain is empty");
+    }
+
+    public Key currentKey() {
+        for (Keychain keychain : keychains) {
+            if (!keychain.isEmpty()) {
+                return keychain.currentKey();
+            }
+        }
+        throw new NoSuchElementException("keychain is empty");
+    }
+
+    public Map<String, Key> toMap(KeyId keyId) {
+        LinkedHashMap<String, Key> map = new LinkedHashMap<String, Key>();
+        for (Keychain keychain : keychains) {
+            map.putAll(keychain.toMap(keyId));
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    public boolean isEmpty() {
+        for (Keychain keychain : keychains) {
+            if (!keychain.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Iterator<Key> iterator() {
+        List<Key> keys = new ArrayList<Key>();
+        for (Keychain keychain : keychains) {
+            for (Key key : keychain) {
+                keys.add(key);
+            }
+        }
+        return Collections.unmodifiableList(keys).iterator();
+    }
+
+    /**
+     * Assignment of member keychains to partitions as of one {@link #getVersion()}
+     */
+    private static final class Partitions {
+        private final long version;
+        private final Map<AlgorithmFamily, List<Keychain>> byFamily =
+                new EnumMap<AlgorithmFamily, List<Keychain>>(AlgorithmFamily.class);
+
+        private Partitions(List<Keychain> keychains, long version) {
+            this.version = version;
+            for (Keychain keychain : keychains) {
+                for (AlgorithmFamily family : getFamilies(keychain.getAlgorithms())) {
+                    List<Keychain> partition = byFamily.get(family);
+                    if (partition == null) {
+                        partition = new ArrayList<Keychain>(1);
+                        byFamily.put(family, partition);
+                    }
+                    partition.add(keychain);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.api;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Mutable, reusable alternative to {@link RequestContent} for servers with a byte-level HTTP parser. The request
+ * target and headers are added as ranges of the parser's buffers, which must not change until verification is done,
+ * and {@link DefaultVerifier#verifyWithResult(Challenge, RawRequestContent, Authorization)} assembles the signing
+ * string by copying those bytes into a buffer owned by this object, without decoding them to strings. Bytes are
+ * interpreted as ISO-8859-1, matching {@link Constants#CHARSET}.
+ *
+ * Instances are not thread-safe. Keep one per connection or per thread and {@link #reset()} it between requests.
+ * @since 1.3.2
+ */
+public final class RawRequestContent {
+    private static final byte[] REQUEST_TARGET_PREFIX = (Constants.HEADER_REQUEST_TARGET + ": ").getBytes(Constants.CHARSET);
+
+    private byte[] methodBuffer;
+    private int methodOffset;
+    private int methodLength;
+    private byte[] pathBuffer;
+    private int pathOffset;
+    private int pathLength;
+
+    private byte[][] buffers = new byte[8][];
+    private int[] slices = new int[8 * 4]; // name offset, name length, value offset, value length
+    private int count;
+
+    private byte[] signingBuffer = new byte[512];
+    private int signingOffset;
+
+    private Date date;
+    private boolean dateResolved;
+
+    /**
+     * Clears the request target and headers, keeping the allocated buffers
+     * @return this
+     */
+    public RawRequestContent reset() {
+        methodBuffer = null;
+        pathBuffer = null;
+        Arrays.fill(buffers, 0, count, null);
+        count = 0;
+        date = null;
+        dateResolved = false;
+        return this;
+    }
+
+    /**
+     * Sets the request method and path for {@link Constants#HEADER_REQUEST_TARGET}
+     * @param buffer buffer containing the method and path
+     * @param methodOffset offset of the method
+     * @param methodLength length of the method
+     * @param pathOffset offset of the path, including any query string
+     * @param pathLength length of the path
+     * @return this
+     */
+    public RawRequestContent setRequestTarget(byte[] buffer, int methodOffset, int methodLength,
+                                              int pathOffset, int pathLength) {
+        this.methodBuffer = buffer;
+        this.methodOffset = trimStart(buffer, methodOffset, methodOffset + methodLength);
+        this.methodLength = trimEnd(buffer, this.methodOffset, methodOffset + methodLength) - this.methodOffset;
+        this.pathBuffer = buffer;
+        this.pathOffset = trimStart(buffer, pathOffset, pathOffset + pathLength);
+        this.pathLength = trimEnd(buffer, this.pathOffset, pathOffset + pathLength) - this.pathOffset;
+        return this;
+    }
+
+    /**
+     * Adds a header. As with {@link RequestContent.Builder#addHeader(String, String)}, only the first value of a
+     * header is signed, and surrounding whitespace is ignored.
+     * @param buffer buffer containing the header name and value
+     * @param nameOffset offset of the header name
+     * @param nameLength length of the header name
+     * @param valueOffset offset of the header value
+     * @param valueLength length of the header value
+     * @return this
+     */
+    public RawRequestContent addHeader(byte[] buffer, int nameOffset, int nameLength,
+                                       int valueOffset, int valueLength) {
+        if (count == buffers.length) {
+            buffers = Arrays.copyOf(buffers, count * 2);
+            slices = Arrays.copyOf(slices, count * 2 * 4);
+        }
+        buffers[count] = buffer;
+        int slice = count * 4;
+        slices[slice] = trimStart(buffer, nameOffset, nameOffset + nameLength);
+        slices[slice + 1] = trimEnd(buffer, slices[slice], nameOffset + nameLength) - slices[slice];
+        slices[slice + 2] = trimStart(buffer, valueOffset, valueOffset + valueLength);
+        slices[slice + 3] = trimEnd(buffer, slices[slice + 2], valueOffset + valueLength) - slices[slice + 2];
+        count++;
+        dateResolved = false;
+        return this;
+    }
+
+    /**
+     * @param name the header name, in any case
+     * @return true if the header is present, or for {@link Constants#HEADER_REQUEST_TARGET}, if the request target
+     *         is set
+     */
+    public boolean hasHeader(String name) {
+        if (Constants.HEADER_REQUEST_TARGET.equalsIgnoreCase(name)) {
+            return methodBuffer != null && pathBuffer != null;
+        } else if (Constants.HEADER_DATE.equalsIgnoreCase(name)) {
+            return getDateGMT() != null;
+        }
+        return indexOf(name) >= 0;
+    }
+
+    /**
+     * @param name the header name, in any case
+     * @return the first value of the header, or null if it is not present
+     */
+    public String getHeaderValue(String name) {
+        int index = indexOf(name);
+        if (index < 0) {
+            return null;
+        }
+        int slice = index * 4;
+        return new String(buffers[index], slices[slice + 2], slices[slice + 3], Constants.CHARSET);
+    }
+
+    /**
+     * @return the date header value as a {@link Date}, or null if it is not present or not valid
+     */
+    public Date getDateGMT() {
+        if (!dateResolved) {
+            date = RequestContent.tryParseDate(getHeaderValue(Constants.HEADER_DATE));
+            dateResolved = true;
+        }
+        return date;
+    }
+
+    /**
+     * Returns the request content as a byte array for generating a signature.
+     * @param headers the list of headers to be included in the signed content
+     * @return the same bytes as {@link RequestContent#getBytesToSign(List, java.nio.charset.Charset)} with
+     *         {@link Constants#CHARSET} for the same request
+     */
+    public byte[] getBytesToSign(List<String> headers) {
+        int length = assemble(headers, false);
+        return Arrays.copyOfRange(signingBuffer, signingOffset, signingOffset + length);
+    }
+
+    /**
+     * Writes the signing string into the reusable signing buffer
+     * @return length of the signing string, which starts at {@link #getSigningOffset()} in {@link #getSigningBuffer()}
+     */
+    int assemble(List<String> headers, boolean suppressRequestTargetPrefix) {
+        int position = 0;
+        if (headers != null) {
+            for (String header : headers) {
+                if (isIgnored(header)) {
+                    continue;
+                }
+                if (Constants.HEADER_REQUEST_TARGET.equalsIgnoreCase(header)) {
+                    if (methodBuffer != null && pathBuffer != null) {
+                        if (!suppressRequestTargetPrefix) {
+                            position = put(position, REQUEST_TARGET_PREFIX, 0, REQUEST_TARGET_PREFIX.length);
+                        }
+                        position = putLowerCase(position, methodBuffer, methodOffset, methodLength);
+                        position = put(position, (byte) ' ');
+                        position = put(position, pathBuffer, pathOffset, pathLength);
+                        position = put(position, (byte) '\n');
+                    }
+                } else {
+                    int index = indexOf(header);
+                    if (index >= 0 && (!Constants.HEADER_DATE.equalsIgnoreCase(header) || getDateGMT() != null)) {
+                        int slice = index * 4;
+                        position = putLowerCase(position, header);
+                        position = put(position, (byte) ':');
+                        position = put(position, (byte) ' ');
+                        position = put(position, buffers[index], slices[slice + 2], slices[slice + 3]);
+                        position = put(position, (byte) '\n');
+                    }
+                }
+            }
+        }
+        signingOffset = trimStart(signingBuffer, 0, position);
+        return trimEnd(signingBuffer, signingOffset, position) - signingOffset;
+    }
+
+    byte[] getSigningBuffer() {
+        return signingBuffer;
+    }
+
+    int getSigningOffset() {
+        return signingOffset;
+    }
+
+    private static boolean isIgnored(String header) {
+        if (header.startsWith(":")) {
+            return true;
+        }
+        for (int i = 0; i < Constants.IGNORE_HEADERS.size(); i++) {
+            if (Constants.IGNORE_HEADERS.get(i).equalsIgnoreCase(header)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < count; i++) {
+            int slice = i * 4;
+            if (equalsIgnoreCase(buffers[i], slices[slice], slices[slice + 1], name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean equalsIgnoreCase(byte[] buffer, int offset, int length, String name) {
+        if (length != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (toLowerCase(buffer[offset + i] & 0xff) != toLowerCase(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int toLowerCase(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    private static int trimStart(byte[] buffer, int start, int end) {
+        while (start < end && (buffer[start] & 0xff) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(byte[] buffer, int start, int end) {
+        while (end > start && (buffer[end - 1] & 0xff) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > signingBuffer.length) {
+            signingBuffer = Arrays.copyOf(signingBuffer, Math.max(capacity, signingBuffer.length * 2));
+        }
+    }
+
+    private int put(int position, byte b) {
+        ensureCapacity(position + 1);
+        signingBuffer[position] = b;
+        return position + 1;
+    }
+
+    private int put(int position, byte[] buffer, int offset, int length) {
+        ensureCapacity(position + length);
+        System.arraycopy(buffer, offset, signingBuffer, position, length);
+        return position + length;
+    }
+
+    private int putLowerCase(int position, byte[] buffer, int offset, int length) {
+        ensureCapacity(position + length);
+        for (int i = 0; i < length; i++) {
+            signingBuffer[position + i] = (byte) toLowerCase(buffer[offset + i] & 0xff);
+        }
+        return position + length;
+    }
+
+    private int putLowerCase(int position, String name) {
+        ensureCapacity(position + name.length());
+        for (int i = 0; i < name.length(); i++) {
+            signingBuffer[position + i] = (byte) toLowerCase(name.charAt(i));
+        }
+        return position + name.length();
+    }
+}
@@ -55,6 +55,8 @@ public final class RequestContent implements Serializable {
 
     private static final long serialVersionUID = -2968642080214687632L;
 
+    private static volatile FormattedDate lastFormattedDate;
+
     @Deprecated
     private final String requestLine;
     private final String method;
@@ -166,15 +168,71 @@ public final class RequestContent implements Serializable {
          * @return this {@link Builder}
          */
         public Builder addDateNow() {
-            addDate(new GregorianCalendar(getGMT()));
+            return addDateNow(Clock.SYSTEM);
+        }
+
+        /**
+         * IMPORTANT: If you call this overload instead of {@link #addHeader(String, String)}, be sure to retrieve the
+         * generated header value to add to your client request using a subsequent call to {@link #getDate()}. This is
+         * merely a convenience method to generate a date header in the correct format.
+         *
+         * @param clock the {@link Clock} to read the current time from
+         * @return this {@link Builder}
+         * @since 1.3.2
+         */
+        public Builder addDateNow(Clock clock) {
+            if (!headers.containsKey(Constants.HEADER_DATE)) {
+                List<String> values = new ArrayList<String>(1);
+                values.add(formatDate(clock.currentTimeMillis()));
+                headers.put(Constants.HEADER_DATE, values);
+            }
             return this;
         }
 
+        /**
+         * Returns the date header added so far, so that client adapters can decide whether to call
+         * {@link #addDateNow()} without building the {@link RequestContent} first.
+         *
+         * @return the first date header value, or null if none has been added
+         * @since 1.3.2
+         */
+        public String getDate() {
+            List<String> values = headers.get(Constants.HEADER_DATE);
+            return values != null && !values.isEmpty() ? values.get(0) : null;
+        }
+
         public RequestContent build() {
             return new RequestContent(requestLine, method, path, Collections.unmodifiableMap(headers));
         }
     }
 
+    /**
+     * Builds the {@link RequestContent} for a {@link SignableRequest}, reading only the listed headers
+     *
+     * @param request the request view
+     * @param headers the headers to read, such as {@link Authorization#getHeaders()}
+     * @return the {@link RequestContent} containing the request target and the listed headers
+     * @since 1.3.2
+     */
+    @SuppressWarnings("deprecation")
+    public static RequestContent fromSignableRequest(SignableRequest request, List<String> headers) {
+        Builder builder = new Builder();
+        builder.setRequestTarget(request.getMethod(), request.getPath());
+        if (headers != null) {
+            for (String header : headers) {
+                String _header = header.toLowerCase();
+                if (Constants.HEADER_REQUEST_LINE.equals(_header)) {
+                    builder.setRequestLine(request.getRequestLine());
+                } else if (!Constants.HEADER_REQUEST_TARGET.equals(_header)) {
+                    for (String value : request.getHeaderValues(_header)) {
+                        builder.addHeader(_header, value);
+                    }
+                }
+            }
+        }
+        return builder.build();
+    }
+
     /**
      * Returns the signature content as a byte array
      *
@@ -377,6 +435,31 @@ public final class RequestContent implements Serializable {
         return null;
     }
 
+    /**
+     * Formats a time as an RFC 1123 date, reusing the last result for times within the same second
+     */
+    private static String formatDate(long millis) {
+        long second = millis / 1000L;
+        FormattedDate formatted = lastFormattedDate;
+        if (formatted == null || formatted.second != second) {
+            DateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT_RFC1123, Locale.US);
+            dateFormat.setTimeZone(getGMT());
+            formatted = new FormattedDate(second, dateFormat.format(new Date(second * 1000L)));
+            lastFormattedDate = formatted;
+        }
+        return formatted.value;
+    }
+
+    private static final class FormattedDate {
+        private final long second;
+        private final String value;
+
+        private FormattedDate(long second, String value) {
+            this.second = second;
+            this.value = value;
+        }
+    }
+
     private static TimeZone getGMT() {
         return TimeZone.getTimeZone("UTC");
     }
@@ -0,0 +1,84 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.api;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Adapts a {@link KeyResolver} to the {@link IndexedKeychain} lookup used by {@link DefaultVerifier}. The keys are not
+ * known up front, so the keychain cannot be enumerated, and behaves as an empty keychain for everything but
+ * {@link #findKey(KeyId, String)}.
+ */
+final class ResolverKeychain implements IndexedKeychain {
+    private static final Set<Algorithm> ALL_ALGORITHMS =
+            Collections.unmodifiableSet(new LinkedHashSet<Algorithm>(Constants.ALL_SUPPORTED_ALGORITHMS));
+
+    private final KeyResolver resolver;
+
+    ResolverKeychain(KeyResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    public Key findKey(KeyId keyId, String id) {
+        return resolver.resolve(id);
+    }
+
+    public Set<Algorithm> getAlgorithms() {
+        return ALL_ALGORITHMS;
+    }
+
+    public Keychain filterAlgorithms(Collection<Algorithm> algorithms) {
+        return this;
+    }
+
+    public Keychain discard() {
+        throw new NoSuchElementException("keychain is empty");
+    }
+
+    public Key currentKey() {
+        throw new NoSuchElementException("keychain is empty");
+    }
+
+    public Map<String, Key> toMap(KeyId keyId) {
+        return Collections.emptyMap();
+    }
+
+    public boolean isEmpty() {
+        return true;
+    }
+
+    public Iterator<Key> iterator() {
+        return Collections.<Key>emptyList().iterator();
+    }
+}
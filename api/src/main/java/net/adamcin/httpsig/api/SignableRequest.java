@@ -0,0 +1,60 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.api;
+
+import java.util.List;
+
+/**
+ * Lazy view of a request from a server framework, such as an {@code HttpServletRequest}. Header values are only read
+ * for the headers which are actually signed, when {@link RequestContent#fromSignableRequest(SignableRequest, List)}
+ * builds the {@link RequestContent} for an {@link Authorization}.
+ * @since 1.3.2
+ */
+public interface SignableRequest {
+
+    /**
+     * @return the request method
+     */
+    String getMethod();
+
+    /**
+     * @return the request path, including the query string if any
+     */
+    String getPath();
+
+    /**
+     * @return the request line, for the deprecated {@link Constants#HEADER_REQUEST_LINE}, or null if not available
+     */
+    String getRequestLine();
+
+    /**
+     * @param name the header name, in lower case
+     * @return the values of the header, or an empty list if it is not present
+     */
+    List<String> getHeaderValues(String name);
+}
@@ -29,9 +29,12 @@ package net.adamcin.httpsig.api;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Instance of a Signer, used by an HTTP client to sign a {@link RequestContent} and create an {@link Authorization}
@@ -42,6 +45,7 @@ public final class Signer {
     private Keychain keychain;
     private Keychain candidateKeys;
     private Challenge challenge = Constants.PREEMPTIVE_CHALLENGE;
+    private String failedKeyId;
 
     public Signer(Keychain keychain) {
         this(keychain, null);
@@ -59,11 +63,15 @@ public final class Signer {
     }
 
     private synchronized void rotateUntilCanSign() {
-        while (!this.candidateKeys.isEmpty() && !this.candidateKeys.currentKey().canSign()) {
+        while (!this.candidateKeys.isEmpty() && !isUsable(this.candidateKeys.currentKey())) {
             this.candidateKeys = this.candidateKeys.discard();
         }
     }
 
+    private boolean isUsable(Key key) {
+        return key.canSign() && (this.failedKeyId == null || !this.failedKeyId.equals(this.keyId.getId(key)));
+    }
+
     /**
      * @return the original keychain supplied to the {@link Signer}
      */
@@ -118,12 +126,145 @@ public final class Signer {
             }
         } else {
             this.candidateKeys = this.keychain.filterAlgorithms(nextChallenge.getAlgorithms());
+            this.failedKeyId = null;
         }
         this.rotateUntilCanSign();
+        this.rotateToHint(nextChallenge.getKeyHint());
         this.challenge = nextChallenge;
         return !this.candidateKeys.isEmpty();
     }
 
+    /**
+     * Call this method to rotate the candidate keys back to the first key which can sign for the {@link Challenge},
+     * skipping the key which signed {@code failedAuthz} for as long as the {@link Challenge} stays the same. Use this
+     * when the failed key was reached by {@link #rotateToKey(Challenge, String)}, so that the keys ahead of it in the
+     * keychain are still tried.
+     * @param nextChallenge the {@link Challenge} header which was returned for the previous failed request.
+     * @param failedAuthz the {@link Authorization} header which failed on the previous request.
+     * @return true if there is at least one key left after rotation, false otherwise
+     * @since 1.3.2
+     */
+    public synchronized boolean resetKeys(Challenge nextChallenge, Authorization failedAuthz) {
+        if (nextChallenge == null) {
+            throw new IllegalArgumentException("nextChallenge cannot be null");
+        }
+        this.candidateKeys = this.keychain.filterAlgorithms(nextChallenge.getAlgorithms());
+        this.failedKeyId = failedAuthz != null ? failedAuthz.getKeyId() : null;
+        this.rotateUntilCanSign();
+        this.rotateToHint(nextChallenge.getKeyHint());
+        this.challenge = nextChallenge;
+        return !this.candidateKeys.isEmpty();
+    }
+
+    /**
+     * Call this method when a request failed with a {@link Challenge}, to rotate past the key which signed it and
+     * decide whether to replay it. A replay which could not be signed is not replayed again, a key which failed is not
+     * retried while the {@link Challenge} stays the same, and the request is replayed at most once per key in the
+     * keychain. If the request should not be replayed, the signer is still rotated for the {@link Challenge}, as by
+     * {@link #rotateKeys(Challenge)}.
+     * @param nextChallenge the {@link Challenge} header which was returned for the failed request.
+     * @param failedAuthz the {@link Authorization} header which failed, or null if the request was not signed
+     * @param replayedFor the {@link Challenge} which the failed request was itself replayed for, or null
+     * @param replays the number of times the request has already been replayed
+     * @return true if the request should be signed with the current key and replayed, false otherwise
+     * @since 1.3.2
+     */
+    public boolean rotateForReplay(Challenge nextChallenge, Authorization failedAuthz, Challenge replayedFor,
+                                   int replays) {
+        return rotateForReplay(nextChallenge, failedAuthz, replayedFor, replays, null, null);
+    }
+
+    /**
+     * @see #rotateForReplay(Challenge, Authorization, Challenge, int)
+     * @see OriginCache#rotateForReplay(Signer, String, Challenge, Authorization, Challenge, int)
+     */
+    synchronized boolean rotateForReplay(Challenge nextChallenge, Authorization failedAuthz, Challenge replayedFor,
+                                         int replays, OriginCache originCache, String origin) {
+        if (nextChallenge == null) {
+            throw new IllegalArgumentException("nextChallenge cannot be null");
+        }
+        boolean rotated;
+        if (nextChallenge.equals(replayedFor) && failedAuthz == null) {
+            // the replay could not be signed, so replaying it again would not make progress
+            rotated = false;
+        } else {
+            rotated = originCache != null
+                    ? originCache.rotateKeys(this, origin, nextChallenge, failedAuthz)
+                    : rotateKeys(nextChallenge, failedAuthz);
+            if (nextChallenge.equals(replayedFor)) {
+                // a keychain may list the same key more than once, such as once per algorithm
+                while (rotated && failedAuthz.getKeyId().equals(this.keyId.getId(this.candidateKeys.currentKey()))) {
+                    rotated = rotateKeys(nextChallenge, failedAuthz);
+                }
+            }
+            if (rotated && replays >= countKeys(this.keychain)) {
+                rotated = false;
+            }
+        }
+        if (!rotated) {
+            rotateKeys(nextChallenge);
+        }
+        return rotated;
+    }
+
+    private static int countKeys(Keychain keychain) {
+        int count = 0;
+        for (Iterator<Key> keys = keychain.iterator(); keys.hasNext(); keys.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Skips candidate keys which the server certainly does not accept. If the hint matches none of them, the server
+     * may identify keys differently, so the candidates are left for ordinary rotation.
+     */
+    private void rotateToHint(KeyHint keyHint) {
+        if (keyHint == null) {
+            return;
+        }
+        Keychain candidates = this.candidateKeys;
+        while (!candidates.isEmpty()) {
+            Key key = candidates.currentKey();
+            if (isUsable(key) && keyHint.mightContain(key.getId())) {
+                this.candidateKeys = candidates;
+                return;
+            }
+            candidates = candidates.discard();
+        }
+    }
+
+    /**
+     * Call this method to rotate the candidate keys straight to a known key, such as the key which last succeeded for
+     * the same server. Keys ahead of it in the keychain are skipped, so that a subsequent
+     * {@link #rotateKeys(Challenge, Authorization)} continues after it. The candidate keys are left unchanged if no
+     * key matching the keyId can sign for the {@link Challenge}.
+     * @param nextChallenge the {@link Challenge} header which was returned for the previous failed request.
+     * @param keyId the keyId of the key to rotate to
+     * @return true if the key was found, false otherwise
+     * @since 1.3.2
+     */
+    public synchronized boolean rotateToKey(Challenge nextChallenge, String keyId) {
+        if (nextChallenge == null) {
+            throw new IllegalArgumentException("nextChallenge cannot be null");
+        }
+        if (keyId == null) {
+            return false;
+        }
+        Keychain candidates = this.keychain.filterAlgorithms(nextChallenge.getAlgorithms());
+        while (!candidates.isEmpty()) {
+            Key key = candidates.currentKey();
+            if (key.canSign() && keyId.equals(this.keyId.getId(key))) {
+                this.candidateKeys = candidates;
+                this.challenge = nextChallenge;
+                this.failedKeyId = null;
+                return true;
+            }
+            candidates = candidates.discard();
+        }
+        return false;
+    }
+
     /**
      * Signs a {@link RequestContent} and returns an {@link Authorization} header. The signature will use
      * all headers included in the {@link RequestContent}.
@@ -144,12 +285,82 @@ public final class Signer {
      * @return a signed {@link Authorization} header or null if no identities could sign the {@link RequestContent}
      */
     public Authorization sign(RequestContent requestContent, List<String> electiveHeaders) {
-        if (!candidateKeys.isEmpty()) {
-            Key key = this.candidateKeys.currentKey();
+        Signing signing = prepare(requestContent, electiveHeaders);
+        if (signing != null) {
+            return signing.toAuthorization(signing.key.sign(signing.algorithm, signing.content));
+        }
+
+        return null;
+    }
+
+    /**
+     * Signs a {@link RequestContent} without blocking on an {@link AsyncKey}. The signature will use all headers
+     * included in the {@link RequestContent}.
+     *
+     * @param requestContent the Request containing the headers to be signed
+     * @return a {@link SigningFuture} completed with a signed {@link Authorization} header, or with null if no
+     *         identities could sign the {@link RequestContent}
+     * @since 1.3.2
+     */
+    public SigningFuture<Authorization> signAsync(RequestContent requestContent) {
+        return signAsync(requestContent, requestContent.getHeaderNames());
+    }
+
+    /**
+     * Signs a {@link RequestContent} without blocking on an {@link AsyncKey}. Keys which do not implement
+     * {@link AsyncKey} sign on the calling thread, and the returned future is already complete.
+     *
+     * @param requestContent the Request containing the headers to be signed
+     * @param electiveHeaders a list of headers to include in the signature, beyond those required by
+     *                        the {@link Challenge}
+     * @return a {@link SigningFuture} completed with a signed {@link Authorization} header, or with null if no
+     *         identities could sign the {@link RequestContent}
+     * @since 1.3.2
+     */
+    public SigningFuture<Authorization> signAsync(RequestContent requestContent, List<String> electiveHeaders) {
+        final Signing signing = prepare(requestContent, electiveHeaders);
+        if (signing == null) {
+            return SigningFuture.completed(null);
+        }
+        if (!(signing.key instanceof AsyncKey)) {
+            return SigningFuture.completed(signing.toAuthorization(signing.key.sign(signing.algorithm, signing.content)));
+        }
+
+        final SigningFuture<byte[]> signature = ((AsyncKey) signing.key).signAsync(signing.algorithm, signing.content);
+        final SigningFuture<Authorization> result = new SigningFuture<Authorization>();
+        signature.addListener(new Runnable() {
+            public void run() {
+                try {
+                    result.complete(signing.toAuthorization(signature.get()));
+                } catch (ExecutionException e) {
+                    result.fail(e.getCause());
+                } catch (InterruptedException e) {
+                    result.fail(e);
+                } catch (CancellationException e) {
+                    result.cancel(false);
+                }
+            }
+        }, null);
+        return result;
+    }
+
+    /**
+     * Selects the current key, algorithm and headers and builds the content to sign, under the current challenge
+     */
+    private Signing prepare(RequestContent requestContent, List<String> electiveHeaders) {
+        Keychain _candidateKeys;
+        Challenge _challenge;
+        synchronized (this) {
+            _candidateKeys = this.candidateKeys;
+            _challenge = this.challenge;
+        }
+
+        if (!_candidateKeys.isEmpty()) {
+            Key key = _candidateKeys.currentKey();
 
             Algorithm algo = null;
             for (Algorithm algorithm : key.getAlgorithms()) {
-                if (challenge.getAlgorithms().contains(algorithm)) {
+                if (_challenge.getAlgorithms().contains(algorithm)) {
                     algo = algorithm;
                     break;
                 }
@@ -159,17 +370,33 @@ public final class Signer {
             if (electiveHeaders != null) {
                 signHeaders.addAll(electiveHeaders);
             }
-            signHeaders.addAll(challenge.getHeaders());
+            signHeaders.addAll(_challenge.getHeaders());
 
             List<String> headers = new ArrayList<String>(signHeaders);
+            return new Signing(key, algo, headers, requestContent.getBytesToSign(headers, Constants.CHARSET));
+        }
 
-            byte[] signature = key.sign(algo, requestContent.getBytesToSign(headers, Constants.CHARSET));
+        return null;
+    }
 
+    private final class Signing {
+        private final Key key;
+        private final Algorithm algorithm;
+        private final List<String> headers;
+        private final byte[] content;
+
+        private Signing(Key key, Algorithm algorithm, List<String> headers, byte[] content) {
+            this.key = key;
+            this.algorithm = algorithm;
+            this.headers = headers;
+            this.content = content;
+        }
+
+        private Authorization toAuthorization(byte[] signature) {
             if (signature != null) {
-                return new Authorization(this.keyId.getId(key), Base64.toBase64String(signature), headers, algo);
+                return new Authorization(keyId.getId(key), Base64.toBase64String(signature), headers, algorithm);
             }
+            return null;
         }
-
-        return null;
     }
 }
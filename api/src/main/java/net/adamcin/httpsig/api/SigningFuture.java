@@ -0,0 +1,195 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link Future} which is completed by whoever produces its value, and which runs listeners when it completes, so
+ * that signing can be chained without blocking a thread on {@link #get()}.
+ * @param <V> the result type
+ * @since 1.3.2
+ */
+public final class SigningFuture<V> implements Future<V> {
+    private static final Logger LOGGER = Logger.getLogger(SigningFuture.class.getName());
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private List<Listener> listeners = new ArrayList<Listener>();
+    private V value;
+    private Throwable failure;
+    private boolean cancelled;
+    private boolean done;
+
+    /**
+     * @param value the result
+     * @param <V> the result type
+     * @return a future which is already completed with {@code value}
+     */
+    public static <V> SigningFuture<V> completed(V value) {
+        SigningFuture<V> future = new SigningFuture<V>();
+        future.complete(value);
+        return future;
+    }
+
+    /**
+     * Completes the future with a value
+     * @param value the result
+     * @return true if this call completed the future, false if it was already done
+     */
+    public boolean complete(V value) {
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            done = true;
+            this.value = value;
+        }
+        return finish();
+    }
+
+    /**
+     * Completes the future exceptionally
+     * @param failure the cause of the {@link ExecutionException} thrown by {@link #get()}
+     * @return true if this call completed the future, false if it was already done
+     */
+    public boolean fail(Throwable failure) {
+        if (failure == null) {
+            throw new IllegalArgumentException("failure cannot be null");
+        }
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            done = true;
+            this.failure = failure;
+        }
+        return finish();
+    }
+
+    /**
+     * Runs {@code listener} when the future completes, or immediately if it is already done
+     * @param listener the listener to run
+     * @param executor the {@link Executor} to run it with, or null to run it on the thread completing the future
+     */
+    public void addListener(Runnable listener, Executor executor) {
+        Listener entry = new Listener(listener, executor);
+        synchronized (this) {
+            if (listeners != null) {
+                listeners.add(entry);
+                return;
+            }
+        }
+        entry.run();
+    }
+
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            done = true;
+            this.cancelled = true;
+        }
+        return finish();
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    public V get() throws InterruptedException, ExecutionException {
+        latch.await();
+        return getValue();
+    }
+
+    public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!latch.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return getValue();
+    }
+
+    private synchronized V getValue() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return value;
+    }
+
+    private boolean finish() {
+        List<Listener> toRun;
+        synchronized (this) {
+            toRun = listeners;
+            listeners = null;
+        }
+        latch.countDown();
+        for (Listener listener : toRun) {
+            listener.run();
+        }
+        return true;
+    }
+
+    private static final class Listener implements Runnable {
+        private final Runnable runnable;
+        private final Executor executor;
+
+        private Listener(Runnable runnable, Executor executor) {
+            this.runnable = runnable;
+            this.executor = executor;
+        }
+
+        public void run() {
+            try {
+                if (executor != null) {
+                    executor.execute(runnable);
+                } else {
+                    runnable.run();
+                }
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "[run] listener failed", e);
+            }
+        }
+    }
+}
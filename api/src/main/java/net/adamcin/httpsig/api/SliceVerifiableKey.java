@@ -0,0 +1,48 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.api;
+
+/**
+ * Optional interface for {@link Key} implementations which can verify content given as a range of a larger array,
+ * such as the reusable buffer of a {@link RawRequestContent}, without copying it first.
+ * @since 1.3.2
+ */
+public interface SliceVerifiableKey extends Key {
+
+    /**
+     * Verifies the {@code signatureBytes} against {@code length} bytes of {@code content} starting at {@code offset}
+     * @param algorithm the selected Signature {@link Algorithm}
+     * @param content array containing the content which was signed
+     * @param offset offset of the signed content
+     * @param length length of the signed content
+     * @param signatureBytes the result of {@link Authorization#getSignatureBytes()}
+     * @return true if signature is valid
+     * @see Key#verify(Algorithm, byte[], byte[])
+     */
+    boolean verify(Algorithm algorithm, byte[] content, int offset, int length, byte[] signatureBytes);
+}
@@ -0,0 +1,240 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.api;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class CachingKeyResolverTest {
+
+    private static final Executor DIRECT = new Executor() {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    /**
+     * File-backed stand-in for a key store, which counts lookups
+     */
+    static final class FileKeyResolver implements KeyResolver {
+        private final File file;
+        private final AtomicInteger lookups = new AtomicInteger();
+
+        FileKeyResolver(String... keyIds) throws IOException {
+            this.file = File.createTempFile("keys", ".properties");
+            this.file.deleteOnExit();
+            Properties props = new Properties();
+            for (String keyId : keyIds) {
+                props.setProperty(keyId, "true");
+            }
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                props.store(out, null);
+            } finally {
+                out.close();
+            }
+        }
+
+        public Key resolve(String keyId) {
+            lookups.incrementAndGet();
+            Properties props = new Properties();
+            try {
+                FileInputStream in = new FileInputStream(file);
+                try {
+                    props.load(in);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return props.containsKey(keyId) ? new MockKey(keyId) : null;
+        }
+    }
+
+    @Test
+    public void testCachesHitsAndMisses() throws Exception {
+        FileKeyResolver store = new FileKeyResolver("a", "b");
+        CachingKeyResolver resolver = new CachingKeyResolver(store, DIRECT, 10, 60000L, 60000L);
+
+        assertEquals("a", resolver.resolve("a").getId());
+        assertEquals("a", resolver.resolve("a").getId());
+        assertNull("unknown keyId should resolve to null", resolver.resolve("unknown"));
+        assertNull("unknown keyId should resolve to null", resolver.resolve("unknown"));
+        assertEquals("hits and misses should each be loaded once", 2, store.lookups.get());
+    }
+
+    @Test
+    public void testBounded() throws Exception {
+        FileKeyResolver store = new FileKeyResolver("a", "b", "c");
+        CachingKeyResolver resolver = new CachingKeyResolver(store, DIRECT, 2, 60000L, 60000L);
+        resolver.resolve("a");
+        resolver.resolve("b");
+        resolver.resolve("c");
+        assertEquals("cache should be bounded", 2, resolver.size());
+    }
+
+    @Test
+    public void testRefreshAheadServesStale() throws Exception {
+        FileKeyResolver store = new FileKeyResolver("a");
+        final List<Runnable> queued = new ArrayList<Runnable>();
+        Executor queue = new Executor() {
+            public void execute(Runnable command) {
+                queued.add(command);
+            }
+        };
+        CachingKeyResolver resolver = new CachingKeyResolver(store, queue, 10, 0L, 60000L);
+
+        Key first = resolver.resolve("a");
+        assertEquals("cold key should be loaded on the calling thread", 1, store.lookups.get());
+
+        assertSame("stale key should be served without waiting for refresh", first, resolver.resolve("a"));
+        assertSame("stale key should be served without waiting for refresh", first, resolver.resolve("a"));
+        assertEquals("concurrent refreshes should be coalesced", 1, queued.size());
+
+        queued.get(0).run();
+        assertEquals("refresh should reload the key", 2, store.lookups.get());
+        assertNotSame("refreshed key should replace stale key", first, resolver.resolve("a"));
+    }
+
+    @Test
+    public void testExpired() throws Exception {
+        FileKeyResolver store = new FileKeyResolver("a");
+        CachingKeyResolver resolver = new CachingKeyResolver(store, DIRECT, 10, 0L, 0L);
+        resolver.resolve("a");
+        resolver.resolve("a");
+        assertEquals("expired key should be loaded again", 2, store.lookups.get());
+    }
+
+    @Test
+    public void testCoalescesConcurrentLoads() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger lookups = new AtomicInteger();
+        KeyResolver slow = new KeyResolver() {
+            public Key resolve(String keyId) {
+                lookups.incrementAndGet();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new MockKey(keyId);
+            }
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            CachingKeyResolver resolver = new CachingKeyResolver(slow, pool, 10, 60000L, 60000L);
+            List<Future<Key>> futures = new ArrayList<Future<Key>>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(resolver.resolveAsync("a"));
+            }
+            release.countDown();
+            Key key = futures.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<Key> future : futures) {
+                assertSame("all lookups should share one load", key, future.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals("delegate should be called once", 1, lookups.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRejectedExecution() throws Exception {
+        FileKeyResolver store = new FileKeyResolver("a");
+        Executor rejecting = new Executor() {
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException("saturated");
+            }
+        };
+        CachingKeyResolver resolver = new CachingKeyResolver(store, rejecting, 10, 0L, 60000L);
+
+        Future<Key> future = resolver.resolveAsync("a");
+        assertFalse("rejected load should not be cancelled", future.isCancelled());
+        assertEquals("rejected load should run on the calling thread", "a", future.get().getId());
+
+        assertEquals("stale key should be served after a rejected refresh", "a", resolver.resolve("a").getId());
+        assertEquals("rejected refresh should load on the calling thread", 2, store.lookups.get());
+    }
+
+    @Test
+    public void testVerifier() throws Exception {
+        CachingKeyResolver resolver = new CachingKeyResolver(new FileKeyResolver("fingerprint"), DIRECT, 10, 60000L, 60000L);
+        DefaultVerifier v = new DefaultVerifier(resolver);
+
+        RequestContent requestContent = new RequestContent.Builder().addDateNow().build();
+        Challenge c = new Challenge(CachingKeyResolverTest.class.getName(), Constants.DEFAULT_HEADERS, Arrays.asList( Algorithm.SSH_RSA ));
+        byte[] content = requestContent.getBytesToSign(Constants.DEFAULT_HEADERS, Constants.CHARSET);
+
+        Authorization a = new Authorization("fingerprint", MockKey.mockSignBase64(content), Constants.DEFAULT_HEADERS, Algorithm.SSH_RSA);
+        assertEquals("resolved key should verify", VerifyResult.SUCCESS, v.verifyWithResult(c, requestContent, a));
+
+        Authorization unknown = new Authorization("unknown", MockKey.mockSignBase64(content), Constants.DEFAULT_HEADERS, Algorithm.SSH_RSA);
+        assertEquals("unknown key should not be found", VerifyResult.KEY_NOT_FOUND, v.verifyWithResult(c, requestContent, unknown));
+    }
+
+    @Test
+    public void testResolverKeychainIsEmpty() throws Exception {
+        Keychain keychain = new DefaultVerifier(new FileKeyResolver("a")).getKeychain();
+        assertTrue("resolver keychain cannot be enumerated, so it should be empty", keychain.isEmpty());
+        assertFalse("iteration should agree with isEmpty", keychain.iterator().hasNext());
+        try {
+            keychain.currentKey();
+            fail("currentKey should throw like an empty keychain");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+        try {
+            keychain.discard();
+            fail("discard should throw like an empty keychain");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+        assertTrue("signer should see no candidate keys", new Signer(keychain).getCandidateKeys().isEmpty());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.api;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import org.junit.Test;
+
+public class CopyOnWriteKeychainTest {
+
+    @Test
+    public void testAddAndRevokeWithoutNewVerifier() {
+        TestBody.test(new TestBody() {
+            @Override protected void execute() throws Exception {
+                CopyOnWriteKeychain keychain = new CopyOnWriteKeychain();
+                DefaultVerifier v = new DefaultVerifier(keychain);
+
+                RequestContent requestContent = new RequestContent.Builder().addDateNow().build();
+                Challenge c = new Challenge(CopyOnWriteKeychainTest.class.getName(), Constants.DEFAULT_HEADERS, Arrays.asList( Algorithm.SSH_RSA ));
+                byte[] content = requestContent.getBytesToSign(Constants.DEFAULT_HEADERS, Constants.CHARSET);
+                Authorization a = new Authorization("fingerprint", MockKey.mockSignBase64(content), Constants.DEFAULT_HEADERS, Algorithm.SSH_RSA);
+
+                assertEquals("key should not be found before it is added",
+                             VerifyResult.KEY_NOT_FOUND, v.verifyWithResult(c, requestContent, a));
+
+                MockKey key = new MockKey("fingerprint");
+                keychain.add(key);
+                assertEquals("added key should verify", VerifyResult.SUCCESS, v.verifyWithResult(c, requestContent, a));
+
+                assertTrue("key should be removed", keychain.remove(key));
+                assertEquals("revoked key should not be found",
+                             VerifyResult.KEY_NOT_FOUND, v.verifyWithResult(c, requestContent, a));
+            }
+        });
+    }
+
+    @Test
+    public void testSnapshotIsolation() {
+        CopyOnWriteKeychain keychain = new CopyOnWriteKeychain(Arrays.<Key>asList(new MockKey("a")));
+        Keychain snapshot = keychain.snapshot();
+        long version = keychain.getVersion();
+
+        keychain.add(new MockKey("b"));
+        assertTrue("version should change on add", keychain.getVersion() != version);
+        assertNull("snapshot should not see later writes", ((IndexedKeychain) snapshot).findKey(null, "b"));
+        assertNotNull("keychain should see its writes", keychain.findKey(null, "b"));
+        assertEquals("currentKey should be first key", "a", keychain.currentKey().getId());
+        assertEquals("discard should drop first key", "b", keychain.discard().currentKey().getId());
+    }
+
+    @Test
+    public void testConcurrentReadsDuringWrites() throws Exception {
+        final CopyOnWriteKeychain keychain = new CopyOnWriteKeychain();
+        final int count = 500;
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    while (keychain.size() < count) {
+                        for (Key key : keychain) {
+                            assertSame("every visible key should be found", key, keychain.findKey(null, key.getId()));
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        });
+        reader.start();
+
+        for (int i = 0; i < count; i++) {
+            keychain.add(new MockKey("key" + i));
+        }
+        reader.join();
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        for (int i = 0; i < count; i++) {
+            assertNotNull("key" + i + " should be found", keychain.findKey(null, "key" + i));
+        }
+    }
+}
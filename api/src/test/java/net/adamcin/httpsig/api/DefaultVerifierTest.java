@@ -28,9 +28,11 @@
 package net.adamcin.httpsig.api;
 
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -87,5 +89,124 @@ public class DefaultVerifierTest {
         });
     }
 
+    @Test
+    public void testLegacyFallback() {
+        TestBody.test(new TestBody() {
+            @Override protected void execute() throws Exception {
+                DefaultKeychain identities = new DefaultKeychain();
+                identities.add(new MockKey("legacy"));
+                identities.add(new MockKey("modern"));
+                LegacyRequestTargetFallback fallback = new LegacyRequestTargetFallback();
+                DefaultVerifier v = new DefaultVerifier(identities, null, DefaultVerifier.DEFAULT_SKEW, fallback);
+
+                RequestContent requestContent = new RequestContent.Builder().setRequestTarget("get", "index.html").addDateNow().build();
+                List<String> headers = Arrays.asList(Constants.HEADER_REQUEST_TARGET, Constants.HEADER_DATE);
+                Challenge c = new Challenge(DefaultVerifierTest.class.getName(), headers, Arrays.asList( Algorithm.SSH_RSA ));
+
+                byte[] content = requestContent.getContent(headers, Constants.CHARSET);
+                Authorization legacy = new Authorization("legacy", MockKey.mockSignBase64(content), headers, Algorithm.SSH_RSA);
+                Authorization invalid = new Authorization("modern", MockKey.mockSignBase64(new byte[0]), headers, Algorithm.SSH_RSA);
+
+                assertTrue("legacy signature should verify while recording", v.verify(c, requestContent, legacy));
+                assertFalse("invalid signature should not verify", v.verify(c, requestContent, invalid));
+                assertEquals("both failures should attempt the fallback", 2L, fallback.getAttempts());
+                assertEquals("one fallback should succeed", 1L, fallback.getSuccesses());
+                assertTrue("legacy keyId should be recorded", fallback.isLegacyKeyId("legacy"));
+                assertFalse("invalid keyId should not be recorded", fallback.isLegacyKeyId("modern"));
+
+                fallback.setMode(LegacyRequestTargetFallback.Mode.RECORDED);
+                assertTrue("recorded keyId should still use the fallback", v.verify(c, requestContent, legacy));
+                assertFalse("invalid signature should not verify", v.verify(c, requestContent, invalid));
+                assertEquals("only the recorded keyId should attempt the fallback", 3L, fallback.getAttempts());
+
+                fallback.setMode(LegacyRequestTargetFallback.Mode.NEVER);
+                assertFalse("fallback should be disabled", v.verify(c, requestContent, legacy));
+                assertEquals("no further fallback attempts", 3L, fallback.getAttempts());
+
+                LegacyRequestTargetFallback bounded = new LegacyRequestTargetFallback(LegacyRequestTargetFallback.Mode.RECORDED, 2);
+                bounded.addLegacyKeyId("a");
+                bounded.addLegacyKeyId("b");
+                bounded.isLegacyKeyId("a");
+                bounded.addLegacyKeyId("c");
+                assertEquals("recorded keyIds should be bounded", 2, bounded.getLegacyKeyIdCount());
+                assertFalse("least recently used keyId should be evicted", bounded.isLegacyKeyId("b"));
+            }
+        });
+    }
+
+    @Test
+    public void testClockSkew() {
+        TestBody.test(new TestBody() {
+            @Override protected void execute() throws Exception {
+                final long[] now = new long[] { 1403259100000L };
+                Clock clock = new Clock() {
+                    public long currentTimeMillis() {
+                        return now[0];
+                    }
+                };
+
+                String fingerprint = "fingerprint";
+                DefaultVerifier v = new DefaultVerifier(new MockKeychain(fingerprint), null, 1000L, null, clock);
+                RequestContent requestContent = new RequestContent.Builder().addDateNow(clock).build();
+                Challenge c = new Challenge(DefaultVerifierTest.class.getName(), Constants.DEFAULT_HEADERS, Arrays.asList( Algorithm.SSH_RSA ));
+                byte[] content = requestContent.getBytesToSign(Constants.DEFAULT_HEADERS, Constants.CHARSET);
+                Authorization a = new Authorization(fingerprint, MockKey.mockSignBase64(content), Constants.DEFAULT_HEADERS, Algorithm.SSH_RSA);
 
+                assertEquals("request should verify at its own date",
+                             VerifyResult.SUCCESS, v.verifyWithResult(c, requestContent, a));
+                now[0] += 1000L;
+                assertEquals("request should verify at the edge of skew",
+                             VerifyResult.SUCCESS, v.verifyWithResult(c, requestContent, a));
+                now[0] += 1L;
+                assertEquals("request should expire after skew",
+                             VerifyResult.EXPIRED_DATE_HEADER, v.verifyWithResult(c, requestContent, a));
+                now[0] -= 2002L;
+                assertEquals("request should expire before skew",
+                             VerifyResult.EXPIRED_DATE_HEADER, v.verifyWithResult(c, requestContent, a));
+            }
+        });
+    }
+
+    @Test
+    public void testUnknownKeyIdRejectedFirst() {
+        TestBody.test(new TestBody() {
+            @Override protected void execute() throws Exception {
+                DefaultKeychain identities = new DefaultKeychain();
+                identities.add(new MockKey("fingerprint"));
+                DefaultVerifier v = new DefaultVerifier(identities);
+
+                // no date header, so any check other than the keyId filter would fail differently
+                RequestContent requestContent = new RequestContent.Builder().build();
+                Challenge c = new Challenge(DefaultVerifierTest.class.getName(), Constants.DEFAULT_HEADERS, Arrays.asList( Algorithm.SSH_RSA ));
+                Authorization unknown = new Authorization("unknown", MockKey.mockSignBase64(new byte[0]), Constants.DEFAULT_HEADERS, Algorithm.SSH_RSA);
+
+                assertEquals("unknown keyId should be rejected before other checks",
+                             VerifyResult.KEY_NOT_FOUND, v.verifyWithResult(c, requestContent, unknown));
+
+                identities.add(new MockKey("unknown"));
+                assertEquals("filter should be rebuilt after the keychain changes",
+                             VerifyResult.INCOMPLETE_REQUEST, v.verifyWithResult(c, requestContent, unknown));
+            }
+        });
+    }
+
+    @Test
+    public void testKeyIdFilter() {
+        List<String> keyIds = new ArrayList<String>();
+        for (int i = 0; i < 1000; i++) {
+            keyIds.add("/user" + i + "/keys/" + i);
+        }
+        KeyIdFilter filter = KeyIdFilter.build(0L, keyIds);
+        for (String keyId : keyIds) {
+            assertTrue("filter should contain " + keyId, filter.mightContain(keyId));
+        }
+
+        int falsePositives = 0;
+        for (int i = 1000; i < 11000; i++) {
+            if (filter.mightContain("/user" + i + "/keys/" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positive rate should be low: " + falsePositives, falsePositives < 500);
+    }
 }
@@ -0,0 +1,161 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.api;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OriginCacheTest {
+
+    private static final String ORIGIN = OriginCache.getOrigin("HTTPS", "Example.com", -1);
+
+    @Test
+    public void testGetOrigin() {
+        assertEquals("origin should be normalized", "https://example.com:443", ORIGIN);
+        assertEquals("default http port", "http://example.com:80", OriginCache.getOrigin("http", "example.com", -1));
+        assertEquals("explicit port", "http://example.com:8080", OriginCache.getOrigin("http", "example.com", 8080));
+    }
+
+    @Test
+    public void testRotateKeys() {
+        TestBody.test(new TestBody() {
+            @Override protected void execute() throws Exception {
+                Challenge challenge = newChallenge("realm");
+                OriginCache cache = new OriginCache();
+
+                Signer cold = newSigner();
+                assertTrue("cold signer should rotate", cache.rotateKeys(cold, ORIGIN, challenge, null));
+                assertEquals("cold signer should start at the first key", "a", currentId(cold));
+                assertTrue("failed key should be discarded",
+                           cache.rotateKeys(cold, ORIGIN, challenge, failed("a")));
+                assertEquals("cold signer should try the next key", "b", currentId(cold));
+                cache.signed(ORIGIN, failed("b"));
+                assertEquals("chosen key should be cached", "b", cache.getKeyId(ORIGIN));
+
+                Signer warm = newSigner();
+                assertTrue("warm signer should rotate", cache.rotateKeys(warm, ORIGIN, challenge, failed("a")));
+                assertEquals("warm signer should jump to the cached key", "b", currentId(warm));
+                assertTrue("cached key failure should fall back to rotation",
+                           cache.rotateKeys(warm, ORIGIN, challenge, failed("b")));
+                assertEquals("rotation should start over before the cached key", "a", currentId(warm));
+                assertNull("failed cached key should be forgotten", cache.getKeyId(ORIGIN));
+                assertTrue("rotation should continue", cache.rotateKeys(warm, ORIGIN, challenge, failed("a")));
+                assertEquals("failed cached key should be skipped", "c", currentId(warm));
+                assertFalse("keys should run out", cache.rotateKeys(warm, ORIGIN, challenge, failed("c")));
+
+                cache.signed(ORIGIN, failed("c"));
+                Signer otherRealm = newSigner();
+                cache.rotateKeys(otherRealm, ORIGIN, newChallenge("other"), null);
+                assertEquals("cached key should not be used for another realm", "a", currentId(otherRealm));
+
+                Signer missing = newSigner();
+                assertFalse("unknown keyId should not rotate", missing.rotateToKey(challenge, "z"));
+                assertEquals("unknown keyId should leave the signer unchanged", "a", currentId(missing));
+            }
+        });
+    }
+
+    @Test
+    public void testStaleCachedKey() {
+        TestBody.test(new TestBody() {
+            @Override protected void execute() throws Exception {
+                Challenge challenge = newChallenge("realm");
+                OriginCache cache = new OriginCache();
+                cache.rotateKeys(newSigner(), ORIGIN, challenge, null);
+                cache.signed(ORIGIN, failed("c"));
+
+                // "a" is valid, but the cache still points at "c", which the server no longer accepts
+                Signer signer = newSigner();
+                assertTrue("cache should apply", cache.applyTo(signer, ORIGIN));
+                assertEquals("signer should start at the stale cached key", "c", currentId(signer));
+                assertTrue("stale cached key failure should leave keys to try",
+                           cache.rotateKeys(signer, ORIGIN, challenge, failed("c")));
+                assertEquals("valid key ahead of the stale cached key should be tried", "a", currentId(signer));
+                cache.signed(ORIGIN, failed("a"));
+                assertEquals("valid key should be cached", "a", cache.getKeyId(ORIGIN));
+            }
+        });
+    }
+
+    @Test
+    public void testSaveAndLoad() {
+        TestBody.test(new TestBody() {
+            @Override protected void execute() throws Exception {
+                File file = File.createTempFile("origins", ".txt");
+                file.deleteOnExit();
+                Challenge challenge = newChallenge("realm");
+
+                OriginCache cache = new OriginCache(file);
+                cache.rotateKeys(newSigner(), ORIGIN, challenge, null);
+                cache.signed(ORIGIN, failed("c"));
+                cache.save();
+
+                OriginCache loaded = new OriginCache(file);
+                assertEquals("challenge should survive a restart", challenge, loaded.getChallenge(ORIGIN));
+                assertEquals("keyId should survive a restart", "c", loaded.getKeyId(ORIGIN));
+
+                Signer signer = newSigner();
+                assertTrue("loaded cache should apply to a new signer", loaded.applyTo(signer, ORIGIN));
+                assertEquals("new signer should start at the cached key", "c", currentId(signer));
+
+                OriginCache bounded = new OriginCache(1);
+                bounded.rotateKeys(newSigner(), ORIGIN, challenge, null);
+                bounded.rotateKeys(newSigner(), OriginCache.getOrigin("https", "other.com", -1), challenge, null);
+                assertEquals("origins should be bounded", 1, bounded.size());
+                assertNull("eldest origin should be evicted", bounded.getChallenge(ORIGIN));
+            }
+        });
+    }
+
+    private static Challenge newChallenge(String realm) {
+        List<String> headers = Arrays.asList(Constants.HEADER_REQUEST_TARGET, Constants.HEADER_DATE);
+        return new Challenge(realm, headers, Arrays.asList(Algorithm.SSH_RSA));
+    }
+
+    private static Signer newSigner() {
+        DefaultKeychain keychain = new DefaultKeychain();
+        keychain.add(new MockKey("a"));
+        keychain.add(new MockKey("b"));
+        keychain.add(new MockKey("c"));
+        return new Signer(keychain);
+    }
+
+    private static String currentId(Signer signer) {
+        return signer.getCandidateKeys().currentKey().getId();
+    }
+
+    private static Authorization failed(String keyId) {
+        return new Authorization(keyId, "", Constants.DEFAULT_HEADERS, Algorithm.SSH_RSA);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.api;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class PartitionedKeychainTest {
+
+    private static Key familyKey(String id, final Algorithm... algorithms) {
+        return new MockKey(id) {
+            @Override
+            public Set<Algorithm> getAlgorithms() {
+                return new HashSet<Algorithm>(Arrays.asList(algorithms));
+            }
+        };
+    }
+
+    @Test
+    public void testRouting() {
+        Key hmacKey = familyKey("hmac", Algorithm.HMAC_SHA256, Algorithm.HMAC_SHA512);
+        Key rsaKey = familyKey("rsa", Algorithm.SSH_RSA, Algorithm.RSA_SHA256);
+        PartitionedKeychain keychain = PartitionedKeychain.partition(Arrays.asList(hmacKey, rsaKey));
+
+        assertEquals("hmac partition should hold one keychain", 1, keychain.getPartition(Algorithm.HMAC_SHA1).size());
+        assertEquals("no ecdsa partition", 0, keychain.getPartition(Algorithm.ECDSA_SHA256).size());
+
+        assertSame("rsa key should be found in rsa partition", rsaKey, keychain.findKey(Algorithm.SSH_RSA, null, "rsa"));
+        assertNull("rsa key should not be found in hmac partition", keychain.findKey(Algorithm.HMAC_SHA256, null, "rsa"));
+        assertSame("unrouted lookup should search all partitions", hmacKey, keychain.findKey(null, "hmac"));
+
+        Keychain filtered = keychain.filterAlgorithms(Collections.singletonList(Algorithm.HMAC_SHA512));
+        assertSame("filtered keychain should start with hmac key", hmacKey, filtered.currentKey());
+        assertTrue("filtered keychain should only hold hmac key", filtered.discard().isEmpty());
+    }
+
+    @Test
+    public void testVerifyAndSign() {
+        Key hmacKey = familyKey("hmac", Algorithm.HMAC_SHA256);
+        Key rsaKey = familyKey("rsa", Algorithm.SSH_RSA);
+        PartitionedKeychain keychain = PartitionedKeychain.partition(Arrays.asList(rsaKey, hmacKey));
+
+        RequestContent requestContent = new RequestContent.Builder().addDateNow().build();
+        Challenge c = new Challenge(PartitionedKeychainTest.class.getName(), Constants.DEFAULT_HEADERS,
+                                    Arrays.asList(Algorithm.HMAC_SHA256));
+
+        Signer signer = new Signer(keychain);
+        signer.rotateKeys(c);
+        Authorization authz = signer.sign(requestContent);
+        assertNotNull("signer should sign with hmac key", authz);
+        assertEquals("signer should choose hmac key", "hmac", authz.getKeyId());
+
+        DefaultVerifier verifier = new DefaultVerifier(keychain);
+        assertEquals("verifier should route to hmac partition",
+                     VerifyResult.SUCCESS, verifier.verifyWithResult(c, requestContent, authz));
+
+        Authorization wrongFamily = new Authorization("rsa", authz.getSignature(), authz.getHeaders(),
+                                                      Algorithm.HMAC_SHA256);
+        assertEquals("rsa key should not be found for an hmac authorization",
+                     VerifyResult.KEY_NOT_FOUND, verifier.verifyWithResult(c, requestContent, wrongFamily));
+    }
+
+    @Test
+    public void testMemberGainsKeys() {
+        CopyOnWriteKeychain rsaKeys = new CopyOnWriteKeychain();
+        Key hmacKey = familyKey("hmac", Algorithm.HMAC_SHA256);
+        PartitionedKeychain keychain = new PartitionedKeychain(
+                Arrays.asList(rsaKeys, new CopyOnWriteKeychain(Collections.singletonList(hmacKey))));
+        assertEquals("empty member should not be in the rsa partition", 0, keychain.getPartition(Algorithm.SSH_RSA).size());
+
+        Key rsaKey = familyKey("rsa", Algorithm.SSH_RSA);
+        rsaKeys.add(rsaKey);
+
+        RequestContent requestContent = new RequestContent.Builder().addDateNow().build();
+        Challenge c = new Challenge(PartitionedKeychainTest.class.getName(), Constants.DEFAULT_HEADERS,
+                                    Arrays.asList(Algorithm.SSH_RSA));
+        Signer signer = new Signer(new DefaultKeychain(Collections.singletonList(rsaKey)));
+        signer.rotateKeys(c);
+        Authorization authz = signer.sign(requestContent);
+        assertNotNull("signer should sign with rsa key", authz);
+
+        DefaultVerifier verifier = new DefaultVerifier(keychain);
+        assertEquals("verifier should find the key added to the empty member",
+                     VerifyResult.SUCCESS, verifier.verifyWithResult(c, requestContent, authz));
+        assertSame("added key should be found in rsa partition", rsaKey, keychain.findKey(Algorithm.SSH_RSA, null, "rsa"));
+    }
+}
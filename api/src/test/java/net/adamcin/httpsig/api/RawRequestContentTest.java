@@ -0,0 +1,142 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.api;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RawRequestContentTest {
+
+    private static final String DATE = "Tue, 07 Jun 2014 20:51:35 GMT";
+
+    @Test
+    public void testBytesToSignMatchRequestContent() {
+        RequestContent expected = new RequestContent.Builder()
+                .setRequestTarget("POST", "/foo?param=value&pet=dog")
+                .addHeader("Host", "example.org")
+                .addHeader("Date", DATE)
+                .addHeader("Content-Type", " application/json ")
+                .addHeader("Digest", "SHA-256=X48E9qOokqqrvdts8nOJRJN3OWDUoyWxBf7kbu9DBPE=")
+                .build();
+
+        RawRequestContent raw = parse("POST /foo?param=value&pet=dog HTTP/1.1\r\n"
+                + "HOST: example.org\r\n"
+                + "Date: " + DATE + "\r\n"
+                + "content-type:  application/json \r\n"
+                + "Digest: SHA-256=X48E9qOokqqrvdts8nOJRJN3OWDUoyWxBf7kbu9DBPE=\r\n"
+                + "Authorization: Signature keyId=\"x\"\r\n", new RawRequestContent());
+
+        List<List<String>> headerLists = Arrays.asList(
+                expected.getHeaderNames(),
+                Constants.DEFAULT_HEADERS,
+                Arrays.asList(Constants.HEADER_REQUEST_TARGET, "host", "Content-Type", "authorization"),
+                Arrays.asList("digest", "missing", "date"));
+        for (List<String> headers : headerLists) {
+            assertEquals("signing string should match for " + headers,
+                         new String(expected.getBytesToSign(headers, Constants.CHARSET), Constants.CHARSET),
+                         new String(raw.getBytesToSign(headers), Constants.CHARSET));
+        }
+
+        assertTrue("request-target should be present", raw.hasHeader(Constants.HEADER_REQUEST_TARGET));
+        assertTrue("header lookup should ignore case", raw.hasHeader("content-TYPE"));
+        assertFalse("missing header should not be present", raw.hasHeader("missing"));
+        assertEquals("date should parse", expected.getDateGMT(), raw.getDateGMT());
+
+        raw.reset();
+        assertFalse("reset should clear the request target", raw.hasHeader(Constants.HEADER_REQUEST_TARGET));
+        assertFalse("reset should clear headers", raw.hasHeader("host"));
+    }
+
+    @Test
+    public void testVerify() {
+        String fingerprint = "fingerprint";
+        DefaultVerifier v = new DefaultVerifier(new MockKeychain(fingerprint), null, -1L);
+        RawRequestContent raw = new RawRequestContent();
+        List<String> headers = Arrays.asList(Constants.HEADER_REQUEST_TARGET, Constants.HEADER_DATE);
+        Challenge c = new Challenge(RawRequestContentTest.class.getName(), headers, Arrays.asList( Algorithm.SSH_RSA ));
+
+        RequestContent requestContent = new RequestContent.Builder()
+                .setRequestTarget("get", "/index.html").addHeader(Constants.HEADER_DATE, DATE).build();
+        Authorization authz = new Authorization(fingerprint,
+                MockKey.mockSignBase64(requestContent.getBytesToSign(headers, Constants.CHARSET)),
+                headers, Algorithm.SSH_RSA);
+        Authorization legacyAuthz = new Authorization(fingerprint,
+                MockKey.mockSignBase64(requestContent.getContent(headers, Constants.CHARSET)),
+                headers, Algorithm.SSH_RSA);
+
+        // reuse the same instance for several requests
+        for (int i = 0; i < 3; i++) {
+            parse("GET /index.html HTTP/1.1\r\nDate: " + DATE + "\r\n", raw.reset());
+            assertEquals("raw request should verify", VerifyResult.SUCCESS, v.verifyWithResult(c, raw, authz));
+            assertEquals("legacy signature should verify", VerifyResult.SUCCESS, v.verifyWithResult(c, raw, legacyAuthz));
+        }
+
+        parse("GET /other.html HTTP/1.1\r\nDate: " + DATE + "\r\n", raw.reset());
+        assertEquals("different path should fail", VerifyResult.FAILED_KEY_VERIFY, v.verifyWithResult(c, raw, authz));
+
+        parse("GET /index.html HTTP/1.1\r\nDate: not a date\r\n", raw.reset());
+        assertEquals("invalid date should be missing", VerifyResult.INCOMPLETE_REQUEST, v.verifyWithResult(c, raw, authz));
+    }
+
+    /**
+     * Minimal request head parser which adds byte ranges of one shared buffer
+     */
+    private static RawRequestContent parse(String head, RawRequestContent raw) {
+        byte[] buf = head.getBytes(Constants.CHARSET);
+        int lineStart = 0;
+        boolean requestLine = true;
+        for (int i = 0; i + 1 < buf.length; i++) {
+            if (buf[i] == '\r' && buf[i + 1] == '\n') {
+                if (requestLine) {
+                    int sp1 = indexOf(buf, (byte) ' ', lineStart, i);
+                    int sp2 = indexOf(buf, (byte) ' ', sp1 + 1, i);
+                    raw.setRequestTarget(buf, lineStart, sp1 - lineStart, sp1 + 1, sp2 - sp1 - 1);
+                    requestLine = false;
+                } else {
+                    int colon = indexOf(buf, (byte) ':', lineStart, i);
+                    raw.addHeader(buf, lineStart, colon - lineStart, colon + 1, i - colon - 1);
+                }
+                lineStart = i + 2;
+            }
+        }
+        return raw;
+    }
+
+    private static int indexOf(byte[] buf, byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -29,8 +29,13 @@ package net.adamcin.httpsig.api;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.*;
 
@@ -56,4 +61,72 @@ public class RequestContentTest {
             assertTrue("real dates should pass the check: " + date, RequestContent.tryParseDate(date) != null);
         }
     }
+
+    @Test
+    public void testAddDateNowWithClock() {
+        final long[] now = new long[] { 1403259100123L };
+        Clock clock = new Clock() {
+            public long currentTimeMillis() {
+                return now[0];
+            }
+        };
+
+        RequestContent content = new RequestContent.Builder().addDateNow(clock).build();
+        assertEquals("date should match addDate", new RequestContent.Builder().addDate(new Date(now[0])).build().getDate(),
+                     content.getDate());
+        assertEquals("date should parse back to the second", now[0] / 1000L * 1000L, content.getDateGMT().getTime());
+
+        now[0] += 1000L;
+        assertEquals("date should follow the clock", new RequestContent.Builder().addDate(new Date(now[0])).build().getDate(),
+                     new RequestContent.Builder().addDateNow(clock).build().getDate());
+        RequestContent.Builder builder = new RequestContent.Builder();
+        assertNull("builder should have no date yet", builder.getDate());
+        assertEquals("builder should keep the first date added", new RequestContent.Builder().addDate(new Date(now[0])).build().getDate(),
+                     builder.addDateNow(clock).addDateNow().getDate());
+        assertEquals("existing date should be kept", content.getDate(),
+                     new RequestContent.Builder().addHeader(Constants.HEADER_DATE, content.getDate()).addDateNow(clock).build().getDate());
+    }
+
+    @Test
+    public void testFromSignableRequest() {
+        final Map<String, List<String>> headers = new HashMap<String, List<String>>();
+        headers.put("date", Arrays.asList("Tue, 07 Jun 2014 20:51:35 GMT"));
+        headers.put("x-multi", Arrays.asList("one", "two"));
+        headers.put("x-unsigned", Arrays.asList("ignored"));
+        final List<String> lookups = new ArrayList<String>();
+
+        SignableRequest request = new SignableRequest() {
+            public String getMethod() {
+                return "GET";
+            }
+
+            public String getPath() {
+                return "/index.html?q=1";
+            }
+
+            public String getRequestLine() {
+                return "GET /index.html?q=1 HTTP/1.1";
+            }
+
+            public List<String> getHeaderValues(String name) {
+                lookups.add(name);
+                List<String> values = headers.get(name);
+                return values != null ? values : Collections.<String>emptyList();
+            }
+        };
+
+        List<String> signed = Arrays.asList("(request-target)", "Date", "x-multi");
+        RequestContent lazy = RequestContent.fromSignableRequest(request, signed);
+        assertEquals("only signed headers should be read", Arrays.asList("date", "x-multi"), lookups);
+
+        RequestContent eager = new RequestContent.Builder()
+                .setRequestTarget("GET", "/index.html?q=1")
+                .addHeader("date", "Tue, 07 Jun 2014 20:51:35 GMT")
+                .addHeader("x-multi", "one")
+                .addHeader("x-multi", "two")
+                .addHeader("x-unsigned", "ignored")
+                .build();
+        assertArrayEquals("lazy content should sign the same bytes", eager.getBytesToSign(signed, Constants.CHARSET),
+                          lazy.getBytesToSign(signed, Constants.CHARSET));
+    }
 }
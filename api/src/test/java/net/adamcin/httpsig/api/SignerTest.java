@@ -29,10 +29,89 @@ package net.adamcin.httpsig.api;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
 public class SignerTest {
 
     @Test
     public void testSign() {
 
     }
+
+    @Test
+    public void testRotateKeysWithKeyHint() {
+        DefaultKeychain keychain = new DefaultKeychain();
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < 15; i++) {
+            keychain.add(new MockKey("key" + i));
+            ids.add("key" + i);
+        }
+        List<String> headers = Arrays.asList(Constants.HEADER_REQUEST_TARGET, Constants.HEADER_DATE);
+
+        KeyHint allKeys = KeyHint.forIds(ids);
+        for (String id : ids) {
+            assertTrue("hint should never report a false negative", allKeys.mightContain(id));
+        }
+
+        Challenge hinted = new Challenge("realm", headers, Arrays.asList(Algorithm.SSH_RSA),
+                                         KeyHint.forIds(Arrays.asList("key12")));
+        Challenge parsed = Challenge.parse(hinted.getHeaderValue());
+        assertEquals("hint should survive the header round trip", hinted.getKeyHint(), parsed.getKeyHint());
+        assertEquals("hint should not affect equality", new Challenge("realm", headers, Arrays.asList(Algorithm.SSH_RSA)),
+                     parsed);
+
+        Signer signer = new Signer(keychain);
+        assertTrue("signer should rotate", signer.rotateKeys(parsed));
+        assertEquals("signer should jump to the hinted key", "key12", signer.getCandidateKeys().currentKey().getId());
+
+        Signer unaware = new Signer(keychain);
+        assertTrue("signer should rotate", unaware.rotateKeys(new Challenge("realm", headers, Arrays.asList(Algorithm.SSH_RSA))));
+        assertEquals("no hint should start at the first key", "key0", unaware.getCandidateKeys().currentKey().getId());
+
+        Signer unmatched = new Signer(keychain);
+        assertTrue("signer should rotate", unmatched.rotateKeys(new Challenge("realm", headers, Arrays.asList(Algorithm.SSH_RSA),
+                                                                             KeyHint.forIds(Arrays.asList("other")))));
+        assertEquals("unmatched hint should be ignored", "key0", unmatched.getCandidateKeys().currentKey().getId());
+
+        assertNull("malformed hint should be ignored", KeyHint.parse("not a hint"));
+    }
+
+    @Test
+    public void testRotateForReplay() {
+        Key first = new MockKey("first");
+        DefaultKeychain keychain = new DefaultKeychain();
+        // the same key listed twice, as a keychain may list a key once per algorithm
+        keychain.add(first);
+        keychain.add(first);
+        keychain.add(new MockKey("second"));
+        List<String> headers = Arrays.asList(Constants.HEADER_REQUEST_TARGET, Constants.HEADER_DATE);
+        Challenge challenge = new Challenge("realm", headers, Arrays.asList(Algorithm.SSH_RSA));
+        RequestContent content = new RequestContent.Builder().addDateNow().build();
+
+        Signer signer = new Signer(keychain);
+        Authorization signedFirst = signer.sign(content);
+        assertTrue("first 401 should replay", signer.rotateForReplay(challenge, signedFirst, null, 0));
+
+        Authorization replayedFirst = signer.sign(content);
+        assertEquals("duplicate key is next in the keychain", "first", replayedFirst.getKeyId());
+        assertTrue("failed key should be skipped on replay",
+                   signer.rotateForReplay(challenge, replayedFirst, challenge, 1));
+        Authorization signedSecond = signer.sign(content);
+        assertEquals("replay should use the other key", "second", signedSecond.getKeyId());
+
+        assertFalse("no keys left to replay with", signer.rotateForReplay(challenge, signedSecond, challenge, 2));
+
+        assertFalse("unsigned replay should not replay again", signer.rotateForReplay(challenge, null, challenge, 1));
+        assertFalse("replays should be bounded by the keychain size",
+                    new Signer(keychain).rotateForReplay(challenge, null, null, 3));
+
+        OriginCache originCache = new OriginCache();
+        Signer cached = new Signer(keychain);
+        assertTrue("origin cache should replay", originCache.rotateForReplay(cached, "https://example.com", challenge,
+                                                                             cached.sign(content), null, 0));
+    }
 }
@@ -28,19 +28,19 @@
 package net.adamcin.httpsig.hmac;
 
 import net.adamcin.httpsig.api.Algorithm;
-import net.adamcin.httpsig.api.Key;
+import net.adamcin.httpsig.api.SliceVerifiableKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
-public class HmacKey implements Key {
+public class HmacKey implements SliceVerifiableKey {
 
     private final String keyId;
     private final String secret;
@@ -99,20 +99,54 @@ public class HmacKey implements Key {
      * @return true if signature is valid
      */
     public boolean verify(Algorithm algorithm, byte[] contentBytes, byte[] signatureBytes) {
-        if(getAlgorithms().contains(algorithm)){
-            byte[] generatedSig = sign(algorithm, contentBytes);
-            return Arrays.equals(generatedSig, signatureBytes);
+        return verify(algorithm, contentBytes, 0, contentBytes.length, signatureBytes);
+    }
+
+    /**
+     * Verifies the {@code signatureBytes} against a range of {@code content}
+     * @param algorithm the selected Signature {@link net.adamcin.httpsig.api.Algorithm}
+     * @param content array containing the signed content
+     * @param offset offset of the signed content
+     * @param length length of the signed content
+     * @param signatureBytes the result of {@link net.adamcin.httpsig.api.Authorization#getSignatureBytes()}
+     * @return true if signature is valid
+     */
+    public boolean verify(Algorithm algorithm, byte[] content, int offset, int length, byte[] signatureBytes) {
+        if (getAlgorithms().contains(algorithm)) {
+            byte[] generatedSig = mac("verify", algorithm, secret.getBytes(), content, offset, length);
+            return generatedSig != null && MessageDigest.isEqual(generatedSig, signatureBytes);
         }
 
         return false;
     }
 
+    /**
+     * Computes the MAC of a range of {@code content}
+     * @param method name of the calling method, for logging
+     * @param secret the secret bytes to key the MAC with
+     * @return the MAC, or null if it could not be computed
+     */
+    static byte[] mac(String method, Algorithm algorithm, byte[] secret, byte[] content, int offset, int length) {
+        String macAlgorithm = mapAlgorithm(algorithm);
+        try {
+            Mac mac = Mac.getInstance(macAlgorithm);
+            mac.init(new SecretKeySpec(secret, macAlgorithm));
+            mac.update(content, offset, length);
+            return mac.doFinal();
+        } catch (NoSuchAlgorithmException e) {
+            LOGGER.error("[" + method + "] failed to " + method + " content.", e);
+        } catch (InvalidKeyException e) {
+            LOGGER.error("[" + method + "] failed to " + method + " content.", e);
+        }
+        return null;
+    }
+
     /**
      * Maps http-signatures spec algorithm names to Java
      * @param algorithm http-signature spec algorithm name
      * @return Java algorithm name
      */
-    private String mapAlgorithm(Algorithm algorithm) {
+    private static String mapAlgorithm(Algorithm algorithm) {
         if("hmac-sha512".equalsIgnoreCase(algorithm.getName())){
             return "HmacSHA512";
         }else if("hmac-sha256".equalsIgnoreCase(algorithm.getName())){
@@ -137,19 +171,7 @@ public class HmacKey implements Key {
      * @return byte array containing the challengeHash signature or null if a signature could not be generated.
      */
     public byte[] sign(Algorithm algorithm, byte[] contentBytes) {
-        try{
-
-            SecretKeySpec secretKeySpec = new SecretKeySpec(secret.getBytes(), mapAlgorithm(algorithm));
-            Mac mac = Mac.getInstance(mapAlgorithm(algorithm));
-            mac.init(secretKeySpec);
-            return mac.doFinal(contentBytes);
-
-        } catch (NoSuchAlgorithmException e) {
-            LOGGER.error("[sign] failed to sign content.", e);
-        } catch (InvalidKeyException e) {
-            LOGGER.error("[sign] failed to sign content.", e);
-        }
-
-        return EMPTY_BYTES;
+        byte[] signature = mac("sign", algorithm, secret.getBytes(), contentBytes, 0, contentBytes.length);
+        return signature != null ? signature : EMPTY_BYTES;
     }
-}
\ No newline at end of file
+}
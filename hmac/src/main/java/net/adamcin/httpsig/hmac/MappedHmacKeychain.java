@@ -0,0 +1,429 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.hmac;
+
+import net.adamcin.httpsig.api.Algorithm;
+import net.adamcin.httpsig.api.Constants;
+import net.adamcin.httpsig.api.DefaultKeychain;
+import net.adamcin.httpsig.api.IndexedKeychain;
+import net.adamcin.httpsig.api.Key;
+import net.adamcin.httpsig.api.KeyId;
+import net.adamcin.httpsig.api.Keychain;
+import net.adamcin.httpsig.api.SliceVerifiableKey;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * HMAC {@link Keychain} backed by a memory-mapped file of fixed-size secret slots, for credential sets too large to
+ * hold as one {@link HmacKey} per secret. The heap holds only an open-addressing index from keyId hash to slot
+ * number; {@link Key} instances are created by {@link #findKey(KeyId, String)} and read their secret from the mapping
+ * each time they sign or verify.
+ *
+ * The file starts with a 16 byte header: the magic number {@code HSMC}, the slot count, the maximum keyId length and
+ * the maximum secret length (both unsigned shorts), and four reserved bytes. Each slot then holds the keyId length
+ * (unsigned short), the UTF-8 keyId padded to the maximum length, the secret length (unsigned short) and the secret
+ * padded to the maximum length. Use {@link #write(File, Map)} to create one.
+ *
+ * {@link #remap()} maps the file again. Replace the file by renaming a new one over it rather than rewriting it in
+ * place, since keys obtained before the remap keep reading the old mapping.
+ * @since 1.3.2
+ */
+public final class MappedHmacKeychain implements IndexedKeychain {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAGIC = 0x48534d43;
+    private static final int HEADER_LENGTH = 16;
+    private static final int MAX_FIELD_LENGTH = 0xffff;
+    private static final Set<Algorithm> ALGORITHMS = Collections.unmodifiableSet(
+            new LinkedHashSet<Algorithm>(Arrays.asList(Algorithm.HMAC_SHA512, Algorithm.HMAC_SHA256)));
+
+    private final File file;
+    private final int start;
+    private volatile Mapping mapping;
+
+    /**
+     * Maps a secret slot file
+     * @param file the file to map
+     * @throws IOException if the file cannot be read or is not a secret slot file
+     */
+    public MappedHmacKeychain(File file) throws IOException {
+        this.file = file;
+        this.start = 0;
+        this.mapping = Mapping.map(file);
+    }
+
+    private MappedHmacKeychain(File file, Mapping mapping, int start) {
+        this.file = file;
+        this.mapping = mapping;
+        this.start = start;
+    }
+
+    /**
+     * Maps the file again and rebuilds the index. Lookups see either the old or the new mapping, never a mix.
+     * @throws IOException if the file cannot be read, in which case the current mapping is kept
+     */
+    public void remap() throws IOException {
+        this.mapping = Mapping.map(file);
+    }
+
+    /**
+     * @return the number of slots in the current mapping
+     */
+    public int size() {
+        return mapping.slotCount;
+    }
+
+    public Key findKey(KeyId keyId, String id) {
+        if (id == null) {
+            return null;
+        }
+        if (keyId != null && keyId != Constants.DEFAULT_KEY_IDENTIFIER && !(keyId instanceof HmacKeyId)) {
+            return toMap(keyId).get(id);
+        }
+        Mapping current = mapping;
+        int slot = current.find(id.getBytes(UTF_8));
+        return slot >= start ? new SlotKey(current, slot, id) : null;
+    }
+
+    public Set<Algorithm> getAlgorithms() {
+        return isEmpty() ? Collections.<Algorithm>emptySet() : ALGORITHMS;
+    }
+
+    public Keychain filterAlgorithms(Collection<Algorithm> algorithms) {
+        for (Algorithm algorithm : algorithms) {
+            if (ALGORITHMS.contains(algorithm)) {
+                return this;
+            }
+        }
+        return new DefaultKeychain();
+    }
+
+    public Keychain discard() {
+        Mapping current = mapping;
+        if (start >= current.slotCount) {
+            throw new NoSuchElementException("keychain is empty");
+        }
+        return new MappedHmacKeychain(file, current, start + 1);
+    }
+
+    public Key currentKey() {
+        Mapping current = mapping;
+        if (start >= current.slotCount) {
+            throw new NoSuchElementException("keychain is empty");
+        }
+        return current.keyAt(start);
+    }
+
+    /**
+     * {@inheritDoc}
+     * This reads every slot, so prefer {@link #findKey(KeyId, String)}.
+     */
+    public Map<String, Key> toMap(KeyId keyId) {
+        KeyId _keyId = keyId != null ? keyId : Constants.DEFAULT_KEY_IDENTIFIER;
+        Map<String, Key> keys = new HashMap<String, Key>();
+        for (Key key : this) {
+            String id = _keyId.getId(key);
+            if (id != null && !keys.containsKey(id)) {
+                keys.put(id, key);
+            }
+        }
+        return keys;
+    }
+
+    public boolean isEmpty() {
+        return start >= mapping.slotCount;
+    }
+
+    public Iterator<Key> iterator() {
+        final Mapping current = mapping;
+        return new Iterator<Key>() {
+            int slot = start;
+
+            public boolean hasNext() {
+                return slot < current.slotCount;
+            }
+
+            public Key next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.keyAt(slot++);
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException("remove");
+            }
+        };
+    }
+
+    /**
+     * Writes a secret slot file, sizing the slots for the longest keyId and secret
+     * @param file the file to write
+     * @param secrets secrets by keyId. Both are encoded as UTF-8, as by {@link HmacKey} on UTF-8 platforms.
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File file, Map<String, String> secrets) throws IOException {
+        int maxIdLength = 0;
+        int maxSecretLength = 0;
+        for (Map.Entry<String, String> entry : secrets.entrySet()) {
+            maxIdLength = Math.max(maxIdLength, entry.getKey().getBytes(UTF_8).length);
+            maxSecretLength = Math.max(maxSecretLength, entry.getValue().getBytes(UTF_8).length);
+        }
+        if (maxIdLength > MAX_FIELD_LENGTH || maxSecretLength > MAX_FIELD_LENGTH) {
+            throw new IllegalArgumentException("keyIds and secrets must not exceed " + MAX_FIELD_LENGTH + " bytes");
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.putInt(MAGIC).putInt(secrets.size())
+                .putShort((short) maxIdLength).putShort((short) maxSecretLength).putInt(0);
+        header.flip();
+        ByteBuffer slot = ByteBuffer.allocate(4 + maxIdLength + maxSecretLength);
+
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            FileChannel channel = out.getChannel();
+            channel.write(header);
+            for (Map.Entry<String, String> entry : secrets.entrySet()) {
+                byte[] id = entry.getKey().getBytes(UTF_8);
+                byte[] secret = entry.getValue().getBytes(UTF_8);
+                Arrays.fill(slot.array(), (byte) 0);
+                slot.clear();
+                slot.putShort((short) id.length).put(id);
+                slot.position(2 + maxIdLength);
+                slot.putShort((short) secret.length).put(secret);
+                slot.clear();
+                while (slot.hasRemaining()) {
+                    channel.write(slot);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * An immutable mapping of the file and its index
+     */
+    static final class Mapping {
+        private final ByteBuffer buffer;
+        private final int slotCount;
+        private final int maxIdLength;
+        private final int slotLength;
+        private final int[] hashes;
+        private final int[] slots; // slot number + 1, 0 when empty
+
+        private Mapping(ByteBuffer buffer, int slotCount, int maxIdLength, int maxSecretLength) {
+            this.buffer = buffer;
+            this.slotCount = slotCount;
+            this.maxIdLength = maxIdLength;
+            this.slotLength = 4 + maxIdLength + maxSecretLength;
+
+            int capacity = Integer.highestOneBit(Math.max(2, slotCount) * 2 - 1) << 1;
+            this.hashes = new int[capacity];
+            this.slots = new int[capacity];
+            for (int slot = 0; slot < slotCount; slot++) {
+                int offset = idOffset(slot);
+                int length = buffer.getShort(offset - 2) & 0xffff;
+                int hash = hash(buffer, offset, length);
+                int mask = capacity - 1;
+                int index = hash & mask;
+                boolean duplicate = false;
+                while (slots[index] != 0) {
+                    if (hashes[index] == hash && idEquals(slots[index] - 1, buffer, offset, length)) {
+                        duplicate = true;
+                        break;
+                    }
+                    index = (index + 1) & mask;
+                }
+                if (!duplicate) {
+                    hashes[index] = hash;
+                    slots[index] = slot + 1;
+                }
+            }
+        }
+
+        static Mapping map(File file) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                long size = channel.size();
+                if (size < HEADER_LENGTH || size > Integer.MAX_VALUE) {
+                    throw new IOException("Unsupported secret slot file size " + size + ": " + file);
+                }
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                if (buffer.getInt(0) != MAGIC) {
+                    throw new IOException("Not a secret slot file: " + file);
+                }
+                int slotCount = buffer.getInt(4);
+                int maxIdLength = buffer.getShort(8) & 0xffff;
+                int maxSecretLength = buffer.getShort(10) & 0xffff;
+                long expected = HEADER_LENGTH + (long) slotCount * (4 + maxIdLength + maxSecretLength);
+                if (slotCount < 0 || size < expected) {
+                    throw new IOException("Truncated secret slot file, expected " + expected + " bytes: " + file);
+                }
+                return new Mapping(buffer, slotCount, maxIdLength, maxSecretLength);
+            } finally {
+                // the mapping remains valid after the channel is closed
+                raf.close();
+            }
+        }
+
+        int find(byte[] id) {
+            ByteBuffer other = ByteBuffer.wrap(id);
+            int hash = hash(other, 0, id.length);
+            int mask = slots.length - 1;
+            for (int index = hash & mask; slots[index] != 0; index = (index + 1) & mask) {
+                if (hashes[index] == hash && idEquals(slots[index] - 1, other, 0, id.length)) {
+                    return slots[index] - 1;
+                }
+            }
+            return -1;
+        }
+
+        Key keyAt(int slot) {
+            int offset = idOffset(slot);
+            byte[] id = new byte[buffer.getShort(offset - 2) & 0xffff];
+            for (int i = 0; i < id.length; i++) {
+                id[i] = buffer.get(offset + i);
+            }
+            return new SlotKey(this, slot, new String(id, UTF_8));
+        }
+
+        byte[] secret(int slot) {
+            int offset = idOffset(slot) + maxIdLength + 2;
+            byte[] secret = new byte[buffer.getShort(offset - 2) & 0xffff];
+            for (int i = 0; i < secret.length; i++) {
+                secret[i] = buffer.get(offset + i);
+            }
+            return secret;
+        }
+
+        private int idOffset(int slot) {
+            return HEADER_LENGTH + slot * slotLength + 2;
+        }
+
+        private boolean idEquals(int slot, ByteBuffer other, int offset, int length) {
+            int idOffset = idOffset(slot);
+            if ((buffer.getShort(idOffset - 2) & 0xffff) != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(idOffset + i) != other.get(offset + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int hash(ByteBuffer bytes, int offset, int length) {
+            // FNV-1a, then spread so that linear probing sees the high bits
+            int hash = 0x811c9dc5;
+            for (int i = 0; i < length; i++) {
+                hash = (hash ^ (bytes.get(offset + i) & 0xff)) * 0x01000193;
+            }
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    /**
+     * A {@link Key} which reads its secret from a slot when it signs
+     */
+    static final class SlotKey implements SliceVerifiableKey {
+        private final Mapping mapping;
+        private final int slot;
+        private final String id;
+
+        SlotKey(Mapping mapping, int slot, String id) {
+            this.mapping = mapping;
+            this.slot = slot;
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Set<Algorithm> getAlgorithms() {
+            return ALGORITHMS;
+        }
+
+        public boolean canVerify() {
+            return true;
+        }
+
+        public boolean verify(Algorithm algorithm, byte[] contentBytes, byte[] signatureBytes) {
+            return verify(algorithm, contentBytes, 0, contentBytes.length, signatureBytes);
+        }
+
+        public boolean verify(Algorithm algorithm, byte[] content, int offset, int length, byte[] signatureBytes) {
+            if (ALGORITHMS.contains(algorithm)) {
+                byte[] generatedSig = mac("verify", algorithm, content, offset, length);
+                return generatedSig != null && MessageDigest.isEqual(generatedSig, signatureBytes);
+            }
+            return false;
+        }
+
+        public boolean canSign() {
+            return true;
+        }
+
+        public byte[] sign(Algorithm algorithm, byte[] contentBytes) {
+            byte[] signature = mac("sign", algorithm, contentBytes, 0, contentBytes.length);
+            return signature != null ? signature : new byte[0];
+        }
+
+        private byte[] mac(String method, Algorithm algorithm, byte[] content, int offset, int length) {
+            byte[] secret = mapping.secret(slot);
+            try {
+                return HmacKey.mac(method, algorithm, secret, content, offset, length);
+            } finally {
+                Arrays.fill(secret, (byte) 0);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "SlotKey{" + id + "}";
+        }
+    }
+}
@@ -95,6 +95,18 @@ public class HmacKeyTest {
         assertThat(key.verify(Algorithm.HMAC_SHA512, "hello".getBytes(UTF_8), sig), is(false));
     }
 
+    @Test
+    public void shouldVerifySliceLikeWholeContent() throws Exception {
+        HmacKey key = new HmacKey("key1", "abcd");
+
+        byte[] sig = key.sign(Algorithm.HMAC_SHA512, "hello".getBytes(UTF_8));
+        byte[] content = "[hello]".getBytes(UTF_8);
+
+        assertThat(key.verify(Algorithm.HMAC_SHA512, content, 1, 5, sig), is(true));
+        assertThat(key.verify(Algorithm.HMAC_SHA512, content, 0, 5, sig), is(false));
+        assertThat(key.verify(Algorithm.HMAC_SHA512, content, 1, 5, new byte[0]), is(false));
+    }
+
     @Test
     public void signingShouldThrowIfUnsupportAlgorithm() throws Exception {
         expectedException.expect(IllegalArgumentException.class);
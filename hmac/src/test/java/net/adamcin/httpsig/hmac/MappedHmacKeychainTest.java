@@ -0,0 +1,131 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.hmac;
+
+import net.adamcin.httpsig.api.Algorithm;
+import net.adamcin.httpsig.api.Key;
+import net.adamcin.httpsig.api.Keychain;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class MappedHmacKeychainTest {
+
+    static final String UTF_8 = "UTF-8";
+
+    @Test
+    public void shouldSignLikeHmacKey() throws Exception {
+        Map<String, String> secrets = new LinkedHashMap<String, String>();
+        for (int i = 0; i < 1000; i++) {
+            secrets.put("tenant-" + i, "secret-" + (i * 31));
+        }
+        MappedHmacKeychain keychain = new MappedHmacKeychain(writeSecrets("shouldSignLikeHmacKey", secrets));
+        assertThat(keychain.size(), is(1000));
+
+        byte[] content = "hello".getBytes(UTF_8);
+        for (Map.Entry<String, String> entry : secrets.entrySet()) {
+            Key key = keychain.findKey(null, entry.getKey());
+            assertThat(key, notNullValue());
+            assertThat(key.getId(), is(entry.getKey()));
+            HmacKey expected = new HmacKey(entry.getKey(), entry.getValue());
+            assertThat(key.sign(Algorithm.HMAC_SHA256, content), is(expected.sign(Algorithm.HMAC_SHA256, content)));
+            assertThat(key.verify(Algorithm.HMAC_SHA512, content, expected.sign(Algorithm.HMAC_SHA512, content)),
+                       is(true));
+        }
+        assertThat(keychain.findKey(null, "tenant-1000"), nullValue());
+        assertThat(keychain.findKey(new HmacKeyId(), "tenant-5"), notNullValue());
+        assertThat(keychain.currentKey().getId(), is("tenant-0"));
+        assertThat(keychain.discard().currentKey().getId(), is("tenant-1"));
+        assertThat(keychain.toMap(null).size(), is(1000));
+    }
+
+    @Test
+    public void shouldSeeReplacedFileAfterRemap() throws Exception {
+        Map<String, String> secrets = new LinkedHashMap<String, String>();
+        secrets.put("key1", "abcd");
+        File file = writeSecrets("shouldSeeReplacedFileAfterRemap", secrets);
+        MappedHmacKeychain keychain = new MappedHmacKeychain(file);
+        Key before = keychain.findKey(null, "key1");
+
+        secrets.put("key1", "efgh");
+        secrets.put("key2", "ijkl");
+        File replacement = new File(file.getPath() + ".new");
+        MappedHmacKeychain.write(replacement, secrets);
+        FileUtils.forceDelete(file);
+        FileUtils.moveFile(replacement, file);
+
+        assertThat("lookups should use the old mapping until remapped",
+                   keychain.findKey(null, "key2"), nullValue());
+        keychain.remap();
+
+        byte[] content = "hello".getBytes(UTF_8);
+        Key after = keychain.findKey(null, "key1");
+        assertThat(after.sign(Algorithm.HMAC_SHA256, content),
+                   is(new HmacKey("key1", "efgh").sign(Algorithm.HMAC_SHA256, content)));
+        assertThat("keys from the old mapping should keep their secret",
+                   before.sign(Algorithm.HMAC_SHA256, content),
+                   is(new HmacKey("key1", "abcd").sign(Algorithm.HMAC_SHA256, content)));
+        assertThat(keychain.findKey(null, "key2"), notNullValue());
+    }
+
+    @Test
+    public void shouldThrowWhenEmpty() throws Exception {
+        Map<String, String> secrets = new LinkedHashMap<String, String>();
+        secrets.put("key1", "abcd");
+        Keychain keychain = new MappedHmacKeychain(writeSecrets("shouldThrowWhenEmpty", secrets)).discard();
+        assertThat(keychain.isEmpty(), is(true));
+        try {
+            keychain.currentKey();
+            fail("currentKey should throw when empty");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+        try {
+            keychain.discard();
+            fail("discard should throw when empty");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+    }
+
+    private static File writeSecrets(String name, Map<String, String> secrets) throws Exception {
+        File dir = new File("target/" + MappedHmacKeychainTest.class.getSimpleName());
+        FileUtils.forceMkdir(dir);
+        File file = new File(dir, name + ".slots");
+        MappedHmacKeychain.write(file, secrets);
+        return file;
+    }
+}
@@ -30,11 +30,13 @@ package net.adamcin.httpsig.http.apache3;
 import net.adamcin.httpsig.api.Authorization;
 import net.adamcin.httpsig.api.Challenge;
 import net.adamcin.httpsig.api.Constants;
-import net.adamcin.httpsig.api.RequestContent;
+import net.adamcin.httpsig.api.KeyHint;
+import net.adamcin.httpsig.api.OriginCache;
 import net.adamcin.httpsig.api.Signer;
 import org.apache.commons.httpclient.Credentials;
-import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.URI;
+import org.apache.commons.httpclient.URIException;
 import org.apache.commons.httpclient.auth.AuthenticationException;
 import org.apache.commons.httpclient.auth.MalformedChallengeException;
 import org.apache.commons.httpclient.auth.RFC2617Scheme;
@@ -72,35 +74,31 @@ public final class Http3SignatureAuthScheme extends RFC2617Scheme {
             String headers = this.getParameter(Constants.HEADERS);
             String algorithms = this.getParameter(Constants.ALGORITHMS);
 
-            Challenge challenge = new Challenge(this.getRealm(), Constants.parseTokens(headers), Challenge.parseAlgorithms(algorithms));
+            Challenge challenge = new Challenge(this.getRealm(), Constants.parseTokens(headers), Challenge.parseAlgorithms(algorithms),
+                                                KeyHint.parse(this.getParameter(Constants.KEY_HINT)));
 
             Signer signer = creds.getSigner();
             if (signer != null) {
+                OriginCache originCache = creds.getOriginCache();
+                String origin = originCache != null ? getOrigin(method) : null;
 
                 if (this.rotate) {
                     this.rotate = false;
-                    if (!signer.rotateKeys(challenge, this.lastAuthz)) {
+                    boolean rotated = origin != null
+                            ? originCache.rotateKeys(signer, origin, challenge, this.lastAuthz)
+                            : signer.rotateKeys(challenge, this.lastAuthz);
+                    if (!rotated) {
                         signer.rotateKeys(challenge);
                         return null;
                     }
                 }
 
-                RequestContent.Builder sigBuilder = new RequestContent.Builder();
-
-                sigBuilder.setRequestTarget(method.getName(), method.getPath() + (method.getQueryString() != null ? "?" + method.getQueryString() : ""));
-
-                for (Header header : method.getRequestHeaders()) {
-                    sigBuilder.addHeader(header.getName(), header.getValue());
-                }
-
-                if (sigBuilder.build().getDate() == null) {
-                    sigBuilder.addDateNow();
-                    method.addRequestHeader(Constants.HEADER_DATE, sigBuilder.build().getDate());
-                }
-
-                Authorization authorization = creds.getSigner().sign(sigBuilder.build());
+                Authorization authorization = signer.sign(Http3Util.prepareRequestContent(method));
                 this.lastAuthz = authorization;
                 if (authorization != null) {
+                    if (origin != null) {
+                        originCache.signed(origin, authorization);
+                    }
                     return authorization.getHeaderValue();
                 }
             }
@@ -108,4 +106,13 @@ public final class Http3SignatureAuthScheme extends RFC2617Scheme {
 
         return null;
     }
+
+    private static String getOrigin(HttpMethod method) {
+        try {
+            URI uri = method.getURI();
+            return OriginCache.getOrigin(uri.getScheme(), uri.getHost(), uri.getPort());
+        } catch (URIException e) {
+            return null;
+        }
+    }
 }
@@ -30,8 +30,12 @@ package net.adamcin.httpsig.http.apache3;
 import net.adamcin.httpsig.api.Constants;
 import net.adamcin.httpsig.api.KeyId;
 import net.adamcin.httpsig.api.Keychain;
+import net.adamcin.httpsig.api.OriginCache;
+import net.adamcin.httpsig.api.RequestContent;
 import net.adamcin.httpsig.api.Signer;
+import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.auth.AuthPolicy;
 import org.apache.commons.httpclient.auth.CredentialsProvider;
 import org.apache.commons.httpclient.params.DefaultHttpParams;
@@ -43,6 +47,19 @@ import java.util.List;
 public final class Http3Util {
 
     public static void enableAuth(HttpClient client, Keychain keychain, KeyId keyId) {
+        enableAuth(client, keychain, keyId, null);
+    }
+
+    /**
+     * Enables signature authentication, sharing the last {@link net.adamcin.httpsig.api.Challenge} and chosen key for
+     * each origin through an {@link OriginCache}
+     * @param client the {@link HttpClient}
+     * @param keychain the {@link Keychain}
+     * @param keyId the {@link KeyId}
+     * @param originCache the {@link OriginCache}, or null
+     * @since 1.3.2
+     */
+    public static void enableAuth(HttpClient client, Keychain keychain, KeyId keyId, OriginCache originCache) {
         Signer signer = new Signer(keychain, keyId);
         CredentialsProvider credProvider =
             (CredentialsProvider) client.getParams()
@@ -51,9 +68,10 @@ public final class Http3Util {
         CredentialsProvider newProvider;
         if (credProvider instanceof SignerCredentialsProvider) {
             newProvider = new SignerCredentialsProvider(signer,
-                                                        ((SignerCredentialsProvider) credProvider).getDelegatee());
+                                                        ((SignerCredentialsProvider) credProvider).getDelegatee(),
+                                                        originCache);
         } else {
-            newProvider = new SignerCredentialsProvider(signer, credProvider);
+            newProvider = new SignerCredentialsProvider(signer, credProvider, originCache);
         }
 
         client.getParams().setParameter(CredentialsProvider.PROVIDER, newProvider);
@@ -68,6 +86,27 @@ public final class Http3Util {
         client.getParams().setParameter(AuthPolicy.AUTH_SCHEME_PRIORITY, schemes);
     }
 
+    /**
+     * Builds the {@link RequestContent} from all headers of the method in a single pass, adding a date header to the
+     * method if it has none
+     */
+    static RequestContent prepareRequestContent(HttpMethod method) {
+        RequestContent.Builder sigBuilder = new RequestContent.Builder();
+
+        String query = method.getQueryString();
+        sigBuilder.setRequestTarget(method.getName(), query != null ? method.getPath() + "?" + query : method.getPath());
+
+        for (Header header : method.getRequestHeaders()) {
+            sigBuilder.addHeader(header.getName(), header.getValue());
+        }
+
+        if (sigBuilder.getDate() == null) {
+            sigBuilder.addDateNow();
+            method.addRequestHeader(Constants.HEADER_DATE, sigBuilder.getDate());
+        }
+        return sigBuilder.build();
+    }
+
     private Http3Util() {
     }
 }
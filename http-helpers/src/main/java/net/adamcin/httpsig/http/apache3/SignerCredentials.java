@@ -27,18 +27,38 @@
 
 package net.adamcin.httpsig.http.apache3;
 
+import net.adamcin.httpsig.api.OriginCache;
 import net.adamcin.httpsig.api.Signer;
 import org.apache.commons.httpclient.Credentials;
 
 public final class SignerCredentials implements Credentials {
 
     private Signer signer;
+    private OriginCache originCache;
 
     public SignerCredentials(Signer signer) {
+        this(signer, null);
+    }
+
+    /**
+     * @param signer the {@link Signer}
+     * @param originCache the {@link OriginCache} shared with other clients, or null
+     * @since 1.3.2
+     */
+    public SignerCredentials(Signer signer, OriginCache originCache) {
         this.signer = signer;
+        this.originCache = originCache;
     }
 
     public Signer getSigner() {
         return signer;
     }
+
+    /**
+     * @return the {@link OriginCache}, or null
+     * @since 1.3.2
+     */
+    public OriginCache getOriginCache() {
+        return originCache;
+    }
 }
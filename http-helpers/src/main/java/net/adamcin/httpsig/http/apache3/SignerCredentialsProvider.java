@@ -28,6 +28,7 @@
 package net.adamcin.httpsig.http.apache3;
 
 import net.adamcin.httpsig.api.Constants;
+import net.adamcin.httpsig.api.OriginCache;
 import net.adamcin.httpsig.api.Signer;
 import org.apache.commons.httpclient.Credentials;
 import org.apache.commons.httpclient.auth.AuthScheme;
@@ -38,10 +39,22 @@ public final class SignerCredentialsProvider implements CredentialsProvider {
 
     private final Signer signer;
     private final CredentialsProvider delegatee;
+    private final OriginCache originCache;
 
     public SignerCredentialsProvider(Signer signer, CredentialsProvider delegatee) {
+        this(signer, delegatee, null);
+    }
+
+    /**
+     * @param signer the {@link Signer}
+     * @param delegatee the provider for other auth schemes, or null
+     * @param originCache the {@link OriginCache} shared with other clients, or null
+     * @since 1.3.2
+     */
+    public SignerCredentialsProvider(Signer signer, CredentialsProvider delegatee, OriginCache originCache) {
         this.signer = signer;
         this.delegatee = delegatee;
+        this.originCache = originCache;
     }
 
     public CredentialsProvider getDelegatee() {
@@ -55,7 +68,7 @@ public final class SignerCredentialsProvider implements CredentialsProvider {
             if (signer == null) {
                 throw new CredentialsNotAvailableException("SSHKey Signer not available");
             } else {
-                return new SignerCredentials(signer);
+                return new SignerCredentials(signer, originCache);
             }
         } else {
             if (this.delegatee != null) {
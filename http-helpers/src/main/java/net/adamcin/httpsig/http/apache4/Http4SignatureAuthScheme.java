@@ -30,21 +30,26 @@ package net.adamcin.httpsig.http.apache4;
 import net.adamcin.httpsig.api.Authorization;
 import net.adamcin.httpsig.api.Challenge;
 import net.adamcin.httpsig.api.Constants;
-import net.adamcin.httpsig.api.RequestContent;
+import net.adamcin.httpsig.api.KeyHint;
+import net.adamcin.httpsig.api.OriginCache;
 import net.adamcin.httpsig.api.Signer;
 import org.apache.http.Header;
+import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
 import org.apache.http.auth.AuthenticationException;
 import org.apache.http.auth.Credentials;
 import org.apache.http.auth.MalformedChallengeException;
 import org.apache.http.impl.auth.RFC2617Scheme;
 import org.apache.http.message.BasicHeader;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
 import org.apache.http.util.CharArrayBuffer;
 
 public final class Http4SignatureAuthScheme extends RFC2617Scheme {
 
     private boolean rotate = false;
     private Authorization lastAuthz = null;
+    private String origin = null;
 
     public String getSchemeName() {
         return Constants.SCHEME;
@@ -64,6 +69,25 @@ public final class Http4SignatureAuthScheme extends RFC2617Scheme {
         this.rotate = true;
     }
 
+    @Override
+    public Header authenticate(Credentials credentials, HttpRequest request, HttpContext context)
+            throws AuthenticationException {
+        if (this.lastAuthz == null && context != null) {
+            Object preemptive = context.getAttribute(Http4SignatureRequestInterceptor.PREEMPTIVE_AUTHORIZATION);
+            if (preemptive instanceof Authorization) {
+                this.lastAuthz = (Authorization) preemptive;
+            }
+        }
+        if (context != null) {
+            Object target = context.getAttribute(HttpCoreContext.HTTP_TARGET_HOST);
+            if (target instanceof HttpHost) {
+                HttpHost host = (HttpHost) target;
+                this.origin = OriginCache.getOrigin(host.getSchemeName(), host.getHostName(), host.getPort());
+            }
+        }
+        return authenticate(credentials, request);
+    }
+
     public Header authenticate(Credentials credentials, HttpRequest request)
             throws AuthenticationException {
 
@@ -72,36 +96,29 @@ public final class Http4SignatureAuthScheme extends RFC2617Scheme {
             String headers = this.getParameter(Constants.HEADERS);
             String algorithms = this.getParameter(Constants.ALGORITHMS);
 
-            Challenge challenge = new Challenge(this.getRealm(), Constants.parseTokens(headers), Challenge.parseAlgorithms(algorithms));
+            Challenge challenge = new Challenge(this.getRealm(), Constants.parseTokens(headers), Challenge.parseAlgorithms(algorithms),
+                                                KeyHint.parse(this.getParameter(Constants.KEY_HINT)));
+
+            OriginCache originCache = this.origin != null
+                    ? ((SignerCredentials) credentials).getOriginCache() : null;
 
             if (this.rotate) {
                 this.rotate = false;
-                if (!signer.rotateKeys(challenge, this.lastAuthz)) {
+                boolean rotated = originCache != null
+                        ? originCache.rotateKeys(signer, this.origin, challenge, this.lastAuthz)
+                        : signer.rotateKeys(challenge, this.lastAuthz);
+                if (!rotated) {
                     signer.rotateKeys(challenge);
                     return null;
                 }
             }
 
-            RequestContent.Builder sigBuilder = new RequestContent.Builder();
-            sigBuilder.setRequestTarget(request.getRequestLine().getMethod(),
-                    request.getRequestLine().getUri());
-
-            for (Header header : request.getAllHeaders()) {
-                if (header.getName().toLowerCase().equals("connection")) {
-                    sigBuilder.addHeader("connection", header.getValue().toLowerCase());
-                } else {
-                    sigBuilder.addHeader(header.getName(), header.getValue());
-                }
-            }
-
-            if (sigBuilder.build().getDate() == null) {
-                sigBuilder.addDateNow();
-                request.addHeader(Constants.HEADER_DATE, sigBuilder.build().getDate());
-            }
-
-            Authorization authorization = signer.sign(sigBuilder.build());
+            Authorization authorization = signer.sign(Http4Util.prepareRequestContent(request));
             this.lastAuthz = authorization;
             if (authorization != null) {
+                if (originCache != null) {
+                    originCache.signed(this.origin, authorization);
+                }
                 return new BasicHeader(Constants.AUTHORIZATION, authorization.getHeaderValue());
             }
         }
@@ -0,0 +1,82 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.http.apache4;
+
+import net.adamcin.httpsig.api.Authorization;
+import net.adamcin.httpsig.api.Constants;
+import net.adamcin.httpsig.api.Signer;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+
+/**
+ * {@link HttpRequestInterceptor} which signs each request with the last {@link net.adamcin.httpsig.api.Challenge}
+ * known to the {@link Signer}, so that the server does not need to send a 401 first. If the server rejects the
+ * signature anyway, the {@link Http4SignatureAuthScheme} registered by
+ * {@link Http4Util#enablePreemptiveAuth(org.apache.http.impl.client.AbstractHttpClient, net.adamcin.httpsig.api.Keychain, net.adamcin.httpsig.api.KeyId)}
+ * rotates the keys and retries as usual.
+ * @since 1.3.2
+ */
+public final class Http4SignatureRequestInterceptor implements HttpRequestInterceptor {
+
+    /**
+     * {@link HttpContext} attribute holding the preemptive {@link Authorization}, so that the
+     * {@link Http4SignatureAuthScheme} can discard the key which signed it if the server answers with a 401
+     */
+    public static final String PREEMPTIVE_AUTHORIZATION = Http4SignatureRequestInterceptor.class.getName() + ".authorization";
+
+    private final Signer signer;
+
+    public Http4SignatureRequestInterceptor(Signer signer) {
+        if (signer == null) {
+            throw new NullPointerException("signer");
+        }
+        this.signer = signer;
+    }
+
+    public Signer getSigner() {
+        return signer;
+    }
+
+    public void process(HttpRequest request, HttpContext context) throws HttpException, IOException {
+        if (request.containsHeader(Constants.AUTHORIZATION)) {
+            return;
+        }
+
+        Authorization authorization = signer.sign(Http4Util.prepareRequestContent(request));
+        if (authorization != null) {
+            request.addHeader(Constants.AUTHORIZATION, authorization.getHeaderValue());
+            if (context != null) {
+                context.setAttribute(PREEMPTIVE_AUTHORIZATION, authorization);
+            }
+        }
+    }
+}
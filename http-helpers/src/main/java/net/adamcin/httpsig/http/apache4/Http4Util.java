@@ -27,10 +27,15 @@
 
 package net.adamcin.httpsig.http.apache4;
 
+import net.adamcin.httpsig.api.Challenge;
 import net.adamcin.httpsig.api.Constants;
 import net.adamcin.httpsig.api.KeyId;
 import net.adamcin.httpsig.api.Keychain;
+import net.adamcin.httpsig.api.OriginCache;
+import net.adamcin.httpsig.api.RequestContent;
 import net.adamcin.httpsig.api.Signer;
+import org.apache.http.Header;
+import org.apache.http.HttpRequest;
 import org.apache.http.auth.AuthScheme;
 import org.apache.http.auth.AuthSchemeFactory;
 import org.apache.http.auth.AuthScope;
@@ -38,19 +43,92 @@ import org.apache.http.auth.params.AuthPNames;
 import org.apache.http.client.params.HttpClientParams;
 import org.apache.http.impl.client.AbstractHttpClient;
 import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HTTP;
 
 import java.util.Arrays;
 
 public final class Http4Util {
 
     public static void enableAuth(final AbstractHttpClient client, final Keychain keychain, final KeyId keyId) {
-        if (client == null) {
-            throw new NullPointerException("client");
+        enableAuth(client, newSigner(keychain, keyId), null);
+    }
+
+    /**
+     * Enables signature authentication, sharing the last {@link Challenge} and chosen key for each origin through an
+     * {@link OriginCache}
+     * @param client the {@link AbstractHttpClient}
+     * @param keychain the {@link Keychain}
+     * @param keyId the {@link KeyId}
+     * @param originCache the {@link OriginCache}, or null
+     * @since 1.3.2
+     */
+    public static void enableAuth(final AbstractHttpClient client, final Keychain keychain, final KeyId keyId,
+                                  final OriginCache originCache) {
+        enableAuth(client, newSigner(keychain, keyId), originCache);
+    }
+
+    /**
+     * Enables signature authentication like {@link #enableAuth(AbstractHttpClient, Keychain, KeyId)}, and also signs
+     * every request before it is sent, using the last {@link Challenge} received from the server. Only the first
+     * request, or a request following a change of server challenge, should take a 401 round-trip.
+     * @param client the {@link AbstractHttpClient}
+     * @param keychain the {@link Keychain}
+     * @param keyId the {@link KeyId}
+     * @since 1.3.2
+     */
+    public static void enablePreemptiveAuth(final AbstractHttpClient client, final Keychain keychain, final KeyId keyId) {
+        enablePreemptiveAuth(client, keychain, keyId, null);
+    }
+
+    /**
+     * Enables preemptive signature authentication, starting with a known server {@link Challenge}, so that even the
+     * first request can be signed with the required headers.
+     * @param client the {@link AbstractHttpClient}
+     * @param keychain the {@link Keychain}
+     * @param keyId the {@link KeyId}
+     * @param challenge the expected server {@link Challenge}, or null to start with
+     *                  {@link Constants#PREEMPTIVE_CHALLENGE}
+     * @since 1.3.2
+     */
+    public static void enablePreemptiveAuth(final AbstractHttpClient client, final Keychain keychain,
+                                            final KeyId keyId, final Challenge challenge) {
+        enablePreemptiveAuth(client, keychain, keyId, challenge, null);
+    }
+
+    /**
+     * Enables preemptive signature authentication, sharing the last {@link Challenge} and chosen key for each origin
+     * through an {@link OriginCache}
+     * @param client the {@link AbstractHttpClient}
+     * @param keychain the {@link Keychain}
+     * @param keyId the {@link KeyId}
+     * @param challenge the expected server {@link Challenge}, or null to start with
+     *                  {@link Constants#PREEMPTIVE_CHALLENGE}
+     * @param originCache the {@link OriginCache}, or null
+     * @since 1.3.2
+     */
+    public static void enablePreemptiveAuth(final AbstractHttpClient client, final Keychain keychain,
+                                            final KeyId keyId, final Challenge challenge,
+                                            final OriginCache originCache) {
+        Signer signer = newSigner(keychain, keyId);
+        if (challenge != null) {
+            signer.rotateKeys(challenge);
         }
+        enableAuth(client, signer, originCache);
+        client.addRequestInterceptor(new Http4SignatureRequestInterceptor(signer));
+    }
 
+    private static Signer newSigner(final Keychain keychain, final KeyId keyId) {
         if (keychain == null) {
             throw new NullPointerException("keychain");
         }
+        return new Signer(keychain, keyId);
+    }
+
+    private static void enableAuth(final AbstractHttpClient client, final Signer signer,
+                                   final OriginCache originCache) {
+        if (client == null) {
+            throw new NullPointerException("client");
+        }
 
         client.getAuthSchemes().register(Constants.SCHEME, new AuthSchemeFactory() {
             public AuthScheme newInstance(HttpParams params) {
@@ -58,14 +136,38 @@ public final class Http4Util {
             }
         });
 
-        Signer signer = new Signer(keychain, keyId);
-        client.getCredentialsProvider().setCredentials(AuthScope.ANY, new SignerCredentials(signer));
+        client.getCredentialsProvider().setCredentials(AuthScope.ANY, new SignerCredentials(signer, originCache));
         client.getParams().setParameter(AuthPNames.TARGET_AUTH_PREF,
                                         Arrays.asList(Constants.SCHEME));
 
         HttpClientParams.setAuthenticating(client.getParams(), true);
     }
 
+    /**
+     * Builds the {@link RequestContent} from all headers of the request in a single pass, adding a date header to the
+     * request if it has none
+     */
+    static RequestContent prepareRequestContent(final HttpRequest request) {
+        RequestContent.Builder sigBuilder = new RequestContent.Builder();
+        sigBuilder.setRequestTarget(request.getRequestLine().getMethod(),
+                request.getRequestLine().getUri());
+
+        for (Header header : request.getAllHeaders()) {
+            String name = header.getName();
+            if (HTTP.CONN_DIRECTIVE.equalsIgnoreCase(name)) {
+                sigBuilder.addHeader(name, header.getValue().toLowerCase());
+            } else {
+                sigBuilder.addHeader(name, header.getValue());
+            }
+        }
+
+        if (sigBuilder.getDate() == null) {
+            sigBuilder.addDateNow();
+            request.addHeader(Constants.HEADER_DATE, sigBuilder.getDate());
+        }
+        return sigBuilder.build();
+    }
+
     private Http4Util() {
     }
 
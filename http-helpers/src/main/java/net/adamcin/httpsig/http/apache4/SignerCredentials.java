@@ -27,6 +27,7 @@
 
 package net.adamcin.httpsig.http.apache4;
 
+import net.adamcin.httpsig.api.OriginCache;
 import net.adamcin.httpsig.api.Signer;
 import org.apache.http.auth.Credentials;
 
@@ -35,15 +36,34 @@ import java.security.Principal;
 public class SignerCredentials implements Credentials {
 
     private final Signer signer;
+    private final OriginCache originCache;
 
     public SignerCredentials(Signer signer) {
+        this(signer, null);
+    }
+
+    /**
+     * @param signer the {@link Signer}
+     * @param originCache the {@link OriginCache} shared with other clients, or null
+     * @since 1.3.2
+     */
+    public SignerCredentials(Signer signer, OriginCache originCache) {
         this.signer = signer;
+        this.originCache = originCache;
     }
 
     public Signer getSigner() {
         return signer;
     }
 
+    /**
+     * @return the {@link OriginCache}, or null
+     * @since 1.3.2
+     */
+    public OriginCache getOriginCache() {
+        return originCache;
+    }
+
     public Principal getUserPrincipal() {
         return null;
     }
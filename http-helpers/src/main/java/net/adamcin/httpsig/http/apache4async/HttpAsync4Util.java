@@ -0,0 +1,268 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.http.apache4async;
+
+import net.adamcin.httpsig.api.Algorithm;
+import net.adamcin.httpsig.api.AlgorithmFamily;
+import net.adamcin.httpsig.api.Challenge;
+import net.adamcin.httpsig.api.Constants;
+import net.adamcin.httpsig.api.KeyId;
+import net.adamcin.httpsig.api.Keychain;
+import net.adamcin.httpsig.api.OriginCache;
+import net.adamcin.httpsig.api.Signer;
+import net.adamcin.httpsig.http.apache4.Http4SignatureAuthScheme;
+import net.adamcin.httpsig.http.apache4.Http4SignatureRequestInterceptor;
+import net.adamcin.httpsig.http.apache4.SignerCredentials;
+import org.apache.http.HttpResponse;
+import org.apache.http.auth.AuthScheme;
+import org.apache.http.auth.AuthSchemeProvider;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.protocol.HttpContext;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Enables signature authentication for the non-blocking {@link org.apache.http.impl.nio.client.CloseableHttpAsyncClient},
+ * using the same {@link Http4SignatureAuthScheme} and {@link Http4SignatureRequestInterceptor} as the blocking client.
+ * Request interceptors run on the thread which calls {@code execute}, and the 401 retry runs on an I/O dispatcher
+ * thread, so {@link #execute(HttpAsyncClient, Signer, Executor, HttpUriRequest, HttpContext, FutureCallback)} keeps
+ * expensive signatures off the calling thread, which is often an I/O dispatcher itself when requests are chained from
+ * a {@link FutureCallback}.
+ * @since 1.3.2
+ */
+public final class HttpAsync4Util {
+
+    /**
+     * Enables signature authentication. This replaces the auth scheme registry, the credentials provider and the
+     * default {@link RequestConfig} of the builder.
+     * @param builder the {@link HttpAsyncClientBuilder}
+     * @param keychain the {@link Keychain}
+     * @param keyId the {@link KeyId}
+     * @return the {@link Signer} used by the client
+     */
+    public static Signer enableAuth(final HttpAsyncClientBuilder builder, final Keychain keychain, final KeyId keyId) {
+        return enableAuth(builder, keychain, keyId, null);
+    }
+
+    /**
+     * Enables signature authentication, sharing the last {@link Challenge} and chosen key for each origin through an
+     * {@link OriginCache}
+     * @param builder the {@link HttpAsyncClientBuilder}
+     * @param keychain the {@link Keychain}
+     * @param keyId the {@link KeyId}
+     * @param originCache the {@link OriginCache}, or null
+     * @return the {@link Signer} used by the client
+     */
+    public static Signer enableAuth(final HttpAsyncClientBuilder builder, final Keychain keychain, final KeyId keyId,
+                                    final OriginCache originCache) {
+        Signer signer = newSigner(keychain, keyId);
+        enableAuth(builder, signer, originCache);
+        return signer;
+    }
+
+    /**
+     * Enables signature authentication, and also signs every request before it is sent, using the last
+     * {@link Challenge} received from the server.
+     * @param builder the {@link HttpAsyncClientBuilder}
+     * @param keychain the {@link Keychain}
+     * @param keyId the {@link KeyId}
+     * @return the {@link Signer} used by the client
+     */
+    public static Signer enablePreemptiveAuth(final HttpAsyncClientBuilder builder, final Keychain keychain,
+                                              final KeyId keyId) {
+        return enablePreemptiveAuth(builder, keychain, keyId, null, null);
+    }
+
+    /**
+     * Enables preemptive signature authentication, starting with a known server {@link Challenge}, and sharing the
+     * last {@link Challenge} and chosen key for each origin through an {@link OriginCache}
+     * @param builder the {@link HttpAsyncClientBuilder}
+     * @param keychain the {@link Keychain}
+     * @param keyId the {@link KeyId}
+     * @param challenge the expected server {@link Challenge}, or null to start with
+     *                  {@link Constants#PREEMPTIVE_CHALLENGE}
+     * @param originCache the {@link OriginCache}, or null
+     * @return the {@link Signer} used by the client
+     */
+    public static Signer enablePreemptiveAuth(final HttpAsyncClientBuilder builder, final Keychain keychain,
+                                              final KeyId keyId, final Challenge challenge,
+                                              final OriginCache originCache) {
+        Signer signer = newSigner(keychain, keyId);
+        if (challenge != null) {
+            signer.rotateKeys(challenge);
+        }
+        enableAuth(builder, signer, originCache);
+        builder.addInterceptorLast(new Http4SignatureRequestInterceptor(signer));
+        return signer;
+    }
+
+    /**
+     * Executes a request on a client with preemptive signature authentication. If the current key of the
+     * {@link Signer} is an HMAC secret, the request is executed and signed directly on the calling thread. Otherwise
+     * the request is handed to the {@code signingExecutor}, so that the RSA, DSA or ECDSA signature does not stall an
+     * I/O dispatcher thread.
+     * @param client the {@link HttpAsyncClient} built with
+     *               {@link #enablePreemptiveAuth(HttpAsyncClientBuilder, Keychain, KeyId)}
+     * @param signer the {@link Signer} returned when enabling preemptive auth
+     * @param signingExecutor the {@link Executor} for expensive signatures, or null to always sign on the calling thread
+     * @param request the request
+     * @param context the {@link HttpContext}, or null
+     * @param callback the {@link FutureCallback}, or null
+     * @return the future response. Cancelling it also cancels the request, once it has been handed to the client.
+     */
+    public static Future<HttpResponse> execute(final HttpAsyncClient client, final Signer signer,
+                                               final Executor signingExecutor, final HttpUriRequest request,
+                                               final HttpContext context,
+                                               final FutureCallback<HttpResponse> callback) {
+        if (signingExecutor == null || isSignedInline(signer)) {
+            return client.execute(request, context, callback);
+        }
+
+        final DispatchedFuture future = new DispatchedFuture(callback);
+        try {
+            signingExecutor.execute(new Runnable() {
+                public void run() {
+                    if (future.isCancelled()) {
+                        return;
+                    }
+                    try {
+                        future.dispatched(client.execute(request, context, new FutureCallback<HttpResponse>() {
+                            public void completed(HttpResponse result) {
+                                future.completed(result);
+                            }
+
+                            public void failed(Exception ex) {
+                                future.failed(ex);
+                            }
+
+                            public void cancelled() {
+                                future.cancel();
+                            }
+                        }));
+                    } catch (RuntimeException e) {
+                        future.failed(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.failed(e);
+        }
+        return future;
+    }
+
+    /**
+     * Future returned by {@link #execute(HttpAsyncClient, Signer, Executor, HttpUriRequest, HttpContext,
+     * FutureCallback)}, which cancels the request once it has been dispatched to the client
+     */
+    private static final class DispatchedFuture extends BasicFuture<HttpResponse> {
+        private volatile Future<HttpResponse> dispatched;
+
+        private DispatchedFuture(FutureCallback<HttpResponse> callback) {
+            super(callback);
+        }
+
+        private void dispatched(Future<HttpResponse> dispatched) {
+            this.dispatched = dispatched;
+            if (isCancelled()) {
+                dispatched.cancel(true);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            Future<HttpResponse> current = dispatched;
+            if (cancelled && current != null) {
+                current.cancel(mayInterruptIfRunning);
+            }
+            return cancelled;
+        }
+    }
+
+    /**
+     * @return true if the current key of the {@link Signer} only uses HMAC algorithms, which are cheap enough to
+     *         compute on an I/O dispatcher thread
+     */
+    static boolean isSignedInline(final Signer signer) {
+        Keychain candidateKeys = signer.getCandidateKeys();
+        if (candidateKeys.isEmpty()) {
+            return true;
+        }
+        for (Algorithm algorithm : candidateKeys.currentKey().getAlgorithms()) {
+            if (algorithm.getFamily() != AlgorithmFamily.HMAC) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Signer newSigner(final Keychain keychain, final KeyId keyId) {
+        if (keychain == null) {
+            throw new NullPointerException("keychain");
+        }
+        return new Signer(keychain, keyId);
+    }
+
+    private static void enableAuth(final HttpAsyncClientBuilder builder, final Signer signer,
+                                   final OriginCache originCache) {
+        if (builder == null) {
+            throw new NullPointerException("builder");
+        }
+
+        builder.setDefaultAuthSchemeRegistry(RegistryBuilder.<AuthSchemeProvider>create()
+                .register(Constants.SCHEME, new AuthSchemeProvider() {
+                    public AuthScheme create(HttpContext context) {
+                        return new Http4SignatureAuthScheme();
+                    }
+                }).build());
+
+        CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+        credentialsProvider.setCredentials(AuthScope.ANY, new SignerCredentials(signer, originCache));
+        builder.setDefaultCredentialsProvider(credentialsProvider);
+
+        builder.setDefaultRequestConfig(RequestConfig.custom()
+                .setAuthenticationEnabled(true)
+                .setTargetPreferredAuthSchemes(Arrays.asList(Constants.SCHEME))
+                .build());
+    }
+
+    private HttpAsync4Util() {
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.http.netty;
+
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import net.adamcin.httpsig.api.Authorization;
+import net.adamcin.httpsig.api.Constants;
+import net.adamcin.httpsig.api.RequestContent;
+import net.adamcin.httpsig.api.SignableRequest;
+
+import java.util.List;
+
+/**
+ * Helper methods for use in a Netty 4 HTTP pipeline.
+ * @since 1.3.2
+ */
+public final class NettyUtil {
+
+    private NettyUtil() {
+    }
+
+    /**
+     * Parse an {@link HttpRequest} to create an {@link Authorization}
+     * @param request the HTTP Request
+     * @return the {@link Authorization}
+     */
+    public static Authorization getAuthorization(HttpRequest request) {
+        HttpHeaders headers = request.headers();
+        String headerValue = headers.get(Constants.AUTHORIZATION);
+        if (headerValue == null) {
+            return null;
+        }
+
+        Authorization authorization = Authorization.parse(headerValue);
+        if (authorization != null) {
+            return authorization;
+        }
+
+        List<String> headerValues = headers.getAll(Constants.AUTHORIZATION);
+        for (int i = 1; i < headerValues.size(); i++) {
+            authorization = Authorization.parse(headerValues.get(i));
+            if (authorization != null) {
+                return authorization;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Wraps an {@link HttpRequest} in a lazy {@link SignableRequest}, which reads only the headers which are signed
+     * @param request the HTTP Request
+     * @return the {@link SignableRequest}
+     */
+    public static SignableRequest getSignableRequest(HttpRequest request) {
+        return new NettySignableRequest(request);
+    }
+
+    /**
+     * Build the {@link RequestContent} for the headers listed by an {@link Authorization}
+     * @param request the HTTP Request
+     * @param authorization the {@link Authorization} sent by the client
+     * @return the {@link RequestContent}
+     */
+    public static RequestContent getRequestContent(HttpRequest request, Authorization authorization) {
+        return RequestContent.fromSignableRequest(getSignableRequest(request), authorization.getHeaders());
+    }
+
+    private static final class NettySignableRequest implements SignableRequest {
+        private final HttpRequest request;
+
+        private NettySignableRequest(HttpRequest request) {
+            this.request = request;
+        }
+
+        public String getMethod() {
+            return request.getMethod().name();
+        }
+
+        public String getPath() {
+            return request.getUri();
+        }
+
+        public String getRequestLine() {
+            return request.getMethod().name() + " " + request.getUri() + " " + request.getProtocolVersion().text();
+        }
+
+        public List<String> getHeaderValues(String name) {
+            return request.headers().getAll(name);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.http.netty;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+import net.adamcin.httpsig.api.Authorization;
+import net.adamcin.httpsig.api.Challenge;
+import net.adamcin.httpsig.api.Constants;
+import net.adamcin.httpsig.api.RequestContent;
+import net.adamcin.httpsig.api.Verifier;
+import net.adamcin.httpsig.api.VerifyResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Inbound handler which verifies the {@link Authorization} of each {@link HttpRequest} before passing it, and any
+ * {@link HttpContent} which follows it, to the rest of the pipeline. Requests which fail verification are answered
+ * with a 401 response carrying the {@link Challenge}, and their content is discarded.
+ * <p>
+ * Place this handler after the {@link io.netty.handler.codec.http.HttpServerCodec}. It holds state for the current
+ * request, so a new instance is needed for each channel. When constructed with an {@link EventExecutorGroup}, the
+ * signature verification runs on that group and the channel stops reading until it completes, so that the event
+ * loop is never blocked by public key operations. Requests which the group rejects, such as after it has been shut
+ * down, are answered with a 503 response and their content is discarded.
+ * @since 1.3.2
+ */
+public class SignatureVerifierHandler extends ChannelInboundHandlerAdapter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SignatureVerifierHandler.class);
+
+    private static final CharSequence CHALLENGE_NAME = HttpHeaders.newEntity(Constants.CHALLENGE);
+    private static final CharSequence CONTENT_LENGTH_NAME = HttpHeaders.newEntity(HttpHeaders.Names.CONTENT_LENGTH);
+    private static final CharSequence CONNECTION_NAME = HttpHeaders.newEntity(HttpHeaders.Names.CONNECTION);
+    private static final CharSequence ZERO = HttpHeaders.newEntity("0");
+    private static final CharSequence CLOSE = HttpHeaders.newEntity(HttpHeaders.Values.CLOSE);
+
+    private final Verifier verifier;
+    private final Challenge challenge;
+    private final CharSequence challengeValue;
+    private final EventExecutorGroup verifyGroup;
+
+    private final List<Object> queued = new ArrayList<Object>();
+    private boolean pending;
+    private boolean discarding;
+    private boolean autoRead;
+
+    /**
+     * Construct a handler which verifies signatures on the event loop
+     * @param verifier the {@link Verifier}
+     * @param challenge the {@link Challenge} to send when verification fails
+     */
+    public SignatureVerifierHandler(Verifier verifier, Challenge challenge) {
+        this(verifier, challenge, null);
+    }
+
+    /**
+     * Construct a handler which verifies signatures on the provided {@link EventExecutorGroup}
+     * @param verifier the {@link Verifier}
+     * @param challenge the {@link Challenge} to send when verification fails
+     * @param verifyGroup the {@link EventExecutorGroup} used for verification, or null to verify on the event loop
+     */
+    public SignatureVerifierHandler(Verifier verifier, Challenge challenge, EventExecutorGroup verifyGroup) {
+        if (verifier == null) {
+            throw new IllegalArgumentException("verifier cannot be null");
+        }
+        if (challenge == null) {
+            throw new IllegalArgumentException("challenge cannot be null");
+        }
+        this.verifier = verifier;
+        this.challenge = challenge;
+        this.challengeValue = HttpHeaders.newEntity(challenge.getHeaderValue());
+        this.verifyGroup = verifyGroup;
+    }
+
+    public Challenge getChallenge() {
+        return challenge;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (pending) {
+            queued.add(msg);
+        } else if (discarding && msg instanceof HttpContent) {
+            discarding = !(msg instanceof LastHttpContent);
+            ReferenceCountUtil.release(msg);
+        } else if (msg instanceof HttpRequest) {
+            discarding = false;
+            handleRequest(ctx, (HttpRequest) msg);
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        releaseQueued();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        releaseQueued();
+    }
+
+    private void handleRequest(final ChannelHandlerContext ctx, final HttpRequest request) {
+        final Authorization authorization = NettyUtil.getAuthorization(request);
+        if (authorization == null) {
+            reject(ctx, request);
+            return;
+        }
+
+        final RequestContent content = NettyUtil.getRequestContent(request, authorization);
+        if (verifyGroup == null) {
+            complete(ctx, request, verifier.verifyWithResult(challenge, content, authorization));
+            return;
+        }
+
+        pending = true;
+        autoRead = ctx.channel().config().isAutoRead();
+        ctx.channel().config().setAutoRead(false);
+        Future<VerifyResult> verification;
+        try {
+            verification = verifyGroup.submit(new Callable<VerifyResult>() {
+                public VerifyResult call() throws Exception {
+                    return verifier.verifyWithResult(challenge, content, authorization);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("[handleRequest] verification rejected: {}", e.getMessage());
+            pending = false;
+            ctx.channel().config().setAutoRead(autoRead);
+            respond(ctx, request, HttpResponseStatus.SERVICE_UNAVAILABLE);
+            replayQueued(ctx);
+            return;
+        }
+        verification.addListener(new GenericFutureListener<Future<VerifyResult>>() {
+            public void operationComplete(final Future<VerifyResult> future) throws Exception {
+                ctx.executor().execute(new Runnable() {
+                    public void run() {
+                        pending = false;
+                        ctx.channel().config().setAutoRead(autoRead);
+                        if (!future.isSuccess()) {
+                            LOGGER.error("[operationComplete] verification failed", future.cause());
+                        }
+                        complete(ctx, request, future.isSuccess() ? future.getNow() : VerifyResult.FAILED_KEY_VERIFY);
+                        replayQueued(ctx);
+                    }
+                });
+            }
+        });
+    }
+
+    private void complete(ChannelHandlerContext ctx, HttpRequest request, VerifyResult result) {
+        if (result == VerifyResult.SUCCESS) {
+            ctx.fireChannelRead(request);
+        } else {
+            LOGGER.debug("[complete] verification failed: {}", result);
+            reject(ctx, request);
+        }
+    }
+
+    private void reject(ChannelHandlerContext ctx, HttpRequest request) {
+        respond(ctx, request, HttpResponseStatus.UNAUTHORIZED);
+    }
+
+    private void respond(ChannelHandlerContext ctx, HttpRequest request, HttpResponseStatus status) {
+        boolean keepAlive = HttpHeaders.isKeepAlive(request);
+        discarding = !(request instanceof LastHttpContent);
+        ReferenceCountUtil.release(request);
+
+        FullHttpResponse response = new DefaultFullHttpResponse(request.getProtocolVersion(),
+                status, Unpooled.EMPTY_BUFFER, false);
+        if (status == HttpResponseStatus.UNAUTHORIZED) {
+            response.headers().set(CHALLENGE_NAME, challengeValue);
+        }
+        response.headers().set(CONTENT_LENGTH_NAME, ZERO);
+        if (keepAlive) {
+            ctx.writeAndFlush(response);
+        } else {
+            response.headers().set(CONNECTION_NAME, CLOSE);
+            ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    private void replayQueued(ChannelHandlerContext ctx) {
+        Object[] messages = queued.toArray();
+        queued.clear();
+        for (Object msg : messages) {
+            try {
+                channelRead(ctx, msg);
+            } catch (Exception e) {
+                ctx.fireExceptionCaught(e);
+            }
+        }
+    }
+
+    private void releaseQueued() {
+        for (Object msg : queued) {
+            ReferenceCountUtil.release(msg);
+        }
+        queued.clear();
+    }
+}
@@ -29,20 +29,25 @@ package net.adamcin.httpsig.http.ning;
 
 import com.ning.http.client.AsyncCompletionHandler;
 import com.ning.http.client.AsyncHttpClient;
-import com.ning.http.client.AsyncHttpClientConfig;
 import com.ning.http.client.FluentCaseInsensitiveStringsMap;
 import com.ning.http.client.Request;
+import com.ning.http.client.RequestBuilder;
 import com.ning.http.client.RequestBuilderBase;
 import com.ning.http.client.Response;
 import com.ning.http.client.SignatureCalculator;
+import com.ning.http.client.uri.Uri;
 import net.adamcin.httpsig.api.Authorization;
+import net.adamcin.httpsig.api.Challenge;
 import net.adamcin.httpsig.api.Constants;
+import net.adamcin.httpsig.api.OriginCache;
 import net.adamcin.httpsig.api.RequestContent;
 import net.adamcin.httpsig.api.Signer;
+import net.adamcin.httpsig.api.SigningFuture;
 
 import java.io.IOException;
-import java.net.URL;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
 public final class AsyncUtil {
@@ -150,50 +155,157 @@ public final class AsyncUtil {
                              final Request loginRequest,
                              final AsyncCompletionHandler<T> responseHandler,
                              final SignatureCalculator calcBefore) throws IOException {
+        return login(client, signer, loginRequest, responseHandler, calcBefore, null);
+    }
 
-        final AsyncHttpClientConfig.Builder configBuilder = new AsyncHttpClientConfig.Builder(client.getConfig());
-        configBuilder.addResponseFilter(new RotateAndReplayResponseFilter(signer));
-        AsyncHttpClient loginClient = new AsyncHttpClient(configBuilder.build());
+    /**
+     * Executes and replays a login request until one is found which satisfies the
+     * {@link net.adamcin.httpsig.api.Challenge} being returned by the server, or until there are no more keys in the
+     * keychain. The {@link OriginCache} provides the key which was chosen for the same origin before, so that a warm
+     * client signs the first login request with it. The request and its replays are executed on the provided client,
+     * reusing its connection pool, and 401 responses are not passed to the {@code responseHandler}.
+     *
+     * @since 1.3.2
+     *
+     * @param client the {@link AsyncHttpClient} to which the {@link Signer} will be attached
+     * @param signer the {@link Signer} used for login and subsequent signature authentication
+     * @param loginRequest the login {@link Request} to be executed and replayed while rotating the keychain
+     * @param responseHandler an {@link AsyncCompletionHandler} of type {@code T}
+     * @param calcBefore provide another {@link SignatureCalculator} to call (such as a Content-MD5 generator) prior to
+     *                   generating the signature for authentication.
+     * @param originCache the {@link OriginCache} shared with other clients, or null
+     * @param <T> type parameter for completion handler
+     * @return a {@link Future} of type {@code T}
+     * @throws IOException if thrown by a login request
+     */
+    public static <T> Future<T> login(final AsyncHttpClient client,
+                             final Signer signer,
+                             final Request loginRequest,
+                             final AsyncCompletionHandler<T> responseHandler,
+                             final SignatureCalculator calcBefore,
+                             final OriginCache originCache) throws IOException {
+
+        if (originCache != null) {
+            String origin = getOrigin(loginRequest);
+            if (origin != null) {
+                originCache.applyTo(signer, origin);
+            }
+        }
 
-        enableAuth(loginClient, signer, calcBefore);
-        Future<T> response = loginClient.executeRequest(loginClient
-                                                                .prepareRequest(loginRequest)
-                                                                .setUrl(loginRequest.getUrl()).build(),
-                                                        responseHandler);
         enableAuth(client, signer, calcBefore);
-        return response;
+        SigningFuture<T> result = new SigningFuture<T>();
+        new RotateAndReplayHandler<T>(client, signer, loginRequest, responseHandler, originCache, result)
+                .execute(false);
+        return result;
     }
 
     protected static String getRequestPath(Request request) {
-        try {
-            URL url = new URL(request.getUrl());
-            return url.getPath() + (url.getQuery() != null ? "?" + url.getQuery() : "");
-        } catch (Exception e) {
-            e.printStackTrace(System.err);
+        Uri uri = request.getUri();
+        if (uri == null) {
+            return null;
         }
+        String query = uri.getQuery();
+        return query != null ? uri.getPath() + "?" + query : uri.getPath();
+    }
+
+    public static void calculateSignature(Signer signer, Request request, RequestBuilderBase<?> requestBuilder) {
+        sign(signer, request, requestBuilder);
+    }
 
+    static Authorization sign(Signer signer, Request request, RequestBuilderBase<?> requestBuilder) {
+        RequestContent requestContent = buildRequestContent(request, requestBuilder);
+        Authorization authz = signer.sign(requestContent);
+        if (authz != null) {
+            requestBuilder.setHeader(Constants.AUTHORIZATION, authz.getHeaderValue());
+        }
+        return authz;
+    }
+
+    static Challenge getChallenge(FluentCaseInsensitiveStringsMap headers) {
+        List<String> values = headers.get(Constants.CHALLENGE);
+        if (values != null) {
+            for (String header : values) {
+                Challenge challenge = Challenge.parse(header);
+                if (challenge != null) {
+                    return challenge;
+                }
+            }
+        }
         return null;
     }
 
-    public static void calculateSignature(Signer signer, Request request, RequestBuilderBase<?> requestBuilder) {
+    static Authorization getAuthorization(Request request) {
+        List<String> values = request.getHeaders().get(Constants.AUTHORIZATION);
+        if (values != null) {
+            for (String header : values) {
+                Authorization authorization = Authorization.parse(header);
+                if (authorization != null) {
+                    return authorization;
+                }
+            }
+        }
+        return null;
+    }
+
+    static String getOrigin(Request request) {
+        Uri uri = request.getUri();
+        return uri != null ? OriginCache.getOrigin(uri.getScheme(), uri.getHost(), uri.getPort()) : null;
+    }
+
+    /**
+     * Signs a {@link Request} without blocking the calling thread on an {@link net.adamcin.httpsig.api.AsyncKey},
+     * such as an ssh-agent identity, for callers which must not block an I/O thread in a {@link SignatureCalculator}.
+     * Execute the signed request once the returned future completes, for example from a listener added with
+     * {@link SigningFuture#addListener(Runnable, java.util.concurrent.Executor)}.
+     *
+     * @since 1.3.2
+     *
+     * @param signer the {@link Signer} to use for authentication. It's keys must be rotated separately.
+     * @param request the {@link Request} to sign
+     * @return a {@link SigningFuture} completed with a copy of the request, including the Date and Authorization
+     *         headers, or with the original request if no key could sign it
+     */
+    public static SigningFuture<Request> signAsync(final Signer signer, final Request request) {
+        final RequestBuilder requestBuilder = new RequestBuilder(request);
+        final SigningFuture<Authorization> authz = signer.signAsync(buildRequestContent(request, requestBuilder));
+        final SigningFuture<Request> signed = new SigningFuture<Request>();
+        authz.addListener(new Runnable() {
+            public void run() {
+                try {
+                    Authorization authorization = authz.get();
+                    if (authorization != null) {
+                        requestBuilder.setHeader(Constants.AUTHORIZATION, authorization.getHeaderValue());
+                        signed.complete(requestBuilder.build());
+                    } else {
+                        signed.complete(request);
+                    }
+                } catch (ExecutionException e) {
+                    signed.fail(e.getCause());
+                } catch (InterruptedException e) {
+                    signed.fail(e);
+                }
+            }
+        }, null);
+        return signed;
+    }
+
+    private static RequestContent buildRequestContent(Request request, RequestBuilderBase<?> requestBuilder) {
         RequestContent.Builder sigBuilder = new RequestContent.Builder();
 
         sigBuilder.setRequestTarget(request.getMethod(), getRequestPath(request));
-        for (FluentCaseInsensitiveStringsMap.Entry<String, List<String>> entry : request.getHeaders().entrySet()) {
+        for (Map.Entry<String, List<String>> entry : request.getHeaders()) {
+            String name = entry.getKey();
             for (String value : entry.getValue()) {
-                sigBuilder.addHeader(entry.getKey(), value);
+                sigBuilder.addHeader(name, value);
             }
         }
 
-        if (sigBuilder.build().getDate() == null) {
+        if (sigBuilder.getDate() == null) {
             sigBuilder.addDateNow();
-            requestBuilder.addHeader(Constants.HEADER_DATE, sigBuilder.build().getDate());
+            requestBuilder.addHeader(Constants.HEADER_DATE, sigBuilder.getDate());
         }
 
-        Authorization authz = signer.sign(sigBuilder.build());
-        if (authz != null) {
-            requestBuilder.setHeader(Constants.AUTHORIZATION, authz.getHeaderValue());
-        }
+        return sigBuilder.build();
     }
 
     private AsyncUtil() {
@@ -0,0 +1,169 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.http.ning;
+
+import com.ning.http.client.AsyncHandler;
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.HttpResponseBodyPart;
+import com.ning.http.client.HttpResponseHeaders;
+import com.ning.http.client.HttpResponseStatus;
+import com.ning.http.client.Request;
+import net.adamcin.httpsig.api.Authorization;
+import net.adamcin.httpsig.api.Challenge;
+import net.adamcin.httpsig.api.OriginCache;
+import net.adamcin.httpsig.api.Signer;
+import net.adamcin.httpsig.api.SigningFuture;
+
+/**
+ * Request-scoped {@link AsyncHandler} used by
+ * {@link AsyncUtil#login(AsyncHttpClient, Signer, Request, com.ning.http.client.AsyncCompletionHandler, com.ning.http.client.SignatureCalculator, OriginCache)}.
+ * A 401 response carrying a {@link Challenge} rotates the {@link Signer} and replays the request on the same client,
+ * without passing the 401 to the caller's handler. The 401 body is read and discarded so that the connection goes
+ * back to the pool. Any other response is passed to the caller's handler, and its result completes the login future.
+ * <p>
+ * Whether to replay is decided by {@link Signer#rotateForReplay(Challenge, Authorization, Challenge, int)}, so the
+ * request is replayed at most once per key in the keychain.
+ */
+final class RotateAndReplayHandler<T> implements AsyncHandler<T> {
+
+    private final AsyncHttpClient client;
+    private final Signer signer;
+    private final Request loginRequest;
+    private final AsyncHandler<T> delegate;
+    private final OriginCache originCache;
+    private final String origin;
+    private final SigningFuture<T> result;
+    private final int replays;
+    private final Challenge signedFor;
+
+    private Authorization authorization;
+    private HttpResponseStatus heldStatus;
+    private boolean replay;
+    private Challenge replayFor;
+
+    RotateAndReplayHandler(AsyncHttpClient client, Signer signer, Request loginRequest, AsyncHandler<T> delegate,
+                           OriginCache originCache, SigningFuture<T> result) {
+        this(client, signer, loginRequest, delegate, originCache, result, 0, null);
+    }
+
+    private RotateAndReplayHandler(AsyncHttpClient client, Signer signer, Request loginRequest,
+                                   AsyncHandler<T> delegate, OriginCache originCache, SigningFuture<T> result,
+                                   int replays, Challenge signedFor) {
+        this.client = client;
+        this.signer = signer;
+        this.loginRequest = loginRequest;
+        this.delegate = delegate;
+        this.originCache = originCache;
+        this.origin = originCache != null ? AsyncUtil.getOrigin(loginRequest) : null;
+        this.result = result;
+        this.replays = replays;
+        this.signedFor = signedFor;
+    }
+
+    /**
+     * Executes the login request, signed by the client's signature calculator with the current key
+     * @param replayed true if the signer was rotated for this attempt
+     */
+    void execute(boolean replayed) {
+        try {
+            Request request = client.prepareRequest(loginRequest).setUrl(loginRequest.getUrl()).build();
+            this.authorization = AsyncUtil.getAuthorization(request);
+            if (replayed && origin != null && authorization != null) {
+                originCache.signed(origin, authorization);
+            }
+            client.executeRequest(request, this);
+        } catch (RuntimeException e) {
+            onThrowable(e);
+        }
+    }
+
+    public STATE onStatusReceived(HttpResponseStatus responseStatus) throws Exception {
+        if (responseStatus.getStatusCode() == 401) {
+            heldStatus = responseStatus;
+            return STATE.CONTINUE;
+        }
+        return delegate.onStatusReceived(responseStatus);
+    }
+
+    public STATE onHeadersReceived(HttpResponseHeaders headers) throws Exception {
+        if (heldStatus != null) {
+            Challenge challenge = AsyncUtil.getChallenge(headers.getHeaders());
+            if (challenge != null && rotate(challenge)) {
+                replay = true;
+                replayFor = challenge;
+                return STATE.CONTINUE;
+            }
+
+            HttpResponseStatus status = heldStatus;
+            heldStatus = null;
+            STATE state = delegate.onStatusReceived(status);
+            if (state != STATE.CONTINUE) {
+                return state;
+            }
+        }
+        return delegate.onHeadersReceived(headers);
+    }
+
+    public STATE onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
+        if (replay) {
+            return STATE.CONTINUE;
+        }
+        return delegate.onBodyPartReceived(bodyPart);
+    }
+
+    public T onCompleted() throws Exception {
+        if (replay) {
+            new RotateAndReplayHandler<T>(client, signer, loginRequest, delegate, originCache, result, replays + 1,
+                                          replayFor).execute(true);
+            return null;
+        }
+
+        try {
+            T value = delegate.onCompleted();
+            result.complete(value);
+            return value;
+        } catch (Exception e) {
+            result.fail(e);
+            throw e;
+        }
+    }
+
+    public void onThrowable(Throwable t) {
+        try {
+            delegate.onThrowable(t);
+        } finally {
+            result.fail(t);
+        }
+    }
+
+    private boolean rotate(Challenge challenge) {
+        return origin != null
+                ? originCache.rotateForReplay(signer, origin, challenge, authorization, signedFor, replays)
+                : signer.rotateForReplay(challenge, authorization, signedFor, replays);
+    }
+}
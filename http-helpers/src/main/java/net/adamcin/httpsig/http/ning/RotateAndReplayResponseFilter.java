@@ -27,7 +27,6 @@
 
 package net.adamcin.httpsig.http.ning;
 
-import com.ning.http.client.FluentCaseInsensitiveStringsMap;
 import com.ning.http.client.Request;
 import com.ning.http.client.RequestBuilder;
 import com.ning.http.client.filter.FilterContext;
@@ -35,11 +34,9 @@ import com.ning.http.client.filter.FilterException;
 import com.ning.http.client.filter.ResponseFilter;
 import net.adamcin.httpsig.api.Authorization;
 import net.adamcin.httpsig.api.Challenge;
-import net.adamcin.httpsig.api.Constants;
+import net.adamcin.httpsig.api.OriginCache;
 import net.adamcin.httpsig.api.Signer;
 
-import java.util.List;
-
 /**
  * Implementation of {@link ResponseFilter} which calls
  * {@link Signer#rotateKeys(net.adamcin.httpsig.api.Challenge, net.adamcin.httpsig.api.Authorization)} so long as the
@@ -48,44 +45,44 @@ import java.util.List;
 public class RotateAndReplayResponseFilter implements ResponseFilter {
 
     private final Signer signer;
+    private final OriginCache originCache;
 
     public RotateAndReplayResponseFilter(Signer signer) {
+        this(signer, null);
+    }
+
+    /**
+     * @param signer the {@link Signer}
+     * @param originCache the {@link OriginCache} shared with other clients, or null
+     * @since 1.3.2
+     */
+    public RotateAndReplayResponseFilter(Signer signer, OriginCache originCache) {
         this.signer = signer;
+        this.originCache = originCache;
     }
 
     public FilterContext filter(FilterContext ctx) throws FilterException {
         if (ctx.getResponseStatus().getStatusCode() == 401) {
-                        Challenge challenge = null;
-            for (String header : ctx.getResponseHeaders().getHeaders().get(Constants.CHALLENGE)) {
-                challenge = Challenge.parse(header);
-                if (challenge != null) {
-                    break;
-                }
-            }
+            Challenge challenge = AsyncUtil.getChallenge(ctx.getResponseHeaders().getHeaders());
 
             if (challenge != null) {
-                Authorization authorization = null;
                 Request request = ctx.getRequest();
-                for (FluentCaseInsensitiveStringsMap.Entry<String, List<String>> headersEntry : request.getHeaders()) {
-                    if (headersEntry.getKey().equalsIgnoreCase(Constants.AUTHORIZATION)) {
-                        for (String header : headersEntry.getValue()) {
-                            authorization = Authorization.parse(header);
-                            if (authorization != null) {
-                                break;
-                            }
-                        }
-                    }
-                }
+                Authorization authorization = AsyncUtil.getAuthorization(request);
 
-
-                boolean replay = signer.rotateKeys(challenge, authorization);
+                String origin = originCache != null ? AsyncUtil.getOrigin(request) : null;
+                boolean replay = origin != null
+                        ? originCache.rotateKeys(signer, origin, challenge, authorization)
+                        : signer.rotateKeys(challenge, authorization);
                 if (!replay) {
                     signer.rotateKeys(challenge);
                     return ctx;
                 }
 
                 RequestBuilder builder = new RequestBuilder(request);
-                AsyncUtil.calculateSignature(signer, request, builder);
+                Authorization replayAuthz = AsyncUtil.sign(signer, request, builder);
+                if (origin != null && replayAuthz != null) {
+                    originCache.signed(origin, replayAuthz);
+                }
 
                 return new FilterContext.FilterContextBuilder(ctx)
                         .replayRequest(replay)
@@ -0,0 +1,118 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.http.okhttp;
+
+import net.adamcin.httpsig.api.Authorization;
+import net.adamcin.httpsig.api.Challenge;
+import net.adamcin.httpsig.api.Constants;
+import net.adamcin.httpsig.api.OriginCache;
+import net.adamcin.httpsig.api.Signer;
+import okhttp3.Authenticator;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.Route;
+
+import java.io.IOException;
+
+/**
+ * {@link Authenticator} which answers a 401 {@link Challenge} by rotating the {@link Signer} past the key which signed
+ * the rejected request, and signing a retry with the next key. Whether to retry is decided by
+ * {@link Signer#rotateForReplay(Challenge, Authorization, Challenge, int)}, counting the earlier 401 responses in the
+ * chain as replays.
+ * @since 1.3.2
+ */
+public final class OkHttpSignatureAuthenticator implements Authenticator {
+
+    private final Signer signer;
+    private final OriginCache originCache;
+
+    public OkHttpSignatureAuthenticator(Signer signer) {
+        this(signer, null);
+    }
+
+    /**
+     * @param signer the {@link Signer}
+     * @param originCache the {@link OriginCache} shared with other clients, or null
+     */
+    public OkHttpSignatureAuthenticator(Signer signer, OriginCache originCache) {
+        if (signer == null) {
+            throw new NullPointerException("signer");
+        }
+        this.signer = signer;
+        this.originCache = originCache;
+    }
+
+    public Signer getSigner() {
+        return signer;
+    }
+
+    /**
+     * @return the {@link OriginCache}, or null
+     */
+    public OriginCache getOriginCache() {
+        return originCache;
+    }
+
+    public Request authenticate(Route route, Response response) throws IOException {
+        Challenge challenge = OkHttpUtil.getChallenge(response);
+        if (challenge == null) {
+            return null;
+        }
+
+        Request request = response.request();
+        Authorization failedAuthz = Authorization.parse(request.header(Constants.AUTHORIZATION));
+        String origin = originCache != null ? OkHttpUtil.getOrigin(request.url()) : null;
+
+        // the prior responses are the 401s which this request is a replay for
+        int replays = 0;
+        for (Response prior = response.priorResponse(); prior != null; prior = prior.priorResponse()) {
+            if (prior.code() == 401) {
+                replays++;
+            }
+        }
+        Response prior = response.priorResponse();
+        Challenge replayedFor = prior != null && prior.code() == 401 ? OkHttpUtil.getChallenge(prior) : null;
+
+        boolean rotated = origin != null
+                ? originCache.rotateForReplay(signer, origin, challenge, failedAuthz, replayedFor, replays)
+                : signer.rotateForReplay(challenge, failedAuthz, replayedFor, replays);
+        if (!rotated) {
+            return null;
+        }
+
+        Request.Builder signedRequest = request.newBuilder();
+        Authorization authorization = signer.sign(OkHttpUtil.prepareRequestContent(request, signedRequest));
+        if (authorization == null) {
+            return null;
+        }
+        if (origin != null) {
+            originCache.signed(origin, authorization);
+        }
+        return signedRequest.header(Constants.AUTHORIZATION, authorization.getHeaderValue()).build();
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.http.okhttp;
+
+import net.adamcin.httpsig.api.Authorization;
+import net.adamcin.httpsig.api.Constants;
+import net.adamcin.httpsig.api.Signer;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+
+/**
+ * Application {@link Interceptor} which signs each request with the last {@link net.adamcin.httpsig.api.Challenge}
+ * known to the {@link Signer}, so that the server does not need to send a 401 first. If the server rejects the
+ * signature anyway, the {@link OkHttpSignatureAuthenticator} rotates the keys and retries as usual.
+ * @since 1.3.2
+ */
+public final class OkHttpSignatureInterceptor implements Interceptor {
+
+    private final Signer signer;
+
+    public OkHttpSignatureInterceptor(Signer signer) {
+        if (signer == null) {
+            throw new NullPointerException("signer");
+        }
+        this.signer = signer;
+    }
+
+    public Signer getSigner() {
+        return signer;
+    }
+
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (request.header(Constants.AUTHORIZATION) != null) {
+            return chain.proceed(request);
+        }
+
+        Request.Builder signedRequest = request.newBuilder();
+        Authorization authorization = signer.sign(OkHttpUtil.prepareRequestContent(request, signedRequest));
+        if (authorization != null) {
+            signedRequest.header(Constants.AUTHORIZATION, authorization.getHeaderValue());
+        }
+        return chain.proceed(signedRequest.build());
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.http.okhttp;
+
+import net.adamcin.httpsig.api.Challenge;
+import net.adamcin.httpsig.api.Constants;
+import net.adamcin.httpsig.api.KeyId;
+import net.adamcin.httpsig.api.Keychain;
+import net.adamcin.httpsig.api.OriginCache;
+import net.adamcin.httpsig.api.RequestContent;
+import net.adamcin.httpsig.api.Signer;
+import okhttp3.Headers;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.io.IOException;
+
+/**
+ * Enables signature authentication for an {@link OkHttpClient}. Signing only adds headers to the request, so pooled
+ * connections and HTTP/2 multiplexing work as usual.
+ * @since 1.3.2
+ */
+public final class OkHttpUtil {
+    private static final String HEADER_HOST = "host";
+    private static final String HEADER_CONTENT_LENGTH = "content-length";
+
+    /**
+     * Enables signature authentication in response to a 401 {@link Challenge}
+     * @param builder the {@link OkHttpClient.Builder}
+     * @param keychain the {@link Keychain}
+     * @param keyId the {@link KeyId}
+     */
+    public static void enableAuth(final OkHttpClient.Builder builder, final Keychain keychain, final KeyId keyId) {
+        enableAuth(builder, newSigner(keychain, keyId), null);
+    }
+
+    /**
+     * Enables signature authentication, sharing the last {@link Challenge} and chosen key for each origin through an
+     * {@link OriginCache}
+     * @param builder the {@link OkHttpClient.Builder}
+     * @param keychain the {@link Keychain}
+     * @param keyId the {@link KeyId}
+     * @param originCache the {@link OriginCache}, or null
+     */
+    public static void enableAuth(final OkHttpClient.Builder builder, final Keychain keychain, final KeyId keyId,
+                                  final OriginCache originCache) {
+        enableAuth(builder, newSigner(keychain, keyId), originCache);
+    }
+
+    /**
+     * Enables signature authentication like {@link #enableAuth(OkHttpClient.Builder, Keychain, KeyId)}, and also
+     * signs every request before it is sent, using the last {@link Challenge} received from the server
+     * @param builder the {@link OkHttpClient.Builder}
+     * @param keychain the {@link Keychain}
+     * @param keyId the {@link KeyId}
+     */
+    public static void enablePreemptiveAuth(final OkHttpClient.Builder builder, final Keychain keychain,
+                                            final KeyId keyId) {
+        enablePreemptiveAuth(builder, keychain, keyId, null, null);
+    }
+
+    /**
+     * Enables preemptive signature authentication, starting with a known server {@link Challenge}, and sharing the
+     * last {@link Challenge} and chosen key for each origin through an {@link OriginCache}
+     * @param builder the {@link OkHttpClient.Builder}
+     * @param keychain the {@link Keychain}
+     * @param keyId the {@link KeyId}
+     * @param challenge the expected server {@link Challenge}, or null to start with
+     *                  {@link Constants#PREEMPTIVE_CHALLENGE}
+     * @param originCache the {@link OriginCache}, or null
+     */
+    public static void enablePreemptiveAuth(final OkHttpClient.Builder builder, final Keychain keychain,
+                                            final KeyId keyId, final Challenge challenge,
+                                            final OriginCache originCache) {
+        Signer signer = newSigner(keychain, keyId);
+        if (challenge != null) {
+            signer.rotateKeys(challenge);
+        }
+        enableAuth(builder, signer, originCache);
+        builder.addInterceptor(new OkHttpSignatureInterceptor(signer));
+    }
+
+    /**
+     * Builds the {@link RequestContent} from the {@link Headers} of the request in a single pass
+     * @param request the request
+     * @return the {@link RequestContent}
+     */
+    public static RequestContent getRequestContent(final Request request) {
+        return buildRequestContent(request).build();
+    }
+
+    /**
+     * Builds the {@link RequestContent} for the request, adding a date header to the signed request if the request
+     * has none. Interceptors and authenticators see the request before OkHttp adds its host and content-length
+     * headers, so those are added here too, with the values OkHttp would use, so that they can be signed.
+     */
+    static RequestContent prepareRequestContent(final Request request, final Request.Builder signedRequest)
+            throws IOException {
+        RequestContent.Builder sigBuilder = buildRequestContent(request);
+        if (request.header(HEADER_HOST) == null) {
+            String host = getHost(request.url());
+            sigBuilder.addHeader(HEADER_HOST, host);
+            signedRequest.header(HEADER_HOST, host);
+        }
+        RequestBody body = request.body();
+        if (body != null && request.header(HEADER_CONTENT_LENGTH) == null) {
+            long contentLength = body.contentLength();
+            if (contentLength != -1L) {
+                sigBuilder.addHeader(HEADER_CONTENT_LENGTH, Long.toString(contentLength));
+                signedRequest.header(HEADER_CONTENT_LENGTH, Long.toString(contentLength));
+            }
+        }
+        if (sigBuilder.getDate() == null) {
+            sigBuilder.addDateNow();
+            signedRequest.header(Constants.HEADER_DATE, sigBuilder.getDate());
+        }
+        return sigBuilder.build();
+    }
+
+    /**
+     * @param response the response
+     * @return the first {@link Challenge} of the response, or null
+     */
+    static Challenge getChallenge(final Response response) {
+        for (String header : response.headers(Constants.CHALLENGE)) {
+            Challenge challenge = Challenge.parse(header);
+            if (challenge != null) {
+                return challenge;
+            }
+        }
+        return null;
+    }
+
+    static String getOrigin(final HttpUrl url) {
+        return OriginCache.getOrigin(url.scheme(), url.host(), url.port());
+    }
+
+    /**
+     * @return the host header value for the url, omitting the default port of its scheme, like OkHttp itself
+     */
+    static String getHost(final HttpUrl url) {
+        String host = url.host().contains(":") ? "[" + url.host() + "]" : url.host();
+        return url.port() != HttpUrl.defaultPort(url.scheme()) ? host + ":" + url.port() : host;
+    }
+
+    private static RequestContent.Builder buildRequestContent(final Request request) {
+        HttpUrl url = request.url();
+        String query = url.encodedQuery();
+        RequestContent.Builder sigBuilder = new RequestContent.Builder();
+        sigBuilder.setRequestTarget(request.method(),
+                query != null ? url.encodedPath() + "?" + query : url.encodedPath());
+
+        Headers headers = request.headers();
+        for (int i = 0, size = headers.size(); i < size; i++) {
+            String name = headers.name(i);
+            if (!Constants.AUTHORIZATION.equalsIgnoreCase(name)) {
+                sigBuilder.addHeader(name, headers.value(i));
+            }
+        }
+        return sigBuilder;
+    }
+
+    private static Signer newSigner(final Keychain keychain, final KeyId keyId) {
+        if (keychain == null) {
+            throw new NullPointerException("keychain");
+        }
+        return new Signer(keychain, keyId);
+    }
+
+    private static void enableAuth(final OkHttpClient.Builder builder, final Signer signer,
+                                   final OriginCache originCache) {
+        if (builder == null) {
+            throw new NullPointerException("builder");
+        }
+        builder.authenticator(new OkHttpSignatureAuthenticator(signer, originCache));
+    }
+
+    private OkHttpUtil() {
+    }
+}
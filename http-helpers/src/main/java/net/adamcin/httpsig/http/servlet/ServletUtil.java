@@ -31,13 +31,17 @@ import net.adamcin.httpsig.api.Authorization;
 import net.adamcin.httpsig.api.Challenge;
 import net.adamcin.httpsig.api.Constants;
 import net.adamcin.httpsig.api.RequestContent;
+import net.adamcin.httpsig.api.SignableRequest;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -112,6 +116,71 @@ public final class ServletUtil {
         return signatureContent.build();
     }
 
+    /**
+     * Wraps an {@link javax.servlet.http.HttpServletRequest} in a lazy {@link SignableRequest}, which reads only the
+     * headers which are signed
+     * @param request the HTTP Request
+     * @return the {@link SignableRequest}
+     * @since 1.3.2
+     */
+    public static SignableRequest getSignableRequest(HttpServletRequest request) {
+        return getSignableRequest(request, null);
+    }
+
+    /**
+     * Wraps an {@link javax.servlet.http.HttpServletRequest} in a lazy {@link SignableRequest}, which reads only the
+     * headers which are signed
+     * @param request the HTTP Request
+     * @param ignoreHeaders a collection of header names to ignore, in case they have been added by proxies
+     * @return the {@link SignableRequest}
+     * @since 1.3.2
+     */
+    public static SignableRequest getSignableRequest(HttpServletRequest request, Collection<String> ignoreHeaders) {
+        return new ServletSignableRequest(request, ignoreHeaders);
+    }
+
+    private static final class ServletSignableRequest implements SignableRequest {
+        private final HttpServletRequest request;
+        private final Collection<String> ignoreHeaders;
+
+        private ServletSignableRequest(HttpServletRequest request, Collection<String> ignoreHeaders) {
+            this.request = request;
+            this.ignoreHeaders = ignoreHeaders;
+        }
+
+        public String getMethod() {
+            return request.getMethod();
+        }
+
+        public String getPath() {
+            String queryString = request.getQueryString();
+            return queryString != null ? request.getRequestURI() + "?" + queryString : request.getRequestURI();
+        }
+
+        public String getRequestLine() {
+            return request.getMethod() + " " + getPath() + " " + request.getProtocol();
+        }
+
+        public List<String> getHeaderValues(String name) {
+            if (ignoreHeaders != null) {
+                for (String ignore : ignoreHeaders) {
+                    if (ignore.equalsIgnoreCase(name)) {
+                        return Collections.emptyList();
+                    }
+                }
+            }
+            Enumeration headerValues = request.getHeaders(name);
+            if (headerValues == null || !headerValues.hasMoreElements()) {
+                return Collections.emptyList();
+            }
+            List<String> values = new ArrayList<String>(1);
+            while (headerValues.hasMoreElements()) {
+                values.add((String) headerValues.nextElement());
+            }
+            return values;
+        }
+    }
+
     /**
      * Handle an {@link javax.servlet.http.HttpServletResponse} which has failed authentication by sending a
      * {@link net.adamcin.httpsig.api.Challenge} header
@@ -34,6 +34,7 @@ import net.adamcin.httpsig.api.DefaultVerifier;
 import net.adamcin.httpsig.api.KeyId;
 import net.adamcin.httpsig.api.Keychain;
 import net.adamcin.httpsig.api.RequestContent;
+import net.adamcin.httpsig.api.SignableRequest;
 import net.adamcin.httpsig.api.VerifyResult;
 import net.adamcin.httpsig.http.servlet.ServletUtil;
 import net.adamcin.httpsig.ssh.jce.AuthorizedKeys;
@@ -181,15 +182,16 @@ public abstract class HttpServerTestBody extends TestBody {
             Authorization authorization = ServletUtil.getAuthorization(req);
             if (authorization != null) {
                 DefaultVerifier verifier = new DefaultVerifier(this.getKeychain(), this.keyId);
-                RequestContent sigBuilder = ServletUtil.getRequestContent(req);
+                SignableRequest request = ServletUtil.getSignableRequest(req);
 
-                VerifyResult result = verifier.verifyWithResult(getChallenge(), sigBuilder, authorization);
+                VerifyResult result = verifier.verifyWithResult(getChallenge(), request, authorization);
                 if (result == VerifyResult.SUCCESS) {
                     return false;
                 } else {
                     LOGGER.info("[handleAuthentication] VerifyResult: {}", result);
                     LOGGER.info("[handleAuthentication] Authorization: {}", authorization);
-                    LOGGER.info("[handleAuthentication] RequestContent: {}", sigBuilder);
+                    LOGGER.info("[handleAuthentication] RequestContent: {}",
+                                RequestContent.fromSignableRequest(request, authorization.getHeaders()));
                 }
             }
 
@@ -36,9 +36,11 @@ import net.adamcin.httpsig.ssh.jce.KeyFormat;
 import net.adamcin.httpsig.testutil.KeyTestUtil;
 import org.apache.commons.io.output.NullOutputStream;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.protocol.HttpContext;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,6 +48,7 @@ import org.slf4j.LoggerFactory;
 import java.security.KeyPair;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -121,4 +124,46 @@ public class Http4UtilTest {
             }
         });
     }
+
+    @Test
+    public void testPreemptiveLogin() {
+        TestBody.test(new HttpServerTestBody() {
+            @Override protected void execute() throws Exception {
+
+                List<String> headers = Arrays.asList(
+                        Constants.HEADER_REQUEST_TARGET,
+                        Constants.HEADER_DATE);
+
+                setServlet(new AdminServlet(headers));
+
+                KeyPair keyPair = KeyTestUtil.getKeyPairFromProperties("b2048", "id_rsa");
+
+                KeyPair unauthorized = KeyTestUtil.getPrivateKeyAsKeyPair("ecdsa256", "id_ecdsa", null);
+
+                DefaultKeychain provider = new DefaultKeychain();
+                provider.add(new SSHKey(KeyFormat.ECDSA_SHA2_NISTP256, unauthorized));
+                provider.add(new SSHKey(KeyFormat.SSH_RSA, keyPair));
+
+                DefaultHttpClient client = new DefaultHttpClient();
+                final AtomicInteger challenges = new AtomicInteger();
+                client.addResponseInterceptor(new HttpResponseInterceptor() {
+                    public void process(HttpResponse response, HttpContext context) {
+                        if (response.getStatusLine().getStatusCode() == 401) {
+                            challenges.incrementAndGet();
+                        }
+                    }
+                });
+
+                Http4Util.enablePreemptiveAuth(client, provider, getKeyId());
+
+                for (int i = 0; i < 3; i++) {
+                    HttpResponse response = client.execute(new HttpGet(getAbsoluteUrl(TEST_URL)));
+                    response.getEntity().writeTo(new NullOutputStream());
+                    assertEquals("should return 200", 200, response.getStatusLine().getStatusCode());
+                }
+
+                assertEquals("only the unauthorized preemptive signature should be challenged", 1, challenges.get());
+            }
+        });
+    }
 }
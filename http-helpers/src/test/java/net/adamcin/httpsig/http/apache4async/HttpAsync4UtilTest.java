@@ -0,0 +1,227 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.http.apache4async;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import net.adamcin.httpsig.api.Constants;
+import net.adamcin.httpsig.api.DefaultKeychain;
+import net.adamcin.httpsig.api.Signer;
+import net.adamcin.httpsig.http.HttpServerTestBody;
+import net.adamcin.httpsig.ssh.jce.KeyFormat;
+import net.adamcin.httpsig.ssh.jce.SSHKey;
+import net.adamcin.httpsig.testutil.KeyTestUtil;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.nio.client.HttpAsyncClient;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+import org.junit.Test;
+
+import java.security.KeyPair;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class HttpAsync4UtilTest {
+
+    private static final String TEST_URL = "/index.html?path=/may/get/url/encoded&foo=bar";
+
+    @Test
+    public void testLogin() {
+        TestBody.test(new HttpServerTestBody() {
+            @Override protected void execute() throws Exception {
+
+                List<String> headers = Arrays.asList(
+                        Constants.HEADER_REQUEST_TARGET,
+                        Constants.HEADER_DATE);
+
+                setServlet(new AdminServlet(headers));
+
+                KeyPair keyPair = KeyTestUtil.getKeyPairFromProperties("b2048", "id_rsa");
+
+                DefaultKeychain provider = new DefaultKeychain();
+                provider.add(new SSHKey(KeyFormat.SSH_RSA, keyPair));
+
+                HttpAsyncClientBuilder builder = HttpAsyncClients.custom();
+                HttpAsync4Util.enableAuth(builder, provider, getKeyId());
+
+                CloseableHttpAsyncClient client = builder.build();
+                client.start();
+                try {
+                    HttpResponse response = client.execute(new HttpGet(getAbsoluteUrl(TEST_URL)), null).get();
+                    assertEquals("should return 200", 200, response.getStatusLine().getStatusCode());
+                } finally {
+                    client.close();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testPreemptiveLogin() {
+        TestBody.test(new HttpServerTestBody() {
+            @Override protected void execute() throws Exception {
+
+                List<String> headers = Arrays.asList(
+                        Constants.HEADER_REQUEST_TARGET,
+                        Constants.HEADER_DATE);
+
+                setServlet(new AdminServlet(headers));
+
+                KeyPair keyPair = KeyTestUtil.getKeyPairFromProperties("b2048", "id_rsa");
+
+                KeyPair unauthorized = KeyTestUtil.getPrivateKeyAsKeyPair("ecdsa256", "id_ecdsa", null);
+
+                DefaultKeychain provider = new DefaultKeychain();
+                provider.add(new SSHKey(KeyFormat.ECDSA_SHA2_NISTP256, unauthorized));
+                provider.add(new SSHKey(KeyFormat.SSH_RSA, keyPair));
+
+                final AtomicInteger challenges = new AtomicInteger();
+                final Set<String> signingThreads = new ConcurrentSkipListSet<String>();
+
+                HttpAsyncClientBuilder builder = HttpAsyncClients.custom();
+                Signer signer = HttpAsync4Util.enablePreemptiveAuth(builder, provider, getKeyId());
+                builder.addInterceptorLast(new HttpRequestInterceptor() {
+                    public void process(HttpRequest request, HttpContext context) {
+                        signingThreads.add(Thread.currentThread().getName());
+                    }
+                });
+                builder.addInterceptorLast(new HttpResponseInterceptor() {
+                    public void process(HttpResponse response, HttpContext context) {
+                        if (response.getStatusLine().getStatusCode() == 401) {
+                            challenges.incrementAndGet();
+                        }
+                    }
+                });
+
+                ExecutorService signingExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        return new Thread(r, "signing");
+                    }
+                });
+
+                CloseableHttpAsyncClient client = builder.build();
+                client.start();
+                try {
+                    for (int i = 0; i < 3; i++) {
+                        HttpResponse response = HttpAsync4Util.execute(client, signer, signingExecutor,
+                                new HttpGet(getAbsoluteUrl(TEST_URL)), null, null).get();
+                        assertEquals("should return 200", 200, response.getStatusLine().getStatusCode());
+                    }
+                } finally {
+                    client.close();
+                    signingExecutor.shutdown();
+                }
+
+                assertEquals("only the unauthorized preemptive signature should be challenged", 1, challenges.get());
+                assertEquals("preemptive signatures should be computed on the signing executor",
+                             Arrays.asList("signing"), Arrays.asList(signingThreads.toArray()));
+            }
+        });
+    }
+
+    @Test
+    public void testCancelDispatchedRequest() {
+        TestBody.test(new TestBody() {
+            @Override protected void execute() throws Exception {
+                DefaultKeychain keychain = new DefaultKeychain();
+                keychain.add(new SSHKey(KeyFormat.SSH_RSA, KeyTestUtil.getKeyPairFromProperties("b2048", "id_rsa")));
+                Signer signer = new Signer(keychain);
+                PendingClient client = new PendingClient();
+
+                Future<HttpResponse> future = HttpAsync4Util.execute(client, signer, new Executor() {
+                    public void execute(Runnable command) {
+                        command.run();
+                    }
+                }, new HttpGet("http://localhost" + TEST_URL), null, null);
+
+                assertNotNull("request should be dispatched to the client", client.pending);
+                assertTrue("future should be cancelled", future.cancel(true));
+                assertTrue("dispatched request should be cancelled", client.pending.isCancelled());
+            }
+        });
+    }
+
+    /**
+     * Client which leaves every request pending
+     */
+    static class PendingClient implements HttpAsyncClient {
+        BasicFuture<HttpResponse> pending;
+
+        public Future<HttpResponse> execute(HttpUriRequest request, HttpContext context,
+                                            FutureCallback<HttpResponse> callback) {
+            pending = new BasicFuture<HttpResponse>(callback);
+            return pending;
+        }
+
+        public Future<HttpResponse> execute(HttpUriRequest request, FutureCallback<HttpResponse> callback) {
+            return execute(request, null, callback);
+        }
+
+        public <T> Future<T> execute(HttpAsyncRequestProducer requestProducer,
+                                     HttpAsyncResponseConsumer<T> responseConsumer, HttpContext context,
+                                     FutureCallback<T> callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        public <T> Future<T> execute(HttpAsyncRequestProducer requestProducer,
+                                     HttpAsyncResponseConsumer<T> responseConsumer, FutureCallback<T> callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        public Future<HttpResponse> execute(HttpHost target, HttpRequest request, HttpContext context,
+                                            FutureCallback<HttpResponse> callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        public Future<HttpResponse> execute(HttpHost target, HttpRequest request,
+                                            FutureCallback<HttpResponse> callback) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
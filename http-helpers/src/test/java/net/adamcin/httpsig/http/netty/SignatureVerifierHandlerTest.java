@@ -0,0 +1,183 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.http.netty;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
+import net.adamcin.commons.testing.junit.TestBody;
+import net.adamcin.httpsig.api.Authorization;
+import net.adamcin.httpsig.api.Challenge;
+import net.adamcin.httpsig.api.Constants;
+import net.adamcin.httpsig.api.DefaultKeychain;
+import net.adamcin.httpsig.api.DefaultVerifier;
+import net.adamcin.httpsig.api.RequestContent;
+import net.adamcin.httpsig.api.Signer;
+import net.adamcin.httpsig.ssh.jce.KeyFormat;
+import net.adamcin.httpsig.ssh.jce.SSHKey;
+import net.adamcin.httpsig.testutil.KeyTestUtil;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SignatureVerifierHandlerTest {
+
+    private static final String TEST_URL = "/index.html?path=/may/get/url/encoded&foo=bar";
+
+    @Test
+    public void testVerifyInline() {
+        TestBody.test(new HandlerTestBody() {
+            @Override protected void execute() throws Exception {
+                EmbeddedChannel channel = new EmbeddedChannel(new SignatureVerifierHandler(verifier, challenge));
+
+                FullHttpRequest signed = signedRequest();
+                channel.writeInbound(signed);
+                assertSame("signed request should pass", signed, channel.readInbound());
+                assertNull("no response should be written", channel.readOutbound());
+
+                HttpRequest unsigned = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, TEST_URL);
+                LastHttpContent body = new DefaultLastHttpContent(Unpooled.copiedBuffer(new byte[] { 1, 2, 3 }));
+                channel.writeInbound(unsigned, body);
+                assertNull("unsigned request should not pass", channel.readInbound());
+                assertEquals("body of rejected request should be released", 0, body.refCnt());
+
+                FullHttpResponse response = (FullHttpResponse) channel.readOutbound();
+                assertEquals("response should be 401", HttpResponseStatus.UNAUTHORIZED, response.getStatus());
+                assertEquals("response should carry the challenge", challenge.getHeaderValue(),
+                             response.headers().get(Constants.CHALLENGE));
+
+                FullHttpRequest next = signedRequest();
+                channel.writeInbound(next);
+                assertSame("next request should pass after discarding", next, channel.readInbound());
+                channel.finish();
+            }
+        });
+    }
+
+    @Test
+    public void testVerifyOffloaded() {
+        TestBody.test(new HandlerTestBody() {
+            @Override protected void execute() throws Exception {
+                EventExecutorGroup group = new DefaultEventExecutorGroup(1);
+                try {
+                    EmbeddedChannel channel = new EmbeddedChannel(new SignatureVerifierHandler(verifier, challenge, group));
+
+                    FullHttpRequest first = signedRequest();
+                    FullHttpRequest forged = signedRequest();
+                    forged.headers().set(Constants.HEADER_DATE, "Thu, 01 Dec 1994 16:00:00 GMT");
+                    FullHttpRequest last = signedRequest();
+                    channel.writeInbound(first, forged, last);
+                    assertFalse("channel should stop reading while verifying", channel.config().isAutoRead());
+
+                    assertSame("first request should pass", first, awaitInbound(channel));
+                    assertSame("requests should stay in order", last, awaitInbound(channel));
+                    FullHttpResponse response = (FullHttpResponse) channel.readOutbound();
+                    assertEquals("forged request should get 401", HttpResponseStatus.UNAUTHORIZED, response.getStatus());
+                    assertTrue("channel should read again", channel.config().isAutoRead());
+                    channel.finish();
+                } finally {
+                    group.shutdownGracefully().syncUninterruptibly();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testVerifyRejected() {
+        TestBody.test(new HandlerTestBody() {
+            @Override protected void execute() throws Exception {
+                EventExecutorGroup group = new DefaultEventExecutorGroup(1);
+                group.shutdownGracefully(0L, 0L, TimeUnit.SECONDS).syncUninterruptibly();
+                EmbeddedChannel channel = new EmbeddedChannel(new SignatureVerifierHandler(verifier, challenge, group));
+
+                HttpRequest signed = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, TEST_URL);
+                signed.headers().set(signedRequest().headers());
+                LastHttpContent body = new DefaultLastHttpContent(Unpooled.copiedBuffer(new byte[] { 1, 2, 3 }));
+                channel.writeInbound(signed, body);
+                assertNull("rejected request should not pass", channel.readInbound());
+                assertEquals("body of rejected request should be released", 0, body.refCnt());
+                assertTrue("channel should read again", channel.config().isAutoRead());
+
+                FullHttpResponse response = (FullHttpResponse) channel.readOutbound();
+                assertEquals("response should be 503", HttpResponseStatus.SERVICE_UNAVAILABLE, response.getStatus());
+                assertNull("response should not carry the challenge", response.headers().get(Constants.CHALLENGE));
+                channel.finish();
+            }
+        });
+    }
+
+    private static Object awaitInbound(EmbeddedChannel channel) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            channel.runPendingTasks();
+            Object msg = channel.readInbound();
+            if (msg != null) {
+                return msg;
+            }
+            Thread.sleep(10L);
+        }
+        return null;
+    }
+
+    abstract class HandlerTestBody extends TestBody {
+        final List<String> headers = Arrays.asList(Constants.HEADER_REQUEST_TARGET, Constants.HEADER_DATE);
+        final Challenge challenge = new Challenge("SignatureVerifierHandlerTest", headers,
+                                                  KeyFormat.SSH_RSA.getSignatureAlgorithms());
+        final DefaultKeychain keychain = new DefaultKeychain();
+        final DefaultVerifier verifier = new DefaultVerifier(keychain);
+        final Signer signer = new Signer(keychain);
+
+        HandlerTestBody() {
+            keychain.add(new SSHKey(KeyFormat.SSH_RSA, KeyTestUtil.getKeyPairFromProperties("b2048", "id_rsa")));
+            signer.rotateKeys(challenge);
+        }
+
+        FullHttpRequest signedRequest() {
+            RequestContent content = new RequestContent.Builder().setRequestTarget("GET", TEST_URL).addDateNow().build();
+            Authorization authorization = signer.sign(content);
+            FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, TEST_URL);
+            request.headers().set(Constants.HEADER_DATE, content.getDate());
+            request.headers().set(Constants.AUTHORIZATION, authorization.getHeaderValue());
+            return request;
+        }
+    }
+}
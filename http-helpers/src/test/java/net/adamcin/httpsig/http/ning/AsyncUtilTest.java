@@ -29,11 +29,17 @@ package net.adamcin.httpsig.http.ning;
 
 import com.ning.http.client.AsyncCompletionHandler;
 import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.AsyncHttpClientConfig;
+import com.ning.http.client.HttpResponseStatus;
 import com.ning.http.client.Request;
 import com.ning.http.client.Response;
+import com.ning.http.client.filter.FilterContext;
+import com.ning.http.client.filter.RequestFilter;
 import net.adamcin.commons.testing.junit.TestBody;
+import net.adamcin.httpsig.api.Algorithm;
 import net.adamcin.httpsig.api.Constants;
 import net.adamcin.httpsig.api.DefaultKeychain;
+import net.adamcin.httpsig.api.Key;
 import net.adamcin.httpsig.api.Signer;
 import net.adamcin.httpsig.http.HttpServerTestBody;
 import net.adamcin.httpsig.ssh.jce.SSHKey;
@@ -44,8 +50,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.security.KeyPair;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -140,4 +150,133 @@ public class AsyncUtilTest {
             }
         });
     }
+
+    @Test
+    public void testLoginReplaysOnCallerClient() {
+        TestBody.test(new HttpServerTestBody() {
+            @Override protected void execute() throws Exception {
+                List<String> headers = Arrays.asList(
+                        Constants.HEADER_REQUEST_TARGET,
+                        Constants.HEADER_DATE);
+
+                setServlet(new AdminServlet(headers));
+
+                DefaultKeychain keychain = new DefaultKeychain();
+                keychain.add(new SSHKey(KeyFormat.ECDSA_SHA2_NISTP256,
+                                        KeyTestUtil.getPrivateKeyAsKeyPair("ecdsa256", "id_ecdsa", null)));
+                keychain.add(new SSHKey(KeyFormat.SSH_RSA, KeyTestUtil.getKeyPairFromProperties("b2048", "id_rsa")));
+
+                final AtomicInteger requests = new AtomicInteger();
+                AsyncHttpClient client = new AsyncHttpClient(new AsyncHttpClientConfig.Builder()
+                        .addRequestFilter(new RequestFilter() {
+                            public FilterContext filter(FilterContext ctx) {
+                                requests.incrementAndGet();
+                                return ctx;
+                            }
+                        }).build());
+
+                try {
+                    final List<Integer> statuses = new ArrayList<Integer>();
+                    Signer signer = new Signer(keychain, getKeyId());
+                    Boolean response = AsyncUtil.login(
+                            client, signer,
+                            client.prepareGet(getAbsoluteUrl(TEST_URL)).build(),
+                            new AsyncCompletionHandler<Boolean>() {
+                                @Override
+                                public STATE onStatusReceived(HttpResponseStatus status) throws Exception {
+                                    statuses.add(status.getStatusCode());
+                                    return super.onStatusReceived(status);
+                                }
+
+                                @Override
+                                public Boolean onCompleted(Response response) throws Exception {
+                                    return response.getStatusCode() == 200;
+                                }
+                            }
+                    ).get();
+
+                    assertTrue("login should be successful", response);
+                    assertEquals("login should be replayed on the caller's client", 2, requests.get());
+                    assertEquals("401 should not reach the response handler", Arrays.asList(200), statuses);
+                } finally {
+                    client.close();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testLoginStopsWhenReplayIsUnsigned() {
+        TestBody.test(new HttpServerTestBody() {
+            @Override protected void execute() throws Exception {
+                List<String> headers = Arrays.asList(
+                        Constants.HEADER_REQUEST_TARGET,
+                        Constants.HEADER_DATE);
+
+                setServlet(new AdminServlet(headers));
+
+                DefaultKeychain keychain = new DefaultKeychain();
+                keychain.add(new UnsignableKey(
+                        new SSHKey(KeyFormat.SSH_RSA, KeyTestUtil.getKeyPairFromProperties("b2048", "id_rsa"))));
+
+                final AtomicInteger requests = new AtomicInteger();
+                AsyncHttpClient client = new AsyncHttpClient(new AsyncHttpClientConfig.Builder()
+                        .addRequestFilter(new RequestFilter() {
+                            public FilterContext filter(FilterContext ctx) {
+                                requests.incrementAndGet();
+                                return ctx;
+                            }
+                        }).build());
+
+                try {
+                    Signer signer = new Signer(keychain, getKeyId());
+                    Boolean response = AsyncUtil.login(
+                            client, signer,
+                            client.prepareGet(getAbsoluteUrl(TEST_URL)).build(),
+                            DEFAULT_HANDLER
+                    ).get(10, TimeUnit.SECONDS);
+
+                    assertFalse("login should not be successful", response);
+                    assertEquals("unsigned replay should not be replayed again", 2, requests.get());
+                } finally {
+                    client.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Key which claims it can sign, but fails to
+     */
+    static class UnsignableKey implements Key {
+        private final Key key;
+
+        UnsignableKey(Key key) {
+            this.key = key;
+        }
+
+        public String getId() {
+            return key.getId();
+        }
+
+        public Set<Algorithm> getAlgorithms() {
+            return key.getAlgorithms();
+        }
+
+        public boolean canVerify() {
+            return false;
+        }
+
+        public boolean verify(Algorithm algorithm, byte[] contentBytes, byte[] signatureBytes) {
+            return false;
+        }
+
+        public boolean canSign() {
+            return true;
+        }
+
+        public byte[] sign(Algorithm algorithm, byte[] contentBytes) {
+            return null;
+        }
+    }
 }
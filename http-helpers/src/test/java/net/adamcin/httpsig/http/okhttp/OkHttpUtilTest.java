@@ -0,0 +1,191 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.http.okhttp;
+
+import net.adamcin.commons.testing.junit.TestBody;
+import net.adamcin.httpsig.api.Algorithm;
+import net.adamcin.httpsig.api.Challenge;
+import net.adamcin.httpsig.api.Constants;
+import net.adamcin.httpsig.api.DefaultKeychain;
+import net.adamcin.httpsig.http.HttpServerTestBody;
+import net.adamcin.httpsig.ssh.jce.KeyFormat;
+import net.adamcin.httpsig.ssh.jce.SSHKey;
+import net.adamcin.httpsig.testutil.KeyTestUtil;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.security.KeyPair;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class OkHttpUtilTest {
+
+    private static final String TEST_URL = "/index.html?path=/may/get/url/encoded&foo=bar";
+
+    @Test
+    public void testLogin() {
+        TestBody.test(new HttpServerTestBody() {
+            @Override protected void execute() throws Exception {
+
+                List<String> headers = Arrays.asList(
+                        Constants.HEADER_REQUEST_TARGET,
+                        Constants.HEADER_DATE);
+
+                setServlet(new AdminServlet(headers));
+
+                KeyPair keyPair = KeyTestUtil.getKeyPairFromProperties("b2048", "id_rsa");
+
+                DefaultKeychain provider = new DefaultKeychain();
+                provider.add(new SSHKey(KeyFormat.SSH_RSA, keyPair));
+
+                OkHttpClient.Builder builder = new OkHttpClient.Builder();
+                OkHttpUtil.enableAuth(builder, provider, getKeyId());
+                OkHttpClient client = builder.build();
+
+                Response response = client.newCall(new Request.Builder().url(getAbsoluteUrl(TEST_URL)).build()).execute();
+                try {
+                    assertEquals("should return 200", 200, response.code());
+                } finally {
+                    response.close();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testPreemptiveLogin() {
+        TestBody.test(new HttpServerTestBody() {
+            @Override protected void execute() throws Exception {
+
+                List<String> headers = Arrays.asList(
+                        Constants.HEADER_REQUEST_TARGET,
+                        Constants.HEADER_DATE);
+
+                setServlet(new AdminServlet(headers));
+
+                KeyPair keyPair = KeyTestUtil.getKeyPairFromProperties("b2048", "id_rsa");
+
+                KeyPair unauthorized = KeyTestUtil.getPrivateKeyAsKeyPair("ecdsa256", "id_ecdsa", null);
+
+                DefaultKeychain provider = new DefaultKeychain();
+                provider.add(new SSHKey(KeyFormat.ECDSA_SHA2_NISTP256, unauthorized));
+                provider.add(new SSHKey(KeyFormat.SSH_RSA, keyPair));
+
+                final AtomicInteger challenges = new AtomicInteger();
+
+                OkHttpClient.Builder builder = new OkHttpClient.Builder();
+                OkHttpUtil.enablePreemptiveAuth(builder, provider, getKeyId());
+                builder.addNetworkInterceptor(new Interceptor() {
+                    public Response intercept(Chain chain) throws IOException {
+                        Response response = chain.proceed(chain.request());
+                        if (response.code() == 401) {
+                            challenges.incrementAndGet();
+                        }
+                        return response;
+                    }
+                });
+                OkHttpClient client = builder.build();
+
+                for (int i = 0; i < 3; i++) {
+                    Response response = client.newCall(new Request.Builder().url(getAbsoluteUrl(TEST_URL)).build())
+                            .execute();
+                    try {
+                        assertEquals("should return 200", 200, response.code());
+                    } finally {
+                        response.close();
+                    }
+                }
+
+                assertEquals("only the unauthorized preemptive signature should be challenged", 1, challenges.get());
+                assertEquals("signed requests should share one pooled connection",
+                             1, client.connectionPool().connectionCount());
+            }
+        });
+    }
+
+    @Test
+    public void testLoginWithHost() {
+        TestBody.test(new HttpServerTestBody() {
+            @Override protected void execute() throws Exception {
+
+                List<String> headers = Arrays.asList(
+                        Constants.HEADER_REQUEST_TARGET,
+                        "host",
+                        Constants.HEADER_DATE);
+
+                setServlet(new AdminServlet(headers));
+
+                DefaultKeychain provider = new DefaultKeychain();
+                provider.add(new SSHKey(KeyFormat.SSH_RSA, KeyTestUtil.getKeyPairFromProperties("b2048", "id_rsa")));
+
+                OkHttpClient.Builder builder = new OkHttpClient.Builder();
+                OkHttpUtil.enableAuth(builder, provider, getKeyId());
+                OkHttpClient client = builder.build();
+
+                Response response = client.newCall(new Request.Builder().url(getAbsoluteUrl(TEST_URL)).build()).execute();
+                try {
+                    assertEquals("authenticator should sign the host header", 200, response.code());
+                } finally {
+                    response.close();
+                }
+
+                OkHttpClient.Builder preemptiveBuilder = new OkHttpClient.Builder();
+                OkHttpUtil.enablePreemptiveAuth(preemptiveBuilder, provider, getKeyId(),
+                                                new Challenge(AdminServlet.class.getName(), headers,
+                                                              Arrays.asList(Algorithm.SSH_RSA)), null);
+                final AtomicInteger challenges = new AtomicInteger();
+                preemptiveBuilder.addNetworkInterceptor(new Interceptor() {
+                    public Response intercept(Chain chain) throws IOException {
+                        Response response = chain.proceed(chain.request());
+                        if (response.code() == 401) {
+                            challenges.incrementAndGet();
+                        }
+                        return response;
+                    }
+                });
+                OkHttpClient preemptiveClient = preemptiveBuilder.build();
+
+                Response preemptiveResponse = preemptiveClient.newCall(
+                        new Request.Builder().url(getAbsoluteUrl(TEST_URL)).build()).execute();
+                try {
+                    assertEquals("should return 200", 200, preemptiveResponse.code());
+                    assertEquals("interceptor should sign the host header", 0, challenges.get());
+                } finally {
+                    preemptiveResponse.close();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.http.servlet;
+
+import net.adamcin.httpsig.api.Algorithm;
+import net.adamcin.httpsig.api.Authorization;
+import net.adamcin.httpsig.api.Challenge;
+import net.adamcin.httpsig.api.Constants;
+import net.adamcin.httpsig.api.DefaultKeychain;
+import net.adamcin.httpsig.api.DefaultVerifier;
+import net.adamcin.httpsig.api.RequestContent;
+import net.adamcin.httpsig.api.SignableRequest;
+import net.adamcin.httpsig.api.Signer;
+import net.adamcin.httpsig.api.VerifyResult;
+import net.adamcin.httpsig.ssh.jce.KeyFormat;
+import net.adamcin.httpsig.ssh.jce.SSHKey;
+import net.adamcin.httpsig.testutil.KeyTestUtil;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class ServletUtilTest {
+
+    @Test
+    public void testSignableRequest() {
+        HttpServletRequest req = new MockRequest("GET", "/index.html", "path=/may/get/url/encoded&foo=bar")
+                .addHeader("Date", "Tue, 07 Jun 2014 20:51:35 GMT")
+                .addHeader("Accept", "text/html")
+                .addHeader("Accept", "application/json")
+                .addHeader("X-Forwarded-For", "10.0.0.1")
+                .proxy();
+
+        SignableRequest request = ServletUtil.getSignableRequest(req, Arrays.asList("x-forwarded-for"));
+        assertEquals("path should join the query string", "/index.html?path=/may/get/url/encoded&foo=bar",
+                     request.getPath());
+        assertEquals("request line should use the joined path",
+                     "GET /index.html?path=/may/get/url/encoded&foo=bar HTTP/1.1", request.getRequestLine());
+        assertEquals("all header values should be returned in order",
+                     Arrays.asList("text/html", "application/json"), request.getHeaderValues("accept"));
+        assertEquals("ignored headers should be matched case-insensitively",
+                     Collections.<String>emptyList(), request.getHeaderValues("X-FORWARDED-FOR"));
+        assertEquals("missing headers should have no values",
+                     Collections.<String>emptyList(), request.getHeaderValues("Authorization"));
+
+        SignableRequest noQuery = ServletUtil.getSignableRequest(new MockRequest("GET", "/index.html", null).proxy());
+        assertEquals("path without a query string should be the request URI", "/index.html", noQuery.getPath());
+    }
+
+    @Test
+    public void testVerifySignableRequest() {
+        HttpServletRequest req = new MockRequest("POST", "/submit", "foo=bar")
+                .addHeader("Date", new RequestContent.Builder().addDateNow().getDate())
+                .addHeader("Accept", "text/html")
+                .addHeader("Accept", "application/json")
+                .proxy();
+
+        List<String> headers = Arrays.asList(Constants.HEADER_REQUEST_TARGET, Constants.HEADER_DATE, "accept");
+        Challenge challenge = new Challenge("myRealm", headers, Arrays.asList(Algorithm.SSH_RSA));
+        DefaultKeychain keychain = new DefaultKeychain();
+        keychain.add(new SSHKey(KeyFormat.SSH_RSA, KeyTestUtil.getKeyPairFromProperties("b2048", "id_rsa")));
+        Signer signer = new Signer(keychain);
+        signer.rotateKeys(challenge);
+        RequestContent content = ServletUtil.getRequestContent(req);
+        Authorization authorization = signer.sign(content);
+        assertNotNull("signer should sign the eager request content", authorization);
+
+        DefaultVerifier verifier = new DefaultVerifier(keychain);
+        assertEquals("lazy request should verify a signature over the eager request content",
+                     VerifyResult.SUCCESS,
+                     verifier.verifyWithResult(challenge, ServletUtil.getSignableRequest(req), authorization));
+        assertEquals("ignoring a signed header should fail verification", VerifyResult.INCOMPLETE_REQUEST,
+                     verifier.verifyWithResult(challenge, ServletUtil.getSignableRequest(req, Arrays.asList("Accept")),
+                                               authorization));
+    }
+
+    /**
+     * Backs an {@link HttpServletRequest} proxy with a request line and case-insensitive headers
+     */
+    static class MockRequest implements InvocationHandler {
+        private final String method;
+        private final String requestURI;
+        private final String queryString;
+        private final Map<String, List<String>> headers =
+                new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+
+        MockRequest(String method, String requestURI, String queryString) {
+            this.method = method;
+            this.requestURI = requestURI;
+            this.queryString = queryString;
+        }
+
+        MockRequest addHeader(String name, String value) {
+            List<String> values = headers.get(name);
+            if (values == null) {
+                values = new ArrayList<String>();
+                headers.put(name, values);
+            }
+            values.add(value);
+            return this;
+        }
+
+        HttpServletRequest proxy() {
+            return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(),
+                                                               new Class<?>[]{HttpServletRequest.class}, this);
+        }
+
+        public Object invoke(Object proxy, Method m, Object[] args) {
+            String name = m.getName();
+            if ("getMethod".equals(name)) {
+                return method;
+            } else if ("getRequestURI".equals(name)) {
+                return requestURI;
+            } else if ("getQueryString".equals(name)) {
+                return queryString;
+            } else if ("getProtocol".equals(name)) {
+                return "HTTP/1.1";
+            } else if ("getHeaderNames".equals(name)) {
+                return Collections.enumeration(headers.keySet());
+            } else if ("getHeaders".equals(name)) {
+                List<String> values = headers.get((String) args[0]);
+                return Collections.enumeration(values != null ? values : Collections.<String>emptyList());
+            } else if ("getHeader".equals(name)) {
+                List<String> values = headers.get((String) args[0]);
+                return values != null ? values.get(0) : null;
+            }
+            throw new UnsupportedOperationException(name);
+        }
+    }
+}
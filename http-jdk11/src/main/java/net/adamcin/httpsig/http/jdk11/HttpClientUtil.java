@@ -0,0 +1,266 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.http.jdk11;
+
+import net.adamcin.httpsig.api.Authorization;
+import net.adamcin.httpsig.api.Challenge;
+import net.adamcin.httpsig.api.Constants;
+import net.adamcin.httpsig.api.OriginCache;
+import net.adamcin.httpsig.api.RequestContent;
+import net.adamcin.httpsig.api.Signer;
+import net.adamcin.httpsig.api.SigningFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Signature authentication for the {@link HttpClient} of Java 11. The client has no authentication hook for custom
+ * schemes, so requests are signed and sent through {@link #sendAsync(HttpClient, Signer, HttpRequest, HttpResponse.BodyHandler)}
+ * instead of {@link HttpClient#sendAsync(HttpRequest, HttpResponse.BodyHandler)}.
+ * The {@code host} header is set by the client itself, and cannot be signed. Some Java 11 releases also restrict the
+ * {@code date} header, in which case requests are signed without it, and
+ * {@link #sendAsync(HttpClient, Signer, HttpRequest, HttpResponse.BodyHandler)} fails with an
+ * {@link IllegalStateException} when the server's {@link Challenge} requires it.
+ * @since 1.3.2
+ */
+public final class HttpClientUtil {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpClientUtil.class);
+
+    private static final boolean DATE_ALLOWED = isDateAllowed();
+
+    /**
+     * Signs the request with the current key of the {@link Signer} and sends it. A 401 response carrying a
+     * {@link Challenge} rotates the {@link Signer} and replays the request, until the server accepts a signature or no
+     * key is left, in which case the 401 response is returned.
+     * @param client the {@link HttpClient}
+     * @param signer the {@link Signer}
+     * @param request the unsigned request
+     * @param responseBodyHandler the {@link HttpResponse.BodyHandler} for the final response
+     * @param <T> the response body type
+     * @return the future final response
+     */
+    public static <T> CompletableFuture<HttpResponse<T>> sendAsync(final HttpClient client, final Signer signer,
+                                                                   final HttpRequest request,
+                                                                   final HttpResponse.BodyHandler<T> responseBodyHandler) {
+        return sendAsync(client, signer, request, responseBodyHandler, null);
+    }
+
+    /**
+     * Signs and sends the request like {@link #sendAsync(HttpClient, Signer, HttpRequest, HttpResponse.BodyHandler)},
+     * sharing the last {@link Challenge} and chosen key for each origin through an {@link OriginCache}
+     * @param client the {@link HttpClient}
+     * @param signer the {@link Signer}
+     * @param request the unsigned request
+     * @param responseBodyHandler the {@link HttpResponse.BodyHandler} for the final response
+     * @param originCache the {@link OriginCache}, or null
+     * @param <T> the response body type
+     * @return the future final response
+     */
+    public static <T> CompletableFuture<HttpResponse<T>> sendAsync(final HttpClient client, final Signer signer,
+                                                                   final HttpRequest request,
+                                                                   final HttpResponse.BodyHandler<T> responseBodyHandler,
+                                                                   final OriginCache originCache) {
+        if (client == null) {
+            throw new NullPointerException("client");
+        }
+        if (signer == null) {
+            throw new NullPointerException("signer");
+        }
+        if (responseBodyHandler == null) {
+            throw new NullPointerException("responseBodyHandler");
+        }
+
+        String origin = null;
+        if (originCache != null) {
+            origin = getOrigin(request.uri());
+            originCache.applyTo(signer, origin);
+        }
+        return new RotateAndReplayHandler<T>(client, signer, request, responseBodyHandler, originCache, origin)
+                .send(false);
+    }
+
+    /**
+     * Signs a copy of the request with the current key of the {@link Signer}, adding a date header if it has none and
+     * this JDK allows it. Otherwise the date is not signed, and a server which requires it will reject the request.
+     * @param signer the {@link Signer}
+     * @param request the unsigned request
+     * @return the future signed request, which is the unsigned copy if no key could sign it
+     */
+    public static CompletableFuture<HttpRequest> sign(final Signer signer, final HttpRequest request) {
+        final HttpRequest.Builder copy = copyRequest(request);
+        RequestContent requestContent = prepareRequestContent(request, copy);
+        return signAsync(signer, requestContent).thenApply(authorization -> {
+            if (authorization != null) {
+                copy.setHeader(Constants.AUTHORIZATION, authorization.getHeaderValue());
+            }
+            return copy.build();
+        });
+    }
+
+    /**
+     * Builds the {@link RequestContent} from all headers of the request in a single pass
+     * @param request the request
+     * @return the {@link RequestContent}
+     */
+    public static RequestContent getRequestContent(final HttpRequest request) {
+        return buildRequestContent(request).build();
+    }
+
+    /**
+     * @param headers the response headers
+     * @return the first {@link Challenge} of the response, or null
+     */
+    static Challenge getChallenge(final HttpHeaders headers) {
+        for (String header : headers.allValues(Constants.CHALLENGE)) {
+            Challenge challenge = Challenge.parse(header);
+            if (challenge != null) {
+                return challenge;
+            }
+        }
+        return null;
+    }
+
+    static String getOrigin(final URI uri) {
+        return OriginCache.getOrigin(uri.getScheme(), uri.getHost(), uri.getPort());
+    }
+
+    /**
+     * Copies the request, without its authorization header, so that it can be signed and sent again
+     */
+    static HttpRequest.Builder copyRequest(final HttpRequest request) {
+        final HttpRequest.Builder builder = HttpRequest.newBuilder(request.uri())
+                .method(request.method(), request.bodyPublisher().orElseGet(HttpRequest.BodyPublishers::noBody))
+                .expectContinue(request.expectContinue());
+        request.timeout().ifPresent(builder::timeout);
+        request.version().ifPresent(builder::version);
+        for (Map.Entry<String, List<String>> header : request.headers().map().entrySet()) {
+            if (!Constants.AUTHORIZATION.equalsIgnoreCase(header.getKey())) {
+                for (String value : header.getValue()) {
+                    builder.header(header.getKey(), value);
+                }
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * Builds the {@link RequestContent} for the request, adding a date header to the copy if the request has none
+     */
+    static RequestContent prepareRequestContent(final HttpRequest request, final HttpRequest.Builder copy) {
+        RequestContent.Builder sigBuilder = buildRequestContent(request);
+        if (sigBuilder.getDate() == null && DATE_ALLOWED) {
+            sigBuilder.addDateNow();
+            copy.header(Constants.HEADER_DATE, sigBuilder.getDate());
+        }
+        return sigBuilder.build();
+    }
+
+    /**
+     * @return false if the {@link Challenge} requires a date header, which the {@link HttpClient} of this JDK will not
+     *         send
+     */
+    static boolean isDateSendable(final Challenge challenge) {
+        if (DATE_ALLOWED) {
+            return true;
+        }
+        for (String header : challenge.getHeaders()) {
+            if (Constants.HEADER_DATE.equalsIgnoreCase(header)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adapts {@link Signer#signAsync(RequestContent)} to a {@link CompletableFuture}
+     */
+    static CompletableFuture<Authorization> signAsync(final Signer signer, final RequestContent requestContent) {
+        final CompletableFuture<Authorization> result = new CompletableFuture<Authorization>();
+        final SigningFuture<Authorization> signing = signer.signAsync(requestContent);
+        signing.addListener(() -> {
+            try {
+                result.complete(signing.get());
+            } catch (ExecutionException e) {
+                result.completeExceptionally(e.getCause());
+            } catch (InterruptedException e) {
+                result.completeExceptionally(e);
+            } catch (CancellationException e) {
+                result.cancel(false);
+            }
+        }, null);
+        return result;
+    }
+
+    private static RequestContent.Builder buildRequestContent(final HttpRequest request) {
+        RequestContent.Builder sigBuilder = new RequestContent.Builder();
+        sigBuilder.setRequestTarget(request.method(), getRequestPath(request.uri()));
+        for (Map.Entry<String, List<String>> header : request.headers().map().entrySet()) {
+            if (!Constants.AUTHORIZATION.equalsIgnoreCase(header.getKey())) {
+                for (String value : header.getValue()) {
+                    sigBuilder.addHeader(header.getKey(), value);
+                }
+            }
+        }
+        return sigBuilder;
+    }
+
+    private static String getRequestPath(final URI uri) {
+        String path = uri.getRawPath();
+        if (path == null || path.isEmpty()) {
+            path = "/";
+        }
+        return uri.getRawQuery() != null ? path + "?" + uri.getRawQuery() : path;
+    }
+
+    /**
+     * The date header is restricted by the {@link HttpClient} of some Java 11 releases
+     */
+    private static boolean isDateAllowed() {
+        try {
+            HttpRequest.newBuilder().header(Constants.HEADER_DATE, "Thu, 01 Jan 1970 00:00:00 GMT");
+            return true;
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("[isDateAllowed] the date header is restricted by this JDK, so requests will be signed without "
+                    + "it, and challenges which require it will fail");
+            return false;
+        }
+    }
+
+    private HttpClientUtil() {
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.http.jdk11;
+
+import net.adamcin.httpsig.api.Authorization;
+import net.adamcin.httpsig.api.Challenge;
+import net.adamcin.httpsig.api.Constants;
+import net.adamcin.httpsig.api.OriginCache;
+import net.adamcin.httpsig.api.RequestContent;
+import net.adamcin.httpsig.api.Signer;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Request-scoped {@link HttpResponse.BodyHandler} used by
+ * {@link HttpClientUtil#sendAsync(HttpClient, Signer, HttpRequest, HttpResponse.BodyHandler, OriginCache)}.
+ * A 401 response carrying a {@link Challenge} rotates the {@link Signer}, and its body is discarded while the request
+ * is signed again and replayed. Any other response is passed to the caller's handler. A {@link Challenge} which
+ * requires a date header that this JDK will not send fails the response with an {@link IllegalStateException}.
+ * <p>
+ * Whether to replay is decided by {@link Signer#rotateForReplay(Challenge, Authorization, Challenge, int)}, so the
+ * request is replayed at most once per key in the keychain.
+ */
+final class RotateAndReplayHandler<T> implements HttpResponse.BodyHandler<T> {
+
+    private final HttpClient client;
+    private final Signer signer;
+    private final HttpRequest request;
+    private final HttpResponse.BodyHandler<T> delegate;
+    private final OriginCache originCache;
+    private final String origin;
+    private final int replays;
+    private final Challenge signedFor;
+
+    private volatile Authorization authorization;
+    private volatile Challenge replayFor;
+    private volatile RuntimeException failure;
+
+    RotateAndReplayHandler(HttpClient client, Signer signer, HttpRequest request, HttpResponse.BodyHandler<T> delegate,
+                           OriginCache originCache, String origin) {
+        this(client, signer, request, delegate, originCache, origin, 0, null);
+    }
+
+    private RotateAndReplayHandler(HttpClient client, Signer signer, HttpRequest request,
+                                   HttpResponse.BodyHandler<T> delegate, OriginCache originCache, String origin,
+                                   int replays, Challenge signedFor) {
+        this.client = client;
+        this.signer = signer;
+        this.request = request;
+        this.delegate = delegate;
+        this.originCache = originCache;
+        this.origin = origin;
+        this.replays = replays;
+        this.signedFor = signedFor;
+    }
+
+    /**
+     * Signs the request with the current key and sends it
+     * @param replayed true if the signer was rotated for this attempt
+     * @return the future final response
+     */
+    CompletableFuture<HttpResponse<T>> send(final boolean replayed) {
+        final HttpRequest.Builder copy = HttpClientUtil.copyRequest(request);
+        RequestContent requestContent = HttpClientUtil.prepareRequestContent(request, copy);
+        return HttpClientUtil.signAsync(signer, requestContent).thenCompose(authz -> {
+            this.authorization = authz;
+            if (authz != null) {
+                copy.setHeader(Constants.AUTHORIZATION, authz.getHeaderValue());
+                if (replayed && originCache != null) {
+                    originCache.signed(origin, authz);
+                }
+            }
+            return client.sendAsync(copy.build(), this);
+        }).thenCompose(response -> {
+            if (failure != null) {
+                return CompletableFuture.failedFuture(failure);
+            }
+            if (replayFor != null) {
+                return new RotateAndReplayHandler<T>(client, signer, request, delegate, originCache, origin,
+                                                     replays + 1, replayFor).send(true);
+            }
+            return CompletableFuture.completedFuture(response);
+        });
+    }
+
+    public HttpResponse.BodySubscriber<T> apply(HttpResponse.ResponseInfo responseInfo) {
+        if (responseInfo.statusCode() == 401) {
+            Challenge challenge = HttpClientUtil.getChallenge(responseInfo.headers());
+            if (challenge != null && !HttpClientUtil.isDateSendable(challenge)) {
+                failure = new IllegalStateException("the server requires a signed date header, which the HttpClient of "
+                        + "this JDK does not send");
+                return HttpResponse.BodySubscribers.replacing(null);
+            }
+            if (challenge != null && rotate(challenge)) {
+                replayFor = challenge;
+                return HttpResponse.BodySubscribers.replacing(null);
+            }
+        }
+        return delegate.apply(responseInfo);
+    }
+
+    private boolean rotate(Challenge challenge) {
+        return originCache != null
+                ? originCache.rotateForReplay(signer, origin, challenge, authorization, signedFor, replays)
+                : signer.rotateForReplay(challenge, authorization, signedFor, replays);
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.http.jdk11;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.adamcin.commons.testing.junit.FailUtil;
+import net.adamcin.httpsig.api.Algorithm;
+import net.adamcin.httpsig.api.Authorization;
+import net.adamcin.httpsig.api.Challenge;
+import net.adamcin.httpsig.api.Constants;
+import net.adamcin.httpsig.api.DefaultKeychain;
+import net.adamcin.httpsig.api.DefaultVerifier;
+import net.adamcin.httpsig.api.Key;
+import net.adamcin.httpsig.api.Keychain;
+import net.adamcin.httpsig.api.RequestContent;
+import net.adamcin.httpsig.api.Signer;
+import net.adamcin.httpsig.api.VerifyResult;
+import net.adamcin.httpsig.ssh.jce.AuthorizedKeys;
+import net.adamcin.httpsig.ssh.jce.KeyFormat;
+import net.adamcin.httpsig.ssh.jce.SSHKey;
+import net.adamcin.httpsig.testutil.KeyTestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class HttpClientUtilTest {
+
+    private static final String TEST_URL = "/index.html?path=/may/get/url/encoded&foo=bar";
+
+    private HttpServer server;
+    private Keychain authorizedKeys;
+    private Challenge challenge;
+    private final AtomicInteger challenges = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        authorizedKeys = AuthorizedKeys.newKeychain(KeyTestUtil.getAuthorizedKeysFile());
+        List<String> headers = Arrays.asList(Constants.HEADER_REQUEST_TARGET, Constants.HEADER_DATE);
+        challenge = new Challenge(getClass().getName(), headers, authorizedKeys.getAlgorithms());
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testSendAsync() {
+        try {
+            DefaultKeychain keychain = new DefaultKeychain();
+            keychain.add(new SSHKey(KeyFormat.ECDSA_SHA2_NISTP256,
+                                    KeyTestUtil.getPrivateKeyAsKeyPair("ecdsa256", "id_ecdsa", null)));
+            keychain.add(new SSHKey(KeyFormat.SSH_RSA, KeyTestUtil.getKeyPairFromProperties("b2048", "id_rsa")));
+
+            Signer signer = new Signer(keychain);
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+            for (int i = 0; i < 3; i++) {
+                HttpResponse<String> response = HttpClientUtil.sendAsync(client, signer,
+                        HttpRequest.newBuilder(getAbsoluteUri(TEST_URL)).build(),
+                        HttpResponse.BodyHandlers.ofString()).get();
+                assertEquals("should return 200", 200, response.statusCode());
+                assertEquals("should pass the body to the caller's handler", "Ok", response.body());
+            }
+
+            assertEquals("only the unauthorized first signature should be challenged", 1, challenges.get());
+        } catch (Exception e) {
+            FailUtil.sprintFail(e);
+        }
+    }
+
+    @Test
+    public void testSendAsyncUnauthorized() {
+        try {
+            DefaultKeychain keychain = new DefaultKeychain();
+            keychain.add(new SSHKey(KeyFormat.ECDSA_SHA2_NISTP256,
+                                    KeyTestUtil.getPrivateKeyAsKeyPair("ecdsa256", "id_ecdsa", null)));
+
+            Signer signer = new Signer(keychain);
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+            HttpResponse<String> response = HttpClientUtil.sendAsync(client, signer,
+                    HttpRequest.newBuilder(getAbsoluteUri(TEST_URL)).build(),
+                    HttpResponse.BodyHandlers.ofString()).get();
+            assertEquals("should return the final 401", 401, response.statusCode());
+            assertEquals("should pass the final 401 body to the caller's handler", "Unauthorized", response.body());
+        } catch (Exception e) {
+            FailUtil.sprintFail(e);
+        }
+    }
+
+    @Test
+    public void testSendAsyncStopsWhenReplayIsUnsigned() {
+        try {
+            DefaultKeychain keychain = new DefaultKeychain();
+            keychain.add(new UnsignableKey(
+                    new SSHKey(KeyFormat.SSH_RSA, KeyTestUtil.getKeyPairFromProperties("b2048", "id_rsa"))));
+
+            Signer signer = new Signer(keychain);
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+            HttpResponse<String> response = HttpClientUtil.sendAsync(client, signer,
+                    HttpRequest.newBuilder(getAbsoluteUri(TEST_URL)).build(),
+                    HttpResponse.BodyHandlers.ofString()).get(10, TimeUnit.SECONDS);
+            assertEquals("should return the final 401", 401, response.statusCode());
+            assertEquals("unsigned replay should not be replayed again", 2, challenges.get());
+        } catch (Exception e) {
+            FailUtil.sprintFail(e);
+        }
+    }
+
+    private URI getAbsoluteUri(String requestUrl) {
+        return URI.create(String.format("http://localhost:%s%s", server.getAddress().getPort(), requestUrl));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        Authorization authorization = Authorization.parse(exchange.getRequestHeaders().getFirst(Constants.AUTHORIZATION));
+        if (authorization != null) {
+            RequestContent.Builder sigBuilder = new RequestContent.Builder();
+            sigBuilder.setRequestTarget(exchange.getRequestMethod(), exchange.getRequestURI().toString());
+            for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+                for (String value : header.getValue()) {
+                    sigBuilder.addHeader(header.getKey(), value);
+                }
+            }
+
+            DefaultVerifier verifier = new DefaultVerifier(authorizedKeys);
+            if (verifier.verifyWithResult(challenge, sigBuilder.build(), authorization) == VerifyResult.SUCCESS) {
+                respond(exchange, 200, "Ok");
+                return;
+            }
+        }
+
+        challenges.incrementAndGet();
+        exchange.getResponseHeaders().add(Constants.CHALLENGE, challenge.getHeaderValue());
+        respond(exchange, 401, "Unauthorized");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Key which claims it can sign, but fails to
+     */
+    static class UnsignableKey implements Key {
+        private final Key key;
+
+        UnsignableKey(Key key) {
+            this.key = key;
+        }
+
+        public String getId() {
+            return key.getId();
+        }
+
+        public Set<Algorithm> getAlgorithms() {
+            return key.getAlgorithms();
+        }
+
+        public boolean canVerify() {
+            return false;
+        }
+
+        public boolean verify(Algorithm algorithm, byte[] contentBytes, byte[] signatureBytes) {
+            return false;
+        }
+
+        public boolean canSign() {
+            return true;
+        }
+
+        public byte[] sign(Algorithm algorithm, byte[] contentBytes) {
+            return null;
+        }
+    }
+}
@@ -30,6 +30,7 @@ package net.adamcin.httpsig.ssh.bc;
 import net.adamcin.httpsig.api.Key;
 import net.adamcin.httpsig.ssh.jce.SSHKey;
 import net.adamcin.httpsig.ssh.jce.KeyFormat;
+import net.adamcin.httpsig.ssh.jce.NistCurve;
 import org.bouncycastle.openssl.PEMDecryptorProvider;
 import org.bouncycastle.openssl.PEMEncryptedKeyPair;
 import org.bouncycastle.openssl.PEMKeyPair;
@@ -46,6 +47,7 @@ import java.io.InputStreamReader;
 import java.security.KeyPair;
 import java.security.interfaces.DSAPrivateKey;
 import java.security.interfaces.DSAPublicKey;
+import java.security.interfaces.ECKey;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
 import java.util.logging.Logger;
@@ -84,6 +86,12 @@ public class PEMUtil {
                 } else if (keyPair.getPrivate() instanceof DSAPrivateKey
                         || keyPair.getPublic() instanceof DSAPublicKey) {
                     return new SSHKey(KeyFormat.SSH_DSS, keyPair);
+                } else if (keyPair.getPublic() instanceof ECKey) {
+                    NistCurve curve = NistCurve.forKey((ECKey) keyPair.getPublic());
+                    if (curve != null) {
+                        return new SSHKey(curve.getKeyFormat(), keyPair);
+                    }
+                    LOGGER.warning("[readKey] unsupported EC curve: " + ((ECKey) keyPair.getPublic()).getParams());
                 }
             }
 
@@ -28,6 +28,7 @@
 package net.adamcin.httpsig.ssh.bc;
 
 import net.adamcin.commons.testing.junit.FailUtil;
+import net.adamcin.httpsig.api.Algorithm;
 import net.adamcin.httpsig.api.Key;
 import net.adamcin.httpsig.ssh.jce.FingerprintableKey;
 import net.adamcin.httpsig.ssh.jce.KeyFormat;
@@ -71,4 +72,20 @@ public class PEMUtilTest {
             FailUtil.sprintFail(e);
         }
     }
+
+    @Test
+    public void testEcdsaKey() {
+        try {
+            Key p256 = PEMUtil.readKey(KeyTestUtil.getPrivateKeyAsFile("ecdsa256", "id_ecdsa"), null);
+            assertTrue("nistp256 key should support ecdsa-sha2-nistp256",
+                       p256.getAlgorithms().contains(Algorithm.ECDSA_SHA2_NISTP256));
+            assertTrue("nistp256 key should be able to sign", p256.canSign());
+
+            Key p384 = PEMUtil.readKey(KeyTestUtil.getPrivateKeyAsFile("ecdsa384", "id_ecdsa"), null);
+            assertTrue("nistp384 key should support ecdsa-sha2-nistp384",
+                       p384.getAlgorithms().contains(Algorithm.ECDSA_SHA2_NISTP384));
+        } catch (IOException e) {
+            FailUtil.sprintFail(e);
+        }
+    }
 }
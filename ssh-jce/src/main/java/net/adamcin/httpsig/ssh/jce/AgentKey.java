@@ -0,0 +1,150 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.ssh.jce;
+
+import net.adamcin.httpsig.api.Algorithm;
+import net.adamcin.httpsig.api.AsyncKey;
+import net.adamcin.httpsig.api.SigningFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * {@link AsyncKey} for an identity held by an ssh-agent. Signatures are requested through a shared
+ * {@link SshAgentClient}, so concurrent {@link #signAsync(Algorithm, byte[])} calls are pipelined on its connection.
+ * Verification uses the public key alone. Once the agent fails to sign with the key, {@link #canSign()} returns false
+ * so that a {@link net.adamcin.httpsig.api.Signer} rotates past it.
+ * @since 1.3.2
+ */
+public final class AgentKey implements AsyncKey, FingerprintableKey {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AgentKey.class);
+
+    private final SshAgentClient agent;
+    private final byte[] keyBlob;
+    private final SSHKey publicKey;
+    private final Algorithm algorithm;
+    private final Set<Algorithm> algorithms;
+    private volatile boolean refused;
+
+    /**
+     * @param agent the agent connection
+     * @param keyBlob the public key blob of the identity, as returned by {@link SshAgentClient#requestIdentities()}
+     * @throws IllegalArgumentException if the public key blob is malformed or of an unknown format
+     */
+    public AgentKey(SshAgentClient agent, byte[] keyBlob) {
+        if (agent == null) {
+            throw new IllegalArgumentException("agent cannot be null");
+        }
+        this.agent = agent;
+        this.keyBlob = keyBlob.clone();
+        this.publicKey = PublicKeyPool.getSharedPool().intern(this.keyBlob);
+        if (this.publicKey == null) {
+            throw new IllegalArgumentException("Unsupported public key");
+        }
+        this.algorithm = Algorithm.forName(this.publicKey.getKeyFormat().getIdentifier());
+        this.algorithms = this.algorithm == null
+                ? Collections.<Algorithm>emptySet() : Collections.singleton(this.algorithm);
+    }
+
+    public String getId() {
+        return publicKey.getFingerprint();
+    }
+
+    public String getFingerprint() {
+        return publicKey.getFingerprint();
+    }
+
+    public Set<Algorithm> getAlgorithms() {
+        return algorithms;
+    }
+
+    public boolean canVerify() {
+        return true;
+    }
+
+    public boolean verify(Algorithm algorithm, byte[] challengeHash, byte[] signatureBytes) {
+        return algorithm == this.algorithm && publicKey.verify(algorithm, challengeHash, signatureBytes);
+    }
+
+    /**
+     * @return true while the agent connection is open and the agent has not failed to sign with this key
+     */
+    public boolean canSign() {
+        return !refused && !agent.isClosed();
+    }
+
+    /**
+     * {@inheritDoc}
+     * Blocks until the agent answers. Prefer {@link #signAsync(Algorithm, byte[])}. Returns null if the agent fails,
+     * after which {@link #canSign()} returns false.
+     */
+    public byte[] sign(Algorithm algorithm, byte[] challengeHash) {
+        try {
+            return signAsync(algorithm, challengeHash).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("[sign] interrupted while waiting for ssh-agent.", e);
+        } catch (ExecutionException e) {
+            LOGGER.error("[sign] ssh-agent failed to sign content.", e.getCause());
+        }
+        return null;
+    }
+
+    public SigningFuture<byte[]> signAsync(Algorithm algorithm, byte[] challengeHash) {
+        if (algorithm != this.algorithm) {
+            return SigningFuture.completed(null);
+        }
+        final SigningFuture<byte[]> response = agent.sign(keyBlob, challengeHash, 0);
+        final SigningFuture<byte[]> signature = new SigningFuture<byte[]>();
+        response.addListener(new Runnable() {
+            public void run() {
+                try {
+                    signature.complete(response.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    signature.fail(e);
+                } catch (ExecutionException e) {
+                    refused = true;
+                    signature.fail(e.getCause());
+                } catch (CancellationException e) {
+                    signature.cancel(false);
+                }
+            }
+        }, null);
+        return signature;
+    }
+
+    @Override
+    public String toString() {
+        return "AgentKey{" + getFingerprint() + "}";
+    }
+}
@@ -28,25 +28,24 @@
 package net.adamcin.httpsig.ssh.jce;
 
 import net.adamcin.httpsig.api.Base64;
-import net.adamcin.httpsig.api.DefaultKeychain;
 import net.adamcin.httpsig.api.Key;
 import net.adamcin.httpsig.api.Keychain;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.security.KeyFactory;
 import java.security.PublicKey;
 import java.security.spec.DSAPublicKeySpec;
+import java.security.spec.ECPublicKeySpec;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.KeySpec;
 import java.security.spec.RSAPublicKeySpec;
@@ -82,15 +81,19 @@ public final class AuthorizedKeys {
      *
      * @param authorizedKeysFile File in the RFC4253 authorized_keys format that every Linux admin knows and loves,
      *                           which contains a list of public keys which are allowed for authentication
-     * @return a {@link Keychain} attached to the authorized_keys identities
+     * @return a {@link Keychain} attached to the authorized_keys identities, indexed by fingerprint
      * @throws IOException for any failure to parse designated file
      */
     public static Keychain newKeychain(File authorizedKeysFile) throws IOException {
-        DefaultKeychain identities = new DefaultKeychain();
+        return newFingerprintKeychain(authorizedKeysFile);
+    }
+
+    static FingerprintKeychain newFingerprintKeychain(File authorizedKeysFile) throws IOException {
+        List<Key> identities = new ArrayList<Key>();
         for (AuthorizedKey authorizedKey : parseAuthorizedKeys(authorizedKeysFile)) {
             identities.add(getAuthorizedKeyIdentity(authorizedKey));
         }
-        return identities;
+        return new FingerprintKeychain(identities);
     }
 
     static List<AuthorizedKey> parseAuthorizedKeys(File authorizedKeys) throws IOException {
@@ -151,10 +154,12 @@ public final class AuthorizedKeys {
     static final class PublicPair {
         private final KeyFormat format;
         private final KeySpec spec;
+        private final Fingerprint fingerprint;
 
-        PublicPair(KeyFormat format, KeySpec spec) {
+        PublicPair(KeyFormat format, KeySpec spec, Fingerprint fingerprint) {
             this.format = format;
             this.spec = spec;
+            this.fingerprint = fingerprint;
         }
 
         public KeyFormat getFormat() {
@@ -164,67 +169,59 @@ public final class AuthorizedKeys {
         public KeySpec getSpec() {
             return spec;
         }
+
+        public Fingerprint getFingerprint() {
+            return fingerprint;
+        }
     }
 
     static PublicPair readPublicPair(byte[] keyBlob) {
-        ByteArrayInputStream is = new ByteArrayInputStream(keyBlob);
-        DataInputStream dis = new DataInputStream(is);
+        return readPublicPair(keyBlob, Fingerprint.digest(keyBlob));
+    }
 
-        String type;
-        try {
-            byte[] b_type = new byte[dis.readInt()];
-            int r_type = dis.read(b_type);
-            type = new String(b_type, ASCII);
-        } catch (IOException e) {
-            throw new IllegalStateException("how did an IOException get thrown from a byte array input stream?", e);
-        }
+    static PublicPair readPublicPair(byte[] keyBlob, Fingerprint fingerprint) {
+        ByteBuffer buf = ByteBuffer.wrap(keyBlob);
+        String type = SshWireCodec.readAscii(buf);
 
         final KeyFormat keyFormat = KeyFormat.forIdentifier(type);
         KeySpec spec = null;
-        try {
-            switch (keyFormat) {
-                case SSH_RSA:
-                    byte[] b_e = new byte[dis.readInt()];
-                    int r_e = dis.read(b_e);
-                    BigInteger e = new BigInteger(b_e);
-                    byte[] b_m = new byte[dis.readInt()];
-                    int r_m = dis.read(b_m);
-                    BigInteger m = new BigInteger(b_m);
-                    spec = new RSAPublicKeySpec(m, e);
-                    break;
-                case SSH_DSS:
-                    byte[] b_p = new byte[dis.readInt()];
-                    int r_p = dis.read(b_p);
-                    BigInteger p = new BigInteger(b_p);
-                    byte[] b_q = new byte[dis.readInt()];
-                    int r_q = dis.read(b_q);
-                    BigInteger q = new BigInteger(b_q);
-                    byte[] b_g = new byte[dis.readInt()];
-                    int r_g = dis.read(b_g);
-                    BigInteger g = new BigInteger(b_g);
-                    byte[] b_y = new byte[dis.readInt()];
-                    int r_y = dis.read(b_y);
-                    BigInteger y = new BigInteger(b_y);
-                    spec = new DSAPublicKeySpec(y, p, q, g);
-                    break;
-                case UNKOWN:
-                    throw new IllegalArgumentException("unknown key format: " + type);
-            }
-        } catch (IOException e) {
-            throw new IllegalStateException("how did an IOException get thrown from a byte array input stream?", e);
+        switch (keyFormat) {
+            case SSH_RSA:
+                BigInteger e = SshWireCodec.readMpint(buf);
+                BigInteger m = SshWireCodec.readMpint(buf);
+                spec = new RSAPublicKeySpec(m, e);
+                break;
+            case SSH_DSS:
+                BigInteger p = SshWireCodec.readMpint(buf);
+                BigInteger q = SshWireCodec.readMpint(buf);
+                BigInteger g = SshWireCodec.readMpint(buf);
+                BigInteger y = SshWireCodec.readMpint(buf);
+                spec = new DSAPublicKeySpec(y, p, q, g);
+                break;
+            case ECDSA_SHA2_NISTP256:
+            case ECDSA_SHA2_NISTP384:
+                String curveName = SshWireCodec.readAscii(buf);
+                NistCurve curve = NistCurve.forIdentifier(curveName);
+                if (curve == null || curve.getKeyFormat() != keyFormat) {
+                    throw new IllegalArgumentException("unexpected curve for " + type + ": " + curveName);
+                }
+                spec = new ECPublicKeySpec(curve.decodePoint(SshWireCodec.readBytes(buf)), curve.getParameterSpec());
+                break;
+            case UNKOWN:
+                throw new IllegalArgumentException("unknown key format: " + type);
         }
 
-        return new PublicPair(keyFormat, spec);
+        return new PublicPair(keyFormat, spec, fingerprint);
     }
 
-    static Key createPublicIdentity(PublicPair pair) {
+    static SSHKey createPublicIdentity(PublicPair pair) {
         KeyFactory keyFactory = pair.getFormat().getKeyFactory();
 
         assert keyFactory != null;
 
         try {
             PublicKey publicKey = keyFactory.generatePublic(pair.getSpec());
-            return new SSHKey(pair.getFormat(), publicKey, null);
+            return new SSHKey(pair.getFormat(), publicKey, null, pair.getFingerprint());
         } catch (InvalidKeySpecException e) {
             LOGGER.error("this exception should not have been thrown.", e);
         }
@@ -234,12 +231,12 @@ public final class AuthorizedKeys {
 
     /**
      * @param keyBlob
-     * @return a shiny new {@link net.adamcin.httpsig.api.Key}
+     * @return a shiny {@link net.adamcin.httpsig.api.Key}, shared with any other keychain that has read the same blob
      * @see <a href="http://tools.ietf.org/html/rfc4253#section-6.6">[RFC4253] Section 6.6: Public Key Algorithms</a>
+     * @see PublicKeyPool
      */
     static Key readPublicIdentity(byte[] keyBlob) {
-        PublicPair pair = readPublicPair(keyBlob);
-        return createPublicIdentity(pair);
+        return PublicKeyPool.getSharedPool().intern(keyBlob);
     }
 
     static final class AuthorizedKey {
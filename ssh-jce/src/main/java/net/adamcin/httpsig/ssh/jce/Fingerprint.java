@@ -0,0 +1,215 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.ssh.jce;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Compact representation of an MD5 public key fingerprint, held as two longs and formatted as colon-delimited hex
+ * only when {@link #toString()} is called.
+ *
+ * @see <a href="http://tools.ietf.org/html/rfc4716#section-4">[RFC4716] Section 4: Public Key Fingerprints</a>
+ */
+public final class Fingerprint {
+
+    /**
+     * Length of a formatted fingerprint, e.g. {@code 16:27:ac:a5:76:28:2d:36:63:1b:56:4d:eb:df:a6:48}
+     */
+    public static final int FORMATTED_LENGTH = 47;
+
+    private static final char[] HEX_CHARS = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+    };
+
+    private final long high;
+    private final long low;
+
+    public Fingerprint(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * @return the first 8 bytes of the digest
+     */
+    public long getHigh() {
+        return high;
+    }
+
+    /**
+     * @return the last 8 bytes of the digest
+     */
+    public long getLow() {
+        return low;
+    }
+
+    /**
+     * @return the 16 digest bytes
+     */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (high >>> (56 - 8 * i));
+            bytes[i + 8] = (byte) (low >>> (56 - 8 * i));
+        }
+        return bytes;
+    }
+
+    /**
+     * Computes the MD5 fingerprint of a public key blob
+     * @param keyBlob base64-decoded byte array containing the public key spec
+     * @return the fingerprint, or null if MD5 is not available
+     */
+    public static Fingerprint digest(byte[] keyBlob) {
+        try {
+            return fromBytes(MessageDigest.getInstance("MD5").digest(keyBlob));
+        } catch (NoSuchAlgorithmException e) {
+            // should not happen in a standard JVM
+        }
+        return null;
+    }
+
+    /**
+     * @param digest 16 digest bytes
+     * @return the fingerprint
+     */
+    public static Fingerprint fromBytes(byte[] digest) {
+        if (digest == null || digest.length != 16) {
+            throw new IllegalArgumentException("digest must be 16 bytes");
+        }
+        long high = 0L;
+        long low = 0L;
+        for (int i = 0; i < 8; i++) {
+            high = (high << 8) | (digest[i] & 0xffL);
+            low = (low << 8) | (digest[i + 8] & 0xffL);
+        }
+        return new Fingerprint(high, low);
+    }
+
+    /**
+     * Parses a formatted fingerprint. Only lowercase hex is accepted, matching {@link #toString()}, so that a parsed
+     * fingerprint identifies the same keys as an exact string comparison would.
+     * @param fingerprint colon-delimited lowercase hex fingerprint
+     * @return the fingerprint, or null if the input is not a well-formed MD5 fingerprint
+     */
+    public static Fingerprint parse(CharSequence fingerprint) {
+        if (fingerprint == null || !isWellFormed(fingerprint, 0)) {
+            return null;
+        }
+        return new Fingerprint(parseHigh(fingerprint, 0), parseLow(fingerprint, 0));
+    }
+
+    /**
+     * @param s character sequence
+     * @param offset start of the fingerprint in {@code s}, which must extend to the end of {@code s}
+     * @return true if {@code s} contains a well-formed fingerprint from {@code offset} to its end
+     */
+    public static boolean isWellFormed(CharSequence s, int offset) {
+        if (offset < 0 || s.length() - offset != FORMATTED_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < FORMATTED_LENGTH; i++) {
+            char c = s.charAt(offset + i);
+            if (i % 3 == 2 ? c != ':' : hexValue(c) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param s character sequence for which {@link #isWellFormed(CharSequence, int)} is true
+     * @param offset start of the fingerprint in {@code s}
+     * @return the first 8 bytes of the fingerprint
+     */
+    public static long parseHigh(CharSequence s, int offset) {
+        return parseHalf(s, offset);
+    }
+
+    /**
+     * @param s character sequence for which {@link #isWellFormed(CharSequence, int)} is true
+     * @param offset start of the fingerprint in {@code s}
+     * @return the last 8 bytes of the fingerprint
+     */
+    public static long parseLow(CharSequence s, int offset) {
+        return parseHalf(s, offset + 24);
+    }
+
+    private static long parseHalf(CharSequence s, int offset) {
+        long value = 0L;
+        for (int i = 0; i < 8; i++) {
+            int pos = offset + 3 * i;
+            value = (value << 8) | (hexValue(s.charAt(pos)) << 4) | hexValue(s.charAt(pos + 1));
+        }
+        return value;
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the colon-delimited lowercase hex representation
+     */
+    @Override
+    public String toString() {
+        char[] chars = new char[FORMATTED_LENGTH];
+        for (int i = 0; i < 16; i++) {
+            int b = (int) ((i < 8 ? high : low) >>> (56 - 8 * (i % 8))) & 0xff;
+            chars[3 * i] = HEX_CHARS[b >>> 4];
+            chars[3 * i + 1] = HEX_CHARS[b & 0xf];
+            if (i < 15) {
+                chars[3 * i + 2] = ':';
+            }
+        }
+        return new String(chars);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Fingerprint that = (Fingerprint) o;
+        return high == that.high && low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (high ^ (high >>> 32) ^ low ^ (low >>> 32));
+    }
+}
@@ -27,89 +27,92 @@
 
 package net.adamcin.httpsig.ssh.jce;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.PublicKey;
 import java.security.interfaces.DSAParams;
 import java.security.interfaces.DSAPublicKey;
+import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPublicKey;
 
 public abstract class FingerprintGenerator {
-    private static final Logger LOGGER = LoggerFactory.getLogger(FingerprintGenerator.class);
 
-    abstract String getFingerprint(PublicKey publicKey);
+    abstract Fingerprint getDigest(PublicKey publicKey);
+
+    String getFingerprint(PublicKey publicKey) {
+        Fingerprint digest = getDigest(publicKey);
+        return digest != null ? digest.toString() : "";
+    }
 
     public static final FingerprintGenerator NOP = new FingerprintGenerator() {
-        @Override String getFingerprint(PublicKey publicKey) { return ""; }
+        @Override Fingerprint getDigest(PublicKey publicKey) { return null; }
     };
 
     public static final FingerprintGenerator DSA = new FingerprintGenerator() {
-        public String getFingerprint(PublicKey publicKey) {
-            ByteArrayOutputStream byteOs = new ByteArrayOutputStream();
-            try {
-                if (publicKey instanceof DSAPublicKey) {
-                    DSAPublicKey dsaPublicKey = (DSAPublicKey) publicKey;
-                    DSAParams dsaParams = dsaPublicKey.getParams();
-
-                    DataOutputStream dos = new DataOutputStream(byteOs);
-                    dos.writeInt(KeyFormat.SSH_DSS.getIdentifier().getBytes().length);
-                    dos.write(KeyFormat.SSH_DSS.getIdentifier().getBytes());
-                    dos.writeInt(dsaParams.getP().toByteArray().length);
-                    dos.write(dsaParams.getP().toByteArray());
-                    dos.writeInt(dsaParams.getQ().toByteArray().length);
-                    dos.write(dsaParams.getQ().toByteArray());
-                    dos.writeInt(dsaParams.getG().toByteArray().length);
-                    dos.write(dsaParams.getG().toByteArray());
-                    dos.writeInt(dsaPublicKey.getY().toByteArray().length);
-                    dos.write(dsaPublicKey.getY().toByteArray());
-                } else {
-                    throw new IllegalArgumentException("Not a DSA public key: " + publicKey);
-                }
-                return Magic.getFingerprint(byteOs.toByteArray());
-            } catch (IOException e) {
-                LOGGER.error("[getFingerprint] failed to generate DSA fingerprint", e);
-            } finally {
-                try {
-                    byteOs.close();
-                } catch (IOException ignored) {
-                }
+        public Fingerprint getDigest(PublicKey publicKey) {
+            if (!(publicKey instanceof DSAPublicKey)) {
+                throw new IllegalArgumentException("Not a DSA public key: " + publicKey);
             }
+            DSAPublicKey dsaPublicKey = (DSAPublicKey) publicKey;
+            DSAParams dsaParams = dsaPublicKey.getParams();
+            byte[] format = KeyFormat.SSH_DSS.getIdentifier().getBytes();
+            BigInteger p = dsaParams.getP();
+            BigInteger q = dsaParams.getQ();
+            BigInteger g = dsaParams.getG();
+            BigInteger y = dsaPublicKey.getY();
 
-            return null;
+            ByteBuffer blob = ByteBuffer.allocate(SshWireCodec.stringLength(format.length)
+                    + SshWireCodec.mpintLength(p) + SshWireCodec.mpintLength(q)
+                    + SshWireCodec.mpintLength(g) + SshWireCodec.mpintLength(y));
+            SshWireCodec.writeString(blob, format);
+            SshWireCodec.writeMpint(blob, p);
+            SshWireCodec.writeMpint(blob, q);
+            SshWireCodec.writeMpint(blob, g);
+            SshWireCodec.writeMpint(blob, y);
+            return Fingerprint.digest(blob.array());
         }
     };
 
     public static final FingerprintGenerator RSA = new FingerprintGenerator() {
-        public String getFingerprint(PublicKey publicKey) {
-            ByteArrayOutputStream byteOs = new ByteArrayOutputStream();
-            try {
-                if (publicKey instanceof RSAPublicKey) {
-                    RSAPublicKey rsaPublicKey = (RSAPublicKey) publicKey;
-                    DataOutputStream dos = new DataOutputStream(byteOs);
-                    dos.writeInt(KeyFormat.SSH_RSA.getIdentifier().getBytes().length);
-                    dos.write(KeyFormat.SSH_RSA.getIdentifier().getBytes());
-                    dos.writeInt(rsaPublicKey.getPublicExponent().toByteArray().length);
-                    dos.write(rsaPublicKey.getPublicExponent().toByteArray());
-                    dos.writeInt(rsaPublicKey.getModulus().toByteArray().length);
-                    dos.write(rsaPublicKey.getModulus().toByteArray());
-                } else {
-                    throw new IllegalArgumentException("Not an RSA public key: " + publicKey);
-                }
-                return Magic.getFingerprint(byteOs.toByteArray());
-            } catch (IOException e) {
-                LOGGER.error("[getFingerprint] failed to generate RSA fingerprint", e);
-            } finally {
-                try {
-                    byteOs.close();
-                } catch (IOException ignored) {
-                }
+        public Fingerprint getDigest(PublicKey publicKey) {
+            if (!(publicKey instanceof RSAPublicKey)) {
+                throw new IllegalArgumentException("Not an RSA public key: " + publicKey);
+            }
+            RSAPublicKey rsaPublicKey = (RSAPublicKey) publicKey;
+            byte[] format = KeyFormat.SSH_RSA.getIdentifier().getBytes();
+            BigInteger e = rsaPublicKey.getPublicExponent();
+            BigInteger n = rsaPublicKey.getModulus();
+
+            ByteBuffer blob = ByteBuffer.allocate(SshWireCodec.stringLength(format.length)
+                    + SshWireCodec.mpintLength(e) + SshWireCodec.mpintLength(n));
+            SshWireCodec.writeString(blob, format);
+            SshWireCodec.writeMpint(blob, e);
+            SshWireCodec.writeMpint(blob, n);
+            return Fingerprint.digest(blob.array());
+        }
+    };
+
+    public static final FingerprintGenerator ECDSA = new FingerprintGenerator() {
+        public Fingerprint getDigest(PublicKey publicKey) {
+            if (!(publicKey instanceof ECPublicKey)) {
+                throw new IllegalArgumentException("Not an EC public key: " + publicKey);
             }
+            ECPublicKey ecPublicKey = (ECPublicKey) publicKey;
+            NistCurve curve = NistCurve.forKey(ecPublicKey);
+            if (curve == null) {
+                throw new IllegalArgumentException("Unsupported EC curve: " + publicKey);
+            }
+
+            byte[] format = curve.getKeyFormat().getIdentifier().getBytes();
+            byte[] curveName = curve.getIdentifier().getBytes();
+            byte[] point = curve.encodePoint(ecPublicKey.getW());
 
-            return null;
+            ByteBuffer blob = ByteBuffer.allocate(SshWireCodec.stringLength(format.length)
+                    + SshWireCodec.stringLength(curveName.length) + SshWireCodec.stringLength(point.length));
+            SshWireCodec.writeString(blob, format);
+            SshWireCodec.writeString(blob, curveName);
+            SshWireCodec.writeString(blob, point);
+            return Fingerprint.digest(blob.array());
         }
     };
 }
@@ -0,0 +1,143 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.ssh.jce;
+
+import net.adamcin.httpsig.api.Key;
+
+/**
+ * Immutable open-addressing hash table from 128-bit {@link Fingerprint}s to {@link FingerprintableKey}s. Fingerprints
+ * are held in a flat {@code long[]} and probed linearly, so lookups do not box, allocate or format strings.
+ * @since 1.3.2
+ */
+public final class FingerprintIndex {
+
+    private final long[] fingerprints;
+    private final Key[] keys;
+    private final int mask;
+    private int size;
+
+    private FingerprintIndex(int expectedSize) {
+        int capacity = 2;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        this.fingerprints = new long[capacity * 2];
+        this.keys = new Key[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Indexes the {@link FingerprintableKey}s among {@code keys}. As with {@link java.util.Map#put(Object, Object)},
+     * a later key replaces an earlier key with the same fingerprint.
+     * @param keys the keys to index
+     * @return a new index
+     */
+    public static FingerprintIndex build(Iterable<? extends Key> keys) {
+        int count = 0;
+        for (Key key : keys) {
+            if (key instanceof FingerprintableKey) {
+                count++;
+            }
+        }
+
+        FingerprintIndex index = new FingerprintIndex(count);
+        for (Key key : keys) {
+            Fingerprint fingerprint = fingerprintOf(key);
+            if (fingerprint != null) {
+                index.put(fingerprint.getHigh(), fingerprint.getLow(), key);
+            }
+        }
+        return index;
+    }
+
+    static Fingerprint fingerprintOf(Key key) {
+        if (key instanceof SSHKey) {
+            return ((SSHKey) key).getFingerprintDigest();
+        } else if (key instanceof FingerprintableKey) {
+            return Fingerprint.parse(((FingerprintableKey) key).getFingerprint());
+        }
+        return null;
+    }
+
+    private void put(long high, long low, Key key) {
+        int slot = slot(high, low);
+        while (keys[slot] != null) {
+            if (fingerprints[2 * slot] == high && fingerprints[2 * slot + 1] == low) {
+                keys[slot] = key;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        fingerprints[2 * slot] = high;
+        fingerprints[2 * slot + 1] = low;
+        keys[slot] = key;
+        size++;
+    }
+
+    /**
+     * @param high the first 8 bytes of the fingerprint
+     * @param low the last 8 bytes of the fingerprint
+     * @return the key with the fingerprint, or null
+     */
+    public Key get(long high, long low) {
+        int slot = slot(high, low);
+        Key key;
+        while ((key = keys[slot]) != null) {
+            if (fingerprints[2 * slot] == high && fingerprints[2 * slot + 1] == low) {
+                return key;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Parses the formatted fingerprint at the end of {@code s} and looks it up
+     * @param s a character sequence ending in a formatted fingerprint, such as a keyId
+     * @param offset index of the fingerprint in {@code s}
+     * @return the key with the fingerprint, or null if there is none or the fingerprint is malformed
+     */
+    public Key get(CharSequence s, int offset) {
+        if (!Fingerprint.isWellFormed(s, offset)) {
+            return null;
+        }
+        return get(Fingerprint.parseHigh(s, offset), Fingerprint.parseLow(s, offset));
+    }
+
+    /**
+     * @return the number of indexed keys
+     */
+    public int size() {
+        return size;
+    }
+
+    private int slot(long high, long low) {
+        long h = high ^ low;
+        return ((int) (h ^ (h >>> 32))) & mask;
+    }
+}
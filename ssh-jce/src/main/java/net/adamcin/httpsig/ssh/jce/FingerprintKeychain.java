@@ -0,0 +1,191 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.ssh.jce;
+
+import net.adamcin.httpsig.api.Algorithm;
+import net.adamcin.httpsig.api.Constants;
+import net.adamcin.httpsig.api.IndexedKeychain;
+import net.adamcin.httpsig.api.Key;
+import net.adamcin.httpsig.api.KeyId;
+import net.adamcin.httpsig.api.Keychain;
+import net.adamcin.httpsig.api.VersionedKeychain;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable {@link Keychain} which indexes its {@link FingerprintableKey}s with a {@link FingerprintIndex}. Lookups
+ * by keyIds from a {@link FingerprintKeyId} (or by bare fingerprint) parse the fingerprint out of the keyId and probe
+ * the index, instead of formatting and hashing a keyId string for every key in the keychain.
+ * @since 1.3.2
+ */
+public final class FingerprintKeychain implements IndexedKeychain, VersionedKeychain {
+
+    private final List<Key> keys;
+    private final Set<Algorithm> algorithms;
+    private final FingerprintIndex index;
+
+    /**
+     * true if every indexed key uses its fingerprint as its {@link Key#getId()}
+     */
+    private final boolean idsAreFingerprints;
+
+    /**
+     * keys which are not in the index, either because they are not {@link FingerprintableKey}s or because their
+     * fingerprints do not parse, which must be scanned for lookups
+     */
+    private final List<Key> unindexed;
+
+    public FingerprintKeychain(Collection<? extends Key> keys) {
+        this.keys = Collections.unmodifiableList(new ArrayList<Key>(keys));
+        this.index = FingerprintIndex.build(this.keys);
+
+        Set<Algorithm> algorithms = new LinkedHashSet<Algorithm>();
+        List<Key> unindexed = new ArrayList<Key>();
+        boolean idsAreFingerprints = true;
+        for (Key key : this.keys) {
+            algorithms.addAll(key.getAlgorithms());
+            if (key instanceof FingerprintableKey) {
+                String fingerprint = ((FingerprintableKey) key).getFingerprint();
+                if (fingerprint == null || !fingerprint.equals(key.getId())) {
+                    idsAreFingerprints = false;
+                }
+                if (FingerprintIndex.fingerprintOf(key) == null) {
+                    unindexed.add(key);
+                }
+            } else {
+                unindexed.add(key);
+            }
+        }
+        this.algorithms = Collections.unmodifiableSet(algorithms);
+        this.idsAreFingerprints = idsAreFingerprints;
+        this.unindexed = unindexed;
+    }
+
+    /**
+     * @return the fingerprint index
+     */
+    public FingerprintIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * @return 0, since this keychain is immutable
+     */
+    public long getVersion() {
+        return 0L;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Key findKey(KeyId keyId, String id) {
+        if (id == null) {
+            return null;
+        }
+        if (keyId instanceof FingerprintKeyId) {
+            int offset = ((FingerprintKeyId) keyId).indexOfFingerprint(id);
+            Key key = offset >= 0 ? index.get(id, offset) : null;
+            return key != null ? key : findUnindexed(keyId, id);
+        }
+        if ((keyId == null || keyId == Constants.DEFAULT_KEY_IDENTIFIER) && idsAreFingerprints) {
+            Key key = index.get(id, 0);
+            return key != null ? key : findUnindexed(Constants.DEFAULT_KEY_IDENTIFIER, id);
+        }
+        return toMap(keyId).get(id);
+    }
+
+    private Key findUnindexed(KeyId keyId, String id) {
+        for (Key candidate : unindexed) {
+            if (id.equals(keyId.getId(candidate))) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    public Set<Algorithm> getAlgorithms() {
+        return algorithms;
+    }
+
+    public Keychain filterAlgorithms(Collection<Algorithm> algorithms) {
+        List<Key> filteredKeys = new ArrayList<Key>();
+        for (Key key : keys) {
+            if (!Collections.disjoint(key.getAlgorithms(), algorithms)) {
+                filteredKeys.add(key);
+            }
+        }
+        return new FingerprintKeychain(filteredKeys);
+    }
+
+    public Keychain discard() {
+        if (keys.isEmpty()) {
+            throw new NoSuchElementException("keychain is empty");
+        }
+        return new FingerprintKeychain(keys.subList(1, keys.size()));
+    }
+
+    public Key currentKey() {
+        if (keys.isEmpty()) {
+            throw new NoSuchElementException("keychain is empty");
+        }
+        return keys.get(0);
+    }
+
+    public Map<String, Key> toMap(KeyId keyId) {
+        KeyId identifier = keyId != null ? keyId : Constants.DEFAULT_KEY_IDENTIFIER;
+        LinkedHashMap<String, Key> map = new LinkedHashMap<String, Key>(keys.size());
+        for (Key key : keys) {
+            String id = identifier.getId(key);
+            if (id != null) {
+                map.put(id, key);
+            }
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    public boolean isEmpty() {
+        return keys.isEmpty();
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    public Iterator<Key> iterator() {
+        return keys.iterator();
+    }
+}
@@ -37,7 +37,9 @@ import java.security.PublicKey;
 import java.security.Signature;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  *
@@ -52,6 +54,14 @@ public enum KeyFormat {
             "ssh-rsa", "RSA", FingerprintGenerator.RSA, Algorithm.SSH_RSA,
                     Arrays.asList(Algorithm.SSH_RSA, Algorithm.RSA_SHA1, Algorithm.RSA_SHA256, Algorithm.RSA_SHA512)
     ),
+    ECDSA_SHA2_NISTP256(
+            "ecdsa-sha2-nistp256", "EC", FingerprintGenerator.ECDSA, Algorithm.ECDSA_SHA2_NISTP256,
+            Arrays.asList(Algorithm.ECDSA_SHA2_NISTP256, Algorithm.ECDSA_SHA256)
+    ),
+    ECDSA_SHA2_NISTP384(
+            "ecdsa-sha2-nistp384", "EC", FingerprintGenerator.ECDSA, Algorithm.ECDSA_SHA2_NISTP384,
+            Arrays.asList(Algorithm.ECDSA_SHA2_NISTP384, Algorithm.ECDSA_SHA384)
+    ),
     UNKOWN("_unknown_", "_unknown_", FingerprintGenerator.NOP, null, Collections.<Algorithm>emptyList());
 
     private static final Logger LOGGER = LoggerFactory.getLogger(KeyFormat.class);
@@ -60,6 +70,7 @@ public enum KeyFormat {
     private final String keyAlgorithm;
     private final Algorithm defaultSignature;
     private final List<Algorithm> signatureAlgorithms;
+    private final Set<Algorithm> signatureAlgorithmSet;
     private final FingerprintGenerator fingerprintGenerator;
 
     private KeyFormat(String identifier, String keyAlgorithm, FingerprintGenerator fingerprintGenerator,
@@ -69,6 +80,7 @@ public enum KeyFormat {
         this.fingerprintGenerator = fingerprintGenerator;
         this.defaultSignature = defaultSignature;
         this.signatureAlgorithms = signatureAlgorithms;
+        this.signatureAlgorithmSet = Collections.unmodifiableSet(new LinkedHashSet<Algorithm>(signatureAlgorithms));
     }
 
     public String getIdentifier() {
@@ -94,10 +106,25 @@ public enum KeyFormat {
         return signatureAlgorithms;
     }
 
+    /**
+     * @return an unmodifiable, ordered set of {@link #getSignatureAlgorithms()}, shared by all keys of this format
+     */
+    public Set<Algorithm> getSignatureAlgorithmSet() {
+        return signatureAlgorithmSet;
+    }
+
     public String getFingerprint(PublicKey publicKey) {
         return fingerprintGenerator.getFingerprint(publicKey);
     }
 
+    /**
+     * @param publicKey the public key
+     * @return the fingerprint of the public key, or null if this format does not define one
+     */
+    public Fingerprint getFingerprintDigest(PublicKey publicKey) {
+        return fingerprintGenerator.getDigest(publicKey);
+    }
+
     public Signature getSignatureInstance(Algorithm algorithm) {
         return getSignatureInstanceInternal(algorithm != null ? algorithm : defaultSignature);
     }
@@ -118,6 +145,14 @@ public enum KeyFormat {
                         return Signature.getInstance("SHA512withRSA");
                     case DSA_SHA1:
                         return Signature.getInstance("SHA1withDSA");
+                    case ECDSA_SHA2_NISTP256:
+                        return new SSHECDSASignature(NistCurve.NISTP256);
+                    case ECDSA_SHA2_NISTP384:
+                        return new SSHECDSASignature(NistCurve.NISTP384);
+                    case ECDSA_SHA256:
+                        return Signature.getInstance("SHA256withECDSA");
+                    case ECDSA_SHA384:
+                        return Signature.getInstance("SHA384withECDSA");
                     default:
                         return null;
                 }
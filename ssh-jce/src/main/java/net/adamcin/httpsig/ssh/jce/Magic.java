@@ -27,18 +27,13 @@
 
 package net.adamcin.httpsig.ssh.jce;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.ByteBuffer;
 
 /**
  * Implementation of peculiar SSH byte array algorithms
  */
 public final class Magic {
 
-    private static final char[] fingerPrintChars = {
-            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
-    };
-
     /**
      * Computes the MD5 fingerprint of the public key blob
      *
@@ -47,47 +42,24 @@ public final class Magic {
      * @see <a href="http://tools.ietf.org/html/rfc4716#section-4">[RFC4716] Section 4: Public Key Fingerprints</a>
      */
     public static String getFingerprint(byte[] keyBlob) {
-        MessageDigest digest;
-        try {
-            digest = MessageDigest.getInstance("MD5");
-            byte[] foo = digest.digest(keyBlob);
-
-            StringBuilder sb = new StringBuilder();
-            int bar;
-            for (int i = 0; i < foo.length; i++) {
-                bar = foo[i] & 0xff;
-                sb.append(fingerPrintChars[(bar >>> 4) & 0xf]);
-                sb.append(fingerPrintChars[(bar) & 0xf]);
-                if (i + 1 < foo.length) {
-                    sb.append(":");
-                }
-            }
-            return sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            // should not happen in a standard JVM
-        }
-
-        return null;
+        Fingerprint fingerprint = Fingerprint.digest(keyBlob);
+        return fingerprint != null ? fingerprint.toString() : null;
     }
 
+    /**
+     * Returns the signature blob of an SSH-framed signature, or the signature itself if it is not framed
+     * @param signatureBytes signature data
+     * @return the signature blob
+     * @see SshWireCodec#unwrapSignature(java.nio.ByteBuffer)
+     */
     public static byte[] extractSignatureFromDER(byte[] signatureBytes) {
-        if (signatureBytes[0] == 0 && signatureBytes[1] == 0 && signatureBytes[2] == 0) {
-            int i = 0;
-            int j; // length decoder
-            j =     ((signatureBytes[i++] << 24) & 0xff000000) |
-                    ((signatureBytes[i++] << 16) & 0x00ff0000) |
-                    ((signatureBytes[i++] <<  8) & 0x0000ff00) |
-                    ((signatureBytes[i++]      ) & 0x000000ff);
-            i += j; // i == index after first field length + value
-            j =     ((signatureBytes[i++] << 24) & 0xff000000) |
-                    ((signatureBytes[i++] << 16) & 0x00ff0000) |
-                    ((signatureBytes[i++] <<  8) & 0x0000ff00) |
-                    ((signatureBytes[i++]      ) & 0x000000ff);
-            byte[] tmp = new byte[j]; // i == index of second field value, j == length of second field value
-            System.arraycopy(signatureBytes, i, tmp, 0, j); //
-            signatureBytes = tmp;
+        ByteBuffer blob = SshWireCodec.unwrapSignature(ByteBuffer.wrap(signatureBytes));
+        if (blob.remaining() == signatureBytes.length) {
+            return signatureBytes;
         }
-        return signatureBytes;
+        byte[] tmp = new byte[blob.remaining()];
+        blob.get(tmp);
+        return tmp;
     }
 
     /**
@@ -96,35 +68,7 @@ public final class Magic {
      * @return padded signature data
      */
     public static byte[] dssPadSignature(byte[] signatureBytes) {
-        // sig is in ASN.1
-        // SEQUENCE::={ r INTEGER, s INTEGER }
-        int len = 0;
-        int index = 3;
-        len = signatureBytes[index++] & 0xff;
-        byte[] r = new byte[len];
-        System.arraycopy(signatureBytes, index, r, 0, r.length);
-        index = index + len + 1;
-        len = signatureBytes[index++] & 0xff;
-        byte[] s = new byte[len];
-        System.arraycopy(signatureBytes, index, s, 0, s.length);
-
-        byte[] result = new byte[40];
-
-        // result must be 40 bytes, but length of r and s may not be 20 bytes
-
-        System.arraycopy(r,
-                         (r.length > 20) ? 1 : 0,
-                         result,
-                         (r.length > 20) ? 0 : 20 - r.length,
-                         (r.length > 20) ? 20 : r.length);
-        System.arraycopy(s,
-                         (s.length > 20) ? 1 : 0,
-                         result,
-                         (s.length > 20) ? 20 : 40 - s.length,
-                         (s.length > 20) ? 20 : s.length);
-
-        return result;
-
+        return derToRaw(signatureBytes, 20);
     }
 
     /**
@@ -133,24 +77,131 @@ public final class Magic {
      * @return unpadded signature data
      */
     public static byte[] dssUnpadSignature(byte[] signatureBytes) {
-        // ASN.1
-        int frst = ((signatureBytes[0] & 0x80) != 0 ? 1 : 0);
-        int scnd = ((signatureBytes[20] & 0x80) != 0 ? 1 : 0);
-
-        int length = signatureBytes.length + 6 + frst + scnd;
-        byte[] result = new byte[length];
-        result[0] = (byte) 0x30;
-        result[1] = (byte) 0x2c;
-        result[1] += frst;
-        result[1] += scnd;
-        result[2] = (byte) 0x02;
-        result[3] = (byte) 0x14;
-        result[3] += frst;
-        System.arraycopy(signatureBytes, 0, result, 4 + frst, 20);
-        result[4 + result[3]] = (byte) 0x02;
-        result[5 + result[3]] = (byte) 0x14;
-        result[5 + result[3]] += scnd;
-        System.arraycopy(signatureBytes, 20, result, 6 + result[3] + scnd, 20);
+        return rawToDer(signatureBytes, 0, 40);
+    }
+
+    /**
+     * Converts an ASN.1 DER-encoded DSA or ECDSA signature to the raw format: {@code r} followed by {@code s}, each
+     * left-padded to the field length, unsigned and in network byte order. The integers are copied straight from the
+     * DER input into the result.
+     * @param signatureBytes DER-encoded signature, SEQUENCE::={ r INTEGER, s INTEGER }
+     * @param fieldBytes the byte length of {@code r} and {@code s} in the raw format
+     * @return raw signature data of length {@code 2 * fieldBytes}
+     */
+    public static byte[] derToRaw(byte[] signatureBytes, int fieldBytes) {
+        // SEQUENCE header, with long-form length for larger curves
+        int index = 1;
+        if ((signatureBytes[index++] & 0x80) != 0) {
+            index += signatureBytes[index - 1] & 0x7f;
+        }
+
+        byte[] result = new byte[2 * fieldBytes];
+        index = copyDerInteger(signatureBytes, index, result, 0, fieldBytes);
+        copyDerInteger(signatureBytes, index, result, fieldBytes, fieldBytes);
         return result;
     }
+
+    private static int copyDerInteger(byte[] der, int index, byte[] dest, int destOffset, int fieldBytes) {
+        index++; // INTEGER tag
+        int len = der[index++] & 0xff;
+        int start = index;
+        int end = index + len;
+        while (end - start > fieldBytes && der[start] == 0) {
+            start++;
+        }
+        System.arraycopy(der, start, dest, destOffset + fieldBytes - (end - start), end - start);
+        return end;
+    }
+
+    /**
+     * Converts a raw signature ({@code r} followed by {@code s}, each of equal length) to ASN.1 DER encoding
+     * @param signatureBytes array containing the raw signature data
+     * @param offset offset of the raw signature in {@code signatureBytes}
+     * @param length length of the raw signature
+     * @return DER-encoded signature
+     * @throws IllegalArgumentException if the range is empty, odd or outside of {@code signatureBytes}
+     */
+    public static byte[] rawToDer(byte[] signatureBytes, int offset, int length) {
+        if (offset < 0 || length <= 0 || length % 2 != 0 || length > signatureBytes.length - offset) {
+            throw new IllegalArgumentException("invalid raw signature range " + offset + "+" + length);
+        }
+        int half = length / 2;
+        return integersToDer(signatureBytes, offset, half, offset + half, half);
+    }
+
+    /**
+     * Converts a signature blob of {@code mpint r} followed by {@code mpint s} to ASN.1 DER encoding
+     * @param blob the signature blob, backed by an accessible array
+     * @return DER-encoded signature
+     * @throws IllegalArgumentException if either integer is empty or overruns the blob
+     * @see <a href="http://tools.ietf.org/html/rfc5656#section-3.1.2">[RFC5656] Section 3.1.2: Signature Encoding</a>
+     */
+    public static byte[] mpintsToDer(ByteBuffer blob) {
+        ByteBuffer buf = blob.duplicate();
+        ByteBuffer r = SshWireCodec.readString(buf);
+        ByteBuffer s = SshWireCodec.readString(buf);
+        if (!r.hasRemaining() || !s.hasRemaining()) {
+            throw new IllegalArgumentException("signature integers must not be empty");
+        }
+        return integersToDer(blob.array(),
+                r.arrayOffset() + r.position(), r.remaining(),
+                s.arrayOffset() + s.position(), s.remaining());
+    }
+
+    private static byte[] integersToDer(byte[] src, int rOff, int rLen, int sOff, int sLen) {
+        // strip leading zeros, then prepend a single zero if the high bit is set
+        while (rLen > 1 && src[rOff] == 0) {
+            rOff++;
+            rLen--;
+        }
+        while (sLen > 1 && src[sOff] == 0) {
+            sOff++;
+            sLen--;
+        }
+        int rIntLen = ((src[rOff] & 0x80) != 0 ? 1 : 0) + rLen;
+        int sIntLen = ((src[sOff] & 0x80) != 0 ? 1 : 0) + sLen;
+        int seqLen = 1 + derLengthSize(rIntLen) + rIntLen + 1 + derLengthSize(sIntLen) + sIntLen;
+
+        byte[] result = new byte[1 + derLengthSize(seqLen) + seqLen];
+        int index = 0;
+        result[index++] = 0x30;
+        index = writeDerLength(result, index, seqLen);
+        result[index++] = 0x02;
+        index = writeDerLength(result, index, rIntLen);
+        index += rIntLen - rLen;
+        System.arraycopy(src, rOff, result, index, rLen);
+        index += rLen;
+        result[index++] = 0x02;
+        index = writeDerLength(result, index, sIntLen);
+        index += sIntLen - sLen;
+        System.arraycopy(src, sOff, result, index, sLen);
+        return result;
+    }
+
+    /**
+     * @return the number of bytes in the DER encoding of {@code length}, in short form below 128 and long form above
+     */
+    private static int derLengthSize(int length) {
+        if (length < 0x80) {
+            return 1;
+        }
+        int size = 1;
+        for (int rest = length; rest != 0; rest >>>= 8) {
+            size++;
+        }
+        return size;
+    }
+
+    private static int writeDerLength(byte[] dest, int index, int length) {
+        int size = derLengthSize(length);
+        if (size == 1) {
+            dest[index++] = (byte) length;
+        } else {
+            dest[index++] = (byte) (0x80 | (size - 1));
+            for (int shift = 8 * (size - 2); shift >= 0; shift -= 8) {
+                dest[index++] = (byte) (length >>> shift);
+            }
+        }
+        return index;
+    }
 }
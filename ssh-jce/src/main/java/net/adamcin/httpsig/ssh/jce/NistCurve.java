@@ -0,0 +1,173 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.ssh.jce;
+
+import java.math.BigInteger;
+import java.security.interfaces.ECKey;
+import java.security.spec.ECFieldFp;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.EllipticCurve;
+
+/**
+ * The NIST prime curves supported by the "ecdsa-sha2-*" key formats. Curve parameters are defined here rather than
+ * looked up from a provider so that key blobs can be decoded on any JVM.
+ *
+ * @see <a href="http://tools.ietf.org/html/rfc5656#section-10.1">[RFC5656] Section 10.1: Required Curves</a>
+ */
+public enum NistCurve {
+
+    NISTP256(
+            "nistp256",
+            "FFFFFFFF00000001000000000000000000000000FFFFFFFFFFFFFFFFFFFFFFFF",
+            "FFFFFFFF00000001000000000000000000000000FFFFFFFFFFFFFFFFFFFFFFFC",
+            "5AC635D8AA3A93E7B3EBBD55769886BC651D06B0CC53B0F63BCE3C3E27D2604B",
+            "6B17D1F2E12C4247F8BCE6E563A440F277037D812DEB33A0F4A13945D898C296",
+            "4FE342E2FE1A7F9B8EE7EB4A7C0F9E162BCE33576B315ECECBB6406837BF51F5",
+            "FFFFFFFF00000000FFFFFFFFFFFFFFFFBCE6FAADA7179E84F3B9CAC2FC632551"
+    ),
+    NISTP384(
+            "nistp384",
+            "FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEFFFFFFFF0000000000000000FFFFFFFF",
+            "FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEFFFFFFFF0000000000000000FFFFFFFC",
+            "B3312FA7E23EE7E4988E056BE3F82D19181D9C6EFE8141120314088F5013875AC656398D8A2ED19D2A85C8EDD3EC2AEF",
+            "AA87CA22BE8B05378EB1C71EF320AD746E1D3B628BA79B9859F741E082542A385502F25DBF55296C3A545E3872760AB7",
+            "3617DE4A96262C6F5D9E98BF9292DC29F8F41DBD289A147CE9DA3113B5F0B8C00A60B1CE1D7E819D7A431D7C90EA0E5F",
+            "FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFC7634D81F4372DDF581A0DB248B0A77AECEC196ACCC52973"
+    );
+
+    private final String identifier;
+    private final ECParameterSpec parameterSpec;
+    private final int fieldBytes;
+
+    private NistCurve(String identifier, String p, String a, String b, String gx, String gy, String n) {
+        this.identifier = identifier;
+        EllipticCurve curve = new EllipticCurve(
+                new ECFieldFp(new BigInteger(p, 16)), new BigInteger(a, 16), new BigInteger(b, 16));
+        this.parameterSpec = new ECParameterSpec(
+                curve, new ECPoint(new BigInteger(gx, 16), new BigInteger(gy, 16)), new BigInteger(n, 16), 1);
+        this.fieldBytes = (curve.getField().getFieldSize() + 7) / 8;
+    }
+
+    /**
+     * @return the curve name as it appears in an SSH public key blob
+     */
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public ECParameterSpec getParameterSpec() {
+        return parameterSpec;
+    }
+
+    /**
+     * @return the length in bytes of a field element, which is also the length of each of {@code r} and {@code s} in
+     * a raw signature
+     */
+    public int getFieldBytes() {
+        return fieldBytes;
+    }
+
+    /**
+     * @return the {@link KeyFormat} for keys on this curve
+     */
+    public KeyFormat getKeyFormat() {
+        switch (this) {
+            case NISTP256:
+                return KeyFormat.ECDSA_SHA2_NISTP256;
+            case NISTP384:
+                return KeyFormat.ECDSA_SHA2_NISTP384;
+            default:
+                return KeyFormat.UNKOWN;
+        }
+    }
+
+    /**
+     * Encodes a public point in the uncompressed form (0x04 || X || Y) used by SSH key blobs
+     * @param point the public point
+     * @return the encoded point
+     */
+    public byte[] encodePoint(ECPoint point) {
+        byte[] encoded = new byte[1 + 2 * fieldBytes];
+        encoded[0] = 0x04;
+        writeFieldElement(point.getAffineX(), encoded, 1);
+        writeFieldElement(point.getAffineY(), encoded, 1 + fieldBytes);
+        return encoded;
+    }
+
+    /**
+     * Decodes an uncompressed public point
+     * @param encoded the encoded point
+     * @return the decoded point
+     * @throws IllegalArgumentException if the point is not uncompressed or has the wrong length for this curve
+     */
+    public ECPoint decodePoint(byte[] encoded) {
+        if (encoded.length != 1 + 2 * fieldBytes || encoded[0] != 0x04) {
+            throw new IllegalArgumentException("unsupported point encoding for curve " + identifier);
+        }
+        byte[] x = new byte[fieldBytes];
+        byte[] y = new byte[fieldBytes];
+        System.arraycopy(encoded, 1, x, 0, fieldBytes);
+        System.arraycopy(encoded, 1 + fieldBytes, y, 0, fieldBytes);
+        return new ECPoint(new BigInteger(1, x), new BigInteger(1, y));
+    }
+
+    private void writeFieldElement(BigInteger value, byte[] dest, int offset) {
+        byte[] bytes = value.toByteArray();
+        int skip = bytes.length > fieldBytes ? bytes.length - fieldBytes : 0;
+        int len = bytes.length - skip;
+        System.arraycopy(bytes, skip, dest, offset + fieldBytes - len, len);
+    }
+
+    public static NistCurve forIdentifier(String identifier) {
+        for (NistCurve curve : NistCurve.values()) {
+            if (curve.getIdentifier().equals(identifier)) {
+                return curve;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param key an EC public or private key
+     * @return the matching {@link NistCurve} or null if the key is on an unsupported curve
+     */
+    public static NistCurve forKey(ECKey key) {
+        if (key != null && key.getParams() != null) {
+            for (NistCurve curve : NistCurve.values()) {
+                if (curve.parameterSpec.getCurve().equals(key.getParams().getCurve())
+                        && curve.parameterSpec.getOrder().equals(key.getParams().getOrder())) {
+                    return curve;
+                }
+            }
+        }
+
+        return null;
+    }
+}
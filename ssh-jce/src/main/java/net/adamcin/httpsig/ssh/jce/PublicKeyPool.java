@@ -0,0 +1,117 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.ssh.jce;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interning pool of public-only {@link SSHKey} instances, keyed by the MD5 fingerprint of the public key blob. A key
+ * which appears in many authorized_keys files, such as a shared deploy key, is decoded once and the same instance is
+ * shared by every keychain and keyId that references it. Keys are weakly held, so they drop out of the pool once no
+ * keychain refers to them.
+ *
+ * The fingerprint is already the identity of a key throughout this library, so two blobs with the same fingerprint
+ * are treated as the same key here as well.
+ */
+public final class PublicKeyPool {
+
+    private static final PublicKeyPool SHARED_POOL = new PublicKeyPool();
+
+    private final ConcurrentMap<Fingerprint, KeyRef> keys = new ConcurrentHashMap<Fingerprint, KeyRef>();
+    private final ReferenceQueue<SSHKey> queue = new ReferenceQueue<SSHKey>();
+
+    /**
+     * @return the pool used by {@link AuthorizedKeys}
+     */
+    public static PublicKeyPool getSharedPool() {
+        return SHARED_POOL;
+    }
+
+    /**
+     * Returns the pooled key for the public key blob, decoding the blob only if no live key shares its fingerprint.
+     * @param keyBlob base64-decoded byte array containing the public key spec
+     * @return the shared key, or null if the blob could not be decoded
+     * @throws IllegalArgumentException if the blob is malformed or of an unknown format
+     */
+    public SSHKey intern(byte[] keyBlob) {
+        expungeStaleEntries();
+
+        Fingerprint fingerprint = Fingerprint.digest(keyBlob);
+        KeyRef ref = keys.get(fingerprint);
+        SSHKey pooled = ref != null ? ref.get() : null;
+        if (pooled != null) {
+            return pooled;
+        }
+
+        SSHKey created = AuthorizedKeys.createPublicIdentity(AuthorizedKeys.readPublicPair(keyBlob, fingerprint));
+        if (created == null) {
+            return null;
+        }
+
+        KeyRef createdRef = new KeyRef(created, queue);
+        while (true) {
+            KeyRef existing = keys.putIfAbsent(created.getFingerprintDigest(), createdRef);
+            if (existing == null) {
+                return created;
+            }
+            pooled = existing.get();
+            if (pooled != null) {
+                return pooled;
+            }
+            if (keys.replace(created.getFingerprintDigest(), existing, createdRef)) {
+                return created;
+            }
+        }
+    }
+
+    /**
+     * @return the number of keys in the pool, including any which have been collected but not yet expunged
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    private void expungeStaleEntries() {
+        KeyRef ref;
+        while ((ref = (KeyRef) queue.poll()) != null) {
+            keys.remove(ref.fingerprint, ref);
+        }
+    }
+
+    private static final class KeyRef extends WeakReference<SSHKey> {
+        private final Fingerprint fingerprint;
+
+        private KeyRef(SSHKey key, ReferenceQueue<SSHKey> queue) {
+            super(key, queue);
+            this.fingerprint = key.getFingerprintDigest();
+        }
+    }
+}
@@ -27,6 +27,7 @@
 
 package net.adamcin.httpsig.ssh.jce;
 
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.security.InvalidParameterException;
 import java.security.NoSuchAlgorithmException;
@@ -93,8 +94,8 @@ public final class SSHDSSSignature extends Signature {
 
     @Override
     protected boolean engineVerify(byte[] sigBytes) throws SignatureException {
-        final byte[] extracted = Magic.extractSignatureFromDER(sigBytes);
-        return this.wrapped.verify(Magic.dssUnpadSignature(extracted));
+        final ByteBuffer blob = SshWireCodec.unwrapSignature(ByteBuffer.wrap(sigBytes));
+        return this.wrapped.verify(Magic.rawToDer(sigBytes, blob.arrayOffset() + blob.position(), blob.remaining()));
     }
 
     @Override
@@ -0,0 +1,121 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.ssh.jce;
+
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.InvalidParameterException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+
+/**
+ * The "ecdsa-sha2-*" key formats have the following specific encoding:
+ *
+ *    string    "ecdsa-sha2-[identifier]"
+ *    string    [identifier]
+ *    string    Q
+ *
+ * Here, 'Q' is the public point in uncompressed form, and [identifier] is the curve name, "nistp256" or "nistp384".
+ *
+ * Signing and verifying using this key format is performed according to ECDSA using SHA-256 for nistp256 and
+ * SHA-384 for nistp384.
+ *
+ * The resulting signature is encoded as follows:
+ *
+ *    string    "ecdsa-sha2-[identifier]"
+ *    string    ecdsa_signature_blob
+ *
+ * The value for 'ecdsa_signature_blob' is encoded as {@code mpint r} followed by {@code mpint s}. Like
+ * {@link SSHDSSSignature}, signatures generated by this class omit the SSH framing and contain the raw {@code r}
+ * and {@code s} integers, each padded to the field length of the curve. Both forms are accepted for verification.
+ */
+public final class SSHECDSASignature extends Signature {
+
+    private final NistCurve curve;
+    private final Signature wrapped;
+
+    public SSHECDSASignature(NistCurve curve) throws NoSuchAlgorithmException {
+        super(curve.getKeyFormat().getIdentifier());
+        this.curve = curve;
+        this.wrapped = Signature.getInstance(curve == NistCurve.NISTP384 ? "SHA384withECDSA" : "SHA256withECDSA");
+    }
+
+    @Override
+    protected void engineInitVerify(PublicKey publicKey) throws InvalidKeyException {
+        this.wrapped.initVerify(publicKey);
+    }
+
+    @Override
+    protected void engineInitSign(PrivateKey privateKey) throws InvalidKeyException {
+        this.wrapped.initSign(privateKey);
+    }
+
+    @Override
+    protected void engineUpdate(byte b) throws SignatureException {
+        this.wrapped.update(b);
+    }
+
+    @Override
+    protected void engineUpdate(byte[] b, int off, int len) throws SignatureException {
+        this.wrapped.update(b, off, len);
+    }
+
+    @Override
+    protected byte[] engineSign() throws SignatureException {
+        return Magic.derToRaw(this.wrapped.sign(), curve.getFieldBytes());
+    }
+
+    @Override
+    protected boolean engineVerify(byte[] sigBytes) throws SignatureException {
+        byte[] der;
+        try {
+            if (sigBytes.length == 2 * curve.getFieldBytes()) {
+                der = Magic.rawToDer(sigBytes, 0, sigBytes.length);
+            } else {
+                der = Magic.mpintsToDer(SshWireCodec.unwrapSignature(ByteBuffer.wrap(sigBytes)));
+            }
+        } catch (RuntimeException e) {
+            // malformed framing or integers can't be a valid signature
+            return false;
+        }
+        return this.wrapped.verify(der);
+    }
+
+    @Override
+    protected void engineSetParameter(String param, Object value) throws InvalidParameterException {
+        this.wrapped.setParameter(param, value);
+    }
+
+    @Override
+    protected Object engineGetParameter(String param) throws InvalidParameterException {
+        return this.wrapped.getParameter(param);
+    }
+}
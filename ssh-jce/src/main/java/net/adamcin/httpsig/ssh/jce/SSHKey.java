@@ -28,6 +28,7 @@
 package net.adamcin.httpsig.ssh.jce;
 
 import net.adamcin.httpsig.api.Algorithm;
+import net.adamcin.httpsig.api.SliceVerifiableKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,75 +38,93 @@ import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.Signature;
 import java.security.SignatureException;
-import java.util.Collections;
-import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
- * Default {@link net.adamcin.httpsig.api.Key} implementation for OpenSSH-compliant keys (RSA/DSA)
+ * Default {@link net.adamcin.httpsig.api.Key} implementation for OpenSSH-compliant keys (RSA/DSA/ECDSA)
  */
-public final class SSHKey implements FingerprintableKey {
+public final class SSHKey implements FingerprintableKey, SliceVerifiableKey {
     private static final Logger LOGGER = LoggerFactory.getLogger(SSHKey.class);
     private static final byte[] EMPTY_BYTES = new byte[0];
 
     private final KeyFormat keyFormat;
-    private final KeyPair keyPair;
-    private final String fingerprint;
+    private final PublicKey publicKey;
+    private final PrivateKey privateKey;
+    private final Fingerprint fingerprint;
 
     public SSHKey(KeyFormat keyFormat, KeyPair keyPair) {
+        this(keyFormat, keyPair != null ? keyPair.getPublic() : null, keyPair != null ? keyPair.getPrivate() : null);
+    }
+
+    public SSHKey(KeyFormat keyFormat, PublicKey publicKey,
+                  PrivateKey privateKey) {
+        this(keyFormat, publicKey, privateKey, null);
+    }
+
+    /**
+     * @param fingerprint fingerprint computed from the original public key blob, or null to compute it from the key
+     */
+    SSHKey(KeyFormat keyFormat, PublicKey publicKey, PrivateKey privateKey, Fingerprint fingerprint) {
         if (keyFormat == null) {
             throw new IllegalArgumentException("keyFormat must not be null");
         } else {
             this.keyFormat = keyFormat;
         }
-        if (keyPair == null) {
-            throw new IllegalArgumentException("keyFormat must not be null");
-        }
-        if (keyPair.getPublic() == null) {
+        if (publicKey == null) {
             throw new IllegalArgumentException("publicKey must not be null");
         }
-        this.keyPair = keyPair;
-        this.fingerprint = keyFormat.getFingerprint(keyPair.getPublic());
-    }
-
-    public SSHKey(KeyFormat keyFormat, PublicKey publicKey,
-                  PrivateKey privateKey) {
-        this(keyFormat, new KeyPair(publicKey, privateKey));
+        this.publicKey = publicKey;
+        this.privateKey = privateKey;
+        this.fingerprint = fingerprint != null ? fingerprint : keyFormat.getFingerprintDigest(publicKey);
     }
 
     /**
      * {@inheritDoc}
      */
     public String getId() {
-        return this.fingerprint;
+        return getFingerprint();
     }
 
     /**
      * {@inheritDoc}
      */
     public String getFingerprint() {
+        return this.fingerprint != null ? this.fingerprint.toString() : "";
+    }
+
+    /**
+     * @return the fingerprint in its compact form, or null if the key format does not define one
+     */
+    public Fingerprint getFingerprintDigest() {
         return this.fingerprint;
     }
 
+    /**
+     * @return the key format
+     */
+    public KeyFormat getKeyFormat() {
+        return this.keyFormat;
+    }
+
     /**
      * {@inheritDoc}
      */
     public Set<Algorithm> getAlgorithms() {
-        return Collections.unmodifiableSet(new LinkedHashSet<Algorithm>(keyFormat.getSignatureAlgorithms()));
+        return keyFormat.getSignatureAlgorithmSet();
     }
 
     /**
      * {@inheritDoc}
      */
     public boolean canVerify() {
-        return this.keyPair.getPublic() != null;
+        return this.publicKey != null;
     }
 
     /**
      * {@inheritDoc}
      */
     public boolean canSign() {
-        return this.keyPair.getPrivate() != null;
+        return this.privateKey != null;
     }
 
     /**
@@ -116,24 +135,37 @@ public final class SSHKey implements FingerprintableKey {
             throw new IllegalArgumentException("challengeHash cannot be null.");
         }
 
+        return verify(algorithm, challengeHash, 0, challengeHash.length, signatureBytes);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean verify(Algorithm algorithm, byte[] content, int offset, int length, byte[] signatureBytes) {
+        if (content == null) {
+            throw new IllegalArgumentException("challengeHash cannot be null.");
+        }
+
         if (signatureBytes == null) {
             throw new IllegalArgumentException("signatureBytes cannot be null.");
         }
 
-        if (keyPair.getPublic() == null) {
+        if (publicKey == null) {
             LOGGER.warn("[verify] this identity cannot be used for verification because it lacks a public key.");
         }
 
         Signature signature = keyFormat.getSignatureInstance(algorithm);
         if (signature != null) {
             try {
-                signature.initVerify(keyPair.getPublic());
-                signature.update(challengeHash);
+                signature.initVerify(publicKey);
+                signature.update(content, offset, length);
                 return signature.verify(signatureBytes);
             } catch (SignatureException e) {
                 LOGGER.error("[verify] failed to verify signature.", e);
             } catch (InvalidKeyException e) {
                 LOGGER.error("[verify] failed to verify signature due to invalid public key.", e);
+            } catch (RuntimeException e) {
+                LOGGER.warn("[verify] malformed signature: {}", e.getMessage());
             }
         }
 
@@ -148,7 +180,7 @@ public final class SSHKey implements FingerprintableKey {
             throw new IllegalArgumentException("challengeHash cannot be null.");
         }
 
-        if (keyPair.getPrivate() == null) {
+        if (privateKey == null) {
             LOGGER.warn("[sign] this identity cannot be used for signing because it lacks a private key.");
             return null;
         }
@@ -156,7 +188,7 @@ public final class SSHKey implements FingerprintableKey {
         Signature signature = keyFormat.getSignatureInstance(algorithm);
         if (signature != null) {
             try {
-                signature.initSign(keyPair.getPrivate());
+                signature.initSign(privateKey);
                 signature.update(challengeHash);
                 return signature.sign();
             } catch (SignatureException e) {
@@ -183,16 +215,16 @@ public final class SSHKey implements FingerprintableKey {
 
         SSHKey that = (SSHKey) o;
 
-        if (!fingerprint.equals(that.fingerprint)) {
+        if (fingerprint != null ? !fingerprint.equals(that.fingerprint) : that.fingerprint != null) {
             return false;
         }
         if (keyFormat != that.keyFormat) {
             return false;
         }
-        if (keyPair.getPrivate() != null ? !keyPair.getPrivate().equals(that.keyPair.getPrivate()) : that.keyPair.getPrivate() != null) {
+        if (privateKey != null ? !privateKey.equals(that.privateKey) : that.privateKey != null) {
             return false;
         }
-        if (keyPair.getPublic() != null ? !keyPair.getPublic().equals(that.keyPair.getPublic()) : that.keyPair.getPublic() != null) {
+        if (publicKey != null ? !publicKey.equals(that.publicKey) : that.publicKey != null) {
             return false;
         }
 
@@ -204,10 +236,10 @@ public final class SSHKey implements FingerprintableKey {
      */
     @Override
     public int hashCode() {
-        int result = fingerprint.hashCode();
+        int result = fingerprint != null ? fingerprint.hashCode() : 0;
         result = 31 * result + keyFormat.hashCode();
-        result = 31 * result + (keyPair.getPublic() != null ? keyPair.getPublic().hashCode() : 0);
-        result = 31 * result + (keyPair.getPrivate() != null ? keyPair.getPrivate().hashCode() : 0);
+        result = 31 * result + (publicKey != null ? publicKey.hashCode() : 0);
+        result = 31 * result + (privateKey != null ? privateKey.hashCode() : 0);
         return result;
     }
 }
@@ -27,6 +27,7 @@
 
 package net.adamcin.httpsig.ssh.jce;
 
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.security.InvalidParameterException;
 import java.security.NoSuchAlgorithmException;
@@ -91,8 +92,8 @@ public final class SSHRSASignature extends Signature {
 
     @Override
     protected boolean engineVerify(byte[] sigBytes) throws SignatureException {
-        final byte[] extracted = Magic.extractSignatureFromDER(sigBytes);
-        return this.wrapped.verify(extracted);
+        final ByteBuffer blob = SshWireCodec.unwrapSignature(ByteBuffer.wrap(sigBytes));
+        return this.wrapped.verify(sigBytes, blob.arrayOffset() + blob.position(), blob.remaining());
     }
 
     @Override
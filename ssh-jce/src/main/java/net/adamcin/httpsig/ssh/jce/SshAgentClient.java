@@ -0,0 +1,262 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.ssh.jce;
+
+import net.adamcin.httpsig.api.SigningFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Client for the ssh-agent protocol over an already connected stream pair, such as a Unix domain socket or a named
+ * pipe. Requests are written as soon as they are made and a single reader thread completes them in order as the agent
+ * answers, so several signing requests can be in flight on one connection at once.
+ * @see <a href="https://tools.ietf.org/html/draft-miller-ssh-agent-02">SSH Agent Protocol</a>
+ * @since 1.3.2
+ */
+public final class SshAgentClient implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SshAgentClient.class);
+
+    static final byte SSH_AGENT_FAILURE = 5;
+    static final byte SSH2_AGENTC_REQUEST_IDENTITIES = 11;
+    static final byte SSH2_AGENT_IDENTITIES_ANSWER = 12;
+    static final byte SSH2_AGENTC_SIGN_REQUEST = 13;
+    static final byte SSH2_AGENT_SIGN_RESPONSE = 14;
+
+    /**
+     * Longest agent message accepted, matching the limit of OpenSSH's ssh-agent
+     */
+    static final int MAX_MESSAGE_LENGTH = 256 * 1024;
+
+    private static final ThreadFactory DEFAULT_THREAD_FACTORY = new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ssh-agent-reader");
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private final DataInputStream in;
+    private final OutputStream out;
+    private final Queue<Pending<?>> pending = new ConcurrentLinkedQueue<Pending<?>>();
+    private final Object writeLock = new Object();
+    private volatile IOException closed;
+
+    /**
+     * Starts a daemon reader thread for the connection
+     * @param in the stream of agent responses
+     * @param out the stream of agent requests
+     */
+    public SshAgentClient(InputStream in, OutputStream out) {
+        this(in, out, DEFAULT_THREAD_FACTORY);
+    }
+
+    /**
+     * @param in the stream of agent responses
+     * @param out the stream of agent requests
+     * @param threadFactory creates the reader thread
+     */
+    public SshAgentClient(InputStream in, OutputStream out, ThreadFactory threadFactory) {
+        this.in = new DataInputStream(in);
+        this.out = out;
+        threadFactory.newThread(new Runnable() {
+            public void run() {
+                readResponses();
+            }
+        }).start();
+    }
+
+    /**
+     * Requests the public key blobs of the identities held by the agent
+     * @return a {@link SigningFuture} completed with the public key blobs
+     */
+    public SigningFuture<List<byte[]>> requestIdentities() {
+        ByteBuffer frame = ByteBuffer.allocate(5);
+        frame.putInt(1).put(SSH2_AGENTC_REQUEST_IDENTITIES);
+        return send(new Pending<List<byte[]>>(SSH2_AGENT_IDENTITIES_ANSWER) {
+            @Override List<byte[]> read(ByteBuffer response) {
+                int count = response.getInt();
+                // each identity is at least a key blob length and a comment length
+                if (count < 0 || count > response.remaining() / 8) {
+                    throw new IllegalArgumentException("invalid identity count " + count);
+                }
+                List<byte[]> keyBlobs = new ArrayList<byte[]>(count);
+                for (int i = 0; i < count; i++) {
+                    keyBlobs.add(SshWireCodec.readBytes(response));
+                    SshWireCodec.readString(response); // skip the comment
+                }
+                return Collections.unmodifiableList(keyBlobs);
+            }
+        }, frame.array());
+    }
+
+    /**
+     * Requests a signature from the agent
+     * @param keyBlob the public key blob of the identity to sign with
+     * @param data the data to sign
+     * @param flags signature flags, such as 0 for the key's default signature algorithm
+     * @return a {@link SigningFuture} completed with the SSH-framed signature, or failed if the agent refuses
+     */
+    public SigningFuture<byte[]> sign(byte[] keyBlob, byte[] data, int flags) {
+        int length = 1 + SshWireCodec.stringLength(keyBlob.length) + SshWireCodec.stringLength(data.length) + 4;
+        ByteBuffer frame = ByteBuffer.allocate(4 + length);
+        frame.putInt(length).put(SSH2_AGENTC_SIGN_REQUEST);
+        SshWireCodec.writeString(frame, keyBlob);
+        SshWireCodec.writeString(frame, data);
+        frame.putInt(flags);
+        return send(new Pending<byte[]>(SSH2_AGENT_SIGN_RESPONSE) {
+            @Override byte[] read(ByteBuffer response) {
+                return SshWireCodec.readBytes(response);
+            }
+        }, frame.array());
+    }
+
+    /**
+     * Closes the connection and fails any requests still waiting for an answer
+     */
+    public void close() {
+        closeWith(new IOException("ssh-agent connection closed"));
+    }
+
+    /**
+     * @return true if the connection has been closed, by {@link #close()} or by an I/O error
+     */
+    public boolean isClosed() {
+        return closed != null;
+    }
+
+    private <T> SigningFuture<T> send(Pending<T> request, byte[] frame) {
+        synchronized (writeLock) {
+            // enqueue before writing, since the agent may answer before the write returns
+            pending.add(request);
+            if (closed == null) {
+                try {
+                    out.write(frame);
+                    out.flush();
+                } catch (IOException e) {
+                    closeWith(e);
+                }
+            }
+        }
+        if (closed != null) {
+            failPending();
+        }
+        return request.future;
+    }
+
+    private void readResponses() {
+        try {
+            while (closed == null) {
+                int length = in.readInt();
+                if (length < 1 || length > MAX_MESSAGE_LENGTH) {
+                    throw new IOException("Invalid ssh-agent message length: " + length);
+                }
+                byte[] message = new byte[length];
+                in.readFully(message);
+                Pending<?> request = pending.poll();
+                if (request == null) {
+                    throw new IOException("Unexpected ssh-agent message of type " + message[0]);
+                }
+                request.complete(message[0], ByteBuffer.wrap(message, 1, length - 1));
+            }
+        } catch (IOException e) {
+            if (closed == null) {
+                LOGGER.debug("[readResponses] ssh-agent connection failed: {}", e.getMessage());
+            }
+            closeWith(e);
+        }
+    }
+
+    private void closeWith(IOException cause) {
+        boolean first;
+        synchronized (this) {
+            first = closed == null;
+            if (first) {
+                closed = cause;
+            }
+        }
+        if (first) {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+        failPending();
+    }
+
+    private void failPending() {
+        Pending<?> request;
+        while ((request = pending.poll()) != null) {
+            request.future.fail(closed);
+        }
+    }
+
+    /**
+     * A request waiting for its answer
+     */
+    abstract static class Pending<T> {
+        final SigningFuture<T> future = new SigningFuture<T>();
+        private final byte expectedType;
+
+        Pending(byte expectedType) {
+            this.expectedType = expectedType;
+        }
+
+        abstract T read(ByteBuffer response);
+
+        void complete(byte type, ByteBuffer response) {
+            if (type == expectedType) {
+                try {
+                    future.complete(read(response));
+                } catch (RuntimeException e) {
+                    future.fail(new IOException("Malformed ssh-agent response: " + e));
+                }
+            } else if (type == SSH_AGENT_FAILURE) {
+                future.fail(new IOException("ssh-agent refused the request"));
+            } else {
+                future.fail(new IOException("Unexpected ssh-agent message of type " + type));
+            }
+        }
+    }
+}
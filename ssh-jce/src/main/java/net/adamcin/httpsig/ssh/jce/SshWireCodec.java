@@ -0,0 +1,185 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.ssh.jce;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Readers and writers for the SSH wire-format data types used in public key blobs and signature blobs. Readers
+ * operate on a {@link ByteBuffer} positioned at the start of a field and advance it past the field. Strings are
+ * returned as slices of the underlying buffer, so nothing is copied until a caller needs its own array.
+ *
+ * @see <a href="http://tools.ietf.org/html/rfc4251#section-5">[RFC4251] Section 5: Data Type Representations</a>
+ */
+public final class SshWireCodec {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    /**
+     * Reads a {@code string} field
+     * @param buf buffer positioned at the length prefix
+     * @return a slice of {@code buf} containing the string contents
+     * @throws IllegalArgumentException if the length prefix exceeds the remaining bytes
+     */
+    public static ByteBuffer readString(ByteBuffer buf) {
+        if (buf.remaining() < 4) {
+            throw new IllegalArgumentException("truncated string length at position " + buf.position());
+        }
+        int len = buf.getInt();
+        if (len < 0 || len > buf.remaining()) {
+            throw new IllegalArgumentException("invalid string length " + len + " at position " + (buf.position() - 4));
+        }
+        ByteBuffer slice = buf.slice();
+        slice.limit(len);
+        buf.position(buf.position() + len);
+        return slice;
+    }
+
+    /**
+     * Reads a {@code string} field into a new array
+     * @param buf buffer positioned at the length prefix
+     * @return a copy of the string contents
+     */
+    public static byte[] readBytes(ByteBuffer buf) {
+        ByteBuffer string = readString(buf);
+        byte[] bytes = new byte[string.remaining()];
+        string.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Reads a {@code string} field containing US-ASCII text, such as a key format identifier
+     * @param buf buffer positioned at the length prefix
+     * @return the decoded text
+     */
+    public static String readAscii(ByteBuffer buf) {
+        ByteBuffer string = readString(buf);
+        return new String(string.array(), string.arrayOffset() + string.position(), string.remaining(), ASCII);
+    }
+
+    /**
+     * Reads an {@code mpint} field
+     * @param buf buffer positioned at the length prefix
+     * @return the two's complement integer value
+     */
+    public static BigInteger readMpint(ByteBuffer buf) {
+        ByteBuffer string = readString(buf);
+        if (!string.hasRemaining()) {
+            return BigInteger.ZERO;
+        }
+        byte[] bytes = new byte[string.remaining()];
+        string.get(bytes);
+        return new BigInteger(bytes);
+    }
+
+    /**
+     * @param contentLength length of the string contents
+     * @return the encoded length of a {@code string} field
+     */
+    public static int stringLength(int contentLength) {
+        return 4 + contentLength;
+    }
+
+    /**
+     * Computes the encoded length of an {@code mpint} field without encoding the value
+     * @param value the integer value
+     * @return the encoded length of the {@code mpint} field
+     */
+    public static int mpintLength(BigInteger value) {
+        return value.signum() == 0 ? 4 : 4 + value.bitLength() / 8 + 1;
+    }
+
+    /**
+     * Writes a {@code string} field
+     * @param buf destination buffer
+     * @param bytes string contents
+     */
+    public static void writeString(ByteBuffer buf, byte[] bytes) {
+        buf.putInt(bytes.length);
+        buf.put(bytes);
+    }
+
+    /**
+     * Writes a {@code string} field from the remaining bytes of {@code bytes}, without changing its position
+     * @param buf destination buffer
+     * @param bytes string contents
+     */
+    public static void writeString(ByteBuffer buf, ByteBuffer bytes) {
+        buf.putInt(bytes.remaining());
+        buf.put(bytes.duplicate());
+    }
+
+    /**
+     * Writes an {@code mpint} field
+     * @param buf destination buffer
+     * @param value the integer value
+     */
+    public static void writeMpint(ByteBuffer buf, BigInteger value) {
+        if (value.signum() == 0) {
+            buf.putInt(0);
+        } else {
+            writeString(buf, value.toByteArray());
+        }
+    }
+
+    /**
+     * Returns the signature blob of an SSH-framed signature ({@code string format, string blob}). Signatures which
+     * are not framed are returned as-is, which allows verifiers to accept either form.
+     * @param signature the signature bytes
+     * @return a slice containing the signature blob, or {@code signature} if it is not framed
+     */
+    public static ByteBuffer unwrapSignature(ByteBuffer signature) {
+        int start = signature.position();
+        if (signature.remaining() > 4
+                && signature.get(start) == 0 && signature.get(start + 1) == 0 && signature.get(start + 2) == 0) {
+            ByteBuffer buf = signature.duplicate();
+            readString(buf);
+            return readString(buf);
+        }
+        return signature;
+    }
+
+    /**
+     * Frames a signature blob as {@code string format, string blob}
+     * @param format the key format identifier
+     * @param blob the signature blob
+     * @return the framed signature
+     */
+    public static byte[] frameSignature(String format, ByteBuffer blob) {
+        byte[] formatBytes = format.getBytes(ASCII);
+        ByteBuffer buf = ByteBuffer.allocate(stringLength(formatBytes.length) + stringLength(blob.remaining()));
+        writeString(buf, formatBytes);
+        writeString(buf, blob);
+        return buf.array();
+    }
+
+    private SshWireCodec() {
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.ssh.jce;
+
+import net.adamcin.httpsig.api.Algorithm;
+import net.adamcin.httpsig.api.Constants;
+import net.adamcin.httpsig.api.IndexedKeychain;
+import net.adamcin.httpsig.api.Key;
+import net.adamcin.httpsig.api.KeyId;
+import net.adamcin.httpsig.api.Keychain;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * {@link Keychain} for keyIds of the form {@code /$username/keys/$fingerprint} (see {@link UserKeysFingerprintKeyId})
+ * or {@code /$username/$fingerprint} (see {@link UserFingerprintKeyId}), backed by one authorized_keys file per user.
+ * A user's file is only read when a keyId for that user is looked up, and parsed users are kept in an LRU cache which
+ * is bounded by the total number of keys it holds, so memory scales with active users rather than all users.
+ *
+ * The keychain cannot be enumerated, so it behaves as an empty keychain for everything but
+ * {@link #findKey(KeyId, String)}, and is only useful for verification with
+ * {@link net.adamcin.httpsig.api.DefaultVerifier}.
+ * @since 1.3.2
+ */
+public final class UserAuthorizedKeysKeychain implements IndexedKeychain {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserAuthorizedKeysKeychain.class);
+    private static final Pattern USERNAME_PATTERN = Pattern.compile("[A-Za-z0-9_][A-Za-z0-9._-]*");
+    private static final String KEYS_SEGMENT = "keys/";
+    private static final Set<Algorithm> ALL_ALGORITHMS =
+            Collections.unmodifiableSet(new LinkedHashSet<Algorithm>(Constants.ALL_SUPPORTED_ALGORITHMS));
+    private static final FingerprintKeychain NO_KEYS = new FingerprintKeychain(Collections.<Key>emptyList());
+
+    private final File baseDir;
+    private final String relativePath;
+    private final int maximumKeys;
+    private final LinkedHashMap<String, FingerprintKeychain> users =
+            new LinkedHashMap<String, FingerprintKeychain>(16, 0.75f, true);
+    private int cachedKeys;
+
+    /**
+     * @param baseDir directory containing one entry per user
+     * @param relativePath path of the authorized_keys file relative to a user's entry, such as
+     *                     {@code .ssh/authorized_keys}, or null if each user's entry is itself the file
+     * @param maximumKeys maximum number of keys to cache across all users. Users without keys count as one key.
+     */
+    public UserAuthorizedKeysKeychain(File baseDir, String relativePath, int maximumKeys) {
+        if (baseDir == null) {
+            throw new IllegalArgumentException("baseDir cannot be null");
+        }
+        if (maximumKeys <= 0) {
+            throw new IllegalArgumentException("maximumKeys must be positive");
+        }
+        this.baseDir = baseDir;
+        this.relativePath = relativePath;
+        this.maximumKeys = maximumKeys;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The username is parsed from {@code id}, so {@code keyId} is ignored.
+     */
+    public Key findKey(KeyId keyId, String id) {
+        if (id == null || id.length() < 2 || id.charAt(0) != '/') {
+            return null;
+        }
+        int slash = id.indexOf('/', 1);
+        if (slash < 0) {
+            return null;
+        }
+        String username = id.substring(1, slash);
+        int offset = slash + 1;
+        if (id.startsWith(KEYS_SEGMENT, offset)) {
+            offset += KEYS_SEGMENT.length();
+        }
+        if (!Fingerprint.isWellFormed(id, offset) || !USERNAME_PATTERN.matcher(username).matches()) {
+            return null;
+        }
+        return getUserKeychain(username).getIndex().get(id, offset);
+    }
+
+    /**
+     * Discards the cached keys of a user, so that the next lookup reads the user's file again
+     * @param username the username
+     */
+    public void invalidate(String username) {
+        synchronized (users) {
+            FingerprintKeychain removed = users.remove(username);
+            if (removed != null) {
+                cachedKeys -= weigh(removed);
+            }
+        }
+    }
+
+    /**
+     * @return the number of users currently cached
+     */
+    public int getCachedUserCount() {
+        synchronized (users) {
+            return users.size();
+        }
+    }
+
+    /**
+     * @return the number of keys currently cached, counting users without keys as one
+     */
+    public int getCachedKeyCount() {
+        synchronized (users) {
+            return cachedKeys;
+        }
+    }
+
+    FingerprintKeychain getUserKeychain(String username) {
+        synchronized (users) {
+            FingerprintKeychain cached = users.get(username);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        FingerprintKeychain loaded = load(username);
+        synchronized (users) {
+            FingerprintKeychain previous = users.put(username, loaded);
+            if (previous != null) {
+                cachedKeys -= weigh(previous);
+            }
+            cachedKeys += weigh(loaded);
+            Iterator<FingerprintKeychain> eldest = users.values().iterator();
+            while (cachedKeys > maximumKeys && users.size() > 1 && eldest.hasNext()) {
+                FingerprintKeychain evicted = eldest.next();
+                if (evicted != loaded) {
+                    cachedKeys -= weigh(evicted);
+                    eldest.remove();
+                }
+            }
+        }
+        return loaded;
+    }
+
+    private FingerprintKeychain load(String username) {
+        File userEntry = new File(baseDir, username);
+        File authorizedKeys = relativePath != null ? new File(userEntry, relativePath) : userEntry;
+        if (!authorizedKeys.isFile()) {
+            return NO_KEYS;
+        }
+        try {
+            return AuthorizedKeys.newFingerprintKeychain(authorizedKeys);
+        } catch (IOException e) {
+            LOGGER.warn("[load] failed to read authorized keys for user {}: {}", username, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("[load] failed to parse authorized keys for user {}: {}", username, e.getMessage());
+        }
+        return NO_KEYS;
+    }
+
+    private static int weigh(FingerprintKeychain keychain) {
+        return Math.max(1, keychain.size());
+    }
+
+    public Set<Algorithm> getAlgorithms() {
+        return ALL_ALGORITHMS;
+    }
+
+    public Keychain filterAlgorithms(Collection<Algorithm> algorithms) {
+        return this;
+    }
+
+    public Keychain discard() {
+        throw new NoSuchElementException("keychain is empty");
+    }
+
+    public Key currentKey() {
+        throw new NoSuchElementException("keychain is empty");
+    }
+
+    public Map<String, Key> toMap(KeyId keyId) {
+        return Collections.emptyMap();
+    }
+
+    public boolean isEmpty() {
+        return true;
+    }
+
+    public Iterator<Key> iterator() {
+        return Collections.<Key>emptyList().iterator();
+    }
+}
@@ -28,12 +28,14 @@
 package net.adamcin.httpsig.ssh.jce;
 
 import net.adamcin.httpsig.api.Key;
-import net.adamcin.httpsig.api.KeyId;
 
 /**
  * Implementation of {@link net.adamcin.httpsig.api.KeyId} which incorporates a username into the keyId string.
  */
-public final class UserFingerprintKeyId implements KeyId {
+public final class UserFingerprintKeyId implements FingerprintKeyId {
+    private static final String SEPARATOR = "/";
+    private static final int PREFIX_LENGTH = 1 + SEPARATOR.length();
+
     private String username;
 
     public UserFingerprintKeyId(String username) {
@@ -42,11 +44,24 @@ public final class UserFingerprintKeyId implements KeyId {
 
     public String getId(Key key) {
         if (key instanceof FingerprintableKey) {
-            return String.format("/%s/%s", username, ((FingerprintableKey) key).getFingerprint());
+            return new StringBuilder(PREFIX_LENGTH + username.length() + Fingerprint.FORMATTED_LENGTH)
+                    .append('/').append(username).append(SEPARATOR)
+                    .append(((FingerprintableKey) key).getFingerprint()).toString();
         }
         return null;
     }
 
+    public int indexOfFingerprint(String keyId) {
+        int offset = PREFIX_LENGTH + username.length();
+        if (keyId.length() == offset + Fingerprint.FORMATTED_LENGTH
+                && keyId.charAt(0) == '/'
+                && keyId.regionMatches(1, username, 0, username.length())
+                && keyId.regionMatches(1 + username.length(), SEPARATOR, 0, SEPARATOR.length())) {
+            return offset;
+        }
+        return -1;
+    }
+
     public String getUsername() {
         return this.username;
     }
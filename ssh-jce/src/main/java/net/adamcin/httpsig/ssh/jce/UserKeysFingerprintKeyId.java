@@ -28,13 +28,14 @@
 package net.adamcin.httpsig.ssh.jce;
 
 import net.adamcin.httpsig.api.Key;
-import net.adamcin.httpsig.api.KeyId;
 
 /**
- * Implementation of {@link KeyId} following the Joyent API convention of /$username/keys/$fingerprint
+ * Implementation of {@link net.adamcin.httpsig.api.KeyId} following the Joyent API convention of /$username/keys/$fingerprint
  * @since 1.0.2
  */
-public final class UserKeysFingerprintKeyId implements KeyId {
+public final class UserKeysFingerprintKeyId implements FingerprintKeyId {
+    private static final String SEPARATOR = "/keys/";
+    private static final int PREFIX_LENGTH = 1 + SEPARATOR.length();
 
     private final String username;
 
@@ -48,8 +49,21 @@ public final class UserKeysFingerprintKeyId implements KeyId {
 
     public String getId(Key key) {
         if (key instanceof FingerprintableKey) {
-            return String.format("/%s/keys/%s", username, ((FingerprintableKey) key).getFingerprint());
+            return new StringBuilder(PREFIX_LENGTH + username.length() + Fingerprint.FORMATTED_LENGTH)
+                    .append('/').append(username).append(SEPARATOR)
+                    .append(((FingerprintableKey) key).getFingerprint()).toString();
         }
         return null;
     }
+
+    public int indexOfFingerprint(String keyId) {
+        int offset = PREFIX_LENGTH + username.length();
+        if (keyId.length() == offset + Fingerprint.FORMATTED_LENGTH
+                && keyId.charAt(0) == '/'
+                && keyId.regionMatches(1, username, 0, username.length())
+                && keyId.regionMatches(1 + username.length(), SEPARATOR, 0, SEPARATOR.length())) {
+            return offset;
+        }
+        return -1;
+    }
 }
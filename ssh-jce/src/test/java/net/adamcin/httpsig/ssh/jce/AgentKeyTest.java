@@ -0,0 +1,248 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.ssh.jce;
+
+import net.adamcin.httpsig.api.Algorithm;
+import net.adamcin.httpsig.api.Authorization;
+import net.adamcin.httpsig.api.Base64;
+import net.adamcin.httpsig.api.Challenge;
+import net.adamcin.httpsig.api.Constants;
+import net.adamcin.httpsig.api.DefaultVerifier;
+import net.adamcin.httpsig.api.RequestContent;
+import net.adamcin.httpsig.api.Signer;
+import net.adamcin.httpsig.api.SigningFuture;
+import net.adamcin.httpsig.testutil.KeyTestUtil;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AgentKeyTest {
+
+    @Test
+    public void testPipelinedSigning() throws Exception {
+        FakeAgent agent = new FakeAgent(3);
+        SshAgentClient client = agent.connect();
+        try {
+            List<byte[]> keyBlobs = client.requestIdentities().get(5, TimeUnit.SECONDS);
+            assertEquals("agent should hold one identity", 1, keyBlobs.size());
+
+            AgentKey key = new AgentKey(client, keyBlobs.get(0));
+            assertTrue("agent key should sign", key.canSign());
+
+            Challenge challenge = new Challenge("myRealm", Constants.DEFAULT_HEADERS, Arrays.asList(Algorithm.SSH_RSA));
+            Signer signer = new Signer(key, null);
+            signer.rotateKeys(challenge);
+            DefaultVerifier verifier = new DefaultVerifier(
+                    AuthorizedKeys.newKeychain(KeyTestUtil.getPublicKeyAsFile("b1024", "id_rsa")));
+
+            // the agent holds its answers until three requests are in flight
+            List<RequestContent> contents = new ArrayList<RequestContent>();
+            List<SigningFuture<Authorization>> futures = new ArrayList<SigningFuture<Authorization>>();
+            for (int i = 0; i < 3; i++) {
+                RequestContent content = new RequestContent.Builder()
+                        .setRequestTarget("GET", "/index" + i + ".html").addDateNow().build();
+                contents.add(content);
+                futures.add(signer.signAsync(content));
+            }
+
+            for (int i = 0; i < 3; i++) {
+                Authorization authorization = futures.get(i).get(5, TimeUnit.SECONDS);
+                assertNotNull("agent should sign request " + i, authorization);
+                assertTrue("signature " + i + " should verify",
+                           verifier.verify(challenge, contents.get(i), authorization));
+            }
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testAgentFailure() throws Exception {
+        SshAgentClient client = new FakeAgent(1).connect();
+        byte[] unknownKey = Base64.fromBase64String(AuthorizedKeys.parseAuthorizedKeys(
+                KeyTestUtil.getPublicKeyAsFile("b1024", "id_dsa")).get(0).getEncodedKey());
+
+        AgentKey key = new AgentKey(client, unknownKey);
+        assertTrue("agent key should sign before the agent refuses", key.canSign());
+        try {
+            key.signAsync(Algorithm.SSH_DSS, "hello".getBytes()).get(5, TimeUnit.SECONDS);
+            fail("agent should refuse an unknown key");
+        } catch (ExecutionException e) {
+            assertTrue("failure should be an IOException", e.getCause() instanceof IOException);
+        }
+        assertFalse("agent key should not sign after the agent refuses", key.canSign());
+        assertFalse("connection should stay open", client.isClosed());
+
+        client.close();
+        assertTrue("client should be closed", client.isClosed());
+        try {
+            client.sign(unknownKey, "hello".getBytes(), 0).get(5, TimeUnit.SECONDS);
+            fail("closed client should fail requests");
+        } catch (ExecutionException e) {
+            assertTrue("failure should be an IOException", e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testOversizedMessage() throws Exception {
+        ByteBuffer response = ByteBuffer.allocate(4).putInt(SshAgentClient.MAX_MESSAGE_LENGTH + 1);
+        SshAgentClient client = new SshAgentClient(new ByteArrayInputStream(response.array()),
+                                                   new ByteArrayOutputStream());
+        try {
+            client.requestIdentities().get(5, TimeUnit.SECONDS);
+            fail("oversized message should fail the request");
+        } catch (ExecutionException e) {
+            assertTrue("failure should be an IOException", e.getCause() instanceof IOException);
+        }
+        assertTrue("client should be closed", client.isClosed());
+    }
+
+    @Test
+    public void testMalformedIdentityCount() throws Exception {
+        PipedOutputStream responses = new PipedOutputStream();
+        SshAgentClient client = new SshAgentClient(new PipedInputStream(responses), new ByteArrayOutputStream());
+        try {
+            SigningFuture<List<byte[]>> identities = client.requestIdentities();
+            DataOutputStream out = new DataOutputStream(responses);
+            out.writeInt(5);
+            out.writeByte(SshAgentClient.SSH2_AGENT_IDENTITIES_ANSWER);
+            out.writeInt(Integer.MAX_VALUE);
+            out.flush();
+            try {
+                identities.get(5, TimeUnit.SECONDS);
+                fail("identity count larger than the response should fail the request");
+            } catch (ExecutionException e) {
+                assertTrue("failure should be an IOException", e.getCause() instanceof IOException);
+                assertTrue("failure should report a malformed response",
+                           e.getCause().getMessage().startsWith("Malformed ssh-agent response"));
+            }
+            assertFalse("connection should stay open", client.isClosed());
+        } finally {
+            client.close();
+        }
+    }
+
+    /**
+     * Answers agent requests over piped streams with the b1024 RSA key, holding sign responses until {@code batch}
+     * sign requests have been received
+     */
+    static class FakeAgent implements Runnable {
+        private final int batch;
+        private final SSHKey key = new SSHKey(KeyFormat.SSH_RSA, KeyTestUtil.getKeyPairFromProperties("b1024", "id_rsa"));
+        private final byte[] keyBlob;
+        private DataInputStream in;
+        private DataOutputStream out;
+
+        FakeAgent(int batch) throws Exception {
+            this.batch = batch;
+            this.keyBlob = Base64.fromBase64String(AuthorizedKeys.parseAuthorizedKeys(
+                    KeyTestUtil.getPublicKeyAsFile("b1024", "id_rsa")).get(0).getEncodedKey());
+        }
+
+        SshAgentClient connect() throws IOException {
+            PipedOutputStream requests = new PipedOutputStream();
+            PipedInputStream responses = new PipedInputStream();
+            this.in = new DataInputStream(new PipedInputStream(requests));
+            this.out = new DataOutputStream(new PipedOutputStream(responses));
+            Thread thread = new Thread(this, "fake-ssh-agent");
+            thread.setDaemon(true);
+            thread.start();
+            return new SshAgentClient(responses, requests);
+        }
+
+        public void run() {
+            try {
+                List<ByteBuffer> held = new ArrayList<ByteBuffer>();
+                while (true) {
+                    byte[] message = new byte[in.readInt()];
+                    in.readFully(message);
+                    ByteBuffer request = ByteBuffer.wrap(message, 1, message.length - 1);
+                    if (message[0] == SshAgentClient.SSH2_AGENTC_REQUEST_IDENTITIES) {
+                        answerIdentities();
+                    } else if (message[0] == SshAgentClient.SSH2_AGENTC_SIGN_REQUEST) {
+                        held.add(request);
+                        if (held.size() == batch) {
+                            for (ByteBuffer signRequest : held) {
+                                answerSign(signRequest);
+                            }
+                            held.clear();
+                        }
+                    } else {
+                        answer(new byte[]{SshAgentClient.SSH_AGENT_FAILURE});
+                    }
+                }
+            } catch (IOException e) {
+                // client closed the connection
+            }
+        }
+
+        private void answerIdentities() throws IOException {
+            ByteBuffer response = ByteBuffer.allocate(1 + 4 + SshWireCodec.stringLength(keyBlob.length)
+                    + SshWireCodec.stringLength(0));
+            response.put(SshAgentClient.SSH2_AGENT_IDENTITIES_ANSWER).putInt(1);
+            SshWireCodec.writeString(response, keyBlob);
+            SshWireCodec.writeString(response, new byte[0]);
+            answer(response.array());
+        }
+
+        private void answerSign(ByteBuffer request) throws IOException {
+            byte[] requestedKey = SshWireCodec.readBytes(request);
+            byte[] data = SshWireCodec.readBytes(request);
+            if (!Arrays.equals(keyBlob, requestedKey)) {
+                answer(new byte[]{SshAgentClient.SSH_AGENT_FAILURE});
+                return;
+            }
+            byte[] signature = SshWireCodec.frameSignature(
+                    KeyFormat.SSH_RSA.getIdentifier(), ByteBuffer.wrap(key.sign(Algorithm.SSH_RSA, data)));
+            ByteBuffer response = ByteBuffer.allocate(1 + SshWireCodec.stringLength(signature.length));
+            response.put(SshAgentClient.SSH2_AGENT_SIGN_RESPONSE);
+            SshWireCodec.writeString(response, signature);
+            answer(response.array());
+        }
+
+        private void answer(byte[] response) throws IOException {
+            out.writeInt(response.length);
+            out.write(response);
+            out.flush();
+        }
+    }
+}
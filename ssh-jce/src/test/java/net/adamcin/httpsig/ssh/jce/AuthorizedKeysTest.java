@@ -28,6 +28,7 @@
 package net.adamcin.httpsig.ssh.jce;
 
 import net.adamcin.commons.testing.junit.FailUtil;
+import net.adamcin.httpsig.api.Algorithm;
 import net.adamcin.httpsig.api.Authorization;
 import net.adamcin.httpsig.api.Base64;
 import net.adamcin.httpsig.api.Challenge;
@@ -44,11 +45,16 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.math.BigInteger;
 import java.security.KeyPair;
 import java.security.interfaces.DSAPublicKey;
+import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPublicKey;
 import java.security.spec.DSAPublicKeySpec;
+import java.security.spec.ECPublicKeySpec;
 import java.security.spec.RSAPublicKeySpec;
 import java.util.Arrays;
 import java.util.List;
@@ -92,6 +98,102 @@ public class AuthorizedKeysTest {
         compareAuthorizedKeyToKeyPair("withpass", "id_rsa", KeyFormat.SSH_RSA);
     }
 
+    @Test
+    public void testEcdsaAuthorizedKeysVerifier() {
+        compareEcdsaAuthorizedKeyToKeyPair("ecdsa256", KeyFormat.ECDSA_SHA2_NISTP256);
+        compareEcdsaAuthorizedKeyToKeyPair("ecdsa384", KeyFormat.ECDSA_SHA2_NISTP384);
+    }
+
+    @Test
+    public void testEcdsaMalformedSignature() {
+        try {
+            KeyPair keyPair = KeyTestUtil.getPrivateKeyAsKeyPair("ecdsa256", "id_ecdsa", null);
+            Key key = new SSHKey(KeyFormat.ECDSA_SHA2_NISTP256, keyPair);
+            Algorithm algorithm = KeyFormat.ECDSA_SHA2_NISTP256.getSignatureAlgorithms().get(0);
+            byte[] content = "content".getBytes("UTF-8");
+
+            byte[][] malformed = {
+                    new byte[0],
+                    new byte[]{0x00, 0x00, 0x00, 0x7f, 0x01},
+                    new byte[]{0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00, 0x00, 0x05},
+                    new byte[]{0x00, 0x00, 0x00, 0x01, 0x01, 0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x01}
+            };
+            for (byte[] signature : malformed) {
+                assertFalse("malformed signature should fail verification",
+                            key.verify(algorithm, content, signature));
+            }
+        } catch (Exception e) {
+            FailUtil.sprintFail(e);
+        }
+    }
+
+    public void compareEcdsaAuthorizedKeyToKeyPair(String parentName, KeyFormat format) {
+        final String id = "[" + parentName + "/id_ecdsa] ";
+
+        try {
+            List<AuthorizedKey> keys = AuthorizedKeys.parseAuthorizedKeys(
+                    KeyTestUtil.getPublicKeyAsFile(parentName, "id_ecdsa")
+            );
+
+            PublicPair publicPair = AuthorizedKeys.readPublicPair(Base64.fromBase64String(keys.get(0).getEncodedKey()));
+            assertEquals(id + "public pair should be KeyFormat", format, publicPair.getFormat());
+            assertTrue(id + "publicPair.getSpec() should be instance of ECPublicKeySpec",
+                       publicPair.getSpec() instanceof ECPublicKeySpec);
+
+            KeyPair keyPair = KeyTestUtil.getPrivateKeyAsKeyPair(parentName, "id_ecdsa", null);
+            assertTrue(id + "keyPair.getPublic() should be instance of ECPublicKey",
+                       keyPair.getPublic() instanceof ECPublicKey);
+            assertEquals(id + "public points should match", ((ECPublicKey) keyPair.getPublic()).getW(),
+                         ((ECPublicKeySpec) publicPair.getSpec()).getW());
+
+            Key jceKey = new SSHKey(format, keyPair);
+            Key akKey = AuthorizedKeys.createPublicIdentity(publicPair);
+
+            assertEquals(id + "fingerprints should match", jceKey.getId(), akKey.getId());
+
+            DefaultVerifier publicKeyVerifier = new DefaultVerifier(new DefaultKeychain(Arrays.asList(akKey)));
+            RequestContent requestContent = new RequestContent.Builder().addDateNow().build();
+
+            for (Algorithm algorithm : format.getSignatureAlgorithms()) {
+                Signer signer = new Signer(new DefaultKeychain(Arrays.asList(jceKey)));
+                Challenge challenge = new Challenge(getClass().getName(), Constants.DEFAULT_HEADERS,
+                                                    Arrays.asList(algorithm));
+                signer.rotateKeys(challenge, null);
+
+                Authorization authorization = signer.sign(requestContent);
+                assertEquals(id + "authorization should use algorithm", algorithm, authorization.getAlgorithm());
+                assertTrue(id + "public key verifier should verify " + algorithm,
+                           publicKeyVerifier.verify(challenge, requestContent, authorization));
+            }
+
+            // a signature framed in the RFC5656 wire format should also verify
+            byte[] content = requestContent.getBytesToSign(Constants.DEFAULT_HEADERS, Constants.CHARSET);
+            byte[] raw = jceKey.sign(format.getSignatureAlgorithms().get(0), content);
+            int half = raw.length / 2;
+            byte[] r = new BigInteger(1, Arrays.copyOfRange(raw, 0, half)).toByteArray();
+            byte[] s = new BigInteger(1, Arrays.copyOfRange(raw, half, raw.length)).toByteArray();
+
+            ByteArrayOutputStream blob = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(blob);
+            dos.writeInt(r.length);
+            dos.write(r);
+            dos.writeInt(s.length);
+            dos.write(s);
+
+            ByteArrayOutputStream framed = new ByteArrayOutputStream();
+            dos = new DataOutputStream(framed);
+            dos.writeInt(format.getIdentifier().length());
+            dos.write(format.getIdentifier().getBytes());
+            dos.writeInt(blob.size());
+            dos.write(blob.toByteArray());
+
+            assertTrue(id + "framed signature should verify",
+                       akKey.verify(format.getSignatureAlgorithms().get(0), content, framed.toByteArray()));
+        } catch (Exception e) {
+            FailUtil.sprintFail(e);
+        }
+    }
+
     public void compareAuthorizedKeyToKeyPair(String parentName, String keyName, KeyFormat format) {
         final String id = "[" + parentName + "/" + keyName + "] ";
         LOGGER.info("[compareAuthorizedKeyToKeyPair {}] begin", id);
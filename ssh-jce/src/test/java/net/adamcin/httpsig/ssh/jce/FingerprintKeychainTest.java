@@ -0,0 +1,153 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.ssh.jce;
+
+import net.adamcin.httpsig.api.Algorithm;
+import net.adamcin.httpsig.api.Constants;
+import net.adamcin.httpsig.api.Key;
+import net.adamcin.httpsig.api.KeyId;
+import net.adamcin.httpsig.testutil.KeyTestUtil;
+import org.junit.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class FingerprintKeychainTest {
+
+    @Test
+    public void testFindKey() throws Exception {
+        FingerprintKeychain keychain =
+                (FingerprintKeychain) AuthorizedKeys.newKeychain(KeyTestUtil.getAuthorizedKeysFile());
+        assertFalse("keychain should not be empty", keychain.isEmpty());
+
+        KeyId[] keyIds = new KeyId[] {
+                null, Constants.DEFAULT_KEY_IDENTIFIER,
+                new UserFingerprintKeyId("admin"), new UserKeysFingerprintKeyId("admin")
+        };
+
+        for (KeyId keyId : keyIds) {
+            Map<String, Key> map = keychain.toMap(keyId);
+            for (Map.Entry<String, Key> entry : map.entrySet()) {
+                assertSame("findKey should agree with toMap for " + entry.getKey(),
+                           entry.getValue(), keychain.findKey(keyId, entry.getKey()));
+            }
+        }
+
+        String fingerprint = ((FingerprintableKey) keychain.currentKey()).getFingerprint();
+        assertNull("other user should not match",
+                   keychain.findKey(new UserKeysFingerprintKeyId("admin"), "/other/keys/" + fingerprint));
+        assertNull("wrong separator should not match",
+                   keychain.findKey(new UserKeysFingerprintKeyId("admin"), "/admin/" + fingerprint));
+        assertNull("malformed fingerprint should not match",
+                   keychain.findKey(new UserFingerprintKeyId("admin"), "/admin/" + fingerprint.replace(':', '-')));
+        assertNull("unknown fingerprint should not match",
+                   keychain.findKey(null, "00:00:00:00:00:00:00:00:00:00:00:00:00:00:00:00"));
+    }
+
+    @Test
+    public void testFindUnparseableFingerprint() throws Exception {
+        FingerprintKeychain authorized =
+                (FingerprintKeychain) AuthorizedKeys.newKeychain(KeyTestUtil.getAuthorizedKeysFile());
+        Key legacy = new LegacyKey("legacy-fingerprint");
+        List<Key> keys = new ArrayList<Key>();
+        for (Key key : authorized) {
+            keys.add(key);
+        }
+        keys.add(legacy);
+        FingerprintKeychain keychain = new FingerprintKeychain(keys);
+
+        KeyId[] keyIds = new KeyId[] {
+                null, Constants.DEFAULT_KEY_IDENTIFIER,
+                new UserFingerprintKeyId("admin"), new UserKeysFingerprintKeyId("admin")
+        };
+        for (KeyId keyId : keyIds) {
+            String id = (keyId != null ? keyId : Constants.DEFAULT_KEY_IDENTIFIER).getId(legacy);
+            assertSame("toMap should find the key with " + keyId, legacy, keychain.toMap(keyId).get(id));
+            assertSame("findKey should fall back to a scan with " + keyId, legacy, keychain.findKey(keyId, id));
+        }
+    }
+
+    /**
+     * {@link FingerprintableKey} with a fingerprint which does not parse as an MD5 fingerprint
+     */
+    private static final class LegacyKey implements FingerprintableKey {
+        private final String fingerprint;
+
+        private LegacyKey(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public String getId() {
+            return fingerprint;
+        }
+
+        public Set<Algorithm> getAlgorithms() {
+            return Collections.singleton(Algorithm.SSH_RSA);
+        }
+
+        public boolean canVerify() {
+            return false;
+        }
+
+        public boolean verify(Algorithm algorithm, byte[] contentBytes, byte[] signatureBytes) {
+            return false;
+        }
+
+        public boolean canSign() {
+            return false;
+        }
+
+        public byte[] sign(Algorithm algorithm, byte[] contentBytes) {
+            return null;
+        }
+    }
+
+    @Test
+    public void testFootprint() throws Exception {
+        FingerprintKeychain keychain =
+                (FingerprintKeychain) AuthorizedKeys.newKeychain(KeyTestUtil.getAuthorizedKeysFile());
+        KeyId keyId = new UserKeysFingerprintKeyId("admin");
+
+        // measure only the index structure, not the keys it shares with the map
+        GraphLayout keys = GraphLayout.parseInstance(keychain.toMap(keyId).values().toArray());
+        long mapSize = GraphLayout.parseInstance(keychain.toMap(keyId)).subtract(keys).totalSize();
+        long indexSize = GraphLayout.parseInstance(keychain.getIndex()).subtract(keys).totalSize();
+        assertTrue("index (" + indexSize + " bytes) should be a fraction of the map (" + mapSize + " bytes)",
+                   indexSize * 2 < mapSize);
+    }
+}
@@ -82,6 +82,41 @@ public class KeyFormatTest {
 
     }
 
+    @Test
+    public void testEcdsaFingerprint() {
+        try {
+            for (String parentName : new String[]{"ecdsa256", "ecdsa384"}) {
+                KeyPair keyPair = KeyTestUtil.getPrivateKeyAsKeyPair(parentName, "id_ecdsa", null);
+                List<AuthorizedKeys.AuthorizedKey> authorizedKeys = AuthorizedKeys.parseAuthorizedKeys(
+                        KeyTestUtil.getPublicKeyAsFile(parentName, "id_ecdsa"));
+                assertEquals(parentName + " pub file should only contain one pubkey", 1, authorizedKeys.size());
+
+                AuthorizedKeys.AuthorizedKey authorizedKey = authorizedKeys.get(0);
+                byte[] keyBlob = Base64.fromBase64String(authorizedKey.getEncodedKey());
+                KeyFormat format = KeyFormat.forIdentifier(authorizedKey.getFormat());
+
+                assertEquals(parentName + " fingerprint should match the JSch fingerprint algorithm",
+                             getJschFingerprint(keyBlob), format.getFingerprint(keyPair.getPublic()));
+            }
+        } catch (Exception e) {
+            FailUtil.sprintFail(e);
+        }
+    }
+
+    @Test
+    public void testFingerprintParse() {
+        String formatted = "16:27:ac:a5:76:28:2d:36:63:1b:56:4d:eb:df:a6:48";
+        Fingerprint fingerprint = Fingerprint.parse(formatted);
+        assertNotNull("well-formed fingerprint should parse", fingerprint);
+        assertEquals("fingerprint should format to its input", formatted, fingerprint.toString());
+        assertEquals("bytes should round trip", fingerprint, Fingerprint.fromBytes(fingerprint.toBytes()));
+        assertNull("upper case hex should not parse", Fingerprint.parse(formatted.toUpperCase()));
+
+        assertNull("short fingerprint should not parse", Fingerprint.parse(formatted.substring(3)));
+        assertNull("missing delimiter should not parse", Fingerprint.parse(formatted.replace(':', '-')));
+        assertNull("non-hex should not parse", Fingerprint.parse(formatted.replace('a', 'x')));
+    }
+
     public static String getJschFingerprint(byte[] keyBlob) throws Exception {
         final String[] fingerPrintChars = {
                 "0","1","2","3","4","5","6","7","8","9", "a","b","c","d","e","f"
@@ -0,0 +1,112 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.ssh.jce;
+
+import net.adamcin.httpsig.api.Base64;
+import net.adamcin.httpsig.api.Key;
+import net.adamcin.httpsig.api.Keychain;
+import net.adamcin.httpsig.testutil.KeyTestUtil;
+import org.junit.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PublicKeyPoolTest {
+
+    @Test
+    public void testSharedAcrossKeychains() throws Exception {
+        File pubKeyFile = KeyTestUtil.getPublicKeyAsFile("b2048", "id_rsa");
+        Keychain first = AuthorizedKeys.newKeychain(pubKeyFile);
+        Keychain second = AuthorizedKeys.newKeychain(pubKeyFile);
+
+        Key firstKey = first.iterator().next();
+        Key secondKey = second.iterator().next();
+        assertSame("keychains read from the same file should share the decoded key", firstKey, secondKey);
+    }
+
+    @Test
+    public void testPoolSize() throws Exception {
+        List<AuthorizedKeys.AuthorizedKey> authorizedKeys =
+                AuthorizedKeys.parseAuthorizedKeys(KeyTestUtil.getPublicKeyAsFile("b2048", "id_rsa"));
+        byte[] keyBlob = Base64.fromBase64String(authorizedKeys.get(0).getEncodedKey());
+
+        PublicKeyPool pool = new PublicKeyPool();
+        SSHKey first = pool.intern(keyBlob);
+        for (int i = 0; i < 1000; i++) {
+            assertSame("pool should return the interned key", first, pool.intern(keyBlob));
+        }
+        assertEquals("pool should hold one entry", 1, pool.size());
+    }
+
+    @Test
+    public void testFootprint() throws Exception {
+        final int count = 256;
+        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+        Random random = new Random(0L);
+        SSHKey[] compact = new SSHKey[count];
+        LegacyKey[] legacy = new LegacyKey[count];
+        for (int i = 0; i < count; i++) {
+            PublicKey publicKey = keyFactory.generatePublic(
+                    new RSAPublicKeySpec(new BigInteger(2048, random).setBit(2047), BigInteger.valueOf(65537L)));
+            compact[i] = new SSHKey(KeyFormat.SSH_RSA, publicKey, null);
+            legacy[i] = new LegacyKey(KeyFormat.SSH_RSA, new KeyPair(publicKey, null), compact[i].getFingerprint());
+        }
+
+        // both layouts share the same public keys, so the difference is the per-key overhead alone
+        long compactSize = GraphLayout.parseInstance((Object) compact).totalSize();
+        long legacySize = GraphLayout.parseInstance((Object) legacy).totalSize();
+        long fingerprintSize = GraphLayout.parseInstance(compact[0].getFingerprintDigest()).totalSize();
+        assertTrue("compact keys should save at least one fingerprint per key, but saved "
+                           + (legacySize - compactSize) + " bytes for " + count + " keys",
+                   legacySize - compactSize >= count * fingerprintSize);
+    }
+
+    /**
+     * Field layout of {@link SSHKey} before fingerprints were compacted and the {@link KeyPair} was unwrapped
+     */
+    static class LegacyKey {
+        final KeyFormat keyFormat;
+        final KeyPair keyPair;
+        final String fingerprint;
+
+        LegacyKey(KeyFormat keyFormat, KeyPair keyPair, String fingerprint) {
+            this.keyFormat = keyFormat;
+            this.keyPair = keyPair;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.ssh.jce;
+
+import net.adamcin.httpsig.api.Base64;
+import net.adamcin.httpsig.testutil.KeyTestUtil;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SshWireCodecTest {
+
+    @Test
+    public void testMpint() {
+        BigInteger[] values = new BigInteger[] {
+                BigInteger.ZERO, BigInteger.ONE, BigInteger.valueOf(127L), BigInteger.valueOf(128L),
+                BigInteger.valueOf(-1L), BigInteger.valueOf(-129L), BigInteger.ONE.shiftLeft(1024).subtract(BigInteger.ONE)
+        };
+
+        for (BigInteger value : values) {
+            ByteBuffer buf = ByteBuffer.allocate(SshWireCodec.mpintLength(value));
+            SshWireCodec.writeMpint(buf, value);
+            assertFalse("mpintLength should be exact for " + value, buf.hasRemaining());
+
+            buf.flip();
+            assertEquals("mpint should round trip", value, SshWireCodec.readMpint(buf));
+            assertFalse("readMpint should consume the field", buf.hasRemaining());
+        }
+    }
+
+    @Test
+    public void testReadPublicKeyBlob() throws Exception {
+        List<AuthorizedKeys.AuthorizedKey> keys =
+                AuthorizedKeys.parseAuthorizedKeys(KeyTestUtil.getPublicKeyAsFile("b1024", "id_rsa"));
+        byte[] keyBlob = Base64.fromBase64String(keys.get(0).getEncodedKey());
+
+        ByteBuffer buf = ByteBuffer.wrap(keyBlob);
+        assertEquals("format should be read first", "ssh-rsa", SshWireCodec.readAscii(buf));
+        BigInteger e = SshWireCodec.readMpint(buf);
+        ByteBuffer n = SshWireCodec.readString(buf);
+        assertFalse("blob should be fully consumed", buf.hasRemaining());
+        assertSame("string should be a slice of the blob", keyBlob, n.array());
+
+        ByteBuffer encoded = ByteBuffer.allocate(keyBlob.length);
+        SshWireCodec.writeString(encoded, "ssh-rsa".getBytes());
+        SshWireCodec.writeMpint(encoded, e);
+        SshWireCodec.writeString(encoded, n);
+        assertArrayEquals("re-encoded blob should match", keyBlob, encoded.array());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncatedString() {
+        ByteBuffer buf = ByteBuffer.allocate(8);
+        buf.putInt(16).putInt(0).flip();
+        SshWireCodec.readString(buf);
+    }
+
+    @Test
+    public void testSignatureFraming() {
+        byte[] blob = new byte[40];
+        Arrays.fill(blob, (byte) 0x7f);
+
+        byte[] framed = SshWireCodec.frameSignature("ssh-dss", ByteBuffer.wrap(blob));
+        ByteBuffer unwrapped = SshWireCodec.unwrapSignature(ByteBuffer.wrap(framed));
+        byte[] extracted = new byte[unwrapped.remaining()];
+        unwrapped.get(extracted);
+        assertArrayEquals("framed signature should unwrap to blob", blob, extracted);
+        assertArrayEquals("Magic should agree with codec", blob, Magic.extractSignatureFromDER(framed));
+
+        ByteBuffer raw = ByteBuffer.wrap(blob);
+        assertSame("unframed signature should be returned as-is", raw, SshWireCodec.unwrapSignature(raw));
+    }
+
+    @Test
+    public void testLongFormDer() {
+        // 66-byte integers with the high bit set, as for P-521, need the long form sequence length
+        byte[] raw = new byte[132];
+        Arrays.fill(raw, (byte) 0xff);
+        byte[] der = Magic.rawToDer(raw, 0, raw.length);
+        assertEquals("sequence tag", 0x30, der[0]);
+        assertEquals("long form length with one byte", (byte) 0x81, der[1]);
+        assertEquals("sequence length", der.length - 3, der[2] & 0xff);
+        assertArrayEquals("DER should convert back to raw", raw, Magic.derToRaw(der, 66));
+
+        ByteBuffer blob = ByteBuffer.allocate(2 * SshWireCodec.stringLength(66));
+        SshWireCodec.writeString(blob, Arrays.copyOfRange(raw, 0, 66));
+        SshWireCodec.writeString(blob, Arrays.copyOfRange(raw, 66, 132));
+        blob.flip();
+        assertArrayEquals("mpints should encode like raw", der, Magic.mpintsToDer(blob));
+    }
+
+    @Test
+    public void testMalformedIntegers() {
+        byte[][] blobs = {
+                new byte[]{0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x01, 0x01},
+                new byte[]{0x00, 0x00, 0x00, 0x01, 0x01, 0x00, 0x00, 0x00, 0x02, 0x01},
+                new byte[]{0x00, 0x00, 0x00, 0x01, 0x01, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x01}
+        };
+        for (byte[] blob : blobs) {
+            try {
+                Magic.mpintsToDer(ByteBuffer.wrap(blob));
+                fail("malformed mpints should be rejected: " + Arrays.toString(blob));
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+
+        for (int[] range : new int[][]{{0, 0}, {0, 3}, {2, 4}, {-1, 2}}) {
+            try {
+                Magic.rawToDer(new byte[4], range[0], range[1]);
+                fail("invalid raw range should be rejected: " + Arrays.toString(range));
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * This is free and unencumbered software released into the public domain.
+ *
+ * Anyone is free to copy, modify, publish, use, compile, sell, or
+ * distribute this software, either in source code form or as a compiled
+ * binary, for any purpose, commercial or non-commercial, and by any
+ * means.
+ *
+ * In jurisdictions that recognize copyright laws, the author or authors
+ * of this software dedicate any and all copyright interest in the
+ * software to the public domain. We make this dedication for the benefit
+ * of the public at large and to the detriment of our heirs and
+ * successors. We intend this dedication to be an overt act of
+ * relinquishment in perpetuity of all present and future rights to this
+ * software under copyright law.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ *
+ * For more information, please refer to <http://unlicense.org/>
+ */
+
+package net.adamcin.httpsig.ssh.jce;
+
+import net.adamcin.httpsig.api.Key;
+import net.adamcin.httpsig.api.Signer;
+import net.adamcin.httpsig.testutil.KeyTestUtil;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.*;
+
+public class UserAuthorizedKeysKeychainTest {
+
+    @Test
+    public void testFindKey() throws Exception {
+        File baseDir = createBaseDir("testFindKey", "alice", "bob");
+        UserAuthorizedKeysKeychain keychain = new UserAuthorizedKeysKeychain(baseDir, ".ssh/authorized_keys", 100);
+
+        FingerprintKeychain expected = AuthorizedKeys.newFingerprintKeychain(KeyTestUtil.getAuthorizedKeysFile());
+        String fingerprint = ((FingerprintableKey) expected.currentKey()).getFingerprint();
+
+        Key key = keychain.findKey(null, "/alice/keys/" + fingerprint);
+        assertNotNull("key should be found for alice", key);
+        assertEquals("key should match", fingerprint, ((FingerprintableKey) key).getFingerprint());
+        assertSame("same key should be found without keys segment", key, keychain.findKey(null, "/alice/" + fingerprint));
+        assertEquals("only alice should be loaded", 1, keychain.getCachedUserCount());
+
+        assertNull("unknown user should not match", keychain.findKey(null, "/carol/keys/" + fingerprint));
+        assertNull("path traversal should not match", keychain.findKey(null, "/../alice/keys/" + fingerprint));
+        assertNull("unknown fingerprint should not match",
+                   keychain.findKey(null, "/bob/keys/00:00:00:00:00:00:00:00:00:00:00:00:00:00:00:00"));
+        assertEquals("alice, carol and bob should be loaded", 3, keychain.getCachedUserCount());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        File baseDir = createBaseDir("testEviction", "alice", "bob", "carol");
+        FingerprintKeychain expected = AuthorizedKeys.newFingerprintKeychain(KeyTestUtil.getAuthorizedKeysFile());
+        String fingerprint = ((FingerprintableKey) expected.currentKey()).getFingerprint();
+
+        UserAuthorizedKeysKeychain keychain =
+                new UserAuthorizedKeysKeychain(baseDir, ".ssh/authorized_keys", 2 * expected.size());
+
+        assertNotNull(keychain.findKey(null, "/alice/keys/" + fingerprint));
+        assertNotNull(keychain.findKey(null, "/bob/keys/" + fingerprint));
+        assertNotNull(keychain.findKey(null, "/alice/keys/" + fingerprint));
+        assertNotNull(keychain.findKey(null, "/carol/keys/" + fingerprint));
+
+        assertEquals("least recently used user should be evicted", 2, keychain.getCachedUserCount());
+        assertEquals("cached keys should be bounded", 2 * expected.size(), keychain.getCachedKeyCount());
+
+        keychain.invalidate("alice");
+        assertEquals("invalidated user should be removed", 1, keychain.getCachedUserCount());
+        assertEquals("invalidated keys should be released", expected.size(), keychain.getCachedKeyCount());
+    }
+
+    @Test
+    public void testIsEmpty() throws Exception {
+        File baseDir = createBaseDir("testIsEmpty", "alice");
+        UserAuthorizedKeysKeychain keychain = new UserAuthorizedKeysKeychain(baseDir, ".ssh/authorized_keys", 100);
+
+        assertTrue("keychain should be empty", keychain.isEmpty());
+        assertFalse("keychain should not iterate any keys", keychain.iterator().hasNext());
+        try {
+            keychain.currentKey();
+            fail("currentKey should throw");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+        try {
+            keychain.discard();
+            fail("discard should throw");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+        assertTrue("signer should have no candidate keys", new Signer(keychain).getCandidateKeys().isEmpty());
+    }
+
+    private static File createBaseDir(String name, String... usernames) throws Exception {
+        File baseDir = new File("target/" + UserAuthorizedKeysKeychainTest.class.getSimpleName() + "/" + name);
+        FileUtils.deleteDirectory(baseDir);
+        for (String username : usernames) {
+            FileUtils.copyFile(KeyTestUtil.getAuthorizedKeysFile(),
+                               new File(baseDir, username + "/.ssh/authorized_keys"));
+        }
+        return baseDir;
+    }
+}
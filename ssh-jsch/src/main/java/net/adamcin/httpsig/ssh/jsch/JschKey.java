@@ -27,41 +27,55 @@
 
 package net.adamcin.httpsig.ssh.jsch;
 
-import com.jcraft.jsch.Buffer;
 import com.jcraft.jsch.Identity;
 import com.jcraft.jsch.JSch;
-import com.jcraft.jsch.Signature;
-import com.jcraft.jsch.jce.SignatureDSA;
-import com.jcraft.jsch.jce.SignatureRSA;
 import net.adamcin.httpsig.api.Algorithm;
 import net.adamcin.httpsig.api.DefaultKeychain;
 import net.adamcin.httpsig.api.Keychain;
 import net.adamcin.httpsig.ssh.jce.FingerprintableKey;
 import net.adamcin.httpsig.ssh.jce.Magic;
+import net.adamcin.httpsig.ssh.jce.PublicKeyPool;
+import net.adamcin.httpsig.ssh.jce.SSHKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Set;
 import java.util.Vector;
 
 /**
- *
+ * {@link FingerprintableKey} which signs with a JSch {@link Identity}, such as a private key file or an ssh-agent
+ * identity, and verifies with its public key. The public key is decoded once, when the key is created, and the
+ * result of {@link #canSign()} is remembered once the identity is no longer encrypted.
  */
 public class JschKey implements FingerprintableKey {
     private static final Logger LOGGER = LoggerFactory.getLogger(JschKey.class);
 
     private final String fingerprint;
     private final Algorithm algorithm;
+    private final Set<Algorithm> algorithms;
     private final Identity identity;
+    private final SSHKey publicKey;
+    private volatile Boolean canSign;
 
     public JschKey(Identity identity) {
-        this.fingerprint = Magic.getFingerprint(identity.getPublicKeyBlob());
+        byte[] keyBlob = identity.getPublicKeyBlob();
+        this.fingerprint = Magic.getFingerprint(keyBlob);
         this.identity = identity;
         this.algorithm = Algorithm.forName(identity.getAlgName());
+        this.algorithms = this.algorithm == null
+                ? Collections.<Algorithm>emptySet() : Collections.singleton(this.algorithm);
+        this.publicKey = internPublicKey(keyBlob);
+    }
+
+    private static SSHKey internPublicKey(byte[] keyBlob) {
+        try {
+            return PublicKeyPool.getSharedPool().intern(keyBlob);
+        } catch (IllegalArgumentException e) {
+            LOGGER.debug("[internPublicKey] public key cannot be used for verification: {}", e.getMessage());
+            return null;
+        }
     }
 
     public String getId() {
@@ -73,7 +87,7 @@ public class JschKey implements FingerprintableKey {
     }
 
     public Set<Algorithm> getAlgorithms() {
-        return Collections.unmodifiableSet(this.algorithm == null ? new HashSet<Algorithm>() : new HashSet<Algorithm>(Arrays.asList(this.algorithm)));
+        return this.algorithms;
     }
 
     /**
@@ -84,10 +98,9 @@ public class JschKey implements FingerprintableKey {
      * @return true if verified
      */
     public boolean verify(Algorithm algorithm, byte[] challengeHash, byte[] signatureBytes) {
-        if (algorithm == this.algorithm) {
+        if (algorithm == this.algorithm && this.publicKey != null) {
             try {
-                Signature signature = getSignature(challengeHash);
-                return signature.verify(signatureBytes);
+                return this.publicKey.verify(algorithm, challengeHash, signatureBytes);
             } catch (Exception e) {
                 LOGGER.error("[verify] signature verification failed.", e);
             }
@@ -97,51 +110,25 @@ public class JschKey implements FingerprintableKey {
     }
 
     public boolean canVerify() {
-        try {
-            return this.getSignature("test".getBytes()) != null;
-        } catch (Exception e) {
-            return false;
-        }
+        return this.publicKey != null;
     }
 
     public boolean canSign() {
-        try {
-            return identity.getSignature("test".getBytes()) != null;
-        } catch (Exception e) {
-            return false;
-        }
-    }
-
-    private Signature getSignature(byte[] challengeHash) throws Exception {
-        if (Algorithm.SSH_RSA == this.algorithm) {
-            SignatureRSA signature = new SignatureRSA();
-
-            Buffer buf = new Buffer(this.identity.getPublicKeyBlob());
-
-            signature.init();
-            buf.getString(); // read the format string first
-            byte[] e = buf.getString();
-            byte[] n = buf.getString();
-            signature.setPubKey(e, n);
-            signature.update(challengeHash);
-            return signature;
-        } else if (Algorithm.SSH_DSS == this.algorithm) {
-            SignatureDSA signature = new SignatureDSA();
-
-            Buffer buf = new Buffer(this.identity.getPublicKeyBlob());
-
-            signature.init();
-            buf.getString(); // read the format string first
-            byte[] p = buf.getString();
-            byte[] q = buf.getString();
-            byte[] g = buf.getString();
-            byte[] pub_array = buf.getString();
-            signature.setPubKey(pub_array, p, q, g);
-            signature.update(challengeHash);
-            return signature;
-        } else {
-            throw new Exception("Unsupported public key algorithm: " + identity.getAlgName());
+        Boolean _canSign = this.canSign;
+        if (_canSign == null) {
+            boolean signed;
+            try {
+                signed = identity.getSignature("test".getBytes()) != null;
+            } catch (Exception e) {
+                signed = false;
+            }
+            // an encrypted identity may be decrypted later, so only remember a final answer
+            if (signed || !identity.isEncrypted()) {
+                this.canSign = signed;
+            }
+            return signed;
         }
+        return _canSign;
     }
 
     /**
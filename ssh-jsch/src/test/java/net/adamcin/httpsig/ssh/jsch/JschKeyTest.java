@@ -27,8 +27,11 @@
 
 package net.adamcin.httpsig.ssh.jsch;
 
+import com.jcraft.jsch.Identity;
 import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
 import net.adamcin.commons.testing.junit.FailUtil;
+import net.adamcin.httpsig.api.Algorithm;
 import net.adamcin.httpsig.api.Authorization;
 import net.adamcin.httpsig.api.Challenge;
 import net.adamcin.httpsig.api.Constants;
@@ -48,8 +51,10 @@ import org.slf4j.LoggerFactory;
 
 import java.io.Reader;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class JschKeyTest {
@@ -117,4 +122,51 @@ public class JschKeyTest {
         assertTrue(id + "round trip using dverifier + jsigner", dverifier.verify(challenge, requestContent, jpacket));
     }
 
+    @Test
+    public void testMemoizedCapabilities() throws Exception {
+        JSch jSch = new JSch();
+        jSch.addIdentity(KeyTestUtil.getPrivateKeyAsFile("b1024", "id_rsa").getAbsolutePath(), (String) null);
+        final Identity delegate = (Identity) jSch.getIdentityRepository().getIdentities().get(0);
+        final AtomicInteger signatures = new AtomicInteger();
+
+        Identity counting = new Identity() {
+            public boolean setPassphrase(byte[] passphrase) throws JSchException {
+                return delegate.setPassphrase(passphrase);
+            }
+            public byte[] getPublicKeyBlob() {
+                return delegate.getPublicKeyBlob();
+            }
+            public byte[] getSignature(byte[] data) {
+                signatures.incrementAndGet();
+                return delegate.getSignature(data);
+            }
+            public boolean decrypt() {
+                return delegate.decrypt();
+            }
+            public String getAlgName() {
+                return delegate.getAlgName();
+            }
+            public String getName() {
+                return delegate.getName();
+            }
+            public boolean isEncrypted() {
+                return delegate.isEncrypted();
+            }
+            public void clear() {
+                delegate.clear();
+            }
+        };
+
+        JschKey key = new JschKey(counting);
+        for (int i = 0; i < 10; i++) {
+            assertTrue("should be able to sign", key.canSign());
+            assertTrue("should be able to verify", key.canVerify());
+        }
+        assertEquals("canSign should sign only once", 1, signatures.get());
+
+        byte[] content = "hello".getBytes();
+        byte[] signature = key.sign(Algorithm.SSH_RSA, content);
+        assertTrue("should verify its own signature", key.verify(Algorithm.SSH_RSA, content, signature));
+        assertFalse("should not verify with another algorithm", key.verify(Algorithm.SSH_DSS, content, signature));
+    }
 }
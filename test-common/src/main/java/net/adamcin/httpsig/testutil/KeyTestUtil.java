@@ -113,6 +113,8 @@ public class KeyTestUtil {
         new File(TEST_TEMP, "b2048").mkdirs();
         new File(TEST_TEMP, "b4096").mkdirs();
         new File(TEST_TEMP, "withpass").mkdirs();
+        new File(TEST_TEMP, "ecdsa256").mkdirs();
+        new File(TEST_TEMP, "ecdsa384").mkdirs();
     }
 
     final protected static char[] hexArray = "0123456789ABCDEF".toCharArray();